@@ -0,0 +1,60 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.diameter.api.ha.cluster;
+
+/**
+ * Cluster backend used by the replicated session datasource. It provides the
+ * store holding replicated session state and the scheduler of timers that
+ * survive the failure of the node which scheduled them.
+ * 
+ * Implementations are created by class name, from the ClusterBackendClass
+ * parameter, and need a public no-argument constructor.
+ */
+public interface ClusterBackend {
+
+  /**
+   * @return store of replicated session state
+   */
+  public ReplicatedStateStore getStateStore();
+
+  /**
+   * @return scheduler of replicated timers
+   */
+  public FailoverTimerScheduler getTimerScheduler();
+
+  /**
+   * Joins the cluster. Called when the session datasource is started.
+   */
+  public void start();
+
+  /**
+   * Leaves the cluster. Called when the session datasource is stopped.
+   */
+  public void stop();
+
+  /**
+   * @return true if state is not replicated to other nodes
+   */
+  public boolean isLocalMode();
+
+}
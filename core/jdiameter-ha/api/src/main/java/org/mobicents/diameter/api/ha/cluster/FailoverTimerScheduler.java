@@ -0,0 +1,82 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.diameter.api.ha.cluster;
+
+import java.io.Serializable;
+
+/**
+ * Scheduler of session timers. Scheduled timers are replicated, if the node
+ * that scheduled a timer fails, another node takes it over and fires it.
+ * 
+ * Backends partitioning state by session may place timers by the Session-Id
+ * prefix of their id, ids built as <code>sessionId + "/" + timerName</code>
+ * keep a timer on the same nodes as its session.
+ */
+public interface FailoverTimerScheduler {
+
+  /**
+   * Schedules a timer.
+   * 
+   * @param id timer id, unique in the cluster
+   * @param sessionId id of the session owning the timer
+   * @param timerName name of the timer, passed back to the session
+   * @param delay milliseconds until the timer fires
+   * @throws IllegalArgumentException if a timer with the same id is scheduled
+   */
+  public void schedule(Serializable id, String sessionId, String timerName, long delay) throws IllegalArgumentException;
+
+  /**
+   * Cancels a timer, does nothing if it is not scheduled.
+   * 
+   * @param id timer id
+   */
+  public void cancel(Serializable id);
+
+  /**
+   * @param id timer id
+   * @return true if the timer is scheduled and has not fired yet
+   */
+  public boolean isScheduled(Serializable id);
+
+  /**
+   * Sets the handler of fired timers, also of those taken over from failed
+   * nodes.
+   * 
+   * @param handler timer handler
+   */
+  public void setTimerHandler(TimerHandler handler);
+
+  /**
+   * Handler of fired timers.
+   */
+  public interface TimerHandler {
+
+    /**
+     * @param sessionId id of the session owning the timer
+     * @param timerName name of the timer
+     */
+    public void onTimer(String sessionId, String timerName);
+
+  }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.diameter.api.ha.cluster;
+
+/**
+ * Replicated store of session state. Each session is kept as a single opaque
+ * value under its session id, which is visible to every node of the cluster.
+ */
+public interface ReplicatedStateStore {
+
+  /**
+   * Creates an empty entry for the given key if there is none.
+   * 
+   * @param key session id
+   * @return true if the entry was created by this call
+   */
+  public boolean create(String key);
+
+  /**
+   * @param key session id
+   * @return true if there is an entry for the given key
+   */
+  public boolean exists(String key);
+
+  /**
+   * @param key session id
+   * @return value of the entry, null if there is no entry or it has no value yet
+   */
+  public byte[] get(String key);
+
+  /**
+   * Sets the value of the entry for the given key. The value must not be
+   * changed afterwards.
+   * 
+   * @param key session id
+   * @param value new value
+   */
+  public void put(String key, byte[] value);
+
+  /**
+   * @param key session id
+   * @return true if there was an entry for the given key
+   */
+  public boolean remove(String key);
+
+  /**
+   * Sets the listener notified when an entry is removed by another node.
+   * 
+   * @param listener removal listener
+   */
+  public void setRemovalListener(StateRemovalListener listener);
+
+}
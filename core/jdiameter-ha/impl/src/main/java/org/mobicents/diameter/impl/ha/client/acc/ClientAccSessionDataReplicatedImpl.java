@@ -25,7 +25,6 @@ package org.mobicents.diameter.impl.ha.client.acc;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 
-import org.jboss.cache.Fqn;
 import org.jdiameter.api.AvpDataException;
 import org.jdiameter.api.Request;
 import org.jdiameter.api.acc.ClientAccSession;
@@ -35,9 +34,10 @@ import org.jdiameter.client.api.parser.IMessageParser;
 import org.jdiameter.client.api.parser.ParseException;
 import org.jdiameter.client.impl.app.acc.IClientAccSessionData;
 import org.jdiameter.common.api.app.acc.ClientAccSessionState;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
-import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema.FieldType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,15 +56,22 @@ public class ClientAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   private static final String DEST_REALM = "DEST_REALM";
   private static final String BUFFER = "BUFFER";
 
+  private static final SessionDataSchema SCHEMA = AppSessionDataReplicatedImpl.SCHEMA.extend(1)
+      .addEnum(STATE, ClientAccSessionState.class)
+      .add(INTERIM_TIMERID, FieldType.SERIALIZABLE)
+      .add(DEST_HOST, FieldType.STRING)
+      .add(DEST_REALM, FieldType.STRING)
+      .add(BUFFER, FieldType.BYTES);
+
   private IMessageParser messageParser;
 
   /**
-   * @param nodeFqn
-   * @param mobicentsCluster
+   * @param sessionId
+   * @param stateStore
    * @param iface
    */
-  public ClientAccSessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster, IContainer container) {
-    super(nodeFqn, mobicentsCluster);
+  public ClientAccSessionDataReplicatedImpl(String sessionId, ReplicatedStateStore stateStore, IContainer container) {
+    super(sessionId, stateStore);
 
     if (super.create()) {
       setAppSessionIface(this, ClientAccSession.class);
@@ -74,15 +81,6 @@ public class ClientAccSessionDataReplicatedImpl extends AppSessionDataReplicated
     this.messageParser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
   }
 
-  /**
-   * @param sessionId
-   * @param mobicentsCluster
-   * @param iface
-   */
-  public ClientAccSessionDataReplicatedImpl(String sessionId, MobicentsCluster mobicentsCluster, IContainer container) {
-    this(Fqn.fromRelativeElements(ReplicatedSessionDatasource.SESSIONS_FQN, sessionId), mobicentsCluster, container);
-  }
-
   /*
    * (non-Javadoc)
    * 
@@ -92,7 +90,7 @@ public class ClientAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setClientAccSessionState(ClientAccSessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putField(STATE, state);
     }
     else {
       throw new IllegalStateException();
@@ -107,7 +105,7 @@ public class ClientAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public ClientAccSessionState getClientAccSessionState() {
     if (exists()) {
-      return (ClientAccSessionState) getNode().get(STATE);
+      return (ClientAccSessionState) getField(STATE);
     }
     else {
       throw new IllegalStateException();
@@ -122,7 +120,7 @@ public class ClientAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setInterimTimerId(Serializable tid) {
     if (exists()) {
-      getNode().put(INTERIM_TIMERID, tid);
+      putField(INTERIM_TIMERID, tid);
     }
     else {
       throw new IllegalStateException();
@@ -137,7 +135,7 @@ public class ClientAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public Serializable getInterimTimerId() {
     if (exists()) {
-      return (Serializable) getNode().get(INTERIM_TIMERID);
+      return (Serializable) getField(INTERIM_TIMERID);
     }
     else {
       throw new IllegalStateException();
@@ -152,7 +150,7 @@ public class ClientAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setDestinationHost(String destHost) {
     if (exists()) {
-      getNode().put(DEST_HOST, destHost);
+      putField(DEST_HOST, destHost);
     }
     else {
       throw new IllegalStateException();
@@ -167,7 +165,7 @@ public class ClientAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public String getDestinationHost() {
     if (exists()) {
-      return (String) getNode().get(DEST_HOST);
+      return (String) getField(DEST_HOST);
     }
     else {
       throw new IllegalStateException();
@@ -182,7 +180,7 @@ public class ClientAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setDestinationRealm(String destRealm) {
     if (exists()) {
-      getNode().put(DEST_REALM, destRealm);
+      putField(DEST_REALM, destRealm);
     }
     else {
       throw new IllegalStateException();
@@ -197,7 +195,7 @@ public class ClientAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public String getDestinationRealm() {
     if (exists()) {
-      return (String) getNode().get(DEST_REALM);
+      return (String) getField(DEST_REALM);
     }
     else {
       throw new IllegalStateException();
@@ -206,7 +204,7 @@ public class ClientAccSessionDataReplicatedImpl extends AppSessionDataReplicated
 
   @Override
   public Request getBuffer() {
-    byte[] data = (byte[]) getNode().get(BUFFER);
+    byte[] data = (byte[]) getField(BUFFER);
     if (data != null) {
       try {
         return (Request) this.messageParser.createMessage(ByteBuffer.wrap(data));
@@ -226,15 +224,20 @@ public class ClientAccSessionDataReplicatedImpl extends AppSessionDataReplicated
     if (buffer != null) {
       try {
         byte[] data = this.messageParser.encodeMessage((IMessage) buffer).array();
-        getNode().put(BUFFER, data);
+        putField(BUFFER, data);
       }
       catch (ParseException e) {
         logger.error("Unable to encode message to buffer.");
       }
     }
     else {
-      getNode().remove(BUFFER);
+      removeField(BUFFER);
     }
   }
 
+  @Override
+  protected SessionDataSchema getSchema() {
+    return SCHEMA;
+  }
+
 }
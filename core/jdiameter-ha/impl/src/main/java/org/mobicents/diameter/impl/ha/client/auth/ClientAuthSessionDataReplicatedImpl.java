@@ -24,13 +24,13 @@ package org.mobicents.diameter.impl.ha.client.auth;
 
 import java.io.Serializable;
 
-import org.jboss.cache.Fqn;
 import org.jdiameter.api.auth.ClientAuthSession;
 import org.jdiameter.client.impl.app.auth.IClientAuthSessionData;
 import org.jdiameter.common.api.app.auth.ClientAuthSessionState;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
-import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema.FieldType;
 
 /**
  * 
@@ -45,13 +45,20 @@ public class ClientAuthSessionDataReplicatedImpl extends AppSessionDataReplicate
   private static final String STATELESS = "STATELESS";
   private static final String TS_TIMERID = "TS_TIMERID";
 
+  private static final SessionDataSchema SCHEMA = AppSessionDataReplicatedImpl.SCHEMA.extend(1)
+      .addEnum(STATE, ClientAuthSessionState.class)
+      .add(DESTINATION_HOST, FieldType.STRING)
+      .add(DESTINATION_REALM, FieldType.STRING)
+      .add(STATELESS, FieldType.BOOLEAN)
+      .add(TS_TIMERID, FieldType.SERIALIZABLE);
+
   /**
-   * @param nodeFqn
-   * @param mobicentsCluster
+   * @param sessionId
+   * @param stateStore
    * @param iface
    */
-  public ClientAuthSessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster) {
-    super(nodeFqn, mobicentsCluster);
+  public ClientAuthSessionDataReplicatedImpl(String sessionId, ReplicatedStateStore stateStore) {
+    super(sessionId, stateStore);
 
     if (super.create()) {
       setAppSessionIface(this, ClientAuthSession.class);
@@ -59,15 +66,6 @@ public class ClientAuthSessionDataReplicatedImpl extends AppSessionDataReplicate
     }
   }
 
-  /**
-   * @param sessionId
-   * @param mobicentsCluster
-   * @param iface
-   */
-  public ClientAuthSessionDataReplicatedImpl(String sessionId, MobicentsCluster mobicentsCluster) {
-    this(Fqn.fromRelativeElements(ReplicatedSessionDatasource.SESSIONS_FQN, sessionId), mobicentsCluster);
-  }
-
   /*
    * (non-Javadoc)
    * 
@@ -77,7 +75,7 @@ public class ClientAuthSessionDataReplicatedImpl extends AppSessionDataReplicate
   @Override
   public void setClientAuthSessionState(ClientAuthSessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putField(STATE, state);
     }
     else {
       throw new IllegalStateException();
@@ -92,7 +90,7 @@ public class ClientAuthSessionDataReplicatedImpl extends AppSessionDataReplicate
   @Override
   public ClientAuthSessionState getClientAuthSessionState() {
     if (exists()) {
-      return (ClientAuthSessionState) getNode().get(STATE);
+      return (ClientAuthSessionState) getField(STATE);
     }
     else {
       throw new IllegalStateException();
@@ -107,7 +105,7 @@ public class ClientAuthSessionDataReplicatedImpl extends AppSessionDataReplicate
   @Override
   public boolean isStateless() {
     if (exists()) {
-      return toPrimitive((Boolean) getNode().get(STATELESS), true);
+      return toPrimitive((Boolean) getField(STATELESS), true);
     }
     else {
       throw new IllegalStateException();
@@ -122,7 +120,7 @@ public class ClientAuthSessionDataReplicatedImpl extends AppSessionDataReplicate
   @Override
   public void setStateless(boolean b) {
     if (exists()) {
-      getNode().put(STATELESS, b);
+      putField(STATELESS, b);
     }
     else {
       throw new IllegalStateException();
@@ -138,7 +136,7 @@ public class ClientAuthSessionDataReplicatedImpl extends AppSessionDataReplicate
   @Override
   public String getDestinationHost() {
     if (exists()) {
-      return (String) getNode().get(DESTINATION_HOST);
+      return (String) getField(DESTINATION_HOST);
     }
     else {
       throw new IllegalStateException();
@@ -153,7 +151,7 @@ public class ClientAuthSessionDataReplicatedImpl extends AppSessionDataReplicate
   @Override
   public void setDestinationHost(String host) {
     if (exists()) {
-      getNode().put(DESTINATION_HOST, host);
+      putField(DESTINATION_HOST, host);
     }
     else {
       throw new IllegalStateException();
@@ -168,7 +166,7 @@ public class ClientAuthSessionDataReplicatedImpl extends AppSessionDataReplicate
   @Override
   public String getDestinationRealm() {
     if (exists()) {
-      return (String) getNode().get(DESTINATION_REALM);
+      return (String) getField(DESTINATION_REALM);
     }
     else {
       throw new IllegalStateException();
@@ -183,7 +181,7 @@ public class ClientAuthSessionDataReplicatedImpl extends AppSessionDataReplicate
   @Override
   public void setDestinationRealm(String realm) {
     if (exists()) {
-      getNode().put(DESTINATION_REALM, realm);
+      putField(DESTINATION_REALM, realm);
     }
     else {
       throw new IllegalStateException();
@@ -198,7 +196,7 @@ public class ClientAuthSessionDataReplicatedImpl extends AppSessionDataReplicate
   @Override
   public Serializable getTsTimerId() {
     if (exists()) {
-      return (Serializable) getNode().get(TS_TIMERID);
+      return (Serializable) getField(TS_TIMERID);
     }
     else {
       throw new IllegalStateException();
@@ -213,11 +211,16 @@ public class ClientAuthSessionDataReplicatedImpl extends AppSessionDataReplicate
   @Override
   public void setTsTimerId(Serializable tid) {
     if (exists()) {
-      getNode().put(TS_TIMERID, tid);
+      putField(TS_TIMERID, tid);
     }
     else {
       throw new IllegalStateException();
     }
   }
 
+  @Override
+  protected SessionDataSchema getSchema() {
+    return SCHEMA;
+  }
+
 }
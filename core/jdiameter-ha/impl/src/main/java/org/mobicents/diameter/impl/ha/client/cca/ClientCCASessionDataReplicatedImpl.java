@@ -25,7 +25,6 @@ package org.mobicents.diameter.impl.ha.client.cca;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 
-import org.jboss.cache.Fqn;
 import org.jdiameter.api.AvpDataException;
 import org.jdiameter.api.Request;
 import org.jdiameter.api.cca.ClientCCASession;
@@ -35,9 +34,10 @@ import org.jdiameter.client.api.parser.IMessageParser;
 import org.jdiameter.client.api.parser.ParseException;
 import org.jdiameter.client.impl.app.cca.IClientCCASessionData;
 import org.jdiameter.common.api.app.cca.ClientCCASessionState;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
-import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema.FieldType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,15 +60,26 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   private static final String GDDFH = "GDDFH";
   private static final String GCCFH = "GCCFH";
 
+  private static final SessionDataSchema SCHEMA = AppSessionDataReplicatedImpl.SCHEMA.extend(1)
+      .add(EVENT_BASED, FieldType.BOOLEAN)
+      .add(REQUEST_TYPE, FieldType.BOOLEAN)
+      .addEnum(STATE, ClientCCASessionState.class)
+      .add(TXTIMER_ID, FieldType.SERIALIZABLE)
+      .add(TXTIMER_REQUEST, FieldType.BYTES)
+      .add(BUFFER, FieldType.BYTES)
+      .add(GRA, FieldType.INTEGER)
+      .add(GDDFH, FieldType.INTEGER)
+      .add(GCCFH, FieldType.INTEGER);
+
   private IMessageParser messageParser;
 
   /**
-   * @param nodeFqn
-   * @param mobicentsCluster
+   * @param sessionId
+   * @param stateStore
    * @param iface
    */
-  public ClientCCASessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster, IContainer container) {
-    super(nodeFqn, mobicentsCluster);
+  public ClientCCASessionDataReplicatedImpl(String sessionId, ReplicatedStateStore stateStore, IContainer container) {
+    super(sessionId, stateStore);
 
     if (super.create()) {
       setAppSessionIface(this, ClientCCASession.class);
@@ -78,18 +89,9 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
     this.messageParser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
   }
 
-  /**
-   * @param sessionId
-   * @param mobicentsCluster
-   * @param iface
-   */
-  public ClientCCASessionDataReplicatedImpl(String sessionId, MobicentsCluster mobicentsCluster, IContainer container) {
-    this(Fqn.fromRelativeElements(ReplicatedSessionDatasource.SESSIONS_FQN, sessionId), mobicentsCluster, container);
-  }
-
   public boolean isEventBased() {
     if (exists()) {
-      return toPrimitive((Boolean) getNode().get(EVENT_BASED), true);
+      return toPrimitive((Boolean) getField(EVENT_BASED), true);
     }
     else {
       throw new IllegalStateException();
@@ -98,7 +100,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
 
   public void setEventBased(boolean isEventBased) {
     if (exists()) {
-      getNode().put(EVENT_BASED, isEventBased);
+      putField(EVENT_BASED, isEventBased);
     }
     else {
       throw new IllegalStateException();
@@ -107,7 +109,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
 
   public boolean isRequestTypeSet() {
     if (exists()) {
-      return toPrimitive((Boolean) getNode().get(REQUEST_TYPE), false);
+      return toPrimitive((Boolean) getField(REQUEST_TYPE), false);
     }
     else {
       throw new IllegalStateException();
@@ -116,7 +118,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
 
   public void setRequestTypeSet(boolean requestTypeSet) {
     if (exists()) {
-      getNode().put(REQUEST_TYPE, requestTypeSet);
+      putField(REQUEST_TYPE, requestTypeSet);
     }
     else {
       throw new IllegalStateException();
@@ -125,7 +127,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
 
   public ClientCCASessionState getClientCCASessionState() {
     if (exists()) {
-      return (ClientCCASessionState) getNode().get(STATE);
+      return (ClientCCASessionState) getField(STATE);
     }
     else {
       throw new IllegalStateException();
@@ -134,7 +136,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
 
   public void setClientCCASessionState(ClientCCASessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putField(STATE, state);
     }
     else {
       throw new IllegalStateException();
@@ -143,7 +145,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
 
   public Serializable getTxTimerId() {
     if (exists()) {
-      return (Serializable) getNode().get(TXTIMER_ID);
+      return (Serializable) getField(TXTIMER_ID);
     }
     else {
       throw new IllegalStateException();
@@ -152,7 +154,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
 
   public void setTxTimerId(Serializable txTimerId) {
     if (exists()) {
-      getNode().put(TXTIMER_ID, txTimerId);
+      putField(TXTIMER_ID, txTimerId);
     }
     else {
       throw new IllegalStateException();
@@ -162,7 +164,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   public Request getTxTimerRequest() {
     if (exists()) {
 
-      byte[] data = (byte[]) getNode().get(TXTIMER_REQUEST);
+      byte[] data = (byte[]) getField(TXTIMER_REQUEST);
       if (data != null) {
         try {
           return (Request) this.messageParser.createMessage(ByteBuffer.wrap(data));
@@ -186,14 +188,14 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
       if (txTimerRequest != null) {
         try {
           byte[] data = this.messageParser.encodeMessage((IMessage) txTimerRequest).array();
-          getNode().put(TXTIMER_REQUEST, data);
+          putField(TXTIMER_REQUEST, data);
         }
         catch (ParseException e) {
           logger.error("Unable to encode Tx Timer Request to buffer.");
         }
       }
       else {
-        getNode().remove(TXTIMER_REQUEST);
+        removeField(TXTIMER_REQUEST);
       }
     }
     else {
@@ -202,7 +204,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   }
 
   public Request getBuffer() {
-    byte[] data = (byte[]) getNode().get(BUFFER);
+    byte[] data = (byte[]) getField(BUFFER);
     if (data != null) {
       try {
         return (Request) this.messageParser.createMessage(ByteBuffer.wrap(data));
@@ -221,20 +223,20 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
     if (buffer != null) {
       try {
         byte[] data = this.messageParser.encodeMessage((IMessage) buffer).array();
-        getNode().put(BUFFER, data);
+        putField(BUFFER, data);
       }
       catch (ParseException e) {
         logger.error("Unable to encode message to buffer.");
       }
     }
     else {
-      getNode().remove(BUFFER);
+      removeField(BUFFER);
     }
   }
 
   public int getGatheredRequestedAction() {
     if (exists()) {
-      return toPrimitive((Integer) getNode().get(GRA));
+      return toPrimitive((Integer) getField(GRA));
     }
     else {
       throw new IllegalStateException();
@@ -243,7 +245,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
 
   public void setGatheredRequestedAction(int gatheredRequestedAction) {
     if (exists()) {
-      getNode().put(GRA, gatheredRequestedAction);
+      putField(GRA, gatheredRequestedAction);
     }
     else {
       throw new IllegalStateException();
@@ -252,7 +254,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
 
   public int getGatheredCCFH() {
     if (exists()) {
-      return toPrimitive((Integer) getNode().get(GCCFH));
+      return toPrimitive((Integer) getField(GCCFH));
     }
     else {
       throw new IllegalStateException();
@@ -261,7 +263,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
 
   public void setGatheredCCFH(int gatheredCCFH) {
     if (exists()) {
-      getNode().put(GCCFH, gatheredCCFH);
+      putField(GCCFH, gatheredCCFH);
     }
     else {
       throw new IllegalStateException();
@@ -270,7 +272,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
 
   public int getGatheredDDFH() {
     if (exists()) {
-      return toPrimitive((Integer) getNode().get(GDDFH));
+      return toPrimitive((Integer) getField(GDDFH));
     }
     else {
       throw new IllegalStateException();
@@ -279,11 +281,16 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
 
   public void setGatheredDDFH(int gatheredDDFH) {
     if (exists()) {
-      getNode().put(GDDFH, gatheredDDFH);
+      putField(GDDFH, gatheredDDFH);
     }
     else {
       throw new IllegalStateException();
     }
   }
 
+  @Override
+  protected SessionDataSchema getSchema() {
+    return SCHEMA;
+  }
+
 }
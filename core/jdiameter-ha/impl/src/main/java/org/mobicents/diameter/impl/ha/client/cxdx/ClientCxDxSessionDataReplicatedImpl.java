@@ -22,14 +22,12 @@
 
 package org.mobicents.diameter.impl.ha.client.cxdx;
 
-import org.jboss.cache.Fqn;
 import org.jdiameter.api.cxdx.ClientCxDxSession;
 import org.jdiameter.client.api.IContainer;
 import org.jdiameter.client.impl.app.cxdx.IClientCxDxSessionData;
 import org.jdiameter.common.api.app.cxdx.CxDxSessionState;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.common.cxdx.CxDxSessionDataReplicatedImpl;
-import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
 
 /**
  * 
@@ -39,12 +37,12 @@ import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
 public class ClientCxDxSessionDataReplicatedImpl extends CxDxSessionDataReplicatedImpl implements IClientCxDxSessionData {
 
   /**
-   * @param nodeFqn
-   * @param mobicentsCluster
+   * @param sessionId
+   * @param stateStore
    * @param iface
    */
-  public ClientCxDxSessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster, IContainer container) {
-    super(nodeFqn, mobicentsCluster, container);
+  public ClientCxDxSessionDataReplicatedImpl(String sessionId, ReplicatedStateStore stateStore, IContainer container) {
+    super(sessionId, stateStore, container);
 
     if (super.create()) {
       setAppSessionIface(this, ClientCxDxSession.class);
@@ -52,13 +50,4 @@ public class ClientCxDxSessionDataReplicatedImpl extends CxDxSessionDataReplicat
     }
   }
 
-  /**
-   * @param sessionId
-   * @param mobicentsCluster
-   * @param iface
-   */
-  public ClientCxDxSessionDataReplicatedImpl(String sessionId, MobicentsCluster mobicentsCluster, IContainer container) {
-    this(Fqn.fromRelativeElements(ReplicatedSessionDatasource.SESSIONS_FQN, sessionId), mobicentsCluster, container);
-  }
-
 }
@@ -25,7 +25,6 @@ package org.mobicents.diameter.impl.ha.client.gx;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 
-import org.jboss.cache.Fqn;
 import org.jdiameter.api.AvpDataException;
 import org.jdiameter.api.Request;
 import org.jdiameter.api.gx.ClientGxSession;
@@ -35,9 +34,10 @@ import org.jdiameter.client.api.parser.IMessageParser;
 import org.jdiameter.client.api.parser.ParseException;
 import org.jdiameter.client.impl.app.gx.IClientGxSessionData;
 import org.jdiameter.common.api.app.gx.ClientGxSessionState;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
-import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema.FieldType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,15 +60,26 @@ public class ClientGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   private static final String GDDFH = "GDDFH";
   private static final String GCCFH = "GCCFH";
 
+  private static final SessionDataSchema SCHEMA = AppSessionDataReplicatedImpl.SCHEMA.extend(1)
+      .add(EVENT_BASED, FieldType.BOOLEAN)
+      .add(REQUEST_TYPE, FieldType.BOOLEAN)
+      .addEnum(STATE, ClientGxSessionState.class)
+      .add(TXTIMER_ID, FieldType.SERIALIZABLE)
+      .add(TXTIMER_REQUEST, FieldType.BYTES)
+      .add(BUFFER, FieldType.BYTES)
+      .add(GRA, FieldType.INTEGER)
+      .add(GDDFH, FieldType.INTEGER)
+      .add(GCCFH, FieldType.INTEGER);
+
   private IMessageParser messageParser;
 
   /**
-   * @param nodeFqn
-   * @param mobicentsCluster
+   * @param sessionId
+   * @param stateStore
    * @param iface
    */
-  public ClientGxSessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster, IContainer container) {
-    super(nodeFqn, mobicentsCluster);
+  public ClientGxSessionDataReplicatedImpl(String sessionId, ReplicatedStateStore stateStore, IContainer container) {
+    super(sessionId, stateStore);
 
     if (super.create()) {
       setAppSessionIface(this, ClientGxSession.class);
@@ -78,18 +89,9 @@ public class ClientGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
     this.messageParser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
   }
 
-  /**
-   * @param sessionId
-   * @param mobicentsCluster
-   * @param iface
-   */
-  public ClientGxSessionDataReplicatedImpl(String sessionId, MobicentsCluster mobicentsCluster, IContainer container) {
-    this(Fqn.fromRelativeElements(ReplicatedSessionDatasource.SESSIONS_FQN, sessionId), mobicentsCluster, container);
-  }
-
   public boolean isEventBased() {
     if (exists()) {
-      return toPrimitive((Boolean) getNode().get(EVENT_BASED), true);
+      return toPrimitive((Boolean) getField(EVENT_BASED), true);
     }
     else {
       throw new IllegalStateException();
@@ -98,7 +100,7 @@ public class ClientGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
 
   public void setEventBased(boolean isEventBased) {
     if (exists()) {
-      getNode().put(EVENT_BASED, isEventBased);
+      putField(EVENT_BASED, isEventBased);
     }
     else {
       throw new IllegalStateException();
@@ -107,7 +109,7 @@ public class ClientGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
 
   public boolean isRequestTypeSet() {
     if (exists()) {
-      return toPrimitive((Boolean) getNode().get(REQUEST_TYPE), false);
+      return toPrimitive((Boolean) getField(REQUEST_TYPE), false);
     }
     else {
       throw new IllegalStateException();
@@ -116,7 +118,7 @@ public class ClientGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
 
   public void setRequestTypeSet(boolean requestTypeSet) {
     if (exists()) {
-      getNode().put(REQUEST_TYPE, requestTypeSet);
+      putField(REQUEST_TYPE, requestTypeSet);
     }
     else {
       throw new IllegalStateException();
@@ -125,7 +127,7 @@ public class ClientGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
 
   public ClientGxSessionState getClientGxSessionState() {
     if (exists()) {
-      return (ClientGxSessionState) getNode().get(STATE);
+      return (ClientGxSessionState) getField(STATE);
     }
     else {
       throw new IllegalStateException();
@@ -134,7 +136,7 @@ public class ClientGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
 
   public void setClientGxSessionState(ClientGxSessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putField(STATE, state);
     }
     else {
       throw new IllegalStateException();
@@ -143,7 +145,7 @@ public class ClientGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
 
   public Serializable getTxTimerId() {
     if (exists()) {
-      return (Serializable) getNode().get(TXTIMER_ID);
+      return (Serializable) getField(TXTIMER_ID);
     }
     else {
       throw new IllegalStateException();
@@ -152,7 +154,7 @@ public class ClientGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
 
   public void setTxTimerId(Serializable txTimerId) {
     if (exists()) {
-      getNode().put(TXTIMER_ID, txTimerId);
+      putField(TXTIMER_ID, txTimerId);
     }
     else {
       throw new IllegalStateException();
@@ -162,7 +164,7 @@ public class ClientGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   public Request getTxTimerRequest() {
     if (exists()) {
 
-      byte[] data = (byte[]) getNode().get(TXTIMER_REQUEST);
+      byte[] data = (byte[]) getField(TXTIMER_REQUEST);
       if (data != null) {
         try {
           return (Request) this.messageParser.createMessage(ByteBuffer.wrap(data));
@@ -188,14 +190,14 @@ public class ClientGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
 
         try {
           byte[] data = this.messageParser.encodeMessage((IMessage) txTimerRequest).array();
-          getNode().put(TXTIMER_REQUEST, data);
+          putField(TXTIMER_REQUEST, data);
         }
         catch (ParseException e) {
           logger.error("Unable to encode Tx Timer Request to buffer.");
         }
       }
       else {
-        getNode().remove(TXTIMER_REQUEST);
+        removeField(TXTIMER_REQUEST);
       }
     }
     else {
@@ -204,7 +206,7 @@ public class ClientGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   }
 
   public Request getBuffer() {
-    byte[] data = (byte[]) getNode().get(BUFFER);
+    byte[] data = (byte[]) getField(BUFFER);
     if (data != null) {
       try {
         return (Request) this.messageParser.createMessage(ByteBuffer.wrap(data));
@@ -223,20 +225,20 @@ public class ClientGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
     if (buffer != null) {
       try {
         byte[] data = this.messageParser.encodeMessage((IMessage) buffer).array();
-        getNode().put(BUFFER, data);
+        putField(BUFFER, data);
       }
       catch (ParseException e) {
         logger.error("Unable to encode message to buffer.");
       }
     }
     else {
-      getNode().remove(BUFFER);
+      removeField(BUFFER);
     }
   }
 
   public int getGatheredRequestedAction() {
     if (exists()) {
-      return toPrimitive((Integer) getNode().get(GRA));
+      return toPrimitive((Integer) getField(GRA));
     }
     else {
       throw new IllegalStateException();
@@ -245,7 +247,7 @@ public class ClientGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
 
   public void setGatheredRequestedAction(int gatheredRequestedAction) {
     if (exists()) {
-      getNode().put(GRA, gatheredRequestedAction);
+      putField(GRA, gatheredRequestedAction);
     }
     else {
       throw new IllegalStateException();
@@ -254,7 +256,7 @@ public class ClientGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
 
   public int getGatheredCCFH() {
     if (exists()) {
-      return toPrimitive((Integer) getNode().get(GCCFH));
+      return toPrimitive((Integer) getField(GCCFH));
     }
     else {
       throw new IllegalStateException();
@@ -263,7 +265,7 @@ public class ClientGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
 
   public void setGatheredCCFH(int gatheredCCFH) {
     if (exists()) {
-      getNode().put(GCCFH, gatheredCCFH);
+      putField(GCCFH, gatheredCCFH);
     }
     else {
       throw new IllegalStateException();
@@ -272,7 +274,7 @@ public class ClientGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
 
   public int getGatheredDDFH() {
     if (exists()) {
-      return toPrimitive((Integer) getNode().get(GDDFH));
+      return toPrimitive((Integer) getField(GDDFH));
     }
     else {
       throw new IllegalStateException();
@@ -281,11 +283,16 @@ public class ClientGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
 
   public void setGatheredDDFH(int gatheredDDFH) {
     if (exists()) {
-      getNode().put(GDDFH, gatheredDDFH);
+      putField(GDDFH, gatheredDDFH);
     }
     else {
       throw new IllegalStateException();
     }
   }
 
+  @Override
+  protected SessionDataSchema getSchema() {
+    return SCHEMA;
+  }
+
 }
@@ -25,7 +25,6 @@ package org.mobicents.diameter.impl.ha.client.rf;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 
-import org.jboss.cache.Fqn;
 import org.jdiameter.api.AvpDataException;
 import org.jdiameter.api.Request;
 import org.jdiameter.api.rf.ClientRfSession;
@@ -35,9 +34,10 @@ import org.jdiameter.client.api.parser.IMessageParser;
 import org.jdiameter.client.api.parser.ParseException;
 import org.jdiameter.client.impl.app.rf.IClientRfSessionData;
 import org.jdiameter.common.api.app.rf.ClientRfSessionState;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
-import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema.FieldType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,15 +56,22 @@ public class ClientRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   private static final String DESTINATION_HOST = "DESTINATION_HOST";
   private static final String DESTINATION_REALM = "DESTINATION_REALM";
 
+  private static final SessionDataSchema SCHEMA = AppSessionDataReplicatedImpl.SCHEMA.extend(1)
+      .addEnum(STATE, ClientRfSessionState.class)
+      .add(BUFFER, FieldType.BYTES)
+      .add(TS_TIMERID, FieldType.SERIALIZABLE)
+      .add(DESTINATION_HOST, FieldType.STRING)
+      .add(DESTINATION_REALM, FieldType.STRING);
+
   private IMessageParser messageParser;
 
   /**
-   * @param nodeFqn
-   * @param mobicentsCluster
+   * @param sessionId
+   * @param stateStore
    * @param iface
    */
-  public ClientRfSessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster, IContainer container) {
-    super(nodeFqn, mobicentsCluster);
+  public ClientRfSessionDataReplicatedImpl(String sessionId, ReplicatedStateStore stateStore, IContainer container) {
+    super(sessionId, stateStore);
 
     if (super.create()) {
       setAppSessionIface(this, ClientRfSession.class);
@@ -74,18 +81,9 @@ public class ClientRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
     this.messageParser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
   }
 
-  /**
-   * @param sessionId
-   * @param mobicentsCluster
-   * @param iface
-   */
-  public ClientRfSessionDataReplicatedImpl(String sessionId, MobicentsCluster mobicentsCluster, IContainer container) {
-    this(Fqn.fromRelativeElements(ReplicatedSessionDatasource.SESSIONS_FQN, sessionId), mobicentsCluster, container);
-  }
-
   public ClientRfSessionState getClientRfSessionState() {
     if (exists()) {
-      return (ClientRfSessionState) getNode().get(STATE);
+      return (ClientRfSessionState) getField(STATE);
     }
     else {
       throw new IllegalStateException();
@@ -94,7 +92,7 @@ public class ClientRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
 
   public void setClientRfSessionState(ClientRfSessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putField(STATE, state);
     }
     else {
       throw new IllegalStateException();
@@ -102,7 +100,7 @@ public class ClientRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   }
 
   public Request getBuffer() {
-    byte[] data = (byte[]) getNode().get(BUFFER);
+    byte[] data = (byte[]) getField(BUFFER);
     if (data != null) {
       try {
         return (Request) this.messageParser.createMessage(ByteBuffer.wrap(data));
@@ -122,14 +120,14 @@ public class ClientRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
 
       try {
         byte[] data = this.messageParser.encodeMessage((IMessage) buffer).array();
-        getNode().put(BUFFER, data);
+        putField(BUFFER, data);
       }
       catch (ParseException e) {
         logger.error("Unable to encode message to buffer.");
       }
     }
     else {
-      getNode().remove(BUFFER);
+      removeField(BUFFER);
     }
   }
 
@@ -141,7 +139,7 @@ public class ClientRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public Serializable getTsTimerId() {
     if (exists()) {
-      return (Serializable) getNode().get(TS_TIMERID);
+      return (Serializable) getField(TS_TIMERID);
     }
     else {
       throw new IllegalStateException();
@@ -156,7 +154,7 @@ public class ClientRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public void setTsTimerId(Serializable tid) {
     if (exists()) {
-      getNode().put(TS_TIMERID, tid);
+      putField(TS_TIMERID, tid);
     }
     else {
       throw new IllegalStateException();
@@ -171,7 +169,7 @@ public class ClientRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public String getDestinationHost() {
     if (exists()) {
-      return (String) getNode().get(DESTINATION_HOST);
+      return (String) getField(DESTINATION_HOST);
     }
     else {
       throw new IllegalStateException();
@@ -186,7 +184,7 @@ public class ClientRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public void setDestinationHost(String destinationHost) {
     if (exists()) {
-      getNode().put(DESTINATION_HOST, destinationHost);
+      putField(DESTINATION_HOST, destinationHost);
     }
     else {
       throw new IllegalStateException();
@@ -201,7 +199,7 @@ public class ClientRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public String getDestinationRealm() {
     if (exists()) {
-      return (String) getNode().get(DESTINATION_REALM);
+      return (String) getField(DESTINATION_REALM);
     }
     else {
       throw new IllegalStateException();
@@ -216,10 +214,16 @@ public class ClientRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public void setDestinationRealm(String destinationRealm) {
     if (exists()) {
-      getNode().put(DESTINATION_REALM, destinationRealm);
+      putField(DESTINATION_REALM, destinationRealm);
     }
     else {
       throw new IllegalStateException();
     }
   }
+
+  @Override
+  protected SessionDataSchema getSchema() {
+    return SCHEMA;
+  }
+
 }
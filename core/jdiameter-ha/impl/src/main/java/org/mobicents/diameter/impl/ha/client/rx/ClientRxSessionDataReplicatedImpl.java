@@ -22,14 +22,14 @@
 
 package org.mobicents.diameter.impl.ha.client.rx;
 
-import org.jboss.cache.Fqn;
 import org.jdiameter.api.rx.ClientRxSession;
 import org.jdiameter.client.api.IContainer;
 import org.jdiameter.client.impl.app.rx.IClientRxSessionData;
 import org.jdiameter.common.api.app.rx.ClientRxSessionState;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
-import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema.FieldType;
 
 /**
  * 
@@ -42,13 +42,18 @@ public class ClientRxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
     private static final String REQUEST_TYPE = "REQUEST_TYPE";
     private static final String STATE = "STATE";
 
+    private static final SessionDataSchema SCHEMA = AppSessionDataReplicatedImpl.SCHEMA.extend(1)
+            .add(EVENT_BASED, FieldType.BOOLEAN)
+            .add(REQUEST_TYPE, FieldType.BOOLEAN)
+            .addEnum(STATE, ClientRxSessionState.class);
+
     /**
-     * @param nodeFqn
-     * @param mobicentsCluster
+     * @param sessionId
+     * @param stateStore
      * @param iface
      */
-    public ClientRxSessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster, IContainer container) {
-        super(nodeFqn, mobicentsCluster);
+    public ClientRxSessionDataReplicatedImpl(String sessionId, ReplicatedStateStore stateStore, IContainer container) {
+        super(sessionId, stateStore);
 
         if (super.create()) {
             setAppSessionIface(this, ClientRxSession.class);
@@ -56,19 +61,10 @@ public class ClientRxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
         }
     }
 
-    /**
-     * @param sessionId
-     * @param mobicentsCluster
-     * @param iface
-     */
-    public ClientRxSessionDataReplicatedImpl(String sessionId, MobicentsCluster mobicentsCluster, IContainer container) {
-        this(Fqn.fromRelativeElements(ReplicatedSessionDatasource.SESSIONS_FQN, sessionId), mobicentsCluster, container);
-    }
-
     @Override
     public boolean isEventBased() {
         if (exists()) {
-            return toPrimitive((Boolean) getNode().get(EVENT_BASED), true);
+            return toPrimitive((Boolean) getField(EVENT_BASED), true);
         } else {
             throw new IllegalStateException();
         }
@@ -77,7 +73,7 @@ public class ClientRxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
     @Override
     public void setEventBased(boolean isEventBased) {
         if (exists()) {
-            getNode().put(EVENT_BASED, isEventBased);
+            putField(EVENT_BASED, isEventBased);
         } else {
             throw new IllegalStateException();
         }
@@ -86,7 +82,7 @@ public class ClientRxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
     @Override
     public boolean isRequestTypeSet() {
         if (exists()) {
-            return toPrimitive((Boolean) getNode().get(REQUEST_TYPE), false);
+            return toPrimitive((Boolean) getField(REQUEST_TYPE), false);
         } else {
             throw new IllegalStateException();
         }
@@ -95,7 +91,7 @@ public class ClientRxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
     @Override
     public void setRequestTypeSet(boolean requestTypeSet) {
         if (exists()) {
-            getNode().put(REQUEST_TYPE, requestTypeSet);
+            putField(REQUEST_TYPE, requestTypeSet);
         } else {
             throw new IllegalStateException();
         }
@@ -104,7 +100,7 @@ public class ClientRxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
     @Override
     public ClientRxSessionState getClientRxSessionState() {
         if (exists()) {
-            return (ClientRxSessionState) getNode().get(STATE);
+            return (ClientRxSessionState) getField(STATE);
         } else {
             throw new IllegalStateException();
         }
@@ -113,9 +109,15 @@ public class ClientRxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
     @Override
     public void setClientRxSessionState(ClientRxSessionState state) {
         if (exists()) {
-            getNode().put(STATE, state);
+            putField(STATE, state);
         } else {
             throw new IllegalStateException();
         }
     }
+
+    @Override
+    protected SessionDataSchema getSchema() {
+        return SCHEMA;
+    }
+
 }
@@ -0,0 +1,50 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.diameter.impl.ha.client.s6a;
+
+import org.jdiameter.api.s6a.ClientS6aSession;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.client.impl.app.s6a.IClientS6aSessionData;
+import org.jdiameter.common.api.app.s6a.S6aSessionState;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
+import org.mobicents.diameter.impl.ha.common.s6a.S6aSessionDataReplicatedImpl;
+
+/**
+ */
+public class ClientS6aSessionDataReplicatedImpl extends S6aSessionDataReplicatedImpl implements IClientS6aSessionData {
+
+  /**
+   * @param sessionId
+   * @param stateStore
+   * @param iface
+   */
+  public ClientS6aSessionDataReplicatedImpl(String sessionId, ReplicatedStateStore stateStore, IContainer container) {
+    super(sessionId, stateStore, container);
+
+    if (super.create()) {
+      setAppSessionIface(this, ClientS6aSession.class);
+      setS6aSessionState(S6aSessionState.IDLE);
+    }
+  }
+
+}
@@ -22,12 +22,10 @@
 
 package org.mobicents.diameter.impl.ha.client.sh;
 
-import org.jboss.cache.Fqn;
 import org.jdiameter.api.sh.ClientShSession;
 import org.jdiameter.client.impl.app.sh.IShClientSessionData;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
-import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
 
 /**
  * 
@@ -37,25 +35,16 @@ import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
 public class ShClientSessionDataReplicatedImpl extends AppSessionDataReplicatedImpl implements IShClientSessionData {
 
   /**
-   * @param nodeFqn
-   * @param mobicentsCluster
+   * @param sessionId
+   * @param stateStore
    * @param iface
    */
-  public ShClientSessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster) {
-    super(nodeFqn, mobicentsCluster);
+  public ShClientSessionDataReplicatedImpl(String sessionId, ReplicatedStateStore stateStore) {
+    super(sessionId, stateStore);
 
     if (super.create()) {
       setAppSessionIface(this, ClientShSession.class);
     }
   }
 
-  /**
-   * @param sessionId
-   * @param mobicentsCluster
-   * @param iface
-   */
-  public ShClientSessionDataReplicatedImpl(String sessionId, MobicentsCluster mobicentsCluster) {
-    this(Fqn.fromRelativeElements(ReplicatedSessionDatasource.SESSIONS_FQN, sessionId), mobicentsCluster);
-  }
-
 }
@@ -0,0 +1,173 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.diameter.impl.ha.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Consistent hash ring over cluster members. Every member is placed on the
+ * ring at a number of points derived from its name, a key belongs to the
+ * members found walking the ring clockwise from the hash of the key. When a
+ * member joins or leaves, only the keys next to its points change owners,
+ * about 1/N of them, and every member holds about replicas/N of the keys.
+ * 
+ * Rings are immutable, a new one is built for every membership change.
+ */
+public class ConsistentHashRing {
+
+  public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+  private final String[] members;
+  // points sorted by position, owners[i] is the member index of points[i]
+  private final long[] points;
+  private final int[] owners;
+
+  /**
+   * @param members names of the members, must be distinct
+   * @param virtualNodes number of points of each member
+   */
+  public ConsistentHashRing(Collection<String> members, int virtualNodes) {
+    if (virtualNodes < 1) {
+      throw new IllegalArgumentException("Virtual node count must be positive");
+    }
+    this.members = members.toArray(new String[members.size()]);
+    int count = this.members.length * virtualNodes;
+    long[] positions = new long[count];
+    for (int m = 0, i = 0; m < this.members.length; m++) {
+      for (int v = 0; v < virtualNodes; v++, i++) {
+        positions[i] = hash(this.members[m] + "#" + v);
+      }
+    }
+    // sort indexes by position, ties broken by member order
+    Integer[] order = new Integer[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = i;
+    }
+    final long[] sortKeys = positions;
+    Arrays.sort(order, new Comparator<Integer>() {
+      public int compare(Integer a, Integer b) {
+        int c = compareUnsigned(sortKeys[a], sortKeys[b]);
+        return c != 0 ? c : a.compareTo(b);
+      }
+    });
+    this.points = new long[count];
+    this.owners = new int[count];
+    for (int i = 0; i < count; i++) {
+      points[i] = positions[order[i]];
+      owners[i] = order[i] / virtualNodes;
+    }
+  }
+
+  /**
+   * @return names of the members of this ring
+   */
+  public List<String> getMembers() {
+    return Collections.unmodifiableList(Arrays.asList(members));
+  }
+
+  /**
+   * @param key routing key
+   * @param count number of owners wanted
+   * @return distinct members owning the key, primary first, fewer than count
+   *         if the ring has fewer members
+   */
+  public List<String> owners(String key, int count) {
+    count = Math.min(count, members.length);
+    List<String> result = new ArrayList<String>(count);
+    if (count == 0) {
+      return result;
+    }
+    int start = search(hash(key));
+    boolean[] taken = new boolean[members.length];
+    for (int i = 0; result.size() < count; i++) {
+      int owner = owners[(start + i) % owners.length];
+      if (!taken[owner]) {
+        taken[owner] = true;
+        result.add(members[owner]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the primary owner of the key, null if the ring is empty
+   */
+  public String primary(String key) {
+    return members.length == 0 ? null : members[owners[search(hash(key))]];
+  }
+
+  /**
+   * @return index of the first point at or after the position, wrapping
+   */
+  private int search(long position) {
+    int low = 0;
+    int high = points.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int c = compareUnsigned(points[mid], position);
+      if (c < 0) {
+        low = mid + 1;
+      }
+      else if (c > 0) {
+        high = mid - 1;
+      }
+      else {
+        return mid;
+      }
+    }
+    return low == points.length ? 0 : low;
+  }
+
+  private static int compareUnsigned(long a, long b) {
+    a += Long.MIN_VALUE;
+    b += Long.MIN_VALUE;
+    return a < b ? -1 : (a == b ? 0 : 1);
+  }
+
+  /**
+   * 64 bit FNV-1a over the characters, with a final avalanche so nearby names
+   * spread over the ring.
+   */
+  static long hash(String key) {
+    long h = 0xCBF29CE484222325L;
+    for (int i = 0; i < key.length(); i++) {
+      char c = key.charAt(i);
+      h ^= c & 0xFF;
+      h *= 0x100000001B3L;
+      h ^= c >>> 8;
+      h *= 0x100000001B3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+}
@@ -20,7 +20,7 @@
  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
  */
 
-package org.mobicents.diameter.impl.ha.timer;
+package org.mobicents.diameter.impl.ha.cluster.jbc;
 
 import java.io.Serializable;
 
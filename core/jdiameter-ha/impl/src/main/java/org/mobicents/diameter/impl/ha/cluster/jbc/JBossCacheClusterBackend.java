@@ -0,0 +1,158 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.diameter.impl.ha.cluster.jbc;
+
+import static org.jdiameter.client.impl.helpers.Parameters.ClusterReplicaCount;
+
+import javax.transaction.TransactionManager;
+
+import org.jdiameter.api.Configuration;
+import org.jboss.cache.config.BuddyReplicationConfig;
+import org.mobicents.cache.MobicentsCache;
+import org.mobicents.cluster.DefaultMobicentsCluster;
+import org.mobicents.cluster.election.DefaultClusterElector;
+import org.mobicents.diameter.api.ha.cluster.ClusterBackend;
+import org.mobicents.diameter.api.ha.cluster.FailoverTimerScheduler;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cluster backend replicating state through a JBoss Cache 3 instance, managed
+ * by the Mobicents cluster framework, and timers through its fault tolerant
+ * scheduler, which keeps them in the same cache.
+ * 
+ * Created from the stack configuration, the cache uses buddy replication with
+ * a {@link RingBuddyLocator}: sessions and timers of a member are held by
+ * ClusterReplicaCount members, itself and the members following it on the
+ * hash ring of the cluster, instead of by every member. A member serving a
+ * session it does not hold pulls it from its backup.
+ */
+public class JBossCacheClusterBackend implements ClusterBackend {
+
+  private static final Logger logger = LoggerFactory.getLogger(JBossCacheClusterBackend.class);
+
+  public static final String CLUSTER_DS_DEFAULT_FILE = "jdiameter-jbc.xml";
+
+  private DefaultMobicentsCluster mobicentsCluster;
+  private JBossCacheStateStore stateStore;
+  private JBossCacheTimerScheduler timerScheduler;
+
+  public JBossCacheClusterBackend() {
+    this(getDefaultConfigFilename());
+  }
+
+  /**
+   * Creates the backend from the default cache configuration file, with the
+   * replica count of the stack configuration.
+   */
+  public JBossCacheClusterBackend(Configuration config) {
+    this(getDefaultConfigFilename(), config == null ? (Integer) ClusterReplicaCount.defValue() :
+      config.getIntValue(ClusterReplicaCount.ordinal(), (Integer) ClusterReplicaCount.defValue()));
+  }
+
+  /**
+   * Creates the backend from the given cache configuration file, which sets
+   * the members replicas are placed on.
+   */
+  public JBossCacheClusterBackend(String cacheConfigFilename) {
+    this(cacheConfigFilename, 0);
+  }
+
+  /**
+   * @param cacheConfigFilename cache configuration file
+   * @param replicaCount number of members holding each session and timer, 0
+   *        to keep the replication set in the cache configuration
+   */
+  public JBossCacheClusterBackend(String cacheConfigFilename, int replicaCount) {
+    super();
+    MobicentsCache mcCache = new MobicentsCache(cacheConfigFilename);
+    org.jboss.cache.config.Configuration cacheConfig = mcCache.getJBossCache().getConfiguration();
+    if (replicaCount > 0 && cacheConfig.getCacheMode() != org.jboss.cache.config.Configuration.CacheMode.LOCAL) {
+      cacheConfig.setBuddyReplicationConfig(createBuddyReplicationConfig(replicaCount));
+    }
+    BuddyReplicationConfig buddyConfig = cacheConfig.getBuddyReplicationConfig();
+    boolean buddyReplication = buddyConfig != null && buddyConfig.isEnabled();
+
+    TransactionManager txMgr = null;
+    try {
+      Class<?> txMgrClass = Class.forName(mcCache.getJBossCache().getConfiguration().getTransactionManagerLookupClass());
+      Object txMgrLookup = txMgrClass.getConstructor(new Class[]{}).newInstance(new Object[]{});
+      txMgr = (TransactionManager) txMgrClass.getMethod("getTransactionManager", new Class[]{}).invoke(txMgrLookup, new Object[]{});
+    }
+    catch (Exception e) {
+      logger.debug("Could not fetch TxMgr. Not using one.", e);
+      // let's not have Tx Manager than...
+    }
+
+    this.mobicentsCluster = new DefaultMobicentsCluster(mcCache, txMgr, new DefaultClusterElector());
+    this.stateStore = new JBossCacheStateStore(this.mobicentsCluster, buddyReplication);
+    this.mobicentsCluster.addDataRemovalListener(this.stateStore); // register, so we know WHEN some other node removes session.
+    this.mobicentsCluster.startCluster();
+    this.timerScheduler = new JBossCacheTimerScheduler(this.mobicentsCluster);
+  }
+
+  private static String getDefaultConfigFilename() {
+    return JBossCacheClusterBackend.class.getClassLoader().getResource(CLUSTER_DS_DEFAULT_FILE) == null ? "config/" + CLUSTER_DS_DEFAULT_FILE : CLUSTER_DS_DEFAULT_FILE;
+  }
+
+  /**
+   * @return buddy replication keeping the data of each member on itself and
+   *         the replicaCount - 1 members following it on the ring
+   */
+  static BuddyReplicationConfig createBuddyReplicationConfig(int replicaCount) {
+    BuddyReplicationConfig config = new BuddyReplicationConfig();
+    config.setEnabled(true);
+    config.setBuddyLocatorConfig(RingBuddyLocator.createConfig(replicaCount - 1));
+    // sessions are pulled by the state store, timer lookups must stay local
+    config.setAutoDataGravitation(false);
+    config.setDataGravitationRemoveOnFind(true);
+    config.setDataGravitationSearchBackupTrees(true);
+    return config;
+  }
+
+  public ReplicatedStateStore getStateStore() {
+    return this.stateStore;
+  }
+
+  public FailoverTimerScheduler getTimerScheduler() {
+    return this.timerScheduler;
+  }
+
+  public void start() {
+    this.mobicentsCluster.getMobicentsCache().startCache();
+  }
+
+  public void stop() {
+    this.mobicentsCluster.getMobicentsCache().stopCache();
+  }
+
+  public boolean isLocalMode() {
+    return this.mobicentsCluster.getMobicentsCache().isLocalMode();
+  }
+
+  public DefaultMobicentsCluster getMobicentsCluster() {
+    return this.mobicentsCluster;
+  }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.diameter.impl.ha.cluster.jbc;
+
+import org.jboss.cache.Cache;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.Node;
+import org.mobicents.cluster.DataRemovalListener;
+import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.cluster.cache.ClusteredCacheData;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
+import org.mobicents.diameter.api.ha.cluster.StateRemovalListener;
+
+/**
+ * State store keeping each session as a cache node under {@link #SESSIONS},
+ * with its value in the {@link #DATA} attribute. With buddy replication, a
+ * session not held by this member is pulled from the backup of its owner.
+ */
+public class JBossCacheStateStore implements ReplicatedStateStore, DataRemovalListener {
+
+  public final static String SESSIONS = "/diameter/appsessions";
+  public final static Fqn SESSIONS_FQN = Fqn.fromString(SESSIONS);
+
+  // cache node key of the session value
+  public static final String DATA = "DATA";
+
+  private MobicentsCluster mobicentsCluster;
+  private boolean buddyReplication;
+  private volatile StateRemovalListener removalListener;
+
+  public JBossCacheStateStore(MobicentsCluster mobicentsCluster) {
+    this(mobicentsCluster, false);
+  }
+
+  /**
+   * @param mobicentsCluster cluster holding the cache
+   * @param buddyReplication true if the cache uses buddy replication
+   */
+  public JBossCacheStateStore(MobicentsCluster mobicentsCluster, boolean buddyReplication) {
+    super();
+    this.mobicentsCluster = mobicentsCluster;
+    this.buddyReplication = buddyReplication;
+  }
+
+  public boolean create(String key) {
+    // a session held by another member must not be created again here
+    if (buddyReplication && getNode(key) != null) {
+      return false;
+    }
+    return new ClusteredCacheData(Fqn.fromRelativeElements(SESSIONS_FQN, key), mobicentsCluster).create();
+  }
+
+  public boolean exists(String key) {
+    return getNode(key) != null;
+  }
+
+  public byte[] get(String key) {
+    Node n = getNode(key);
+    return n == null ? null : (byte[]) n.get(DATA);
+  }
+
+  public void put(String key, byte[] value) {
+    Node n = getNode(key);
+    if (n == null) {
+      throw new IllegalStateException("No state for " + key);
+    }
+    n.put(DATA, value);
+  }
+
+  public boolean remove(String key) {
+    return new ClusteredCacheData(Fqn.fromRelativeElements(SESSIONS_FQN, key), mobicentsCluster).remove();
+  }
+
+  public void setRemovalListener(StateRemovalListener listener) {
+    this.removalListener = listener;
+  }
+
+  public void dataRemoved(Fqn sessionFqn) {
+    StateRemovalListener listener = this.removalListener;
+    if (listener != null) {
+      listener.stateRemoved((String) sessionFqn.getLastElement());
+    }
+  }
+
+  public Fqn getBaseFqn() {
+    return SESSIONS_FQN;
+  }
+
+  private Node getNode(String key) {
+    Cache cache = mobicentsCluster.getMobicentsCache().getJBossCache();
+    Fqn fqn = Fqn.fromRelativeElements(SESSIONS_FQN, key);
+    Node n = cache.getNode(fqn);
+    if (n == null && buddyReplication) {
+      cache.getInvocationContext().getOptionOverrides().setForceDataGravitation(true);
+      n = cache.getNode(fqn);
+    }
+    return n;
+  }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.diameter.impl.ha.cluster.jbc;
+
+import java.io.Serializable;
+
+import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.FailoverTimerScheduler;
+import org.mobicents.timers.FaultTolerantScheduler;
+import org.mobicents.timers.TimerTask;
+import org.mobicents.timers.TimerTaskData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Timer scheduler backed by the Mobicents {@link FaultTolerantScheduler}.
+ * Timers are kept in the cache of the cluster, so with the buddy replication
+ * set by {@link JBossCacheClusterBackend} they are held by the member which
+ * scheduled them and its buddies on the ring, like its sessions, and taken
+ * over from that backup when the member leaves.
+ */
+public class JBossCacheTimerScheduler implements FailoverTimerScheduler {
+
+  private static final Logger logger = LoggerFactory.getLogger(JBossCacheTimerScheduler.class);
+
+  private TimerTaskFactory taskFactory;
+  private FaultTolerantScheduler ftScheduler;
+  private volatile TimerHandler handler;
+
+  public JBossCacheTimerScheduler(MobicentsCluster cluster) {
+    super();
+    this.taskFactory = new TimerTaskFactory();
+    this.ftScheduler = new FaultTolerantScheduler("DiameterTimer", 5, cluster, (byte) 12, null, this.taskFactory);
+  }
+
+  public void schedule(Serializable id, String sessionId, String timerName, long delay) throws IllegalArgumentException {
+    if (this.ftScheduler.getTimerTaskData(id) != null) {
+      throw new IllegalArgumentException("Timer already running: " + id);
+    }
+
+    DiameterTimerTaskData data = new DiameterTimerTaskData(id, delay, sessionId, timerName);
+    TimerTask tt = this.taskFactory.newTimerTask(data);
+    ftScheduler.schedule(tt);
+  }
+
+  public void cancel(Serializable id) {
+    this.ftScheduler.cancel(id);
+  }
+
+  public boolean isScheduled(Serializable id) {
+    return this.ftScheduler.getTimerTaskData(id) != null;
+  }
+
+  public void setTimerHandler(TimerHandler handler) {
+    this.handler = handler;
+  }
+
+  private final class TimerTaskFactory implements org.mobicents.timers.TimerTaskFactory {
+
+    public TimerTask newTimerTask(TimerTaskData data) {
+      return new DiameterTimerTask(data);
+    }
+  }
+
+  private final class DiameterTimerTask extends TimerTask {
+
+    public DiameterTimerTask(TimerTaskData data) {
+      super(data);
+    }
+
+    public void runTask() {
+      DiameterTimerTaskData data = (DiameterTimerTaskData) getData();
+      TimerHandler handler = JBossCacheTimerScheduler.this.handler;
+      if (handler == null) {
+        logger.warn("Timer {} fired with no handler set", data.getTaskID());
+        return;
+      }
+      handler.onTimer(data.getSessionId(), data.getTimerName());
+    }
+  }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.diameter.impl.ha.cluster.jbc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.jboss.cache.buddyreplication.BuddyLocator;
+import org.jboss.cache.config.BuddyReplicationConfig.BuddyLocatorConfig;
+import org.jgroups.Address;
+import org.mobicents.diameter.impl.ha.cluster.ConsistentHashRing;
+
+/**
+ * Buddy locator placing the backups of each member on the members following
+ * it on a {@link ConsistentHashRing} of the cluster, instead of the members
+ * following it in the view. Backups spread over the cluster, and when a
+ * member joins or leaves only the members next to it on the ring change
+ * buddies, so only their backups move.
+ */
+public class RingBuddyLocator implements BuddyLocator {
+
+  /**
+   * Locator property holding the number of buddies of each member.
+   */
+  public static final String NUM_BUDDIES = "numBuddies";
+
+  private BuddyLocatorConfig config;
+  private int numBuddies = 1;
+
+  // ring of the last membership seen, rebuilt when it changes
+  private List<Address> ringMembership;
+  private ConsistentHashRing ring;
+
+  /**
+   * @param numBuddies number of buddies of each member
+   * @return configuration of the cache buddy manager for this locator
+   */
+  public static BuddyLocatorConfig createConfig(int numBuddies) {
+    BuddyLocatorConfig config = new BuddyLocatorConfig();
+    config.setBuddyLocatorClass(RingBuddyLocator.class.getName());
+    Properties properties = new Properties();
+    properties.setProperty(NUM_BUDDIES, Integer.toString(numBuddies));
+    config.setBuddyLocatorProperties(properties);
+    return config;
+  }
+
+  public BuddyLocatorConfig getConfig() {
+    return config;
+  }
+
+  public void init(BuddyLocatorConfig config) {
+    this.config = config;
+    Properties properties = config == null ? null : config.getBuddyLocatorProperties();
+    if (properties != null && properties.getProperty(NUM_BUDDIES) != null) {
+      numBuddies = Integer.parseInt(properties.getProperty(NUM_BUDDIES).trim());
+    }
+  }
+
+  public synchronized List<Address> locateBuddies(Map<Address, String> buddyPoolMap, List<Address> currentMembership, Address dataOwner) {
+    if (!currentMembership.equals(ringMembership)) {
+      List<String> names = new ArrayList<String>(currentMembership.size());
+      for (Address member : currentMembership) {
+        names.add(member.toString());
+      }
+      ringMembership = new ArrayList<Address>(currentMembership);
+      ring = new ConsistentHashRing(names, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+    }
+    // the owner itself may come first, one more owner makes up for it
+    List<String> owners = ring.owners(dataOwner.toString(), numBuddies + 1);
+    List<Address> buddies = new ArrayList<Address>(numBuddies);
+    for (String owner : owners) {
+      Address member = ringMembership.get(ring.getMembers().indexOf(owner));
+      if (!member.equals(dataOwner) && buddies.size() < numBuddies) {
+        buddies.add(member);
+      }
+    }
+    return buddies;
+  }
+
+}
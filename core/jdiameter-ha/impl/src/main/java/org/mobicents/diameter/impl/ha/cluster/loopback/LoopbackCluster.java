@@ -0,0 +1,152 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.diameter.impl.ha.cluster.loopback;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mobicents.diameter.impl.ha.cluster.ConsistentHashRing;
+
+/**
+ * Membership of a cluster of stacks running in the same JVM. Keys are placed
+ * on the members by a {@link ConsistentHashRing}, each key being held by a
+ * configurable number of replicas, the first one being its primary. So each
+ * member holds about replicas/N of the keys, and a join or leave only moves
+ * the keys whose replicas changed. Members exchange data through loopback
+ * sockets, only membership is kept in process.
+ * 
+ * Joins and leaves are serialized; every member moves the entries it holds to
+ * their new replicas before the join or leave returns.
+ */
+public class LoopbackCluster {
+
+  public static final int DEFAULT_REPLICA_COUNT = 2;
+
+  private static LoopbackCluster defaultCluster;
+
+  private final int replicaCount;
+  private final int virtualNodes;
+  private final AtomicInteger nodeCount = new AtomicInteger();
+
+  private volatile LoopbackView view;
+
+  /**
+   * @param replicaCount number of members holding each key
+   */
+  public LoopbackCluster(int replicaCount) {
+    this(replicaCount, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+  }
+
+  /**
+   * @param replicaCount number of members holding each key
+   * @param virtualNodes number of ring points of each member
+   */
+  public LoopbackCluster(int replicaCount, int virtualNodes) {
+    if (replicaCount < 1 || virtualNodes < 1) {
+      throw new IllegalArgumentException("Replica and virtual node count must be positive");
+    }
+    this.replicaCount = replicaCount;
+    this.virtualNodes = virtualNodes;
+    this.view = new LoopbackView(Collections.<LoopbackClusterNode>emptyList(), replicaCount, virtualNodes);
+  }
+
+  /**
+   * @return cluster joined by backends created from configuration, with the
+   *         default replica count if it does not exist yet
+   */
+  public static LoopbackCluster getDefault() {
+    return getDefault(DEFAULT_REPLICA_COUNT);
+  }
+
+  /**
+   * @param replicaCount replica count of the cluster if it does not exist yet
+   * @return cluster joined by backends created from configuration
+   * @throws IllegalStateException if the cluster exists with another replica
+   *           count
+   */
+  public static synchronized LoopbackCluster getDefault(int replicaCount) {
+    if (defaultCluster == null) {
+      defaultCluster = new LoopbackCluster(replicaCount);
+    }
+    else if (defaultCluster.replicaCount != replicaCount) {
+      throw new IllegalStateException("Default loopback cluster already uses " + defaultCluster.replicaCount + " replicas");
+    }
+    return defaultCluster;
+  }
+
+  public int getReplicaCount() {
+    return replicaCount;
+  }
+
+  /**
+   * @return current members, in join order
+   */
+  public List<LoopbackClusterNode> getMembers() {
+    return view.getMembers();
+  }
+
+  /**
+   * @return current members holding the given routing key, primary first
+   */
+  public List<LoopbackClusterNode> replicas(String routingKey) {
+    return view.replicas(routingKey);
+  }
+
+  String nextNodeName() {
+    return "node-" + nodeCount.incrementAndGet();
+  }
+
+  synchronized void join(LoopbackClusterNode node) {
+    List<LoopbackClusterNode> members = new ArrayList<LoopbackClusterNode>(view.getMembers());
+    members.add(node);
+    changeView(new LoopbackView(members, replicaCount, virtualNodes));
+  }
+
+  synchronized void leave(LoopbackClusterNode node) {
+    if (!view.contains(node)) {
+      return;
+    }
+    List<LoopbackClusterNode> members = new ArrayList<LoopbackClusterNode>(view.getMembers());
+    members.remove(node);
+    changeView(new LoopbackView(members, replicaCount, virtualNodes));
+  }
+
+  private void changeView(LoopbackView newView) {
+    LoopbackView oldView = view;
+    view = newView;
+    // all members see the new view before any of them moves data
+    for (LoopbackClusterNode member : newView.getMembers()) {
+      member.setView(newView);
+    }
+    for (LoopbackClusterNode member : newView.getMembers()) {
+      member.viewChanged(oldView, newView);
+    }
+    // entries are in place once every member has moved its data
+    for (LoopbackClusterNode member : newView.getMembers()) {
+      member.takeOverTimers(oldView, newView);
+    }
+  }
+
+}
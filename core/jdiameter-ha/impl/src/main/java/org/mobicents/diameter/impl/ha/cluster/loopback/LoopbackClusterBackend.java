@@ -0,0 +1,100 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.diameter.impl.ha.cluster.loopback;
+
+import static org.jdiameter.client.impl.helpers.Parameters.ClusterReplicaCount;
+
+import java.io.IOException;
+
+import org.jdiameter.api.Configuration;
+import org.mobicents.diameter.api.ha.cluster.ClusterBackend;
+import org.mobicents.diameter.api.ha.cluster.FailoverTimerScheduler;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
+
+/**
+ * Cluster backend joining a {@link LoopbackCluster}, so several stacks in one
+ * JVM replicate state and fail timers over to each other through loopback
+ * sockets, with no external services. Meant for tests and benchmarks.
+ */
+public class LoopbackClusterBackend implements ClusterBackend {
+
+  private final LoopbackClusterNode node;
+  private final LoopbackStateStore stateStore;
+  private final LoopbackTimerScheduler timerScheduler;
+
+  /**
+   * Creates a backend joining the default cluster.
+   */
+  public LoopbackClusterBackend() {
+    this(LoopbackCluster.getDefault());
+  }
+
+  /**
+   * Creates a backend joining the default cluster, with the replica count
+   * taken from configuration.
+   */
+  public LoopbackClusterBackend(Configuration config) {
+    this(LoopbackCluster.getDefault(config == null ? (Integer) ClusterReplicaCount.defValue() :
+      config.getIntValue(ClusterReplicaCount.ordinal(), (Integer) ClusterReplicaCount.defValue())));
+  }
+
+  public LoopbackClusterBackend(LoopbackCluster cluster) {
+    this.node = new LoopbackClusterNode(cluster, cluster.nextNodeName());
+    this.stateStore = new LoopbackStateStore(node);
+    this.timerScheduler = new LoopbackTimerScheduler(node);
+  }
+
+  public ReplicatedStateStore getStateStore() {
+    return stateStore;
+  }
+
+  public FailoverTimerScheduler getTimerScheduler() {
+    return timerScheduler;
+  }
+
+  public void start() {
+    timerScheduler.start();
+    try {
+      node.start();
+    }
+    catch (IOException e) {
+      timerScheduler.stop();
+      throw new IllegalStateException("Unable to start cluster member " + node.getName(), e);
+    }
+  }
+
+  public void stop() {
+    // timers of this member are taken over by the others
+    timerScheduler.stop();
+    node.stop();
+  }
+
+  public boolean isLocalMode() {
+    return false;
+  }
+
+  public LoopbackClusterNode getNode() {
+    return node;
+  }
+
+}
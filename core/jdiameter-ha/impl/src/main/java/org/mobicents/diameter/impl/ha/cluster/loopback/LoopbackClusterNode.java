@@ -0,0 +1,566 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.diameter.impl.ha.cluster.loopback;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.mobicents.diameter.api.ha.cluster.StateRemovalListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Member of a {@link LoopbackCluster}. Holds the entries the ring places on
+ * it and serves them to other members over a loopback socket. Writes go
+ * synchronously to every replica of the key, reads are local when this member
+ * is a replica and go to the primary otherwise.
+ * 
+ * Entries are kept in regions, one for session state and one for timers.
+ * Timers are placed by the Session-Id they belong to, so they are held by the
+ * same members as the session state.
+ * Writes racing with a view change may be lost, as in a real cluster failing
+ * over.
+ */
+public class LoopbackClusterNode {
+
+  private static final Logger logger = LoggerFactory.getLogger(LoopbackClusterNode.class);
+
+  static final byte SESSIONS = 0;
+  static final byte TIMERS = 1;
+
+  // value of created entries that have not been written yet
+  static final byte[] EMPTY = new byte[0];
+
+  // requests
+  private static final byte GET = 1;
+  private static final byte CREATE = 2;
+  private static final byte PUT = 3;
+  private static final byte REMOVE = 4;
+
+  // responses
+  private static final byte FALSE = 0;
+  private static final byte TRUE = 1;
+  private static final byte VALUE = 2;
+  private static final byte NONE = 3;
+  private static final byte ERROR = 4;
+
+  private static final InetAddress LOOPBACK;
+
+  static {
+    try {
+      LOOPBACK = InetAddress.getByName("127.0.0.1");
+    }
+    catch (UnknownHostException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final LoopbackCluster cluster;
+  private final String name;
+  private final ConcurrentHashMap<String, byte[]>[] regions;
+
+  // null while not started
+  private volatile LoopbackView view;
+  private volatile boolean running;
+  private ServerSocket serverSocket;
+  private final Set<Socket> accepted = Collections.synchronizedSet(new HashSet<Socket>());
+  private final ConcurrentHashMap<LoopbackClusterNode, Queue<Connection>> connections = new ConcurrentHashMap<LoopbackClusterNode, Queue<Connection>>();
+
+  private volatile StateRemovalListener removalListener;
+  private volatile LoopbackTimerScheduler timerScheduler;
+
+  @SuppressWarnings("unchecked")
+  LoopbackClusterNode(LoopbackCluster cluster, String name) {
+    this.cluster = cluster;
+    this.name = name;
+    this.regions = new ConcurrentHashMap[] { new ConcurrentHashMap<String, byte[]>(), new ConcurrentHashMap<String, byte[]>() };
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return port this member serves other members on, -1 if not started
+   */
+  public int getPort() {
+    ServerSocket socket = serverSocket;
+    return socket == null ? -1 : socket.getLocalPort();
+  }
+
+  /**
+   * @return number of entries held by this member in the given region
+   */
+  int size(byte region) {
+    return regions[region].size();
+  }
+
+  /**
+   * @return number of session state entries held by this member
+   */
+  public int getSessionCount() {
+    return size(SESSIONS);
+  }
+
+  /**
+   * @return number of timer entries held by this member
+   */
+  public int getTimerCount() {
+    return size(TIMERS);
+  }
+
+  List<LoopbackClusterNode> getView() {
+    LoopbackView current = view;
+    return current == null ? Collections.<LoopbackClusterNode>emptyList() : current.getMembers();
+  }
+
+  void setRemovalListener(StateRemovalListener removalListener) {
+    this.removalListener = removalListener;
+  }
+
+  void setTimerScheduler(LoopbackTimerScheduler timerScheduler) {
+    this.timerScheduler = timerScheduler;
+  }
+
+  /**
+   * Opens the socket served to other members and joins the cluster.
+   */
+  synchronized void start() throws IOException {
+    if (running) {
+      return;
+    }
+    serverSocket = new ServerSocket(0, 50, LOOPBACK);
+    running = true;
+    Thread acceptor = new Thread(new Runnable() {
+      public void run() {
+        accept();
+      }
+    }, "LoopbackCluster-" + name);
+    acceptor.setDaemon(true);
+    acceptor.start();
+    cluster.join(this);
+  }
+
+  /**
+   * Leaves the cluster, the entries held by this member are rebuilt by the
+   * remaining replicas, and closes all sockets.
+   */
+  synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    cluster.leave(this);
+    running = false;
+    closeQuietly(serverSocket);
+    synchronized (accepted) {
+      for (Socket socket : accepted) {
+        closeQuietly(socket);
+      }
+      accepted.clear();
+    }
+    for (Queue<Connection> pool : connections.values()) {
+      for (Connection connection; (connection = pool.poll()) != null; ) {
+        connection.close();
+      }
+    }
+    connections.clear();
+    for (ConcurrentHashMap<String, byte[]> region : regions) {
+      region.clear();
+    }
+    view = null;
+  }
+
+  // Operations
+
+  byte[] get(byte region, String key) {
+    List<LoopbackClusterNode> replicas = replicas(region, key);
+    if (replicas.contains(this)) {
+      return regions[region].get(key);
+    }
+    return (byte[]) call(replicas.get(0), GET, region, key, null);
+  }
+
+  boolean create(byte region, String key) {
+    List<LoopbackClusterNode> replicas = replicas(region, key);
+    // primary decides, backups follow
+    boolean created = (Boolean) call(replicas.get(0), CREATE, region, key, null);
+    if (created) {
+      for (int i = 1; i < replicas.size(); i++) {
+        call(replicas.get(i), CREATE, region, key, null);
+      }
+    }
+    return created;
+  }
+
+  void put(byte region, String key, byte[] value) {
+    for (LoopbackClusterNode replica : replicas(region, key)) {
+      call(replica, PUT, region, key, value);
+    }
+  }
+
+  /**
+   * @param broadcast if true, all members are told, so they can drop the
+   *          session if they have it live
+   * @return true if the primary held the entry
+   */
+  boolean remove(byte region, String key, boolean broadcast) {
+    List<LoopbackClusterNode> replicas = replicas(region, key);
+    LoopbackClusterNode primary = replicas.get(0);
+    boolean removed = (Boolean) call(primary, REMOVE, region, key, null);
+    for (LoopbackClusterNode member : broadcast ? getView() : replicas) {
+      if (member != primary) {
+        call(member, REMOVE, region, key, null);
+      }
+    }
+    return removed;
+  }
+
+  private List<LoopbackClusterNode> replicas(byte region, String key) {
+    LoopbackView current = view;
+    if (current == null) {
+      throw new IllegalStateException("Cluster member " + name + " is not started");
+    }
+    return current.replicas(routingKey(region, key));
+  }
+
+  /**
+   * @return key placing the entry on the ring, the Session-Id for timers
+   */
+  static String routingKey(byte region, String key) {
+    if (region == TIMERS) {
+      // timer ids are built as sessionId/timerName
+      int separator = key.lastIndexOf('/');
+      if (separator > 0) {
+        return key.substring(0, separator);
+      }
+    }
+    return key;
+  }
+
+  private Object call(LoopbackClusterNode member, byte op, byte region, String key, byte[] value) {
+    if (member == this) {
+      return handle(op, region, key, value, false);
+    }
+    Queue<Connection> pool = connections.get(member);
+    if (pool == null) {
+      pool = new ConcurrentLinkedQueue<Connection>();
+      Queue<Connection> present = connections.putIfAbsent(member, pool);
+      if (present != null) {
+        pool = present;
+      }
+    }
+    Connection connection = pool.poll();
+    try {
+      if (connection == null) {
+        connection = new Connection(member.getPort());
+      }
+      Object result = connection.call(op, region, key, value);
+      pool.offer(connection);
+      return result;
+    }
+    catch (IOException e) {
+      if (connection != null) {
+        connection.close();
+      }
+      throw new IllegalStateException("Cluster member " + member.getName() + " is unreachable", e);
+    }
+    catch (RuntimeException e) {
+      // failed on the other member, connection is still in sync
+      pool.offer(connection);
+      throw e;
+    }
+  }
+
+  private Object handle(byte op, byte region, String key, byte[] value, boolean remote) {
+    ConcurrentHashMap<String, byte[]> entries = regions[region];
+    switch (op) {
+      case GET:
+        return entries.get(key);
+      case CREATE:
+        return entries.putIfAbsent(key, EMPTY) == null;
+      case PUT:
+        entries.put(key, value);
+        return null;
+      case REMOVE:
+        boolean removed = entries.remove(key) != null;
+        StateRemovalListener listener = removalListener;
+        if (remote && region == SESSIONS && listener != null) {
+          listener.stateRemoved(key);
+        }
+        return removed;
+      default:
+        throw new IllegalArgumentException("Unknown request " + op);
+    }
+  }
+
+  // View changes
+
+  void setView(LoopbackView view) {
+    this.view = view;
+  }
+
+  /**
+   * Copies the entries this member is the first surviving holder of to their
+   * new replicas and drops the ones it no longer holds. Entries whose replicas
+   * did not change are left alone.
+   */
+  void viewChanged(LoopbackView oldView, LoopbackView newView) {
+    for (byte region = SESSIONS; region <= TIMERS; region++) {
+      for (Map.Entry<String, byte[]> entry : regions[region].entrySet()) {
+        String key = entry.getKey();
+        String routingKey = routingKey(region, key);
+        List<LoopbackClusterNode> oldReplicas = oldView.replicas(routingKey);
+        List<LoopbackClusterNode> newReplicas = newView.replicas(routingKey);
+        if (oldReplicas.equals(newReplicas)) {
+          continue;
+        }
+        if (isFirstSurvivor(oldReplicas, newView)) {
+          for (LoopbackClusterNode replica : newReplicas) {
+            if (replica != this && !oldReplicas.contains(replica)) {
+              try {
+                call(replica, PUT, region, key, entry.getValue());
+              }
+              catch (IllegalStateException e) {
+                logger.warn("Failed to copy {} to {}", key, replica.getName());
+              }
+            }
+          }
+        }
+        if (!newReplicas.contains(this)) {
+          regions[region].remove(key);
+        }
+      }
+    }
+  }
+
+  /**
+   * Takes over the timers this member is the primary of whose owner left.
+   * Only the timers held by this member are looked at, and none when no
+   * member left.
+   */
+  void takeOverTimers(LoopbackView oldView, LoopbackView newView) {
+    LoopbackTimerScheduler scheduler = timerScheduler;
+    if (scheduler == null || !hasLeft(oldView, newView)) {
+      return;
+    }
+    Set<String> members = new HashSet<String>();
+    for (LoopbackClusterNode member : newView.getMembers()) {
+      members.add(member.getName());
+    }
+    for (Map.Entry<String, byte[]> entry : regions[TIMERS].entrySet()) {
+      if (newView.primary(routingKey(TIMERS, entry.getKey())) == this) {
+        scheduler.takeOver(entry.getKey(), entry.getValue(), members);
+      }
+    }
+  }
+
+  private static boolean hasLeft(LoopbackView oldView, LoopbackView newView) {
+    for (LoopbackClusterNode member : oldView.getMembers()) {
+      if (!newView.contains(member)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isFirstSurvivor(List<LoopbackClusterNode> oldReplicas, LoopbackView newView) {
+    for (LoopbackClusterNode replica : oldReplicas) {
+      if (newView.contains(replica)) {
+        return replica == this;
+      }
+    }
+    // held without being a replica, copied while the view changed
+    return true;
+  }
+
+  // Transport
+
+  private void accept() {
+    while (running) {
+      try {
+        final Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        accepted.add(socket);
+        Thread reader = new Thread(new Runnable() {
+          public void run() {
+            serve(socket);
+          }
+        }, "LoopbackCluster-" + name + "-" + socket.getPort());
+        reader.setDaemon(true);
+        reader.start();
+      }
+      catch (IOException e) {
+        if (running) {
+          logger.warn("Failed to accept cluster connection on " + name, e);
+        }
+      }
+    }
+  }
+
+  private void serve(Socket socket) {
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      while (running) {
+        byte op = in.readByte();
+        byte region = in.readByte();
+        String key = in.readUTF();
+        byte[] value = readValue(in);
+        try {
+          Object result = handle(op, region, key, value, true);
+          if (result instanceof Boolean) {
+            out.writeByte((Boolean) result ? TRUE : FALSE);
+          }
+          else if (result != null) {
+            out.writeByte(VALUE);
+            writeValue(out, (byte[]) result);
+          }
+          else {
+            out.writeByte(NONE);
+          }
+        }
+        catch (RuntimeException e) {
+          out.writeByte(ERROR);
+          out.writeUTF(String.valueOf(e.getMessage()));
+        }
+        out.flush();
+      }
+    }
+    catch (EOFException e) {
+      // other member closed the connection
+    }
+    catch (IOException e) {
+      if (running) {
+        logger.debug("Cluster connection on " + name + " failed", e);
+      }
+    }
+    finally {
+      accepted.remove(socket);
+      closeQuietly(socket);
+    }
+  }
+
+  private static byte[] readValue(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] value = new byte[length];
+    in.readFully(value);
+    return value;
+  }
+
+  private static void writeValue(DataOutputStream out, byte[] value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+    }
+    else {
+      out.writeInt(value.length);
+      out.write(value);
+    }
+  }
+
+  private static void closeQuietly(ServerSocket socket) {
+    try {
+      if (socket != null) {
+        socket.close();
+      }
+    }
+    catch (IOException e) {
+      // nothing to do
+    }
+  }
+
+  private static void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    }
+    catch (IOException e) {
+      // nothing to do
+    }
+  }
+
+  /**
+   * Connection to another member, used by one caller at a time.
+   */
+  private static final class Connection {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    Connection(int port) throws IOException {
+      this.socket = new Socket(LOOPBACK, port);
+      this.socket.setTcpNoDelay(true);
+      this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    Object call(byte op, byte region, String key, byte[] value) throws IOException {
+      out.writeByte(op);
+      out.writeByte(region);
+      out.writeUTF(key);
+      writeValue(out, value);
+      out.flush();
+      byte status = in.readByte();
+      switch (status) {
+        case TRUE:
+          return Boolean.TRUE;
+        case FALSE:
+          return Boolean.FALSE;
+        case VALUE:
+          return readValue(in);
+        case NONE:
+          return null;
+        default:
+          throw new IllegalStateException(in.readUTF());
+      }
+    }
+
+    void close() {
+      closeQuietly(socket);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+}
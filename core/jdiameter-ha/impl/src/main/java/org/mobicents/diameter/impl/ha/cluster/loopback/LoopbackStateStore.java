@@ -0,0 +1,64 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.diameter.impl.ha.cluster.loopback;
+
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
+import org.mobicents.diameter.api.ha.cluster.StateRemovalListener;
+
+/**
+ * State store kept in the session region of a {@link LoopbackClusterNode}.
+ */
+public class LoopbackStateStore implements ReplicatedStateStore {
+
+  private final LoopbackClusterNode node;
+
+  LoopbackStateStore(LoopbackClusterNode node) {
+    this.node = node;
+  }
+
+  public boolean create(String key) {
+    return node.create(LoopbackClusterNode.SESSIONS, key);
+  }
+
+  public boolean exists(String key) {
+    return node.get(LoopbackClusterNode.SESSIONS, key) != null;
+  }
+
+  public byte[] get(String key) {
+    byte[] value = node.get(LoopbackClusterNode.SESSIONS, key);
+    return value == null || value.length == 0 ? null : value;
+  }
+
+  public void put(String key, byte[] value) {
+    node.put(LoopbackClusterNode.SESSIONS, key, value);
+  }
+
+  public boolean remove(String key) {
+    return node.remove(LoopbackClusterNode.SESSIONS, key, true);
+  }
+
+  public void setRemovalListener(StateRemovalListener listener) {
+    node.setRemovalListener(listener);
+  }
+
+}
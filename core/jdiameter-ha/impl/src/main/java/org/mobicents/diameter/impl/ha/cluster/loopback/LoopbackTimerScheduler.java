@@ -0,0 +1,197 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.diameter.impl.ha.cluster.loopback;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.mobicents.diameter.api.ha.cluster.FailoverTimerScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Timer scheduler keeping timers in the timer region of a
+ * {@link LoopbackClusterNode}. A timer runs on the member that scheduled it,
+ * which is recorded in the entry. When that member leaves, the primary of the
+ * entry takes the timer over. A timer only fires if its entry is still there
+ * to be removed, so a cancelled timer never fires and a timer fires once.
+ */
+public class LoopbackTimerScheduler implements FailoverTimerScheduler {
+
+  private static final Logger logger = LoggerFactory.getLogger(LoopbackTimerScheduler.class);
+
+  private final LoopbackClusterNode node;
+  private final ConcurrentHashMap<String, ScheduledFuture<?>> tasks = new ConcurrentHashMap<String, ScheduledFuture<?>>();
+  private ScheduledExecutorService executor;
+  private volatile TimerHandler handler;
+
+  LoopbackTimerScheduler(LoopbackClusterNode node) {
+    this.node = node;
+    node.setTimerScheduler(this);
+  }
+
+  synchronized void start() {
+    if (executor == null) {
+      executor = Executors.newScheduledThreadPool(2, new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "LoopbackTimer-" + node.getName());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+  }
+
+  synchronized void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+    tasks.clear();
+  }
+
+  public void schedule(Serializable id, String sessionId, String timerName, long delay) throws IllegalArgumentException {
+    String key = id.toString();
+    if (!node.create(LoopbackClusterNode.TIMERS, key)) {
+      throw new IllegalArgumentException("Timer already running: " + id);
+    }
+    node.put(LoopbackClusterNode.TIMERS, key, encode(node.getName(), System.currentTimeMillis() + delay, sessionId, timerName));
+    start(key, sessionId, timerName, delay);
+  }
+
+  public void cancel(Serializable id) {
+    String key = id.toString();
+    ScheduledFuture<?> task = tasks.remove(key);
+    if (task != null) {
+      task.cancel(false);
+    }
+    // also stops the timer if it runs on another member
+    node.remove(LoopbackClusterNode.TIMERS, key, false);
+  }
+
+  public boolean isScheduled(Serializable id) {
+    return node.get(LoopbackClusterNode.TIMERS, id.toString()) != null;
+  }
+
+  public void setTimerHandler(TimerHandler handler) {
+    this.handler = handler;
+  }
+
+  /**
+   * @return number of timers running on this member
+   */
+  public int getLocalTimerCount() {
+    return tasks.size();
+  }
+
+  /**
+   * Runs the timer of the given entry here if its owner is not a member
+   * anymore.
+   */
+  void takeOver(String key, byte[] entry, Set<String> members) {
+    if (entry.length == 0 || tasks.containsKey(key)) {
+      return;
+    }
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry));
+      String owner = in.readUTF();
+      long fireTime = in.readLong();
+      String sessionId = in.readUTF();
+      String timerName = in.readUTF();
+      if (members.contains(owner)) {
+        return;
+      }
+      logger.debug("Taking over timer {} from {}", key, owner);
+      node.put(LoopbackClusterNode.TIMERS, key, encode(node.getName(), fireTime, sessionId, timerName));
+      start(key, sessionId, timerName, Math.max(0, fireTime - System.currentTimeMillis()));
+    }
+    catch (IOException e) {
+      logger.warn("Unable to read timer " + key, e);
+    }
+  }
+
+  private void start(final String key, final String sessionId, final String timerName, long delay) {
+    ScheduledExecutorService executor;
+    synchronized (this) {
+      executor = this.executor;
+    }
+    if (executor == null) {
+      throw new IllegalStateException("Timer scheduler of " + node.getName() + " is not started");
+    }
+    tasks.put(key, executor.schedule(new Runnable() {
+      public void run() {
+        tasks.remove(key);
+        try {
+          if (!node.remove(LoopbackClusterNode.TIMERS, key, false)) {
+            // cancelled
+            return;
+          }
+        }
+        catch (IllegalStateException e) {
+          logger.warn("Unable to remove fired timer " + key, e);
+          return;
+        }
+        TimerHandler handler = LoopbackTimerScheduler.this.handler;
+        if (handler == null) {
+          logger.warn("Timer {} fired with no handler set", key);
+          return;
+        }
+        try {
+          handler.onTimer(sessionId, timerName);
+        }
+        catch (Exception e) {
+          logger.error("Failure executing timer " + key, e);
+        }
+      }
+    }, delay, TimeUnit.MILLISECONDS));
+  }
+
+  private static byte[] encode(String owner, long fireTime, String sessionId, String timerName) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeUTF(owner);
+      out.writeLong(fireTime);
+      out.writeUTF(sessionId);
+      out.writeUTF(timerName);
+      out.flush();
+      return bytes.toByteArray();
+    }
+    catch (IOException e) {
+      // not thrown by byte array streams
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
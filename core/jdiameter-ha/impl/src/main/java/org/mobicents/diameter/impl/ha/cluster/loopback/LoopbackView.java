@@ -0,0 +1,85 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.diameter.impl.ha.cluster.loopback;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mobicents.diameter.impl.ha.cluster.ConsistentHashRing;
+
+/**
+ * Members of a {@link LoopbackCluster} at one point in time, with the ring
+ * placing keys on them.
+ */
+final class LoopbackView {
+
+  private final List<LoopbackClusterNode> members;
+  private final Map<String, LoopbackClusterNode> byName;
+  private final ConsistentHashRing ring;
+  private final int replicaCount;
+
+  LoopbackView(List<LoopbackClusterNode> members, int replicaCount, int virtualNodes) {
+    this.members = Collections.unmodifiableList(new ArrayList<LoopbackClusterNode>(members));
+    this.byName = new HashMap<String, LoopbackClusterNode>();
+    List<String> names = new ArrayList<String>(members.size());
+    for (LoopbackClusterNode member : members) {
+      byName.put(member.getName(), member);
+      names.add(member.getName());
+    }
+    this.ring = new ConsistentHashRing(names, virtualNodes);
+    this.replicaCount = replicaCount;
+  }
+
+  List<LoopbackClusterNode> getMembers() {
+    return members;
+  }
+
+  boolean contains(String name) {
+    return byName.containsKey(name);
+  }
+
+  boolean contains(LoopbackClusterNode member) {
+    return byName.get(member.getName()) == member;
+  }
+
+  /**
+   * @return members holding the given routing key, primary first
+   */
+  List<LoopbackClusterNode> replicas(String routingKey) {
+    List<String> owners = ring.owners(routingKey, replicaCount);
+    List<LoopbackClusterNode> replicas = new ArrayList<LoopbackClusterNode>(owners.size());
+    for (String owner : owners) {
+      replicas.add(byName.get(owner));
+    }
+    return replicas;
+  }
+
+  LoopbackClusterNode primary(String routingKey) {
+    String owner = ring.primary(routingKey);
+    return owner == null ? null : byName.get(owner);
+  }
+
+}
@@ -22,58 +22,103 @@
 
 package org.mobicents.diameter.impl.ha.common;
 
-import org.jboss.cache.Fqn;
-import org.jboss.cache.Node;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.jdiameter.api.ApplicationId;
 import org.jdiameter.api.app.AppSession;
-import org.jdiameter.common.api.app.IAppSessionData;
-import org.mobicents.cache.MobicentsCache;
-import org.mobicents.cluster.MobicentsCluster;
-import org.mobicents.cluster.cache.ClusteredCacheData;
-import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
+import org.jdiameter.common.api.app.IBatchedAppSessionData;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema.FieldType;
 
 /**
+ * Base of replicated session data. All fields of a session are packed, as
+ * described by the {@link SessionDataSchema} of its data class, into a single
+ * blob stored under the session id in the {@link ReplicatedStateStore} of the
+ * cluster backend. While a session event is being processed, the fields
+ * changed by the thread processing it are kept in memory and written to the
+ * store in a single update when the event completes, instead of one
+ * replicated write per field.
  * 
  * @author <a href="mailto:baranowb@gmail.com"> Bartosz Baranowski </a>
  * @author <a href="mailto:brainslog@gmail.com"> Alexandre Mendonca </a>
  */
-public class AppSessionDataReplicatedImpl extends ClusteredCacheData implements IAppSessionData {
+public class AppSessionDataReplicatedImpl implements IBatchedAppSessionData {
 
   protected static final String SID = "SID";
   protected static final String APID = "APID";
   protected static final String SIFACE = "SIFACE";
 
+  // base fields come first in every schema, so the session interface can be
+  // read without knowing the data class
+  protected static final SessionDataSchema SCHEMA = new SessionDataSchema(1)
+      .add(SIFACE, FieldType.CLASS)
+      .add(APID, FieldType.APPLICATION_ID);
+
+  // thread processing a session event and the fields it changed, a removed
+  // field is kept with a null value
+  private volatile Thread batchOwner;
+  private Map<String, Object> dirtyFields;
+
+  private final String sessionId;
+  private final ReplicatedStateStore stateStore;
+
+  // last blob read from or written to the store and its fields
+  private byte[] packedData;
+  private Map<String, Object> packedFields = Collections.emptyMap();
+
   /**
-   * @param nodeFqn
-   * @param mobicentsCluster
+   * @param sessionId
+   * @param stateStore
    */
-  public AppSessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster) {
-    super(nodeFqn, mobicentsCluster);
+  public AppSessionDataReplicatedImpl(String sessionId, ReplicatedStateStore stateStore) {
+    this.sessionId = sessionId;
+    this.stateStore = stateStore;
   }
 
-  public AppSessionDataReplicatedImpl(String sessionId, MobicentsCluster mobicentsCluster) {
-    this(Fqn.fromRelativeElements(ReplicatedSessionDatasource.SESSIONS_FQN, sessionId), mobicentsCluster);
+  public static void setAppSessionIface(AppSessionDataReplicatedImpl data, Class<? extends AppSession> iface) {
+    data.putField(SIFACE, iface);
   }
 
-  public static void setAppSessionIface(ClusteredCacheData ccd, Class<? extends AppSession> iface) {
-    Node n = ccd.getMobicentsCache().getJBossCache().getNode(ccd.getNodeFqn());
-    n.put(SIFACE, iface);
+  public static Class<? extends AppSession> getAppSessionIface(ReplicatedStateStore stateStore, String sessionId) {
+    byte[] data = stateStore.get(sessionId);
+    return data == null ? null : (Class<AppSession>) SCHEMA.decode(data).get(SIFACE);
   }
 
-  public static Class<? extends AppSession> getAppSessionIface(MobicentsCache mcCache, String sessionId) {
-    Node n = mcCache.getJBossCache().getNode(Fqn.fromRelativeElements(ReplicatedSessionDatasource.SESSIONS_FQN, sessionId));
-    return (Class<AppSession>) n.get(SIFACE);
+  /**
+   * @return schema of the fields of this data class, extending {@link #SCHEMA}
+   */
+  protected SessionDataSchema getSchema() {
+    return SCHEMA;
   }
 
   @Override
   public String getSessionId() {
-    return (String) super.getNodeFqn().getLastElement();
+    return this.sessionId;
+  }
+
+  /**
+   * Creates the stored state of this session if there is none.
+   * 
+   * @return true if created by this call
+   */
+  public boolean create() {
+    return this.stateStore.create(this.sessionId);
+  }
+
+  public boolean exists() {
+    return this.stateStore.exists(this.sessionId);
+  }
+
+  public boolean remove() {
+    return this.stateStore.remove(this.sessionId);
   }
 
   @Override
   public void setApplicationId(ApplicationId applicationId) {
     if (exists()) {
-      getNode().put(APID, applicationId);
+      putField(APID, applicationId);
     }
     else {
       throw new IllegalStateException();
@@ -83,13 +128,89 @@ public class AppSessionDataReplicatedImpl extends ClusteredCacheData implements
   @Override
   public ApplicationId getApplicationId() {
     if (exists()) {
-      return (ApplicationId) getNode().get(APID);
+      return (ApplicationId) getField(APID);
     }
     else {
       throw new IllegalStateException();
     }
   }
 
+  public void beginBatch() {
+    batchOwner = Thread.currentThread();
+  }
+
+  public void endBatch() {
+    if (batchOwner != Thread.currentThread()) {
+      return;
+    }
+    batchOwner = null;
+    Map<String, Object> changes = dirtyFields;
+    dirtyFields = null;
+    // data removed while the event was processed has nothing to update
+    if (changes != null && exists()) {
+      writeFields(changes);
+    }
+  }
+
+  // Field access, writes made inside a batch are kept until it ends
+
+  protected Object getField(String key) {
+    if (batchOwner == Thread.currentThread() && dirtyFields != null && dirtyFields.containsKey(key)) {
+      return dirtyFields.get(key);
+    }
+    return readFields().get(key);
+  }
+
+  protected void putField(String key, Object value) {
+    if (batchOwner == Thread.currentThread()) {
+      if (dirtyFields == null) {
+        dirtyFields = new HashMap<String, Object>();
+      }
+      dirtyFields.put(key, value);
+    }
+    else {
+      writeFields(Collections.singletonMap(key, value));
+    }
+  }
+
+  protected void removeField(String key) {
+    putField(key, null);
+  }
+
+  /**
+   * @return the fields in the store, only decoded again if the store holds
+   *         a different blob than the last one seen
+   */
+  private synchronized Map<String, Object> readFields() {
+    byte[] data = this.stateStore.get(this.sessionId);
+    if (data != packedData) {
+      packedFields = data == null ? Collections.<String, Object>emptyMap() : getSchema().decode(data);
+      packedData = data;
+    }
+    return packedFields;
+  }
+
+  /**
+   * Applies the given changes, null values remove a field, and stores all
+   * fields as a new blob. Fields of a newer schema decoded with the others
+   * are kept and written back.
+   */
+  private synchronized void writeFields(Map<String, Object> changes) {
+    Map<String, Object> fields = new HashMap<String, Object>(readFields());
+    for (Map.Entry<String, Object> change : changes.entrySet()) {
+      if (change.getValue() == null) {
+        fields.remove(change.getKey());
+      }
+      else {
+        fields.put(change.getKey(), change.getValue());
+      }
+    }
+    byte[] data = getSchema().encode(fields);
+    this.stateStore.put(this.sessionId, data);
+    packedData = data;
+    packedFields = fields;
+  }
+
   // Some util methods for handling primitives
 
   protected boolean toPrimitive(Boolean b, boolean _default) {
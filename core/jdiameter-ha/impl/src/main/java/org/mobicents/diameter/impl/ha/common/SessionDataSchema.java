@@ -0,0 +1,409 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.diameter.impl.ha.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jdiameter.api.ApplicationId;
+
+/**
+ * Schema of the fields of replicated session data, used to pack all the
+ * fields of a session into a single compact blob. Fields are identified by
+ * their position in the schema, so names are not stored, and values are
+ * written in a binary form chosen by their declared type.
+ *
+ * Blob layout: format version byte, schema version, number of schema fields
+ * when written, a bitmap of the fields present and then the value of each
+ * present field, in schema order. Integers are written as zig-zag varints.
+ *
+ * Fields may only be appended to a schema, with its version increased. Blobs
+ * written with fewer fields decode with the missing ones unset. Fields
+ * appended by a newer version always come last, so a node with an older
+ * schema keeps their bytes as they are and writes them back when it encodes
+ * the fields it decoded, instead of erasing them.
+ */
+public class SessionDataSchema {
+
+  private static final byte FORMAT_VERSION = 1;
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  // tags of serializable values
+  private static final int SERIALIZABLE_STRING = 0;
+  private static final int SERIALIZABLE_OBJECT = 1;
+
+  // key of the fields appended by a newer schema in decoded fields
+  private static final String TRAILING_FIELDS = "#TRAILING";
+
+  public enum FieldType {
+    BOOLEAN, INTEGER, LONG, STRING, BYTES, ENUM, SERIALIZABLE, APPLICATION_ID, CLASS
+  }
+
+  private final int version;
+  private final List<String> names = new ArrayList<String>();
+  private final List<FieldType> types = new ArrayList<FieldType>();
+  private final List<Class<?>> enumTypes = new ArrayList<Class<?>>();
+  private final Map<String, Integer> positions = new HashMap<String, Integer>();
+
+  public SessionDataSchema(int version) {
+    this.version = version;
+  }
+
+  /**
+   * @return a new schema with the given version holding the fields of this one
+   */
+  public SessionDataSchema extend(int version) {
+    SessionDataSchema schema = new SessionDataSchema(version);
+    for (int i = 0; i < names.size(); i++) {
+      schema.add(names.get(i), types.get(i), enumTypes.get(i));
+    }
+    return schema;
+  }
+
+  public SessionDataSchema add(String name, FieldType type) {
+    if (type == FieldType.ENUM) {
+      throw new IllegalArgumentException("Enum fields need their type: " + name);
+    }
+    return add(name, type, null);
+  }
+
+  public SessionDataSchema addEnum(String name, Class<? extends Enum<?>> enumType) {
+    return add(name, FieldType.ENUM, enumType);
+  }
+
+  private SessionDataSchema add(String name, FieldType type, Class<?> enumType) {
+    if (positions.containsKey(name)) {
+      throw new IllegalArgumentException("Field already defined: " + name);
+    }
+    positions.put(name, names.size());
+    names.add(name);
+    types.add(type);
+    enumTypes.add(enumType);
+    return this;
+  }
+
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * Packs the given fields. Fields with a null value are left out, fields
+   * decoded from a blob of a newer schema are written back unchanged.
+   *
+   * @throws IllegalArgumentException if a field is not part of this schema
+   */
+  public byte[] encode(Map<String, Object> fields) {
+    TrailingFields trailing = (TrailingFields) fields.get(TRAILING_FIELDS);
+    if (trailing != null && trailing.known != names.size()) {
+      throw new IllegalArgumentException("Fields decoded with another schema");
+    }
+    int known = names.size();
+    int count = trailing == null ? known : trailing.count;
+    Object[] values = new Object[known];
+    byte[] present = trailing == null ? new byte[(count + 7) / 8] : trailing.present.clone();
+    for (Map.Entry<String, Object> field : fields.entrySet()) {
+      if (field.getValue() == null || TRAILING_FIELDS.equals(field.getKey())) {
+        continue;
+      }
+      Integer position = positions.get(field.getKey());
+      if (position == null) {
+        throw new IllegalArgumentException("Field not in schema: " + field.getKey());
+      }
+      values[position] = field.getValue();
+      present[position >> 3] |= 1 << (position & 7);
+    }
+    Output out = new Output();
+    out.write(FORMAT_VERSION);
+    // blobs keeping newer fields keep their newer schema version
+    out.writeVarLong(trailing == null ? version : trailing.version);
+    out.writeVarLong(count);
+    out.write(present, 0, present.length);
+    for (int i = 0; i < known; i++) {
+      if (values[i] != null) {
+        writeValue(out, i, values[i]);
+      }
+    }
+    if (trailing != null) {
+      out.write(trailing.values, 0, trailing.values.length);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * @return the fields packed in the given blob, with the bytes of fields
+   *         not known to this schema under a reserved key, so that
+   *         {@link #encode(Map)} keeps them
+   * @throws IllegalArgumentException if the blob can not be decoded
+   */
+  public Map<String, Object> decode(byte[] data) {
+    Input in = new Input(data);
+    try {
+      byte format = in.read();
+      if (format != FORMAT_VERSION) {
+        throw new IllegalArgumentException("Unknown session data format: " + format);
+      }
+      // fields are resolved by position, the version is only written back
+      long blobVersion = in.readVarLong();
+      int count = (int) in.readVarLong();
+      byte[] present = in.read((count + 7) / 8);
+      int known = Math.min(count, names.size());
+      Map<String, Object> fields = new HashMap<String, Object>();
+      for (int i = 0; i < known; i++) {
+        if ((present[i >> 3] & (1 << (i & 7))) != 0) {
+          fields.put(names.get(i), readValue(in, i));
+        }
+      }
+      if (count > known) {
+        // values of the newer fields follow the known ones
+        for (int i = 0; i < known; i++) {
+          present[i >> 3] &= ~(1 << (i & 7));
+        }
+        fields.put(TRAILING_FIELDS, new TrailingFields(blobVersion, known, count, present, in.readRemaining()));
+      }
+      else if (in.remaining() > 0) {
+        throw new IllegalArgumentException("Unexpected bytes after session data");
+      }
+      return fields;
+    }
+    catch (RuntimeException e) {
+      throw new IllegalArgumentException("Unable to decode session data", e);
+    }
+  }
+
+  private void writeValue(Output out, int position, Object value) {
+    switch (types.get(position)) {
+    case BOOLEAN:
+      out.write((Boolean) value ? 1 : 0);
+      break;
+    case INTEGER:
+      out.writeVarLong((Integer) value);
+      break;
+    case LONG:
+      out.writeVarLong((Long) value);
+      break;
+    case STRING:
+      out.writeString((String) value);
+      break;
+    case BYTES:
+      byte[] bytes = (byte[]) value;
+      out.writeVarLong(bytes.length);
+      out.write(bytes, 0, bytes.length);
+      break;
+    case ENUM:
+      out.writeVarLong(((Enum<?>) value).ordinal());
+      break;
+    case SERIALIZABLE:
+      if (value instanceof String) {
+        out.write(SERIALIZABLE_STRING);
+        out.writeString((String) value);
+      }
+      else {
+        out.write(SERIALIZABLE_OBJECT);
+        byte[] serialized = serialize((Serializable) value);
+        out.writeVarLong(serialized.length);
+        out.write(serialized, 0, serialized.length);
+      }
+      break;
+    case APPLICATION_ID:
+      ApplicationId applicationId = (ApplicationId) value;
+      out.writeVarLong(applicationId.getVendorId());
+      out.writeVarLong(applicationId.getAuthAppId());
+      out.writeVarLong(applicationId.getAcctAppId());
+      break;
+    case CLASS:
+      out.writeString(((Class<?>) value).getName());
+      break;
+    }
+  }
+
+  private Object readValue(Input in, int position) {
+    switch (types.get(position)) {
+    case BOOLEAN:
+      return in.read() != 0;
+    case INTEGER:
+      return (int) in.readVarLong();
+    case LONG:
+      return in.readVarLong();
+    case STRING:
+      return in.readString();
+    case BYTES:
+      return in.read((int) in.readVarLong());
+    case ENUM:
+      return enumTypes.get(position).getEnumConstants()[(int) in.readVarLong()];
+    case SERIALIZABLE:
+      if (in.read() == SERIALIZABLE_STRING) {
+        return in.readString();
+      }
+      return deserialize(in.read((int) in.readVarLong()));
+    case APPLICATION_ID:
+      long vendorId = in.readVarLong();
+      long authAppId = in.readVarLong();
+      long acctAppId = in.readVarLong();
+      return authAppId != ApplicationId.UNDEFINED_VALUE || acctAppId == ApplicationId.UNDEFINED_VALUE ?
+          ApplicationId.createByAuthAppId(vendorId, authAppId) : ApplicationId.createByAccAppId(vendorId, acctAppId);
+    case CLASS:
+      String name = in.readString();
+      try {
+        return Class.forName(name, true, SessionDataSchema.class.getClassLoader());
+      }
+      catch (ClassNotFoundException e) {
+        throw new IllegalArgumentException("Unknown class: " + name, e);
+      }
+    default:
+      throw new IllegalStateException();
+    }
+  }
+
+  private static byte[] serialize(Serializable value) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(bytes);
+      out.writeObject(value);
+      out.close();
+      return bytes.toByteArray();
+    }
+    catch (IOException e) {
+      throw new IllegalArgumentException("Unable to serialize " + value, e);
+    }
+  }
+
+  private static Object deserialize(byte[] data) {
+    try {
+      ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+      try {
+        return in.readObject();
+      }
+      finally {
+        in.close();
+      }
+    }
+    catch (Exception e) {
+      throw new IllegalArgumentException("Unable to deserialize value", e);
+    }
+  }
+
+  /**
+   * Fields appended by a newer schema: the version of that schema, their
+   * presence bits and their values, still encoded.
+   */
+  private static class TrailingFields {
+
+    final long version;
+    final int known;
+    final int count;
+    final byte[] present;
+    final byte[] values;
+
+    TrailingFields(long version, int known, int count, byte[] present, byte[] values) {
+      this.version = version;
+      this.known = known;
+      this.count = count;
+      this.present = present;
+      this.values = values;
+    }
+  }
+
+  private static class Output extends ByteArrayOutputStream {
+
+    Output() {
+      super(64);
+    }
+
+    void writeVarLong(long value) {
+      // zig-zag, so small negative values stay short
+      long v = (value << 1) ^ (value >> 63);
+      while ((v & ~0x7FL) != 0) {
+        write((int) ((v & 0x7F) | 0x80));
+        v >>>= 7;
+      }
+      write((int) v);
+    }
+
+    void writeString(String value) {
+      byte[] bytes = value.getBytes(UTF8);
+      writeVarLong(bytes.length);
+      write(bytes, 0, bytes.length);
+    }
+  }
+
+  private static class Input {
+
+    private final byte[] data;
+    private int position;
+
+    Input(byte[] data) {
+      this.data = data;
+    }
+
+    byte read() {
+      if (position >= data.length) {
+        throw new IndexOutOfBoundsException("Truncated session data");
+      }
+      return data[position++];
+    }
+
+    byte[] read(int length) {
+      if (length < 0 || position + length > data.length) {
+        throw new IndexOutOfBoundsException("Truncated session data");
+      }
+      byte[] bytes = new byte[length];
+      System.arraycopy(data, position, bytes, 0, length);
+      position += length;
+      return bytes;
+    }
+
+    int remaining() {
+      return data.length - position;
+    }
+
+    byte[] readRemaining() {
+      return read(remaining());
+    }
+
+    long readVarLong() {
+      long v = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        byte b = read();
+        v |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return (v >>> 1) ^ -(v & 1);
+        }
+      }
+      throw new IllegalArgumentException("Malformed varint in session data");
+    }
+
+    String readString() {
+      return new String(read((int) readVarLong()), UTF8);
+    }
+  }
+}
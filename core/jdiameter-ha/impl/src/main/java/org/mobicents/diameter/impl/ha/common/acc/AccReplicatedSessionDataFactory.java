@@ -28,7 +28,7 @@ import org.jdiameter.api.app.AppSession;
 import org.jdiameter.common.api.app.IAppSessionDataFactory;
 import org.jdiameter.common.api.app.acc.IAccSessionData;
 import org.jdiameter.common.api.data.ISessionDatasource;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.client.acc.ClientAccSessionDataReplicatedImpl;
 import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
 import org.mobicents.diameter.impl.ha.server.acc.ServerAccSessionDataReplicatedImpl;
@@ -41,7 +41,7 @@ import org.mobicents.diameter.impl.ha.server.acc.ServerAccSessionDataReplicatedI
 public class AccReplicatedSessionDataFactory implements IAppSessionDataFactory<IAccSessionData> {
 
   private ReplicatedSessionDatasource replicatedSessionDataSource;
-  private MobicentsCluster mobicentsCluster;
+  private ReplicatedStateStore stateStore;
 
   /**
    * @param replicatedSessionDataSource
@@ -49,7 +49,7 @@ public class AccReplicatedSessionDataFactory implements IAppSessionDataFactory<I
   public AccReplicatedSessionDataFactory(ISessionDatasource replicatedSessionDataSource) { // Is this ok?
     super();
     this.replicatedSessionDataSource = (ReplicatedSessionDatasource) replicatedSessionDataSource;
-    this.mobicentsCluster = this.replicatedSessionDataSource.getMobicentsCluster();
+    this.stateStore = this.replicatedSessionDataSource.getStateStore();
   }
 
   /*
@@ -60,11 +60,11 @@ public class AccReplicatedSessionDataFactory implements IAppSessionDataFactory<I
   @Override
   public IAccSessionData getAppSessionData(Class<? extends AppSession> clazz, String sessionId) {
     if (clazz.equals(ClientAccSession.class)) {
-      ClientAccSessionDataReplicatedImpl data = new ClientAccSessionDataReplicatedImpl(sessionId, this.mobicentsCluster, this.replicatedSessionDataSource.getContainer());
+      ClientAccSessionDataReplicatedImpl data = new ClientAccSessionDataReplicatedImpl(sessionId, this.stateStore, this.replicatedSessionDataSource.getContainer());
       return data;
     }
     else if (clazz.equals(ServerAccSession.class)) {
-      ServerAccSessionDataReplicatedImpl data = new ServerAccSessionDataReplicatedImpl(sessionId, this.mobicentsCluster);
+      ServerAccSessionDataReplicatedImpl data = new ServerAccSessionDataReplicatedImpl(sessionId, this.stateStore);
       return data;
     }
     throw new IllegalArgumentException();
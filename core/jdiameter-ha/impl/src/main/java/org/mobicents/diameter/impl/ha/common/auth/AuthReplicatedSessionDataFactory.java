@@ -28,7 +28,7 @@ import org.jdiameter.api.auth.ServerAuthSession;
 import org.jdiameter.common.api.app.IAppSessionDataFactory;
 import org.jdiameter.common.api.app.auth.IAuthSessionData;
 import org.jdiameter.common.api.data.ISessionDatasource;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.client.auth.ClientAuthSessionDataReplicatedImpl;
 import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
 import org.mobicents.diameter.impl.ha.server.auth.ServerAuthSessionDataReplicatedImpl;
@@ -40,7 +40,7 @@ import org.mobicents.diameter.impl.ha.server.auth.ServerAuthSessionDataReplicate
  */
 public class AuthReplicatedSessionDataFactory implements IAppSessionDataFactory<IAuthSessionData> {
   private ReplicatedSessionDatasource replicatedSessionDataSource;
-  private MobicentsCluster mobicentsCluster;
+  private ReplicatedStateStore stateStore;
 
   /**
    * @param replicatedSessionDataSource
@@ -48,7 +48,7 @@ public class AuthReplicatedSessionDataFactory implements IAppSessionDataFactory<
   public AuthReplicatedSessionDataFactory(ISessionDatasource replicatedSessionDataSource) { // Is this ok?
     super();
     this.replicatedSessionDataSource = (ReplicatedSessionDatasource) replicatedSessionDataSource;
-    this.mobicentsCluster = this.replicatedSessionDataSource.getMobicentsCluster();
+    this.stateStore = this.replicatedSessionDataSource.getStateStore();
   }
 
   /*
@@ -59,11 +59,11 @@ public class AuthReplicatedSessionDataFactory implements IAppSessionDataFactory<
   @Override
   public IAuthSessionData getAppSessionData(Class<? extends AppSession> clazz, String sessionId) {
     if (clazz.equals(ClientAuthSession.class)) {
-      ClientAuthSessionDataReplicatedImpl data = new ClientAuthSessionDataReplicatedImpl(sessionId, this.mobicentsCluster);
+      ClientAuthSessionDataReplicatedImpl data = new ClientAuthSessionDataReplicatedImpl(sessionId, this.stateStore);
       return data;
     }
     else if (clazz.equals(ServerAuthSession.class)) {
-      ServerAuthSessionDataReplicatedImpl data = new ServerAuthSessionDataReplicatedImpl(sessionId, this.mobicentsCluster);
+      ServerAuthSessionDataReplicatedImpl data = new ServerAuthSessionDataReplicatedImpl(sessionId, this.stateStore);
       return data;
     }
     throw new IllegalArgumentException();
@@ -28,7 +28,7 @@ import org.jdiameter.api.cca.ServerCCASession;
 import org.jdiameter.common.api.app.IAppSessionDataFactory;
 import org.jdiameter.common.api.app.cca.ICCASessionData;
 import org.jdiameter.common.api.data.ISessionDatasource;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.client.cca.ClientCCASessionDataReplicatedImpl;
 import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
 import org.mobicents.diameter.impl.ha.server.cca.ServerCCASessionDataReplicatedImpl;
@@ -41,7 +41,7 @@ import org.mobicents.diameter.impl.ha.server.cca.ServerCCASessionDataReplicatedI
 public class CCAReplicatedSessionDataFactory implements IAppSessionDataFactory<ICCASessionData> {
 
   private ReplicatedSessionDatasource replicatedSessionDataSource;
-  private MobicentsCluster mobicentsCluster;
+  private ReplicatedStateStore stateStore;
 
   /**
    * @param replicatedSessionDataSource
@@ -49,7 +49,7 @@ public class CCAReplicatedSessionDataFactory implements IAppSessionDataFactory<I
   public CCAReplicatedSessionDataFactory(ISessionDatasource replicatedSessionDataSource) { // Is this ok?
     super();
     this.replicatedSessionDataSource = (ReplicatedSessionDatasource) replicatedSessionDataSource;
-    this.mobicentsCluster = this.replicatedSessionDataSource.getMobicentsCluster();
+    this.stateStore = this.replicatedSessionDataSource.getStateStore();
   }
 
   /*
@@ -60,11 +60,11 @@ public class CCAReplicatedSessionDataFactory implements IAppSessionDataFactory<I
   @Override
   public ICCASessionData getAppSessionData(Class<? extends AppSession> clazz, String sessionId) {
     if (clazz.equals(ClientCCASession.class)) {
-      ClientCCASessionDataReplicatedImpl data = new ClientCCASessionDataReplicatedImpl(sessionId, this.mobicentsCluster, this.replicatedSessionDataSource.getContainer());
+      ClientCCASessionDataReplicatedImpl data = new ClientCCASessionDataReplicatedImpl(sessionId, this.stateStore, this.replicatedSessionDataSource.getContainer());
       return data;
     }
     else if (clazz.equals(ServerCCASession.class)) {
-      ServerCCASessionDataReplicatedImpl data = new ServerCCASessionDataReplicatedImpl(sessionId, this.mobicentsCluster);
+      ServerCCASessionDataReplicatedImpl data = new ServerCCASessionDataReplicatedImpl(sessionId, this.stateStore);
       return data;
     }
     throw new IllegalArgumentException();
@@ -28,7 +28,7 @@ import org.jdiameter.api.cxdx.ServerCxDxSession;
 import org.jdiameter.common.api.app.IAppSessionDataFactory;
 import org.jdiameter.common.api.app.cxdx.ICxDxSessionData;
 import org.jdiameter.common.api.data.ISessionDatasource;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.client.cxdx.ClientCxDxSessionDataReplicatedImpl;
 import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
 import org.mobicents.diameter.impl.ha.server.cxdx.ServerCxDxSessionDataReplicatedImpl;
@@ -41,7 +41,7 @@ import org.mobicents.diameter.impl.ha.server.cxdx.ServerCxDxSessionDataReplicate
 public class CxDxReplicatedSessionDataFactory implements IAppSessionDataFactory<ICxDxSessionData> {
 
   private ReplicatedSessionDatasource replicatedSessionDataSource;
-  private MobicentsCluster mobicentsCluster;
+  private ReplicatedStateStore stateStore;
 
   /**
    * @param replicatedSessionDataSource
@@ -49,7 +49,7 @@ public class CxDxReplicatedSessionDataFactory implements IAppSessionDataFactory<
   public CxDxReplicatedSessionDataFactory(ISessionDatasource replicatedSessionDataSource) { // Is this ok?
     super();
     this.replicatedSessionDataSource = (ReplicatedSessionDatasource) replicatedSessionDataSource;
-    this.mobicentsCluster = this.replicatedSessionDataSource.getMobicentsCluster();
+    this.stateStore = this.replicatedSessionDataSource.getStateStore();
   }
 
   /*
@@ -60,11 +60,11 @@ public class CxDxReplicatedSessionDataFactory implements IAppSessionDataFactory<
   @Override
   public ICxDxSessionData getAppSessionData(Class<? extends AppSession> clazz, String sessionId) {
     if (clazz.equals(ClientCxDxSession.class)) {
-      ClientCxDxSessionDataReplicatedImpl data = new ClientCxDxSessionDataReplicatedImpl(sessionId, this.mobicentsCluster, this.replicatedSessionDataSource.getContainer());
+      ClientCxDxSessionDataReplicatedImpl data = new ClientCxDxSessionDataReplicatedImpl(sessionId, this.stateStore, this.replicatedSessionDataSource.getContainer());
       return data;
     }
     else if (clazz.equals(ServerCxDxSession.class)) {
-      ServerCxDxSessionDataReplicatedImpl data = new ServerCxDxSessionDataReplicatedImpl(sessionId, this.mobicentsCluster, this.replicatedSessionDataSource.getContainer());
+      ServerCxDxSessionDataReplicatedImpl data = new ServerCxDxSessionDataReplicatedImpl(sessionId, this.stateStore, this.replicatedSessionDataSource.getContainer());
       return data;
     }
     throw new IllegalArgumentException();
@@ -25,7 +25,6 @@ package org.mobicents.diameter.impl.ha.common.cxdx;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 
-import org.jboss.cache.Fqn;
 import org.jdiameter.api.AvpDataException;
 import org.jdiameter.api.Request;
 import org.jdiameter.client.api.IContainer;
@@ -34,8 +33,10 @@ import org.jdiameter.client.api.parser.IMessageParser;
 import org.jdiameter.client.api.parser.ParseException;
 import org.jdiameter.common.api.app.cxdx.CxDxSessionState;
 import org.jdiameter.common.api.app.cxdx.ICxDxSessionData;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema.FieldType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,15 +53,20 @@ public abstract class CxDxSessionDataReplicatedImpl extends AppSessionDataReplic
   private static final String BUFFER = "BUFFER";
   private static final String TS_TIMERID = "TS_TIMERID";
 
+  private static final SessionDataSchema SCHEMA = AppSessionDataReplicatedImpl.SCHEMA.extend(1)
+      .addEnum(STATE, CxDxSessionState.class)
+      .add(BUFFER, FieldType.BYTES)
+      .add(TS_TIMERID, FieldType.SERIALIZABLE);
+
   private IMessageParser messageParser;
 
   /**
-   * @param nodeFqn
-   * @param mobicentsCluster
+   * @param sessionId
+   * @param stateStore
    * @param iface
    */
-  public CxDxSessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster, IContainer container) {
-    super(nodeFqn, mobicentsCluster);
+  public CxDxSessionDataReplicatedImpl(String sessionId, ReplicatedStateStore stateStore, IContainer container) {
+    super(sessionId, stateStore);
     this.messageParser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
   }
 
@@ -72,7 +78,7 @@ public abstract class CxDxSessionDataReplicatedImpl extends AppSessionDataReplic
   @Override
   public void setCxDxSessionState(CxDxSessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putField(STATE, state);
     }
     else {
       throw new IllegalStateException();
@@ -87,7 +93,7 @@ public abstract class CxDxSessionDataReplicatedImpl extends AppSessionDataReplic
   @Override
   public CxDxSessionState getCxDxSessionState() {
     if (exists()) {
-      return (CxDxSessionState) getNode().get(STATE);
+      return (CxDxSessionState) getField(STATE);
     }
     else {
       throw new IllegalStateException();
@@ -102,7 +108,7 @@ public abstract class CxDxSessionDataReplicatedImpl extends AppSessionDataReplic
   @Override
   public Serializable getTsTimerId() {
     if (exists()) {
-      return (Serializable) getNode().get(TS_TIMERID);
+      return (Serializable) getField(TS_TIMERID);
     }
     else {
       throw new IllegalStateException();
@@ -117,7 +123,7 @@ public abstract class CxDxSessionDataReplicatedImpl extends AppSessionDataReplic
   @Override
   public void setTsTimerId(Serializable tid) {
     if (exists()) {
-      getNode().put(TS_TIMERID, tid);
+      putField(TS_TIMERID, tid);
     }
     else {
       throw new IllegalStateException();
@@ -125,7 +131,7 @@ public abstract class CxDxSessionDataReplicatedImpl extends AppSessionDataReplic
   }
 
   public Request getBuffer() {
-    byte[] data = (byte[]) getNode().get(BUFFER);
+    byte[] data = (byte[]) getField(BUFFER);
     if (data != null) {
       try {
         return (Request) this.messageParser.createMessage(ByteBuffer.wrap(data));
@@ -144,14 +150,20 @@ public abstract class CxDxSessionDataReplicatedImpl extends AppSessionDataReplic
     if (buffer != null) {
       try {
         byte[] data = this.messageParser.encodeMessage((IMessage) buffer).array();
-        getNode().put(BUFFER, data);
+        putField(BUFFER, data);
       }
       catch (ParseException e) {
         logger.error("Unable to encode message to buffer.");
       }
     }
     else {
-      getNode().remove(BUFFER);
+      removeField(BUFFER);
     }
   }
+
+  @Override
+  protected SessionDataSchema getSchema() {
+    return SCHEMA;
+  }
+
 }
@@ -28,7 +28,7 @@ import org.jdiameter.api.gx.ServerGxSession;
 import org.jdiameter.common.api.app.IAppSessionDataFactory;
 import org.jdiameter.common.api.app.gx.IGxSessionData;
 import org.jdiameter.common.api.data.ISessionDatasource;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.client.gx.ClientGxSessionDataReplicatedImpl;
 import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
 import org.mobicents.diameter.impl.ha.server.gx.ServerGxSessionDataReplicatedImpl;
@@ -41,7 +41,7 @@ import org.mobicents.diameter.impl.ha.server.gx.ServerGxSessionDataReplicatedImp
 public class GxReplicatedSessionDataFactory implements IAppSessionDataFactory<IGxSessionData> {
 
   private ReplicatedSessionDatasource replicatedSessionDataSource;
-  private MobicentsCluster mobicentsCluster;
+  private ReplicatedStateStore stateStore;
 
   /**
    * @param replicatedSessionDataSource
@@ -49,7 +49,7 @@ public class GxReplicatedSessionDataFactory implements IAppSessionDataFactory<IG
   public GxReplicatedSessionDataFactory(ISessionDatasource replicatedSessionDataSource) { // Is this ok?
     super();
     this.replicatedSessionDataSource = (ReplicatedSessionDatasource) replicatedSessionDataSource;
-    this.mobicentsCluster = this.replicatedSessionDataSource.getMobicentsCluster();
+    this.stateStore = this.replicatedSessionDataSource.getStateStore();
   }
 
   /*
@@ -60,11 +60,11 @@ public class GxReplicatedSessionDataFactory implements IAppSessionDataFactory<IG
   @Override
   public IGxSessionData getAppSessionData(Class<? extends AppSession> clazz, String sessionId) {
     if (clazz.equals(ClientGxSession.class)) {
-      ClientGxSessionDataReplicatedImpl data = new ClientGxSessionDataReplicatedImpl(sessionId, this.mobicentsCluster, this.replicatedSessionDataSource.getContainer());
+      ClientGxSessionDataReplicatedImpl data = new ClientGxSessionDataReplicatedImpl(sessionId, this.stateStore, this.replicatedSessionDataSource.getContainer());
       return data;
     }
     else if (clazz.equals(ServerGxSession.class)) {
-      ServerGxSessionDataReplicatedImpl data = new ServerGxSessionDataReplicatedImpl(sessionId, this.mobicentsCluster);
+      ServerGxSessionDataReplicatedImpl data = new ServerGxSessionDataReplicatedImpl(sessionId, this.stateStore);
       return data;
     }
     throw new IllegalArgumentException();
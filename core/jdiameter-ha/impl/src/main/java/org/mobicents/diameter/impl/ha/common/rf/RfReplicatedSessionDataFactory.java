@@ -28,7 +28,7 @@ import org.jdiameter.api.rf.ServerRfSession;
 import org.jdiameter.common.api.app.IAppSessionDataFactory;
 import org.jdiameter.common.api.app.rf.IRfSessionData;
 import org.jdiameter.common.api.data.ISessionDatasource;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.client.rf.ClientRfSessionDataReplicatedImpl;
 import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
 import org.mobicents.diameter.impl.ha.server.rf.ServerRfSessionDataReplicatedImpl;
@@ -41,7 +41,7 @@ import org.mobicents.diameter.impl.ha.server.rf.ServerRfSessionDataReplicatedImp
 public class RfReplicatedSessionDataFactory implements IAppSessionDataFactory<IRfSessionData> {
 
   private ReplicatedSessionDatasource replicatedSessionDataSource;
-  private MobicentsCluster mobicentsCluster;
+  private ReplicatedStateStore stateStore;
 
   /**
    * @param replicatedSessionDataSource
@@ -49,7 +49,7 @@ public class RfReplicatedSessionDataFactory implements IAppSessionDataFactory<IR
   public RfReplicatedSessionDataFactory(ISessionDatasource replicatedSessionDataSource) { // Is this ok?
     super();
     this.replicatedSessionDataSource = (ReplicatedSessionDatasource) replicatedSessionDataSource;
-    this.mobicentsCluster = this.replicatedSessionDataSource.getMobicentsCluster();
+    this.stateStore = this.replicatedSessionDataSource.getStateStore();
   }
 
   /*
@@ -60,11 +60,11 @@ public class RfReplicatedSessionDataFactory implements IAppSessionDataFactory<IR
   @Override
   public IRfSessionData getAppSessionData(Class<? extends AppSession> clazz, String sessionId) {
     if (clazz.equals(ClientRfSession.class)) {
-      ClientRfSessionDataReplicatedImpl data = new ClientRfSessionDataReplicatedImpl(sessionId, this.mobicentsCluster, this.replicatedSessionDataSource.getContainer());
+      ClientRfSessionDataReplicatedImpl data = new ClientRfSessionDataReplicatedImpl(sessionId, this.stateStore, this.replicatedSessionDataSource.getContainer());
       return data;
     }
     else if (clazz.equals(ServerRfSession.class)) {
-      ServerRfSessionDataReplicatedImpl data = new ServerRfSessionDataReplicatedImpl(sessionId, this.mobicentsCluster);
+      ServerRfSessionDataReplicatedImpl data = new ServerRfSessionDataReplicatedImpl(sessionId, this.stateStore);
       return data;
     }
     throw new IllegalArgumentException();
@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.diameter.impl.ha.common.s6a;
+
+import org.jdiameter.api.app.AppSession;
+import org.jdiameter.api.s6a.ClientS6aSession;
+import org.jdiameter.api.s6a.ServerS6aSession;
+import org.jdiameter.common.api.app.IAppSessionDataFactory;
+import org.jdiameter.common.api.app.s6a.IS6aSessionData;
+import org.jdiameter.common.api.data.ISessionDatasource;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
+import org.mobicents.diameter.impl.ha.client.s6a.ClientS6aSessionDataReplicatedImpl;
+import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
+import org.mobicents.diameter.impl.ha.server.s6a.ServerS6aSessionDataReplicatedImpl;
+
+/**
+ */
+public class S6aReplicatedSessionDataFactory implements IAppSessionDataFactory<IS6aSessionData> {
+
+  private ReplicatedSessionDatasource replicatedSessionDataSource;
+  private ReplicatedStateStore stateStore;
+
+  /**
+   * @param replicatedSessionDataSource
+   */
+  public S6aReplicatedSessionDataFactory(ISessionDatasource replicatedSessionDataSource) { // Is this ok?
+    super();
+    this.replicatedSessionDataSource = (ReplicatedSessionDatasource) replicatedSessionDataSource;
+    this.stateStore = this.replicatedSessionDataSource.getStateStore();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.jdiameter.common.api.app.IAppSessionDataFactory#getAppSessionData(java.lang.Class, java.lang.String)
+   */
+  @Override
+  public IS6aSessionData getAppSessionData(Class<? extends AppSession> clazz, String sessionId) {
+    if (clazz.equals(ClientS6aSession.class)) {
+      ClientS6aSessionDataReplicatedImpl data = new ClientS6aSessionDataReplicatedImpl(sessionId, this.stateStore, this.replicatedSessionDataSource.getContainer());
+      return data;
+    }
+    else if (clazz.equals(ServerS6aSession.class)) {
+      ServerS6aSessionDataReplicatedImpl data = new ServerS6aSessionDataReplicatedImpl(sessionId, this.stateStore, this.replicatedSessionDataSource.getContainer());
+      return data;
+    }
+    throw new IllegalArgumentException();
+  }
+
+}
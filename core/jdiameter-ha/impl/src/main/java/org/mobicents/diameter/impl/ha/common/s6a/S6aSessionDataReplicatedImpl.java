@@ -0,0 +1,166 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.diameter.impl.ha.common.s6a;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+import org.jdiameter.api.AvpDataException;
+import org.jdiameter.api.Request;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.client.api.parser.ParseException;
+import org.jdiameter.common.api.app.s6a.IS6aSessionData;
+import org.jdiameter.common.api.app.s6a.S6aSessionState;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
+import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema.FieldType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ */
+public abstract class S6aSessionDataReplicatedImpl extends AppSessionDataReplicatedImpl implements IS6aSessionData {
+
+  private static final Logger logger = LoggerFactory.getLogger(S6aSessionDataReplicatedImpl.class);
+
+  private static final String STATE = "STATE";
+  private static final String BUFFER = "BUFFER";
+  private static final String TS_TIMERID = "TS_TIMERID";
+
+  private static final SessionDataSchema SCHEMA = AppSessionDataReplicatedImpl.SCHEMA.extend(1)
+      .addEnum(STATE, S6aSessionState.class)
+      .add(BUFFER, FieldType.BYTES)
+      .add(TS_TIMERID, FieldType.SERIALIZABLE);
+
+  private IMessageParser messageParser;
+
+  /**
+   * @param sessionId
+   * @param stateStore
+   * @param iface
+   */
+  public S6aSessionDataReplicatedImpl(String sessionId, ReplicatedStateStore stateStore, IContainer container) {
+    super(sessionId, stateStore);
+    this.messageParser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.jdiameter.common.api.app.s6a.IS6aSessionData#setS6aSessionState(org.jdiameter.common.api.app.s6a.S6aSessionState)
+   */
+  @Override
+  public void setS6aSessionState(S6aSessionState state) {
+    if (exists()) {
+      putField(STATE, state);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.jdiameter.common.api.app.s6a.IS6aSessionData#getS6aSessionState()
+   */
+  @Override
+  public S6aSessionState getS6aSessionState() {
+    if (exists()) {
+      return (S6aSessionState) getField(STATE);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.jdiameter.common.api.app.s6a.IS6aSessionData#getTsTimerId()
+   */
+  @Override
+  public Serializable getTsTimerId() {
+    if (exists()) {
+      return (Serializable) getField(TS_TIMERID);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.jdiameter.common.api.app.s6a.IS6aSessionData#setTsTimerId(java.io.Serializable)
+   */
+  @Override
+  public void setTsTimerId(Serializable tid) {
+    if (exists()) {
+      putField(TS_TIMERID, tid);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  public Request getBuffer() {
+    byte[] data = (byte[]) getField(BUFFER);
+    if (data != null) {
+      try {
+        return (Request) this.messageParser.createMessage(ByteBuffer.wrap(data));
+      }
+      catch (AvpDataException e) {
+        logger.error("Unable to recreate message from buffer.");
+        return null;
+      }
+    }
+    else {
+      return null;
+    }
+  }
+
+  public void setBuffer(Request buffer) {
+    if (buffer != null) {
+      try {
+        byte[] data = this.messageParser.encodeMessage((IMessage) buffer).array();
+        putField(BUFFER, data);
+      }
+      catch (ParseException e) {
+        logger.error("Unable to encode message to buffer.");
+      }
+    }
+    else {
+      removeField(BUFFER);
+    }
+  }
+
+  @Override
+  protected SessionDataSchema getSchema() {
+    return SCHEMA;
+  }
+
+}
@@ -22,12 +22,12 @@
 
 package org.mobicents.diameter.impl.ha.data;
 
-import java.util.HashMap;
+import static org.jdiameter.client.impl.helpers.Parameters.ClusterBackendClass;
 
-import javax.transaction.TransactionManager;
+import java.util.HashMap;
 
-import org.jboss.cache.Fqn;
 import org.jdiameter.api.BaseSession;
+import org.jdiameter.api.Configuration;
 import org.jdiameter.api.IllegalDiameterStateException;
 import org.jdiameter.api.NetworkReqListener;
 import org.jdiameter.api.app.AppSession;
@@ -44,14 +44,14 @@ import org.jdiameter.common.api.app.gx.IGxSessionData;
 import org.jdiameter.common.api.app.rx.IRxSessionData;
 import org.jdiameter.common.api.app.rf.IRfSessionData;
 import org.jdiameter.common.api.app.ro.IRoSessionData;
+import org.jdiameter.common.api.app.s6a.IS6aSessionData;
 import org.jdiameter.common.api.app.sh.IShSessionData;
 import org.jdiameter.common.api.data.ISessionDatasource;
 import org.jdiameter.common.impl.data.LocalDataSource;
-import org.mobicents.cache.MobicentsCache;
-import org.mobicents.cluster.DataRemovalListener;
-import org.mobicents.cluster.DefaultMobicentsCluster;
-import org.mobicents.cluster.MobicentsCluster;
-import org.mobicents.cluster.election.DefaultClusterElector;
+import org.mobicents.diameter.api.ha.cluster.ClusterBackend;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
+import org.mobicents.diameter.api.ha.cluster.StateRemovalListener;
+import org.mobicents.diameter.impl.ha.cluster.jbc.JBossCacheClusterBackend;
 import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
 import org.mobicents.diameter.impl.ha.common.acc.AccReplicatedSessionDataFactory;
 import org.mobicents.diameter.impl.ha.common.auth.AuthReplicatedSessionDataFactory;
@@ -61,57 +61,48 @@ import org.mobicents.diameter.impl.ha.common.gx.GxReplicatedSessionDataFactory;
 import org.mobicents.diameter.impl.ha.common.rx.RxReplicatedSessionDataFactory;
 import org.mobicents.diameter.impl.ha.common.rf.RfReplicatedSessionDataFactory;
 import org.mobicents.diameter.impl.ha.common.ro.RoReplicatedSessionDataFactory;
+import org.mobicents.diameter.impl.ha.common.s6a.S6aReplicatedSessionDataFactory;
 import org.mobicents.diameter.impl.ha.common.sh.ShReplicatedSessionDataFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Replicated datasource implementation for {@link ISessionDatasource}
+ * Replicated datasource implementation for {@link ISessionDatasource}. Session
+ * state is kept by the {@link ClusterBackend} named by the ClusterBackendClass
+ * parameter.
  * 
  * @author <a href="mailto:brainslog@gmail.com"> Alexandre Mendonca </a>
  * @author <a href="mailto:baranowb@gmail.com"> Bartosz Baranowski </a>
  */
-public class ReplicatedSessionDatasource implements ISessionDatasource, DataRemovalListener {
+public class ReplicatedSessionDatasource implements ISessionDatasource, StateRemovalListener {
 
   private static final Logger logger = LoggerFactory.getLogger(ReplicatedSessionDatasource.class);
-  public static final String CLUSTER_DS_DEFAULT_FILE = "jdiameter-jbc.xml";
+  public static final String CLUSTER_DS_DEFAULT_FILE = JBossCacheClusterBackend.CLUSTER_DS_DEFAULT_FILE;
   private IContainer container;
   private ISessionDatasource localDataSource;
 
-  private DefaultMobicentsCluster mobicentsCluster;
+  private ClusterBackend clusterBackend;
+  private ReplicatedStateStore stateStore;
   private boolean localMode;
 
   // provided by impl, no way to change that, no conf! :)
   protected HashMap<Class<? extends IAppSessionData>, IAppSessionDataFactory<? extends IAppSessionData>> appSessionDataFactories = new HashMap<Class<? extends IAppSessionData>, IAppSessionDataFactory<? extends IAppSessionData>>();
 
-  // Constants
-  // ----------------------------------------------------------------
-  public final static String SESSIONS = "/diameter/appsessions";
-  public final static Fqn SESSIONS_FQN = Fqn.fromString(SESSIONS);
-
   public ReplicatedSessionDatasource(IContainer container) {
-    this(container, new LocalDataSource(), ReplicatedSessionDatasource.class.getClassLoader().getResource(CLUSTER_DS_DEFAULT_FILE) == null ? "config/" + CLUSTER_DS_DEFAULT_FILE : CLUSTER_DS_DEFAULT_FILE);
+    this(container, new LocalDataSource(), createClusterBackend(container.getConfiguration()));
   }
 
   public ReplicatedSessionDatasource(IContainer container, ISessionDatasource localDataSource, String cacheConfigFilename) {
+    this(container, localDataSource, new JBossCacheClusterBackend(cacheConfigFilename));
+  }
+
+  public ReplicatedSessionDatasource(IContainer container, ISessionDatasource localDataSource, ClusterBackend clusterBackend) {
     super();
     this.localDataSource = localDataSource;
 
-    MobicentsCache mcCache = new MobicentsCache(cacheConfigFilename);
-    TransactionManager txMgr = null;
-    try {
-      Class<?> txMgrClass = Class.forName(mcCache.getJBossCache().getConfiguration().getTransactionManagerLookupClass());
-      Object txMgrLookup = txMgrClass.getConstructor(new Class[]{}).newInstance(new Object[]{});
-      txMgr = (TransactionManager) txMgrClass.getMethod("getTransactionManager", new Class[]{}).invoke(txMgrLookup, new Object[]{});
-    }
-    catch (Exception e) {
-      logger.debug("Could not fetch TxMgr. Not using one.", e);
-      // let's not have Tx Manager than...
-    }
-
-    this.mobicentsCluster = new DefaultMobicentsCluster(mcCache, txMgr, new DefaultClusterElector());
-    this.mobicentsCluster.addDataRemovalListener(this); // register, so we know WHEN some other node removes session.
-    this.mobicentsCluster.startCluster();
+    this.clusterBackend = clusterBackend;
+    this.stateStore = clusterBackend.getStateStore();
+    this.stateStore.setRemovalListener(this); // register, so we know WHEN some other node removes session.
 
     this.container = container;
     // this is coded, its tied to specific impl of SessionDatasource
@@ -124,6 +115,7 @@ public class ReplicatedSessionDatasource implements ISessionDatasource, DataRemo
     appSessionDataFactories.put(ICxDxSessionData.class, new CxDxReplicatedSessionDataFactory(this));
     appSessionDataFactories.put(IGxSessionData.class, new GxReplicatedSessionDataFactory(this));
     appSessionDataFactories.put(IRxSessionData.class, new RxReplicatedSessionDataFactory(this));
+    appSessionDataFactories.put(IS6aSessionData.class, new S6aReplicatedSessionDataFactory(this));
   }
 
   @Override
@@ -226,12 +218,12 @@ public class ReplicatedSessionDatasource implements ISessionDatasource, DataRemo
   }
 
   public void start() {
-    mobicentsCluster.getMobicentsCache().startCache();
-    localMode = mobicentsCluster.getMobicentsCache().isLocalMode();
+    clusterBackend.start();
+    localMode = clusterBackend.isLocalMode();
   }
 
   public void stop() {
-    mobicentsCluster.getMobicentsCache().stopCache();
+    clusterBackend.stop();
   }
 
   /*
@@ -255,17 +247,36 @@ public class ReplicatedSessionDatasource implements ISessionDatasource, DataRemo
 
   // remove lst;
 
-  public MobicentsCluster getMobicentsCluster() {
-    return this.mobicentsCluster;
+  public ClusterBackend getClusterBackend() {
+    return this.clusterBackend;
   }
 
-  public void dataRemoved(Fqn sessionFqn) {
-    String sessionId = (String) sessionFqn.getLastElement();
+  public ReplicatedStateStore getStateStore() {
+    return this.stateStore;
+  }
+
+  public void stateRemoved(String sessionId) {
     this.localDataSource.removeSession(sessionId);
   }
 
-  public Fqn getBaseFqn() {
-    return SESSIONS_FQN;
+  private static ClusterBackend createClusterBackend(Configuration config) {
+    String backendClass = (String) ClusterBackendClass.defValue();
+    if (config != null) {
+      backendClass = config.getStringValue(ClusterBackendClass.ordinal(), backendClass);
+    }
+    try {
+      Class<?> clazz = Class.forName(backendClass);
+      try {
+        // backends with settings of their own read them from configuration
+        return (ClusterBackend) clazz.getConstructor(Configuration.class).newInstance(config);
+      }
+      catch (NoSuchMethodException e) {
+        return (ClusterBackend) clazz.newInstance();
+      }
+    }
+    catch (Exception e) {
+      throw new RuntimeException("Unable to create cluster backend from ClusterBackendClass config value:" + backendClass, e);
+    }
   }
 
   /**
@@ -273,7 +284,7 @@ public class ReplicatedSessionDatasource implements ISessionDatasource, DataRemo
    * @return
    */
   private boolean existReplicated(String sessionId) {
-    if (!this.localMode && this.mobicentsCluster.getMobicentsCache().getJBossCache().getNode(Fqn.fromRelativeElements(SESSIONS_FQN, sessionId)) != null) {
+    if (!this.localMode && this.stateStore.exists(sessionId)) {
       return true;
     }
     return false;
@@ -285,7 +296,7 @@ public class ReplicatedSessionDatasource implements ISessionDatasource, DataRemo
   private void makeLocal(String sessionId) {
     try {
       // this is APP session, always
-      Class<? extends AppSession> appSessionInterfaceClass = AppSessionDataReplicatedImpl.getAppSessionIface(this.mobicentsCluster.getMobicentsCache(), sessionId);
+      Class<? extends AppSession> appSessionInterfaceClass = AppSessionDataReplicatedImpl.getAppSessionIface(this.stateStore, sessionId);
       // get factory;
       // FIXME: make it a field?
       IAppSessionFactory fct = ((ISessionFactory) this.container.getSessionFactory()).getAppSessionFactory(appSessionInterfaceClass);
@@ -24,13 +24,13 @@ package org.mobicents.diameter.impl.ha.server.acc;
 
 import java.io.Serializable;
 
-import org.jboss.cache.Fqn;
 import org.jdiameter.api.acc.ServerAccSession;
 import org.jdiameter.common.api.app.acc.ServerAccSessionState;
 import org.jdiameter.server.impl.app.acc.IServerAccSessionData;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
-import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema.FieldType;
 
 /**
  * 
@@ -44,13 +44,19 @@ public class ServerAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   private static final String TS_TIMEOUT = "TS_TIMEOUT";
   private static final String TS_TIMERID = "TS_TIMERID";
 
+  private static final SessionDataSchema SCHEMA = AppSessionDataReplicatedImpl.SCHEMA.extend(1)
+      .add(STATELESS, FieldType.BOOLEAN)
+      .addEnum(STATE, ServerAccSessionState.class)
+      .add(TS_TIMEOUT, FieldType.LONG)
+      .add(TS_TIMERID, FieldType.SERIALIZABLE);
+
   /**
-   * @param nodeFqn
-   * @param mobicentsCluster
+   * @param sessionId
+   * @param stateStore
    * @param iface
    */
-  public ServerAccSessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster) {
-    super(nodeFqn, mobicentsCluster);
+  public ServerAccSessionDataReplicatedImpl(String sessionId, ReplicatedStateStore stateStore) {
+    super(sessionId, stateStore);
 
     if (super.create()) {
       setAppSessionIface(this, ServerAccSession.class);
@@ -58,15 +64,6 @@ public class ServerAccSessionDataReplicatedImpl extends AppSessionDataReplicated
     }
   }
 
-  /**
-   * @param sessionId
-   * @param mobicentsCluster
-   * @param iface
-   */
-  public ServerAccSessionDataReplicatedImpl(String sessionId, MobicentsCluster mobicentsCluster) {
-    this(Fqn.fromRelativeElements(ReplicatedSessionDatasource.SESSIONS_FQN, sessionId), mobicentsCluster);
-  }
-
   /*
    * (non-Javadoc)
    * 
@@ -75,7 +72,7 @@ public class ServerAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public boolean isStateless() {
     if (exists()) {
-      return toPrimitive((Boolean) getNode().get(STATELESS), true);
+      return toPrimitive((Boolean) getField(STATELESS), true);
     }
     else {
       throw new IllegalStateException();
@@ -90,7 +87,7 @@ public class ServerAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setStateless(boolean stateless) {
     if (exists()) {
-      getNode().put(STATELESS, stateless);
+      putField(STATELESS, stateless);
     }
     else {
       throw new IllegalStateException();
@@ -105,7 +102,7 @@ public class ServerAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public ServerAccSessionState getServerAccSessionState() {
     if (exists()) {
-      return (ServerAccSessionState) getNode().get(STATE);
+      return (ServerAccSessionState) getField(STATE);
     }
     else {
       throw new IllegalStateException();
@@ -121,7 +118,7 @@ public class ServerAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setServerAccSessionState(ServerAccSessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putField(STATE, state);
     }
     else {
       throw new IllegalStateException();
@@ -131,7 +128,7 @@ public class ServerAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setTsTimeout(long value) {
     if (exists()) {
-      getNode().put(TS_TIMEOUT, value);
+      putField(TS_TIMEOUT, value);
     }
     else {
       throw new IllegalStateException();
@@ -141,7 +138,7 @@ public class ServerAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public long getTsTimeout() {
     if (exists()) {
-      return toPrimitive((Long) getNode().get(TS_TIMEOUT));
+      return toPrimitive((Long) getField(TS_TIMEOUT));
     }
     else {
       throw new IllegalStateException();
@@ -151,7 +148,7 @@ public class ServerAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setTsTimerId(Serializable value) {
     if (exists()) {
-      getNode().put(TS_TIMERID, value);
+      putField(TS_TIMERID, value);
     }
     else {
       throw new IllegalStateException();
@@ -161,11 +158,16 @@ public class ServerAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public Serializable getTsTimerId() {
     if (exists()) {
-      return (Serializable) getNode().get(TS_TIMERID);
+      return (Serializable) getField(TS_TIMERID);
     }
     else {
       throw new IllegalStateException();
     }
   }
 
+  @Override
+  protected SessionDataSchema getSchema() {
+    return SCHEMA;
+  }
+
 }
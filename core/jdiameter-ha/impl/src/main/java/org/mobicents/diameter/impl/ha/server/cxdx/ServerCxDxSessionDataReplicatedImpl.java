@@ -22,14 +22,12 @@
 
 package org.mobicents.diameter.impl.ha.server.cxdx;
 
-import org.jboss.cache.Fqn;
 import org.jdiameter.api.cxdx.ServerCxDxSession;
 import org.jdiameter.client.api.IContainer;
 import org.jdiameter.common.api.app.cxdx.CxDxSessionState;
 import org.jdiameter.server.impl.app.cxdx.IServerCxDxSessionData;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.common.cxdx.CxDxSessionDataReplicatedImpl;
-import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
 
 /**
  * 
@@ -39,12 +37,12 @@ import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
 public class ServerCxDxSessionDataReplicatedImpl extends CxDxSessionDataReplicatedImpl implements IServerCxDxSessionData {
 
   /**
-   * @param nodeFqn
-   * @param mobicentsCluster
+   * @param sessionId
+   * @param stateStore
    * @param iface
    */
-  public ServerCxDxSessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster, IContainer container) {
-    super(nodeFqn, mobicentsCluster, container);
+  public ServerCxDxSessionDataReplicatedImpl(String sessionId, ReplicatedStateStore stateStore, IContainer container) {
+    super(sessionId, stateStore, container);
 
     if (super.create()) {
       setAppSessionIface(this, ServerCxDxSession.class);
@@ -52,13 +50,4 @@ public class ServerCxDxSessionDataReplicatedImpl extends CxDxSessionDataReplicat
     }
   }
 
-  /**
-   * @param sessionId
-   * @param mobicentsCluster
-   * @param iface
-   */
-  public ServerCxDxSessionDataReplicatedImpl(String sessionId, MobicentsCluster mobicentsCluster, IContainer container) {
-    this(Fqn.fromRelativeElements(ReplicatedSessionDatasource.SESSIONS_FQN, sessionId), mobicentsCluster, container);
-  }
-
 }
@@ -24,13 +24,13 @@ package org.mobicents.diameter.impl.ha.server.rf;
 
 import java.io.Serializable;
 
-import org.jboss.cache.Fqn;
 import org.jdiameter.api.rf.ServerRfSession;
 import org.jdiameter.common.api.app.rf.ServerRfSessionState;
 import org.jdiameter.server.impl.app.rf.IServerRfSessionData;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
-import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema.FieldType;
 
 /**
  * 
@@ -44,13 +44,19 @@ public class ServerRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   private static final String STATE = "STATE";
   private static final String TS_TIMEOUT = "TS_TIMEOUT";
 
+  private static final SessionDataSchema SCHEMA = AppSessionDataReplicatedImpl.SCHEMA.extend(1)
+      .add(TS_TIMERID, FieldType.SERIALIZABLE)
+      .add(STATELESS, FieldType.BOOLEAN)
+      .addEnum(STATE, ServerRfSessionState.class)
+      .add(TS_TIMEOUT, FieldType.LONG);
+
   /**
-   * @param nodeFqn
-   * @param mobicentsCluster
+   * @param sessionId
+   * @param stateStore
    * @param iface
    */
-  public ServerRfSessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster) {
-    super(nodeFqn, mobicentsCluster);
+  public ServerRfSessionDataReplicatedImpl(String sessionId, ReplicatedStateStore stateStore) {
+    super(sessionId, stateStore);
 
     if (super.create()) {
       setAppSessionIface(this, ServerRfSession.class);
@@ -58,15 +64,6 @@ public class ServerRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
     }
   }
 
-  /**
-   * @param sessionId
-   * @param mobicentsCluster
-   * @param iface
-   */
-  public ServerRfSessionDataReplicatedImpl(String sessionId, MobicentsCluster mobicentsCluster) {
-    this(Fqn.fromRelativeElements(ReplicatedSessionDatasource.SESSIONS_FQN, sessionId), mobicentsCluster);
-  }
-
   /*
    * (non-Javadoc)
    * 
@@ -75,7 +72,7 @@ public class ServerRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public boolean isStateless() {
     if (exists()) {
-      return toPrimitive((Boolean) getNode().get(STATELESS), true);
+      return toPrimitive((Boolean) getField(STATELESS), true);
     }
     else {
       throw new IllegalStateException();
@@ -90,7 +87,7 @@ public class ServerRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public void setStateless(boolean stateless) {
     if (exists()) {
-      getNode().put(STATELESS, stateless);
+      putField(STATELESS, stateless);
     }
     else {
       throw new IllegalStateException();
@@ -105,7 +102,7 @@ public class ServerRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public ServerRfSessionState getServerRfSessionState() {
     if (exists()) {
-      return (ServerRfSessionState) getNode().get(STATE);
+      return (ServerRfSessionState) getField(STATE);
     }
     else {
       throw new IllegalStateException();
@@ -121,7 +118,7 @@ public class ServerRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public void setServerRfSessionState(ServerRfSessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putField(STATE, state);
     }
     else {
       throw new IllegalStateException();
@@ -136,7 +133,7 @@ public class ServerRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public void setTsTimerId(Serializable tccTimerId) {
     if (exists()) {
-      getNode().put(TS_TIMERID, tccTimerId);
+      putField(TS_TIMERID, tccTimerId);
     }
     else {
       throw new IllegalStateException();
@@ -151,7 +148,7 @@ public class ServerRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public Serializable getTsTimerId() {
     if (exists()) {
-      return (Serializable) getNode().get(TS_TIMERID);
+      return (Serializable) getField(TS_TIMERID);
     }
     else {
       throw new IllegalStateException();
@@ -166,7 +163,7 @@ public class ServerRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public long getTsTimeout() {
     if (exists()) {
-      return toPrimitive((Long) getNode().get(TS_TIMEOUT));
+      return toPrimitive((Long) getField(TS_TIMEOUT));
     }
     else {
       throw new IllegalStateException();
@@ -181,11 +178,16 @@ public class ServerRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public void setTsTimeout(long l) {
     if (exists()) {
-      getNode().put(TS_TIMEOUT, l);
+      putField(TS_TIMEOUT, l);
     }
     else {
       throw new IllegalStateException();
     }
   }
 
+  @Override
+  protected SessionDataSchema getSchema() {
+    return SCHEMA;
+  }
+
 }
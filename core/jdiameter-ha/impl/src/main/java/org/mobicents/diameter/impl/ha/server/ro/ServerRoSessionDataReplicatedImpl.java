@@ -24,13 +24,13 @@ package org.mobicents.diameter.impl.ha.server.ro;
 
 import java.io.Serializable;
 
-import org.jboss.cache.Fqn;
 import org.jdiameter.api.ro.ServerRoSession;
 import org.jdiameter.common.api.app.ro.ServerRoSessionState;
 import org.jdiameter.server.impl.app.ro.IServerRoSessionData;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
-import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema.FieldType;
 
 /**
  * 
@@ -43,13 +43,18 @@ public class ServerRoSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   private static final String STATELESS = "STATELESS";
   private static final String STATE = "STATE";
 
+  private static final SessionDataSchema SCHEMA = AppSessionDataReplicatedImpl.SCHEMA.extend(1)
+      .add(TCCID, FieldType.SERIALIZABLE)
+      .add(STATELESS, FieldType.BOOLEAN)
+      .addEnum(STATE, ServerRoSessionState.class);
+
   /**
-   * @param nodeFqn
-   * @param mobicentsCluster
+   * @param sessionId
+   * @param stateStore
    * @param iface
    */
-  public ServerRoSessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster) {
-    super(nodeFqn, mobicentsCluster);
+  public ServerRoSessionDataReplicatedImpl(String sessionId, ReplicatedStateStore stateStore) {
+    super(sessionId, stateStore);
 
     if (super.create()) {
       setAppSessionIface(this, ServerRoSession.class);
@@ -57,15 +62,6 @@ public class ServerRoSessionDataReplicatedImpl extends AppSessionDataReplicatedI
     }
   }
 
-  /**
-   * @param sessionId
-   * @param mobicentsCluster
-   * @param iface
-   */
-  public ServerRoSessionDataReplicatedImpl(String sessionId, MobicentsCluster mobicentsCluster) {
-    this(Fqn.fromRelativeElements(ReplicatedSessionDatasource.SESSIONS_FQN, sessionId), mobicentsCluster);
-  }
-
   /*
    * (non-Javadoc)
    * 
@@ -74,7 +70,7 @@ public class ServerRoSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public boolean isStateless() {
     if (exists()) {
-      return toPrimitive((Boolean) getNode().get(STATELESS), true);
+      return toPrimitive((Boolean) getField(STATELESS), true);
     }
     else {
       throw new IllegalStateException();
@@ -89,7 +85,7 @@ public class ServerRoSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public void setStateless(boolean stateless) {
     if (exists()) {
-      getNode().put(STATELESS, stateless);
+      putField(STATELESS, stateless);
     }
     else {
       throw new IllegalStateException();
@@ -104,7 +100,7 @@ public class ServerRoSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public ServerRoSessionState getServerRoSessionState() {
     if (exists()) {
-      return (ServerRoSessionState) getNode().get(STATE);
+      return (ServerRoSessionState) getField(STATE);
     }
     else {
       throw new IllegalStateException();
@@ -120,7 +116,7 @@ public class ServerRoSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public void setServerRoSessionState(ServerRoSessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putField(STATE, state);
     }
     else {
       throw new IllegalStateException();
@@ -135,7 +131,7 @@ public class ServerRoSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public void setTccTimerId(Serializable tccTimerId) {
     if (exists()) {
-      getNode().put(TCCID, tccTimerId);
+      putField(TCCID, tccTimerId);
     }
     else {
       throw new IllegalStateException();
@@ -150,11 +146,16 @@ public class ServerRoSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public Serializable getTccTimerId() {
     if (exists()) {
-      return (Serializable) getNode().get(TCCID);
+      return (Serializable) getField(TCCID);
     }
     else {
       throw new IllegalStateException();
     }
   }
 
+  @Override
+  protected SessionDataSchema getSchema() {
+    return SCHEMA;
+  }
+
 }
@@ -22,13 +22,13 @@
 
 package org.mobicents.diameter.impl.ha.server.rx;
 
-import org.jboss.cache.Fqn;
 import org.jdiameter.api.rx.ServerRxSession;
 import org.jdiameter.common.api.app.rx.ServerRxSessionState;
 import org.jdiameter.server.impl.app.rx.IServerRxSessionData;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
 import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
-import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema.FieldType;
 
 /**
  * 
@@ -40,13 +40,17 @@ public class ServerRxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
     private static final String STATELESS = "STATELESS";
     private static final String STATE = "STATE";
 
+    private static final SessionDataSchema SCHEMA = AppSessionDataReplicatedImpl.SCHEMA.extend(1)
+            .add(STATELESS, FieldType.BOOLEAN)
+            .addEnum(STATE, ServerRxSessionState.class);
+
     /**
-     * @param nodeFqn
-     * @param mobicentsCluster
+     * @param sessionId
+     * @param stateStore
      * @param iface
      */
-    public ServerRxSessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster) {
-        super(nodeFqn, mobicentsCluster);
+    public ServerRxSessionDataReplicatedImpl(String sessionId, ReplicatedStateStore stateStore) {
+        super(sessionId, stateStore);
 
         if (super.create()) {
             setAppSessionIface(this, ServerRxSession.class);
@@ -54,15 +58,6 @@ public class ServerRxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
         }
     }
 
-    /**
-     * @param sessionId
-     * @param mobicentsCluster
-     * @param iface
-     */
-    public ServerRxSessionDataReplicatedImpl(String sessionId, MobicentsCluster mobicentsCluster) {
-        this(Fqn.fromRelativeElements(ReplicatedSessionDatasource.SESSIONS_FQN, sessionId), mobicentsCluster);
-    }
-
     /*
      * (non-Javadoc)
      * 
@@ -71,7 +66,7 @@ public class ServerRxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
     @Override
     public boolean isStateless() {
         if (exists()) {
-            return toPrimitive((Boolean) getNode().get(STATELESS), true);
+            return toPrimitive((Boolean) getField(STATELESS), true);
         } else {
             throw new IllegalStateException();
         }
@@ -85,7 +80,7 @@ public class ServerRxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
     @Override
     public void setStateless(boolean stateless) {
         if (exists()) {
-            getNode().put(STATELESS, stateless);
+            putField(STATELESS, stateless);
         } else {
             throw new IllegalStateException();
         }
@@ -99,7 +94,7 @@ public class ServerRxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
     @Override
     public ServerRxSessionState getServerRxSessionState() {
         if (exists()) {
-            return (ServerRxSessionState) getNode().get(STATE);
+            return (ServerRxSessionState) getField(STATE);
         } else {
             throw new IllegalStateException();
         }
@@ -115,10 +110,16 @@ public class ServerRxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
     public void setServerRxSessionState(ServerRxSessionState state) {
 
         if (exists()) {
-            getNode().put(STATE, state);
+            putField(STATE, state);
         } else {
             throw new IllegalStateException();
         }
 
     }
+
+    @Override
+    protected SessionDataSchema getSchema() {
+        return SCHEMA;
+    }
+
 }
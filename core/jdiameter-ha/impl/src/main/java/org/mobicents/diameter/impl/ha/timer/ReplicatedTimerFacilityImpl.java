@@ -29,16 +29,15 @@ import org.jdiameter.client.api.IContainer;
 import org.jdiameter.common.api.data.ISessionDatasource;
 import org.jdiameter.common.api.timer.ITimerFacility;
 import org.jdiameter.common.impl.app.AppSessionImpl;
-import org.mobicents.cluster.MobicentsCluster;
+import org.mobicents.diameter.api.ha.cluster.FailoverTimerScheduler;
+import org.mobicents.diameter.api.ha.cluster.FailoverTimerScheduler.TimerHandler;
 import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
-import org.mobicents.timers.FaultTolerantScheduler;
-import org.mobicents.timers.TimerTask;
-import org.mobicents.timers.TimerTaskData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Replicated implementation of {@link ITimerFacility}
+ * Replicated implementation of {@link ITimerFacility}, timers are kept by the
+ * {@link FailoverTimerScheduler} of the cluster backend.
  * 
  * @author <a href="mailto:baranowb@gmail.com"> Bartosz Baranowski </a>
  * @author <a href="mailto:brainslog@gmail.com"> Alexandre Mendonca </a>
@@ -48,15 +47,13 @@ public class ReplicatedTimerFacilityImpl implements ITimerFacility {
   private static final Logger logger = LoggerFactory.getLogger(ReplicatedTimerFacilityImpl.class);
 
   private ISessionDatasource sessionDataSource;
-  private TimerTaskFactory taskFactory;
-  private FaultTolerantScheduler ftScheduler;
+  private FailoverTimerScheduler ftScheduler;
 
   public ReplicatedTimerFacilityImpl(IContainer container) {
     super();
     this.sessionDataSource = container.getAssemblerFacility().getComponentInstance(ISessionDatasource.class);
-    this.taskFactory = new TimerTaskFactory();
-    MobicentsCluster cluster = ((ReplicatedSessionDatasource) this.sessionDataSource).getMobicentsCluster();
-    this.ftScheduler = new FaultTolerantScheduler("DiameterTimer", 5, cluster, (byte) 12, null, this.taskFactory);
+    this.ftScheduler = ((ReplicatedSessionDatasource) this.sessionDataSource).getClusterBackend().getTimerScheduler();
+    this.ftScheduler.setTimerHandler(new DiameterTimerHandler());
   }
 
   /*
@@ -78,40 +75,31 @@ public class ReplicatedTimerFacilityImpl implements ITimerFacility {
     String id = sessionId + "/" + timerName;
     logger.debug("Scheduling timer with id {}", id);
 
-    if (this.ftScheduler.getTimerTaskData(id) != null) {
-      throw new IllegalArgumentException("Timer already running: " + id);
-    }
-
-    DiameterTimerTaskData data = new DiameterTimerTaskData(id, miliseconds, sessionId, timerName);
-    TimerTask tt = this.taskFactory.newTimerTask(data);
-    ftScheduler.schedule(tt);
+    this.ftScheduler.schedule(id, sessionId, timerName, miliseconds);
     return id;
   }
 
-  private final class TimerTaskFactory implements org.mobicents.timers.TimerTaskFactory {
-
-    public TimerTask newTimerTask(TimerTaskData data) {
-      return new DiameterTimerTask(data);
-    }
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.jdiameter.common.api.timer.ITimerFacility#destroy()
+   */
+  public void destroy() {
+    // the scheduler is owned by the cluster backend and stopped with the session datasource
   }
 
-  private final class DiameterTimerTask extends TimerTask {
-
-    public DiameterTimerTask(TimerTaskData data) {
-      super(data);
-    }
+  private final class DiameterTimerHandler implements TimerHandler {
 
-    public void runTask() {
+    public void onTimer(String sessionId, String timerName) {
       try {
-        DiameterTimerTaskData data = (DiameterTimerTaskData) getData();
-        BaseSession bSession = sessionDataSource.getSession(data.getSessionId());
+        BaseSession bSession = sessionDataSource.getSession(sessionId);
         if (bSession == null || !bSession.isAppSession()) {
           // FIXME: error ?
           return;
         }
         else {
           AppSessionImpl impl = (AppSessionImpl) bSession;
-          impl.onTimer(data.getTimerName());
+          impl.onTimer(timerName);
         }
       }
       catch (Exception e) {
@@ -64,6 +64,12 @@ public interface IContainer extends Stack {
      */
     ScheduledExecutorService getScheduledFacility();
 
+    /**
+     * Return manager of outstanding request timeouts
+     * @return manager of outstanding request timeouts
+     */
+    IRequestTimeoutManager getRequestTimeoutManager();
+
     /**
      * Return common concurrent factory 
      * @return
@@ -22,7 +22,6 @@
 
 package org.jdiameter.client.api;
 
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.jdiameter.api.ApplicationId;
@@ -72,6 +71,18 @@ public interface IMessage extends IRequest, IAnswer {
    */
   void setState(int newState);
 
+  /**
+   * Return time the request was handed to its peer, used for latency statistics
+   * @return value of System.nanoTime() at that point, 0 if not timed
+   */
+  long getSendTime();
+
+  /**
+   * Set time the request was handed to its peer
+   * @param sendTime value of System.nanoTime()
+   */
+  void setSendTime(long sendTime);
+
   /**
    * Return header applicationId
    * @return header applicationId
@@ -92,11 +103,11 @@ public interface IMessage extends IRequest, IAnswer {
 
   /**
    * Create timer for request timout procedure
-   * @param scheduledFacility timer facility
+   * @param timeoutManager request timeout manager
    * @param timeOut value of timeout
    * @param timeUnit time unit
    */
-  void createTimer(ScheduledExecutorService scheduledFacility, long timeOut, TimeUnit timeUnit);
+  void createTimer(IRequestTimeoutManager timeoutManager, long timeOut, TimeUnit timeUnit);
 
   /**
    * Execute timer task
@@ -0,0 +1,69 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.client.api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of outstanding requests until they are answered or time out.
+ * Scheduling, cancelling and expiring a timeout are all O(1).
+ */
+public interface IRequestTimeoutManager {
+
+  /**
+   * Handle of a scheduled timeout
+   */
+  public static interface Timeout {
+
+    /**
+     * Cancel timeout, the task will not run
+     * @return true if the timeout was still pending
+     */
+    boolean cancel();
+
+    /**
+     * Run the task now, in the calling thread
+     * @return true if the timeout was still pending
+     */
+    boolean expire();
+
+    /**
+     * @return true if the task was run, either on expiry or by {@link #expire()}
+     */
+    boolean isExpired();
+  }
+
+  /**
+   * Schedule timeout task
+   * @param task task executed when the timeout expires
+   * @param timeOut value of timeout
+   * @param timeUnit time unit
+   * @return handle of the timeout
+   */
+  Timeout schedule(Runnable task, long timeOut, TimeUnit timeUnit);
+
+  /**
+   * Stop expiring timeouts, pending timeouts are dropped
+   */
+  void stop();
+}
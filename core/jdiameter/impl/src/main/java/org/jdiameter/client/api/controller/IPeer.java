@@ -74,6 +74,20 @@ public interface IPeer extends Peer {
    */
   IMessage[] remAllMessage();
 
+  /**
+   * Return number of requests sent to peer and not answered yet
+   * 
+   * @return number of requests in request storage map
+   */
+  int getOutstandingRequests();
+
+  /**
+   * Return load of peer fsm
+   * 
+   * @return fill ratio of fsm event queue, from 0 to 1
+   */
+  double getQueueInfo();
+
   /**
    * Put message to peer fsm
    * 
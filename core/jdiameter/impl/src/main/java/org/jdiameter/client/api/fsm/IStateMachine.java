@@ -22,7 +22,10 @@
 
 package org.jdiameter.client.api.fsm;
 
+import org.jdiameter.api.InternalException;
+import org.jdiameter.api.OverloadException;
 import org.jdiameter.api.app.StateChangeListener;
+import org.jdiameter.api.app.StateEvent;
 import org.jdiameter.api.app.StateMachine;
 import org.jdiameter.common.api.statistic.IStatistic;
 
@@ -41,6 +44,17 @@ public interface IStateMachine extends StateMachine {
      */
     double getQueueInfo();
 
+    /**
+     * Same as handleEvent but never waits for room in the event queue, for
+     * callers which must not block, such as network threads shared by many
+     * connections
+     * @param event event instance
+     * @return true if the event was queued
+     * @throws InternalException
+     * @throws OverloadException if the event queue is full
+     */
+    boolean offerEvent(StateEvent event) throws InternalException, OverloadException;
+
     void remStateChangeNotification(StateChangeListener listener);
     
     public IStatistic getStatistic();
@@ -0,0 +1,44 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.client.api.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Pool of buffers used by a connection to encode outgoing messages.
+ */
+public interface IBufferPool {
+
+    /**
+     * Borrow a buffer from pool
+     * @param size number of bytes needed
+     * @return cleared buffer with position 0 and limit set to size
+     */
+    ByteBuffer acquire(int size);
+
+    /**
+     * Return a buffer to pool. Buffer must not be used after this call.
+     * @param buffer buffer previously returned by acquire
+     */
+    void release(ByteBuffer buffer);
+}
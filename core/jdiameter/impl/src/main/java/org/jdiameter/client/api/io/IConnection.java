@@ -83,6 +83,13 @@ public interface IConnection extends Wrapper {
      */
     boolean isNetworkInitiated();
 
+    /**
+     * Return true if events are passed to the listeners on a network thread
+     * shared with other connections, listeners must then not wait
+     * @return true if listeners must not block the delivering thread
+     */
+    boolean isSharedThreadDelivery();
+
     /**
      * Return true if is connection is valid
      * @return true if is connection is valid
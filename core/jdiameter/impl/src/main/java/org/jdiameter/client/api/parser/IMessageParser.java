@@ -24,6 +24,7 @@ package org.jdiameter.client.api.parser;
 
 import org.jdiameter.api.AvpDataException;
 import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.io.IBufferPool;
 
 import java.nio.ByteBuffer;
 
@@ -53,6 +54,15 @@ public interface IMessageParser {
      */
     <T> T createMessage(java.lang.Class<?> iface, ByteBuffer data) throws AvpDataException;
 
+    /**
+     * Create message from a whole encoded frame which is kept with the message,
+     * so it can be encoded again by copying the frame and rewriting its header
+     * @param data encoded message, must not be modified afterwards
+     * @return instance of message
+     * @throws AvpDataException
+     */
+    IMessage createEncodedMessage(byte[] data) throws AvpDataException;
+
     /**
      * Created empty message
      * @param commandCode message command code
@@ -101,4 +111,14 @@ public interface IMessageParser {
      */
     ByteBuffer encodeMessage(IMessage message) throws ParseException;
 
+    /**
+     * Encode message into a buffer borrowed from pool. Caller must return
+     * the buffer to pool once it has been written out.
+     * @param message diameter message
+     * @param pool pool to borrow buffer from
+     * @return buffer holding the encoded message between position and limit
+     * @throws ParseException
+     */
+    ByteBuffer encodeMessage(IMessage message, IBufferPool pool) throws ParseException;
+
 }
@@ -116,7 +116,7 @@ public abstract class BaseSessionImpl implements BaseSession {
         throw new IllegalDiameterStateException("Illegal state");
       }
 
-      message.createTimer(container.getScheduledFacility(), timeout, timeUnit);
+      message.createTimer(container.getRequestTimeoutManager(), timeout, timeUnit);
       try {
         container.sendMessage(message);
       }
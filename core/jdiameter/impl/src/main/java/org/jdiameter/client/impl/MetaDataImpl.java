@@ -356,6 +356,14 @@ public class MetaDataImpl implements IMetaData {
       return new IMessage[0];
     }
 
+    public int getOutstandingRequests() {
+      return 0;
+    }
+
+    public double getQueueInfo() {
+      return 0;
+    }
+
     public boolean handleMessage(EventTypes type, IMessage message, String key) throws TransportException, OverloadException, InternalException {
       return false;  
     }
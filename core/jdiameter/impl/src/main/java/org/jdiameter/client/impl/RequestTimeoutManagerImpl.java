@@ -0,0 +1,257 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.client.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.jdiameter.client.api.IRequestTimeoutManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coarse grained timer wheel for request timeouts. Timeouts are linked into
+ * the slot of the tick they expire in, so an answer removes its request in
+ * constant time instead of scanning the delay queue of the executor. A single
+ * tick task walks one slot per tick and hands the expired tasks to the
+ * executor in batches. Timeouts longer than one revolution of the wheel stay
+ * in their slot until their tick comes.
+ */
+public class RequestTimeoutManagerImpl implements IRequestTimeoutManager {
+
+  private static final Logger logger = LoggerFactory.getLogger(RequestTimeoutManagerImpl.class);
+
+  public static final long DEFAULT_TICK_DURATION = 50;
+
+  private static final int WHEEL_SIZE = 512;
+  // max number of expired tasks handed to the executor in a single task
+  private static final int BATCH_SIZE = 128;
+
+  private static final int ST_PENDING = 0;
+  private static final int ST_CANCELLED = 1;
+  private static final int ST_EXPIRED = 2;
+
+  private static final AtomicIntegerFieldUpdater<TimeoutImpl> STATE = AtomicIntegerFieldUpdater.newUpdater(TimeoutImpl.class, "state");
+
+  private final ScheduledExecutorService executor;
+  private final long tickDuration;
+  private final long startTime;
+  private final Slot[] wheel = new Slot[WHEEL_SIZE];
+  private final ScheduledFuture<?> ticker;
+
+  // only accessed by the tick task
+  private long tick;
+
+  public RequestTimeoutManagerImpl(ScheduledExecutorService executor) {
+    this(executor, DEFAULT_TICK_DURATION);
+  }
+
+  public RequestTimeoutManagerImpl(ScheduledExecutorService executor, long tickDuration) {
+    this.executor = executor;
+    this.tickDuration = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+    for (int i = 0; i < WHEEL_SIZE; i++) {
+      wheel[i] = new Slot();
+    }
+    this.startTime = System.nanoTime();
+    this.ticker = executor.scheduleAtFixedRate(new Runnable() {
+      public void run() {
+        try {
+          onTick();
+        }
+        catch (Throwable t) {
+          logger.error("Failure processing request timeouts", t);
+        }
+      }
+    }, tickDuration, tickDuration, TimeUnit.MILLISECONDS);
+  }
+
+  public Timeout schedule(Runnable task, long timeOut, TimeUnit timeUnit) {
+    long deadlineTick = (System.nanoTime() + timeUnit.toNanos(timeOut) - startTime + tickDuration - 1) / tickDuration;
+    while (true) {
+      Slot slot = wheel[(int) (deadlineTick & (WHEEL_SIZE - 1))];
+      synchronized (slot) {
+        // the slot may already have been walked for this tick
+        if (slot.lastTick < deadlineTick) {
+          TimeoutImpl timeout = new TimeoutImpl(task, deadlineTick);
+          slot.add(timeout);
+          return timeout;
+        }
+      }
+      deadlineTick++;
+    }
+  }
+
+  public void stop() {
+    ticker.cancel(false);
+  }
+
+  private void onTick() {
+    long target = (System.nanoTime() - startTime) / tickDuration;
+    List<TimeoutImpl> batch = null;
+    while (tick < target) {
+      tick++;
+      Slot slot = wheel[(int) (tick & (WHEEL_SIZE - 1))];
+      synchronized (slot) {
+        slot.lastTick = tick;
+        TimeoutImpl timeout = slot.head;
+        while (timeout != null) {
+          TimeoutImpl next = timeout.next;
+          if (timeout.deadlineTick <= tick) {
+            slot.remove(timeout);
+            if (STATE.compareAndSet(timeout, ST_PENDING, ST_EXPIRED)) {
+              if (batch == null) {
+                batch = new ArrayList<TimeoutImpl>(BATCH_SIZE);
+              }
+              batch.add(timeout);
+              if (batch.size() == BATCH_SIZE) {
+                execute(batch);
+                batch = null;
+              }
+            }
+          }
+          timeout = next;
+        }
+      }
+    }
+    if (batch != null) {
+      execute(batch);
+    }
+  }
+
+  private void execute(final List<TimeoutImpl> batch) {
+    try {
+      executor.execute(new Runnable() {
+        public void run() {
+          for (TimeoutImpl timeout : batch) {
+            timeout.run();
+          }
+        }
+      });
+    }
+    catch (RejectedExecutionException e) {
+      logger.debug("Dropping {} expired request timeouts, executor rejected them", batch.size());
+    }
+  }
+
+  /**
+   * Timeouts expiring in the same tick of the wheel, modulo its size.
+   */
+  private static final class Slot {
+    private TimeoutImpl head;
+    private TimeoutImpl tail;
+    // last tick this slot was walked for
+    private long lastTick;
+
+    void add(TimeoutImpl timeout) {
+      timeout.slot = this;
+      timeout.prev = tail;
+      if (tail == null) {
+        head = timeout;
+      }
+      else {
+        tail.next = timeout;
+      }
+      tail = timeout;
+    }
+
+    void remove(TimeoutImpl timeout) {
+      if (timeout.prev == null) {
+        head = timeout.next;
+      }
+      else {
+        timeout.prev.next = timeout.next;
+      }
+      if (timeout.next == null) {
+        tail = timeout.prev;
+      }
+      else {
+        timeout.next.prev = timeout.prev;
+      }
+      timeout.slot = null;
+      timeout.prev = null;
+      timeout.next = null;
+    }
+  }
+
+  private final class TimeoutImpl implements Timeout {
+    private final Runnable task;
+    private final long deadlineTick;
+    volatile int state = ST_PENDING;
+
+    // guarded by the slot of the deadline
+    private Slot slot;
+    private TimeoutImpl prev;
+    private TimeoutImpl next;
+
+    TimeoutImpl(Runnable task, long deadlineTick) {
+      this.task = task;
+      this.deadlineTick = deadlineTick;
+    }
+
+    public boolean cancel() {
+      if (!STATE.compareAndSet(this, ST_PENDING, ST_CANCELLED)) {
+        return false;
+      }
+      unlink();
+      return true;
+    }
+
+    public boolean expire() {
+      if (!STATE.compareAndSet(this, ST_PENDING, ST_EXPIRED)) {
+        return false;
+      }
+      unlink();
+      run();
+      return true;
+    }
+
+    public boolean isExpired() {
+      return state == ST_EXPIRED;
+    }
+
+    private void unlink() {
+      // deadline never changes once scheduled, it gives the slot without
+      // reading the link fields outside of its lock
+      Slot owner = wheel[(int) (deadlineTick & (WHEEL_SIZE - 1))];
+      synchronized (owner) {
+        if (slot != null) {
+          owner.remove(this);
+        }
+      }
+    }
+
+    void run() {
+      try {
+        task.run();
+      }
+      catch (Throwable t) {
+        logger.debug("Can not process timeout", t);
+      }
+    }
+  }
+}
@@ -33,7 +33,7 @@ import org.jdiameter.api.app.AppSession;
 import org.jdiameter.client.api.IContainer;
 import org.jdiameter.client.api.ISessionFactory;
 import org.jdiameter.client.api.StackState;
-import org.jdiameter.client.impl.helpers.UIDGenerator;
+import org.jdiameter.client.impl.helpers.SessionIdGenerator;
 import org.jdiameter.common.api.app.IAppSessionFactory;
 import org.jdiameter.common.api.data.ISessionDatasource;
 
@@ -52,7 +52,8 @@ public class SessionFactoryImpl implements ISessionFactory {
   private Map<Class, IAppSessionFactory> appFactories = new ConcurrentHashMap<Class, IAppSessionFactory>();
   private ISessionDatasource dataSource;
 
-  protected static UIDGenerator uid = new UIDGenerator();
+  // created on first use, the local peer is not known before
+  private volatile SessionIdGenerator sessionIdGenerator;
 
   public SessionFactoryImpl(IContainer stack) {
     this.stack = stack;
@@ -60,18 +61,18 @@ public class SessionFactoryImpl implements ISessionFactory {
   }
 
   public String getSessionId(String custom) {
-    long id = uid.nextLong();
-    long high32 = (id & 0xffffffff00000000L) >> 32;
-    long low32 = (id & 0xffffffffL);
-    StringBuilder sb = new StringBuilder();
-    sb.append(stack.getMetaData().getLocalPeer().getUri().getFQDN()).
-    append(";").append(high32).append(";").append(low32);
-    if(custom!=null)
-    {
-      //FIXME: add checks for not allowed chars?
-      sb.append(";").append(custom);
+    return getSessionIdGenerator().nextSessionId(custom);
+  }
+
+  /**
+   * @return generator of the ids of sessions created by this factory
+   */
+  private SessionIdGenerator getSessionIdGenerator() {
+    SessionIdGenerator generator = sessionIdGenerator;
+    if (generator == null) {
+      generator = sessionIdGenerator = new SessionIdGenerator(stack.getMetaData().getLocalPeer().getUri().getFQDN());
     }
-    return sb.toString();
+    return generator;
   }
 
   public String getSessionId() {
@@ -52,6 +52,7 @@ import org.jdiameter.api.PeerStateListener;
 import org.jdiameter.api.PeerTable;
 import org.jdiameter.api.RouteException;
 import org.jdiameter.api.SessionFactory;
+import org.jdiameter.api.StatisticRecord;
 import org.jdiameter.api.app.ConnectionStateListener;
 import org.jdiameter.api.app.StateChangeListener;
 import org.jdiameter.api.validation.Dictionary;
@@ -60,6 +61,7 @@ import org.jdiameter.client.api.IAssembler;
 import org.jdiameter.client.api.IContainer;
 import org.jdiameter.client.api.IMessage;
 import org.jdiameter.client.api.IMetaData;
+import org.jdiameter.client.api.IRequestTimeoutManager;
 import org.jdiameter.client.api.StackState;
 import org.jdiameter.client.api.controller.IPeer;
 import org.jdiameter.client.api.controller.IPeerTable;
@@ -67,6 +69,8 @@ import org.jdiameter.client.api.io.IConnectionListener;
 import org.jdiameter.client.impl.helpers.Parameters;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.jdiameter.common.api.data.ISessionDatasource;
+import org.jdiameter.common.api.statistic.IStatistic;
+import org.jdiameter.common.api.statistic.IStatisticManager;
 import org.jdiameter.common.api.statistic.IStatisticProcessor;
 import org.jdiameter.common.api.timer.ITimerFacility;
 import org.slf4j.Logger;
@@ -94,6 +98,7 @@ public class StackImpl implements IContainer, StackImplMBean {
    * Use for processing request time-out tasks (for all active peers)
    */
   protected ScheduledExecutorService scheduledFacility;
+  protected IRequestTimeoutManager requestTimeoutManager;
 
   @SuppressWarnings("unchecked")
   public SessionFactory init(Configuration config) throws IllegalDiameterStateException, InternalException {
@@ -187,6 +192,7 @@ public class StackImpl implements IContainer, StackImplMBean {
       }
 
       scheduledFacility = concurrentFactory.getScheduledExecutorService(ProcessingMessageTimer.name());
+      requestTimeoutManager = new RequestTimeoutManagerImpl(scheduledFacility);
       assembler.getComponentInstance(ISessionDatasource.class).start();
       assembler.getComponentInstance(IStatisticProcessor.class).start();
       assembler.getComponentInstance(ITimerFacility.class);
@@ -206,6 +212,7 @@ public class StackImpl implements IContainer, StackImplMBean {
         throw new IllegalDiameterStateException();
       }
       scheduledFacility = concurrentFactory.getScheduledExecutorService(ProcessingMessageTimer.name());
+      requestTimeoutManager = new RequestTimeoutManagerImpl(scheduledFacility);
       assembler.getComponentInstance(IStatisticProcessor.class).start();
       assembler.getComponentInstance(ISessionDatasource.class).start();
       assembler.getComponentInstance(ITimerFacility.class);
@@ -311,6 +318,9 @@ public class StackImpl implements IContainer, StackImplMBean {
             peerManager.stopped();
           }
           // Clear all timeout tasks
+          if (requestTimeoutManager != null) {
+            requestTimeoutManager.stop();
+          }
           if (scheduledFacility != null) {
             concurrentFactory.shutdownNow(scheduledFacility);
           }
@@ -342,8 +352,15 @@ public class StackImpl implements IContainer, StackImplMBean {
         peerManager.destroy();
       }
       if (assembler != null) {
+        ITimerFacility timerFacility = assembler.getComponentInstance(ITimerFacility.class);
+        if (timerFacility != null) {
+          timerFacility.destroy();
+        }
         assembler.destroy();
       }
+      if (requestTimeoutManager != null) {
+        requestTimeoutManager.stop();
+      }
       if (scheduledFacility != null) {
         concurrentFactory.shutdownNow(scheduledFacility);
       }
@@ -444,6 +461,10 @@ public class StackImpl implements IContainer, StackImplMBean {
     return scheduledFacility;
   }
 
+  public IRequestTimeoutManager getRequestTimeoutManager() {
+    return requestTimeoutManager;
+  }
+
   public IConcurrentFactory getConcurrentFactory() {
     return this.concurrentFactory;
   }
@@ -485,6 +506,22 @@ public class StackImpl implements IContainer, StackImplMBean {
     }
   }
 
+  public String statistics() {
+    IStatisticManager statisticManager = assembler.getComponentInstance(IStatisticManager.class);
+    if (statisticManager == null || !statisticManager.isOn()) {
+      return "not set";
+    }
+    StringBuilder sb = new StringBuilder();
+    for (IStatistic statistic : statisticManager.getStatistic()) {
+      if (statistic.isEnabled()) {
+        for (StatisticRecord record : statistic.getRecords()) {
+          sb.append(statistic.getName()).append('.').append(record.getName()).append(": ").append(record).append('\n');
+        }
+      }
+    }
+    return sb.toString();
+  }
+
   public void stop(int disconnectCause) {
     try {
       stop(10, TimeUnit.SECONDS, disconnectCause);
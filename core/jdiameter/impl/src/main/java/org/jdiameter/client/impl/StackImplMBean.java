@@ -58,6 +58,13 @@ public interface StackImplMBean {
    */
   String peerList();
 
+  /**
+   * Return enabled statistics, one record per line, including the request
+   * to answer latency percentiles of each peer
+   * @return string representation of enabled statistics
+   */
+  String statistics();
+
   /**
    * Return true if stack is started
    * @return true if stack is started
@@ -28,7 +28,6 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.jdiameter.api.Answer;
 import org.jdiameter.api.AvpDataException;
@@ -60,6 +59,7 @@ import org.jdiameter.common.api.app.cca.IClientCCASessionContext;
 import org.jdiameter.common.impl.app.AppAnswerEventImpl;
 import org.jdiameter.common.impl.app.AppEventImpl;
 import org.jdiameter.common.impl.app.AppRequestEventImpl;
+import org.jdiameter.common.impl.app.AppSessionStateLock;
 import org.jdiameter.common.impl.app.auth.ReAuthAnswerImpl;
 import org.jdiameter.common.impl.app.cca.AppCCASessionImpl;
 import org.slf4j.Logger;
@@ -80,7 +80,7 @@ public class ClientCCASessionImpl extends AppCCASessionImpl implements ClientCCA
 
   // Session State Handling ---------------------------------------------------
 
-  protected Lock sendAndStateLock = new ReentrantLock();
+  protected Lock sendAndStateLock = new AppSessionStateLock(this);
   // Session Based Queue
   protected ArrayList<Event> eventQueue = new ArrayList<Event>(); //FIXME: this is not replicable?
   // Factories and Listeners --------------------------------------------------
@@ -30,7 +30,6 @@ import static org.jdiameter.common.api.app.auth.ClientAuthSessionState.PENDING;
 
 import java.io.Serializable;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.jdiameter.api.Answer;
 import org.jdiameter.api.Avp;
@@ -63,6 +62,7 @@ import org.jdiameter.common.api.app.auth.IAuthMessageFactory;
 import org.jdiameter.common.api.app.auth.IClientAuthActionContext;
 import org.jdiameter.common.impl.app.AppAnswerEventImpl;
 import org.jdiameter.common.impl.app.AppRequestEventImpl;
+import org.jdiameter.common.impl.app.AppSessionStateLock;
 import org.jdiameter.common.impl.app.auth.AbortSessionAnswerImpl;
 import org.jdiameter.common.impl.app.auth.AbortSessionRequestImpl;
 import org.jdiameter.common.impl.app.auth.AppAuthSessionImpl;
@@ -86,7 +86,7 @@ public class GqClientSessionImpl extends AppAuthSessionImpl implements GqClientS
   protected static final Logger logger = LoggerFactory.getLogger(GqClientSessionImpl.class);
 
   // Session State Handling ---------------------------------------------------
-  protected Lock sendAndStateLock = new ReentrantLock();
+  protected Lock sendAndStateLock = new AppSessionStateLock(this);
 
   // Factories and Listeners --------------------------------------------------
   protected transient IAuthMessageFactory factory;
@@ -28,7 +28,6 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.jdiameter.api.Answer;
 import org.jdiameter.api.AvpDataException;
@@ -61,6 +60,7 @@ import org.jdiameter.common.api.app.gx.IClientGxSessionContext;
 import org.jdiameter.common.api.app.gx.IGxMessageFactory;
 import org.jdiameter.common.impl.app.AppAnswerEventImpl;
 import org.jdiameter.common.impl.app.AppRequestEventImpl;
+import org.jdiameter.common.impl.app.AppSessionStateLock;
 import org.jdiameter.common.impl.app.gx.GxReAuthAnswerImpl;
 import org.jdiameter.common.impl.app.gx.AppGxSessionImpl;
 import org.slf4j.Logger;
@@ -78,7 +78,7 @@ public class ClientGxSessionImpl extends AppGxSessionImpl implements ClientGxSes
     private static final Logger logger = LoggerFactory.getLogger(ClientGxSessionImpl.class);
     protected IClientGxSessionData sessionData;
     // Session State Handling ---------------------------------------------------
-    protected Lock sendAndStateLock = new ReentrantLock();
+    protected Lock sendAndStateLock = new AppSessionStateLock(this);
     // Factories and Listeners --------------------------------------------------
     protected IGxMessageFactory factory;
     protected ClientGxSessionListener listener;
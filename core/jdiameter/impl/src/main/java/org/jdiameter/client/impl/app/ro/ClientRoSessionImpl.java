@@ -30,7 +30,6 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.jdiameter.api.Answer;
 import org.jdiameter.api.AvpDataException;
@@ -65,6 +64,7 @@ import org.jdiameter.common.api.app.ro.IClientRoSessionContext;
 import org.jdiameter.common.api.app.ro.IRoMessageFactory;
 import org.jdiameter.common.impl.app.AppAnswerEventImpl;
 import org.jdiameter.common.impl.app.AppRequestEventImpl;
+import org.jdiameter.common.impl.app.AppSessionStateLock;
 import org.jdiameter.common.impl.app.auth.ReAuthAnswerImpl;
 import org.jdiameter.common.impl.app.ro.AppRoSessionImpl;
 import org.slf4j.Logger;
@@ -82,7 +82,7 @@ public class ClientRoSessionImpl extends AppRoSessionImpl implements ClientRoSes
 
   // Session State Handling ---------------------------------------------------
   protected IClientRoSessionData sessionData;
-  protected Lock sendAndStateLock = new ReentrantLock();
+  protected Lock sendAndStateLock = new AppSessionStateLock(this);
 
   // Factories and Listeners --------------------------------------------------
   protected transient IRoMessageFactory factory;
@@ -29,7 +29,6 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.jdiameter.api.Answer;
 import org.jdiameter.api.AvpDataException;
@@ -69,6 +68,7 @@ import org.jdiameter.common.api.app.rx.IClientRxSessionContext;
 import org.jdiameter.common.api.app.rx.IRxMessageFactory;
 import org.jdiameter.common.impl.app.AppAnswerEventImpl;
 import org.jdiameter.common.impl.app.AppRequestEventImpl;
+import org.jdiameter.common.impl.app.AppSessionStateLock;
 import org.jdiameter.common.impl.app.rx.AppRxSessionImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -88,7 +88,7 @@ public class ClientRxSessionImpl extends AppRxSessionImpl implements ClientRxSes
   //protected boolean isEventBased = true;
   //protected boolean requestTypeSet = false;
   //protected ClientRxSessionState state = ClientRxSessionState.IDLE;
-  protected Lock sendAndStateLock = new ReentrantLock();
+  protected Lock sendAndStateLock = new AppSessionStateLock(this);
 
   // Factories and Listeners --------------------------------------------------
   protected transient IRxMessageFactory factory;
@@ -23,7 +23,6 @@
 package org.jdiameter.client.impl.app.sh;
 
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.jdiameter.api.Answer;
 import org.jdiameter.api.EventListener;
@@ -47,6 +46,7 @@ import org.jdiameter.client.api.ISessionFactory;
 import org.jdiameter.common.api.app.sh.IShMessageFactory;
 import org.jdiameter.common.impl.app.AppAnswerEventImpl;
 import org.jdiameter.common.impl.app.AppRequestEventImpl;
+import org.jdiameter.common.impl.app.AppSessionStateLock;
 import org.jdiameter.common.impl.app.sh.ProfileUpdateAnswerImpl;
 import org.jdiameter.common.impl.app.sh.PushNotificationRequestImpl;
 import org.jdiameter.common.impl.app.sh.ShSession;
@@ -73,7 +73,7 @@ public class ShClientSessionImpl extends ShSession implements ClientShSession, E
   private Logger logger = LoggerFactory.getLogger(ShClientSessionImpl.class);
 
   // Session State Handling ---------------------------------------------------
-  protected Lock sendAndStateLock = new ReentrantLock();
+  protected Lock sendAndStateLock = new AppSessionStateLock(this);
 
   // Factories and Listeners --------------------------------------------------
   protected transient IShMessageFactory factory = null;
@@ -86,6 +86,7 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.jdiameter.api.ApplicationId;
@@ -129,7 +130,6 @@ import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.jdiameter.common.api.data.ISessionDatasource;
 import org.jdiameter.common.api.statistic.IStatistic;
 import org.jdiameter.common.api.statistic.IStatisticManager;
-import org.jdiameter.common.api.statistic.IStatisticRecord;
 import org.jdiameter.common.impl.controller.AbstractPeer;
 import org.jdiameter.server.impl.MutablePeerTableImpl;
 import org.slf4j.Logger;
@@ -163,6 +163,8 @@ public class PeerImpl extends AbstractPeer implements IPeer {
   protected IRouter router;
   // XXX: FT/HA // protected Map<String, NetworkReqListener> slc;
   protected final Map<Long, IMessage> peerRequests = new ConcurrentHashMap<Long, IMessage>();
+  // size of peerRequests, kept apart as map size is not cheap to read
+  protected final AtomicInteger outstandingRequests = new AtomicInteger(0);
   protected final Dictionary dictionary = DictionarySingleton.getDictionary();
   // FSM layer
   protected IStateMachine fsm;
@@ -180,7 +182,7 @@ public class PeerImpl extends AbstractPeer implements IPeer {
     public void connectionOpened(String connKey) {
       logger.debug("Connection to {} is open", uri);
       try {
-        fsm.handleEvent(new FsmEvent(CONNECT_EVENT, connKey));
+        handleConnectionEvent(connKey, new FsmEvent(CONNECT_EVENT, connKey));
       }
       catch (Exception e) {
         logger.warn("Unable to run start procedure", e);
@@ -194,7 +196,7 @@ public class PeerImpl extends AbstractPeer implements IPeer {
           request.setReTransmitted(true);
           request.setState(IMessage.STATE_NOT_SENT);
           try {
-            peerRequests.remove(request.getHopByHopIdentifier());
+            remMessage(request);
             table.sendMessage(request);
           }
           catch (Throwable exc) {
@@ -203,7 +205,7 @@ public class PeerImpl extends AbstractPeer implements IPeer {
         }
       }
       try {
-        fsm.handleEvent(new FsmEvent(DISCONNECT_EVENT, connKey));
+        handleConnectionEvent(connKey, new FsmEvent(DISCONNECT_EVENT, connKey));
       }
       catch (Exception e) {
         logger.warn("Unable to run stopping procedure", e);
@@ -217,16 +219,16 @@ public class PeerImpl extends AbstractPeer implements IPeer {
         logger.debug("Receive message type [{}] to peer [{}]", new Object[] {type, connKey});
         switch (type) {
           case CAPABILITIES_EXCHANGE_REQUEST:
-            fsm.handleEvent(new FsmEvent(req ? CER_EVENT : CEA_EVENT, message, connKey));
+            handleConnectionEvent(connKey, new FsmEvent(req ? CER_EVENT : CEA_EVENT, message, connKey));
             break;
           case DEVICE_WATCHDOG_REQUEST:
-            fsm.handleEvent(new FsmEvent(req ? DWR_EVENT : DWA_EVENT, message, connKey));
+            handleConnectionEvent(connKey, new FsmEvent(req ? DWR_EVENT : DWA_EVENT, message, connKey));
             break;
           case DISCONNECT_PEER_REQUEST:
-            fsm.handleEvent(new FsmEvent(req ? DPR_EVENT : DPA_EVENT, message));
+            handleConnectionEvent(connKey, new FsmEvent(req ? DPR_EVENT : DPA_EVENT, message));
             break;
           default:
-            fsm.handleEvent(new FsmEvent(RECEIVE_MSG_EVENT, message));
+            handleConnectionEvent(connKey, new FsmEvent(RECEIVE_MSG_EVENT, message));
             break;
         }
       }
@@ -249,7 +251,7 @@ public class PeerImpl extends AbstractPeer implements IPeer {
     public void internalError(String connKey, IMessage message, TransportException cause) {
       try {
         logger.debug("internalError ", cause);
-        fsm.handleEvent(new FsmEvent(INTERNAL_ERROR, message));
+        handleConnectionEvent(connKey, new FsmEvent(INTERNAL_ERROR, message));
       }
       catch (Exception e) {
         logger.debug("Unable to run internalError procedure", e);
@@ -532,21 +534,61 @@ public class PeerImpl extends AbstractPeer implements IPeer {
   }
 
   public void addMessage(IMessage message) {
-    peerRequests.put(message.getHopByHopIdentifier(), message);
+    timeRequest(message);
+    if (peerRequests.put(message.getHopByHopIdentifier(), message) == null) {
+      outstandingRequests.incrementAndGet();
+    }
   }
 
   public void remMessage(IMessage message) {
-    peerRequests.remove(message.getHopByHopIdentifier());
+    if (peerRequests.remove(message.getHopByHopIdentifier()) != null) {
+      outstandingRequests.decrementAndGet();
+    }
   }
 
   public IMessage[] remAllMessage() {
-    IMessage[] m = peerRequests.values().toArray(new IMessage[peerRequests.size()]);
-    peerRequests.clear();
-    return m;
+    List<IMessage> m = new ArrayList<IMessage>(peerRequests.size());
+    for (Long hopByHopId : peerRequests.keySet()) {
+      IMessage message = peerRequests.remove(hopByHopId);
+      if (message != null) {
+        outstandingRequests.decrementAndGet();
+        m.add(message);
+      }
+    }
+    return m.toArray(new IMessage[m.size()]);
+  }
+
+  public int getOutstandingRequests() {
+    return outstandingRequests.get();
+  }
+
+  public double getQueueInfo() {
+    return fsm.getQueueInfo();
   }
 
   public boolean handleMessage(EventTypes type, IMessage message, String key) throws TransportException, OverloadException, InternalException {
-    return !stopping && fsm.handleEvent(new FsmEvent(type, message, key));
+    return !stopping && handleConnectionEvent(key, new FsmEvent(type, message, key));
+  }
+
+  /**
+   * Passes an event received from a connection to the FSM. Connections which
+   * deliver on a network thread shared with other connections must not wait
+   * for room in the FSM queue, overload is reported right away instead.
+   */
+  protected boolean handleConnectionEvent(String connKey, FsmEvent event) throws InternalException, OverloadException {
+    IConnection conn = findConnection(connKey);
+    if (conn != null && conn.isSharedThreadDelivery()) {
+      return fsm.offerEvent(event);
+    }
+    return fsm.handleEvent(event);
+  }
+
+  /**
+   * @return the connection of this peer with the given key, or null
+   */
+  protected IConnection findConnection(String connKey) {
+    IConnection conn = connection;
+    return conn != null && conn.getKey().equals(connKey) ? conn : null;
   }
 
   public boolean sendMessage(IMessage message) throws TransportException, OverloadException, InternalException {
@@ -664,14 +706,14 @@ public class PeerImpl extends AbstractPeer implements IPeer {
       logger.debug("Sending response indicating we could not process request");
       sendMessage((IMessage) request);
       if(statistic.isEnabled()) {
-        statistic.getRecordByName(IStatisticRecord.Counters.SysGenResponse.name()).inc();
+        sysGenResponseCounter.inc();
       }
     }
     catch (Exception e) {
       logger.debug("Unable to send answer", e);
     }
     if(statistic.isEnabled()) {
-      statistic.getRecordByName(IStatisticRecord.Counters.NetGenRejectedRequest.name()).inc();
+      netGenRejectedRequestCounter.inc();
     }
   }
 
@@ -945,7 +987,7 @@ public class PeerImpl extends AbstractPeer implements IPeer {
               try {
                 sendMessage(answer);
                 if(statistic.isEnabled()) {
-                  statistic.getRecordByName(IStatisticRecord.Counters.AppGenResponse.name()).inc();
+                  appGenResponseCounter.inc();
                 }
               }
               catch (Exception e) {
@@ -954,13 +996,13 @@ public class PeerImpl extends AbstractPeer implements IPeer {
             }
 
             if(statistic.isEnabled()) {
-              statistic.getRecordByName(IStatisticRecord.Counters.NetGenRequest.name()).inc();
+              netGenRequestCounter.inc();
             }
             isProcessed = true;
           }
           else {
             if(statistic.isEnabled()) {
-              statistic.getRecordByName(IStatisticRecord.Counters.NetGenRejectedRequest.name()).inc();
+              netGenRejectedRequestCounter.inc();
             }
           }
         }
@@ -970,9 +1012,13 @@ public class PeerImpl extends AbstractPeer implements IPeer {
 
         //TODO: check REALMs here?
         IMessage request = peerRequests.remove(message.getHopByHopIdentifier());
+        if (request != null) {
+          outstandingRequests.decrementAndGet();
+        }
         if (request != null && !request.isTimeOut()) {
           request.clearTimer();
           request.setState(IMessage.STATE_ANSWERED);
+          recordLatency(request);
           Avp avpResCode = message.getAvps().getAvp(RESULT_CODE);
           if (isRedirectAnswer(avpResCode, message)) {
             message.setListener(request.getEventListener());
@@ -988,24 +1034,24 @@ public class PeerImpl extends AbstractPeer implements IPeer {
             else {
               logger.debug("Unable to call answer listener for request {} because listener is not set", message);
               if(statistic.isEnabled()) {
-                statistic.getRecordByName(IStatisticRecord.Counters.NetGenRejectedResponse.name()).inc();
+                netGenRejectedResponseCounter.inc();
               }
             }
 
             isProcessed = true;
             if(statistic.isEnabled()) {
-              statistic.getRecordByName(IStatisticRecord.Counters.NetGenResponse.name()).inc();
+              netGenResponseCounter.inc();
             }
           }
           else {
             if(statistic.isEnabled()) {
-              statistic.getRecordByName(IStatisticRecord.Counters.NetGenRejectedResponse.name()).inc();
+              netGenRejectedResponseCounter.inc();
             }
           }
         }
         else {
           if(statistic.isEnabled()) {
-            statistic.getRecordByName(IStatisticRecord.Counters.NetGenRejectedResponse.name()).inc();
+            netGenRejectedResponseCounter.inc();
           }
         }
       }
@@ -28,6 +28,8 @@ import static org.jdiameter.client.impl.helpers.Parameters.CeaTimeOut;
 import static org.jdiameter.client.impl.helpers.Parameters.DpaTimeOut;
 import static org.jdiameter.client.impl.helpers.Parameters.DwaTimeOut;
 import static org.jdiameter.client.impl.helpers.Parameters.IacTimeOut;
+import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMLaneCount;
+import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMOrderedDispatch;
 import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMThreadCount;
 import static org.jdiameter.client.impl.helpers.Parameters.QueueSize;
 import static org.jdiameter.client.impl.helpers.Parameters.RecTimeOut;
@@ -77,7 +79,12 @@ public class PeerFSMImpl implements IStateMachine {
   protected final Dictionary dictionary = DictionarySingleton.getDictionary();
 
   protected ConcurrentLinkedQueue<StateChangeListener> listeners;
+  // first lane, the only one unless ordered dispatch is on
   protected LinkedBlockingQueue<StateEvent> eventQueue;
+  // with ordered dispatch each lane has a single FSM thread, events of a
+  // session always go to the same lane so they are processed in order
+  protected LinkedBlockingQueue<StateEvent>[] lanes;
+  protected boolean orderedDispatch;
 
   protected FsmState state = FsmState.DOWN;
   protected boolean watchdogSent;
@@ -86,6 +93,8 @@ public class PeerFSMImpl implements IStateMachine {
 
   //PCB made FSM queue multi-threaded
   private static int FSM_THREAD_COUNT = 3;
+  // max wait for each FSM thread of a previous run when restarting
+  private static final long JOIN_TIMEOUT = 1000;
 
   protected final StateEvent timeOutEvent = new FsmEvent(EventTypes.TIMEOUT_EVENT);
   protected Random random = new Random();
@@ -102,8 +111,11 @@ public class PeerFSMImpl implements IStateMachine {
   protected IStatisticRecord timeCount;
 
   //PCB changed for multi-thread
-  protected boolean mustRun = false;
+  protected volatile boolean mustRun = false;
   protected AtomicInteger numberOfThreadsRunning = new AtomicInteger(0);
+  // lane consumers of the current run, older ones exit once it changes
+  private Thread[] fsmThreads;
+  private volatile int run;
 
   public PeerFSMImpl(IContext aContext, IConcurrentFactory concurrentFactory, Configuration config, IStatisticManager statisticFactory) {
     this.context = aContext;
@@ -111,11 +123,17 @@ public class PeerFSMImpl implements IStateMachine {
     this.predefSize = config.getIntValue(QueueSize.ordinal(), (Integer) QueueSize.defValue());
     //PCB added logging
     logger.debug("Maximum FSM Queue size is [{}]", predefSize);
-    this.eventQueue = new LinkedBlockingQueue<StateEvent>(predefSize);
+    FSM_THREAD_COUNT = config.getIntValue(PeerFSMThreadCount.ordinal(), (Integer) PeerFSMThreadCount.defValue());
+    this.orderedDispatch = config.getBooleanValue(PeerFSMOrderedDispatch.ordinal(), (Boolean) PeerFSMOrderedDispatch.defValue());
+    int laneCount = config.getIntValue(PeerFSMLaneCount.ordinal(), (Integer) PeerFSMLaneCount.defValue());
+    this.lanes = new LinkedBlockingQueue[orderedDispatch ? Math.max(laneCount, 1) : 1];
+    for (int i = 0; i < lanes.length; i++) {
+      this.lanes[i] = new LinkedBlockingQueue<StateEvent>(predefSize);
+    }
+    this.eventQueue = lanes[0];
     this.listeners = new ConcurrentLinkedQueue<StateChangeListener>();
     loadTimeOuts(config);
     this.concurrentFactory = concurrentFactory;
-    FSM_THREAD_COUNT = config.getIntValue(PeerFSMThreadCount.ordinal(), (Integer) PeerFSMThreadCount.defValue());
     runQueueProcessing();
   }
 
@@ -132,16 +150,25 @@ public class PeerFSMImpl implements IStateMachine {
     try {
       // PCB - changed way it decides if queue processing must happen in order to allow for multithreaded FSM
       lock.lock();
-      if (numberOfThreadsRunning.get() > 0) {
+      if (mustRun) {
         // runQueueProcessing has been called
         return;
       }
-      eventQueue.clear();
+      // consumers of the previous run must not share the lanes with new ones
+      final int currentRun = ++run;
+      joinQueueProcessing();
+      if (queueStat != null) {
+        // left by a consumer of the previous run still busy with an event
+        statisticFactory.removeStatistic(queueStat);
+      }
+      for (LinkedBlockingQueue<StateEvent> lane : lanes) {
+        lane.clear();
+      }
       mustRun = true;
 
       IStatisticRecord queueSize = statisticFactory.newCounterRecord(IStatisticRecord.Counters.QueueSize, new IStatisticRecord.IntegerValueHolder() {
         public int getValueAsInt() {
-          return eventQueue.size();
+          return getQueueSize();
         }
 
         public String getValueAsString() {
@@ -158,7 +185,7 @@ public class PeerFSMImpl implements IStateMachine {
           if(queueStat == null) {
             return 0;
           }
-          IStatisticRecord mpta = queueStat.getRecordByName(IStatisticRecord.Counters.MessageProcessingTime.name());
+          IStatisticRecord mpta = queueStat.getRecordByName(IStatisticRecord.Counters.MessageProcessingTime);
           org.jdiameter.api.StatisticRecord[] children = mpta.getChilds();
           if (children.length == 2 && children[1].getValueAsLong() != 0) {
             long count = children[1].getValueAsLong();
@@ -174,80 +201,160 @@ public class PeerFSMImpl implements IStateMachine {
         }
       }, timeSumm, timeCount);
 
+      IStatisticRecord[] records = new IStatisticRecord[orderedDispatch ? lanes.length + 2 : 2];
+      records[0] = queueSize;
+      records[1] = messagePrcAverageTime;
+      if (orderedDispatch) {
+        for (int i = 0; i < lanes.length; i++) {
+          final LinkedBlockingQueue<StateEvent> lane = lanes[i];
+          records[i + 2] = statisticFactory.newCounterRecord("QueueSizeLane" + i, "Size of FSM queue lane " + i, new IStatisticRecord.IntegerValueHolder() {
+            public int getValueAsInt() {
+              return lane.size();
+            }
+
+            public String getValueAsString() {
+              return String.valueOf(getValueAsInt());
+            }
+          });
+        }
+      }
+
       logger.debug("Initializing QueueStat @ Thread[{}]", Thread.currentThread().getName());
-      queueStat = statisticFactory.newStatistic(context.getPeerDescription(), IStatistic.Groups.PeerFSM, queueSize, messagePrcAverageTime);
+      queueStat = statisticFactory.newStatistic(context.getPeerDescription(), IStatistic.Groups.PeerFSM, records);
       logger.debug("Finished Initializing QueueStat @ Thread[{}]", Thread.currentThread().getName());
 
-      Runnable fsmQueueProcessor = new Runnable() {
-        public void run() {  
-          int runningNow = numberOfThreadsRunning.incrementAndGet();
-          logger.debug("Starting ... [{}] FSM threads are running", runningNow);
-          //PCB changed for multi-thread
-          while (mustRun) {
-            StateEvent event;
-            try {
-              event = eventQueue.poll(100, TimeUnit.MILLISECONDS);
-              if(logger.isDebugEnabled() && event != null) {
-                logger.debug("Got Event [{}] from Queue", event);
-              }
-            }
-            catch (InterruptedException e) {
-              logger.debug("Peer FSM stopped", e);
-              break;
+      //PCB added FSM multithread
+      // each lane has a single thread, or all threads share the single queue
+      int threadCount = orderedDispatch ? lanes.length : FSM_THREAD_COUNT;
+      fsmThreads = new Thread[threadCount];
+      for (int i = 0; i < threadCount; i++) {
+        logger.debug("Starting FSM Thread {} of {}", i + 1, threadCount);
+        Runnable fsmQueueProcessor = newQueueProcessor(lanes[i % lanes.length], currentRun);
+        fsmThreads[i] = concurrentFactory.getThread("FSM-" + context.getPeerDescription() + "_" + (i + 1), fsmQueueProcessor);
+        fsmThreads[i].start();
+      }
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Waits for the lane consumers of the previous run, they leave their loop
+   * within one poll once mustRun is cleared or the run changes. A consumer
+   * busy with an event for longer is left to exit on its own.
+   */
+  private void joinQueueProcessing() {
+    if (fsmThreads == null) {
+      return;
+    }
+    for (Thread thread : fsmThreads) {
+      if (thread == Thread.currentThread()) {
+        continue;
+      }
+      try {
+        thread.join(JOIN_TIMEOUT);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      if (thread.isAlive()) {
+        logger.warn("FSM Thread {} of the previous run is still processing an event", thread.getName());
+      }
+    }
+  }
+
+  private Runnable newQueueProcessor(final LinkedBlockingQueue<StateEvent> queue, final int queueRun) {
+    return new Runnable() {
+      public void run() {  
+        int runningNow = numberOfThreadsRunning.incrementAndGet();
+        logger.debug("Starting ... [{}] FSM threads are running", runningNow);
+        //PCB changed for multi-thread
+        while (mustRun && queueRun == run) {
+          StateEvent event;
+          try {
+            event = queue.poll(100, TimeUnit.MILLISECONDS);
+            if(logger.isDebugEnabled() && event != null) {
+              logger.debug("Got Event [{}] from Queue", event);
             }
-            //FIXME: baranowb: why this lock is here?
-            // PCB removed lock
-            // lock.lock();
-            try {
-              if (event != null) {
-                if (event instanceof FsmEvent && queueStat != null && queueStat.isEnabled()) {
-                  timeSumm.inc(System.currentTimeMillis() - ((FsmEvent) event).getCreatedTime());
-                  timeCount.inc();
-                }
-                logger.debug("Process event [{}]. Peer State is [{}]", event, state);
-                getStates()[state.ordinal()].processEvent(event);
-              }
-              if (timer != 0 && timer < System.currentTimeMillis()) {
-                timer = 0;
-                if(state != DOWN) { //without this check this event is fired in DOWN state.... it should not be.
-                  logger.debug("Sending timeout event");
-                  handleEvent(timeOutEvent); //FIXME: check why timer is not killed?
-                }
+          }
+          catch (InterruptedException e) {
+            logger.debug("Peer FSM stopped", e);
+            break;
+          }
+          //FIXME: baranowb: why this lock is here?
+          // PCB removed lock
+          // lock.lock();
+          try {
+            if (event != null) {
+              if (event instanceof FsmEvent && queueStat != null && queueStat.isEnabled()) {
+                timeSumm.inc(System.currentTimeMillis() - ((FsmEvent) event).getCreatedTime());
+                timeCount.inc();
               }
+              logger.debug("Process event [{}]. Peer State is [{}]", event, state);
+              getStates()[state.ordinal()].processEvent(event);
             }
-            catch (Exception e) {
-              logger.error("Error during processing FSM event", e);
-            }
-            finally {
-              // PCB removed lock
-              // lock.unlock();
+            if (timer != 0 && timer < System.currentTimeMillis()) {
+              timer = 0;
+              if(state != DOWN) { //without this check this event is fired in DOWN state.... it should not be.
+                logger.debug("Sending timeout event");
+                handleEvent(timeOutEvent); //FIXME: check why timer is not killed?
+              }
             }
           }
-          //PCB added logging
-          logger.debug("FSM Thread {} is exiting", Thread.currentThread().getName());
-          //this happens when peer FSM is down, lets remove stat
-          statisticFactory.removeStatistic(queueStat);
+          catch (Exception e) {
+            logger.error("Error during processing FSM event", e);
+          }
+          finally {
+            // PCB removed lock
+            // lock.unlock();
+          }
+        }
+        //PCB added logging
+        logger.debug("FSM Thread {} is exiting", Thread.currentThread().getName());
+        //this happens when peer FSM is down, lets remove stat unless a new run owns it
+        IStatistic stat = queueStat;
+        if (queueRun == run && stat != null) {
+          statisticFactory.removeStatistic(stat);
           logger.debug("Setting QueueStat to null @ Thread [{}]", Thread.currentThread().getName());
           queueStat = null;
           logger.debug("Done Setting QueueStat to null @ Thread [{}]", Thread.currentThread().getName());
-          int runningNowAfterStop = numberOfThreadsRunning.decrementAndGet();
-          logger.debug("Stopping ... [{}] FSM threads are running", runningNowAfterStop);
         }
-      };
-      //PCB added FSM multithread
-      for (int i = 1; i <= FSM_THREAD_COUNT; i++) {
-        logger.debug("Starting FSM Thread {} of {}", i, FSM_THREAD_COUNT);
-        Thread executor = concurrentFactory.getThread("FSM-" + context.getPeerDescription() + "_" + i, fsmQueueProcessor);
-        executor.start();
+        int runningNowAfterStop = numberOfThreadsRunning.decrementAndGet();
+        logger.debug("Stopping ... [{}] FSM threads are running", runningNowAfterStop);
       }
-    }
-    finally {
-      lock.unlock();
-    }
+    };
   }
 
   public double getQueueInfo() {
-    return eventQueue.size() * 1.0 / predefSize;
+    return getQueueSize() * 1.0 / (predefSize * lanes.length);
+  }
+
+  protected int getQueueSize() {
+    int size = 0;
+    for (LinkedBlockingQueue<StateEvent> lane : lanes) {
+      size += lane.size();
+    }
+    return size;
+  }
+
+  /**
+   * Returns the queue an event goes to. Without ordered dispatch there is a
+   * single queue, otherwise messages are spread by Session-Id and events
+   * without one go to the first lane.
+   */
+  protected LinkedBlockingQueue<StateEvent> getLane(StateEvent event) {
+    if (lanes.length == 1 || !(event.getData() instanceof IMessage)) {
+      return lanes[0];
+    }
+    String sessionId = ((IMessage) event.getData()).getSessionId();
+    if (sessionId == null) {
+      return lanes[0];
+    }
+    int hash = sessionId.hashCode();
+    hash ^= hash >>> 16;
+    return lanes[(hash & 0x7FFFFFFF) % lanes.length];
   }
 
   protected void loadTimeOuts(Configuration config) {
@@ -285,12 +392,24 @@ public class PeerFSMImpl implements IStateMachine {
   }
 
   public boolean handleEvent(StateEvent event) throws InternalError, OverloadException {
+    return handleEvent(event, true);
+  }
+
+  public boolean offerEvent(StateEvent event) throws InternalError, OverloadException {
+    return handleEvent(event, false);
+  }
+
+  /**
+   * Queues the event, waiting up to the inactivity timeout for room in the
+   * queue if allowed to.
+   */
+  protected boolean handleEvent(StateEvent event, boolean wait) throws InternalError, OverloadException {
     //if (state.getPublicState() == PeerState.DOWN && event.encodeType(EventTypes.class) == EventTypes.START_EVENT) {
     if (logger.isDebugEnabled()) {
       logger.debug("Handling event with type [{}]", event.getType());
     }
     //PCB added FSM multithread
-    if (numberOfThreadsRunning.get() == 0) {
+    if (!mustRun) {
       logger.debug("No FSM threads are running so calling runQueueProcessing()");
       runQueueProcessing();
     }
@@ -313,9 +432,10 @@ public class PeerFSMImpl implements IStateMachine {
     }
 
     boolean rc = false;
+    LinkedBlockingQueue<StateEvent> queue = getLane(event);
     try {
       if(logger.isDebugEnabled()) {
-        logger.debug("Placing event [{}] into linked blocking queue with remaining capacity: [{}].", event, eventQueue.remainingCapacity());
+        logger.debug("Placing event [{}] into linked blocking queue with remaining capacity: [{}].", event, queue.remainingCapacity());
         //PCB added logging
         //int queueSize = eventQueue.size();
         //if (System.currentTimeMillis() - lastLogged > 1000) {
@@ -325,7 +445,12 @@ public class PeerFSMImpl implements IStateMachine {
         //  }
         //}
       }
-      rc = eventQueue.offer(event, IAC_TIMEOUT, TimeUnit.MILLISECONDS);
+      if (wait) {
+        rc = queue.offer(event, IAC_TIMEOUT, TimeUnit.MILLISECONDS);
+      }
+      else {
+        rc = queue.offer(event);
+      }
     }
     catch (InterruptedException e) {
       logger.debug("Can not put event '" + event.toString() + "' to FSM " + this.toString(), e);
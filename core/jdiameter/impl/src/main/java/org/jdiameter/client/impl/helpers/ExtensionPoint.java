@@ -131,7 +131,10 @@ public class ExtensionPoint extends Ordinal {
   public static final ExtensionPoint InternalSessionDatasource = new ExtensionPoint("InternalSessionDatasource", "org.jdiameter.common.impl.data.LocalDataSource");
 
   /**
-   * Timer Facility class name
+   * Timer Facility class name. Set it to
+   * org.jdiameter.common.impl.timer.HashedWheelTimerFacilityImpl to run
+   * session timers on a hashed timing wheel, which is cheaper to schedule and
+   * cancel but only fires on its tick (100 ms by default).
    */
   public static final ExtensionPoint InternalTimerFacility = new ExtensionPoint("InternalTimerFacility", "org.jdiameter.common.impl.timer.LocalTimerFacilityImpl");
 
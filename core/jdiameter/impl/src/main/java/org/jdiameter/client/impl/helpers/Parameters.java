@@ -109,6 +109,66 @@ public class Parameters extends Ordinal {
    */
   public static final Parameters PeerFSMThreadCount = new Parameters("PeerFSMThreadCount", Integer.class, 3);
 
+  /**
+   * Peer FSM events are split by Session-Id into PeerFSMLaneCount queues, each with its own thread, keeping the order of each session
+   */
+  public static final Parameters PeerFSMOrderedDispatch = new Parameters("PeerFSMOrderedDispatch", Boolean.class, false);
+
+  /**
+   * Number of Peer FSM queues and threads used with ordered dispatch
+   */
+  public static final Parameters PeerFSMLaneCount = new Parameters("PeerFSMLaneCount", Integer.class, Runtime.getRuntime().availableProcessors());
+
+  /**
+   * Number of selector threads shared by all network connections
+   */
+  public static final Parameters ReactorThreadCount = new Parameters("ReactorThreadCount", Integer.class, Runtime.getRuntime().availableProcessors());
+
+  /**
+   * Number of bytes a connection may have waiting to be written before sending is refused with an OverloadException
+   */
+  public static final Parameters SendQueueHighWaterMark = new Parameters("SendQueueHighWaterMark", Integer.class, 4 * 1024 * 1024);
+
+  /**
+   * Class name of the strategy selecting the peer a request is routed to
+   */
+  public static final Parameters LoadBalancerClass = new Parameters("LoadBalancerClass", String.class, "org.jdiameter.client.impl.router.RatingLoadBalancer");
+
+  /**
+   * Milliseconds without activity after which a session is passivated by the passivating session datasource
+   */
+  public static final Parameters SessionPassivationIdleTime = new Parameters("SessionPassivationIdleTime", Long.class, 600000L);
+
+  /**
+   * Number of passivatable sessions kept live, least recently used ones above it are passivated
+   */
+  public static final Parameters SessionPassivationMaxResident = new Parameters("SessionPassivationMaxResident", Integer.class, 100000);
+
+  /**
+   * File holding passivated sessions, a temporary file is used if empty
+   */
+  public static final Parameters SessionPassivationLogFile = new Parameters("SessionPassivationLogFile", String.class, "");
+
+  /**
+   * Number of sessions with off-heap records whose live objects are kept by the off-heap session datasource
+   */
+  public static final Parameters OffHeapSessionMaxResident = new Parameters("OffHeapSessionMaxResident", Integer.class, 10000);
+
+  /**
+   * Number of session records in each segment allocated by the off-heap session datasource
+   */
+  public static final Parameters OffHeapSessionSegmentRecords = new Parameters("OffHeapSessionSegmentRecords", Integer.class, 16384);
+
+  /**
+   * Class name of the cluster backend holding the state of the replicated session datasource
+   */
+  public static final Parameters ClusterBackendClass = new Parameters("ClusterBackendClass", String.class, "org.mobicents.diameter.impl.ha.cluster.jbc.JBossCacheClusterBackend");
+
+  /**
+   * Number of cluster members holding each replicated session and timer, for cluster backends placing them
+   */
+  public static final Parameters ClusterReplicaCount = new Parameters("ClusterReplicaCount", Integer.class, 2);
+
   /**
    * Orig_host avp set as URI into CER message
    */
@@ -0,0 +1,106 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.client.impl.helpers;
+
+/**
+ * Generates Session-Id values of the form
+ * <pre>&lt;DiameterIdentity&gt;;&lt;high 32 bits&gt;;&lt;low 32 bits&gt;[;&lt;optional value&gt;]</pre>
+ * The identity part is encoded once, the counters are written straight into
+ * the characters of the new id and its hash is computed before it is handed
+ * out, so the data source, router and timers hashing it find it cached.
+ */
+public class SessionIdGenerator {
+
+  private static final int MAX_DIGITS = 10;
+
+  // shared by all generators, as the session factory counter always was
+  private static final UIDGenerator uid = new UIDGenerator(System.currentTimeMillis(), 64);
+
+  // "<DiameterIdentity>;"
+  private final char[] prefix;
+
+  public SessionIdGenerator(String identity) {
+    this.prefix = (identity + ';').toCharArray();
+  }
+
+  /**
+   * @return id of a new session
+   */
+  public String nextSessionId() {
+    return getSessionId(uid.nextLong(), null);
+  }
+
+  /**
+   * @param custom optional value appended to the id, may be null
+   * @return id of a new session
+   */
+  public String nextSessionId(String custom) {
+    return getSessionId(uid.nextLong(), custom);
+  }
+
+  /**
+   * Formats a session id.
+   * 
+   * @param id unique 64 bit value, written as its high and low 32 bits
+   * @param custom optional value appended to the id, may be null
+   * @return session id
+   */
+  public String getSessionId(long id, String custom) {
+    long high32 = id >>> 32;
+    long low32 = id & 0xffffffffL;
+    int length = prefix.length + MAX_DIGITS * 2 + 1 + (custom != null ? custom.length() + 1 : 0);
+    char[] chars = new char[length];
+    System.arraycopy(prefix, 0, chars, 0, prefix.length);
+    int position = writeDecimal(high32, chars, prefix.length);
+    chars[position++] = ';';
+    position = writeDecimal(low32, chars, position);
+    if (custom != null) {
+      //FIXME: add checks for not allowed chars?
+      chars[position++] = ';';
+      custom.getChars(0, custom.length(), chars, position);
+      position += custom.length();
+    }
+    String sessionId = new String(chars, 0, position);
+    // computed once here, String caches it
+    sessionId.hashCode();
+    return sessionId;
+  }
+
+  /**
+   * Writes the decimal digits of a non negative value.
+   * 
+   * @return position after the last digit
+   */
+  private static int writeDecimal(long value, char[] chars, int position) {
+    int digits = 1;
+    for (long v = value; v >= 10; v /= 10) {
+      digits++;
+    }
+    int end = position + digits;
+    for (int i = end - 1; i >= position; i--) {
+      chars[i] = (char) ('0' + (value % 10));
+      value /= 10;
+    }
+    return end;
+  }
+}
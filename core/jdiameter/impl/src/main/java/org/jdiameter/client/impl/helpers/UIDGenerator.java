@@ -22,74 +22,92 @@
 
 package org.jdiameter.client.impl.helpers;
 
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * This class provide uid range generator functionality
+ * This class provide uid range generator functionality.
+ * 
+ * Identifiers are taken from a single atomic counter, no lock is involved.
+ * Generators created with a range size above one let each thread reserve that
+ * many consecutive identifiers at once and hand them out without touching the
+ * shared counter, so heavily threaded callers do not contend on it. Identifiers
+ * stay unique, but are no longer issued in order across threads.
  * 
  * @author erick.svenson@yahoo.com
  * @author <a href="mailto:brainslog@gmail.com"> Alexandre Mendonca </a>
  * @author <a href="mailto:baranowb@gmail.com"> Bartosz Baranowski </a>
  */
-public class UIDGenerator {  // todo remove or redesign
+public class UIDGenerator {
 
-  private /*static*/ long value; // static causes repetitions
-  private final static Lock mutex = new ReentrantLock();
-  private final static ThreadLocal<Delta> ranges = new ThreadLocal<Delta>() {
-        protected synchronized Delta initialValue() {
-            return new Delta();
-        }
-    };
+  private final AtomicLong value;
+  private final int rangeSize;
+  // per instance, a shared one would hand out ranges of another generator
+  private final ThreadLocal<Range> ranges;
 
-    private static class Delta {
-        long start;
-        long stop;
+  private static class Range {
+    long next;
+    long stop;
+  }
 
-        public long update(long value) {
-            start = value;
-            stop  = value + 1;
-            return stop;
-        }
-    }
+  /**
+   * Create instance of class
+   */
+  public UIDGenerator() {
+    this(System.currentTimeMillis());
+  }
 
-    /**
-     * Create instance of class
-     */
-    public UIDGenerator() {
-        value = System.currentTimeMillis();
-    }
+  /**
+   * Create instance of class with predefined start value
+   * 
+   * @param startValue start value of counter
+   */
+  public UIDGenerator(long startValue) {
+    this(startValue, 1);
+  }
 
-    /**
-     * Create instance of class with predefined start value
-     * 
-     * @param startValue start value of counter
-     */
-    public UIDGenerator(long startValue) {
-        value = startValue;
+  /**
+   * Create instance of class with predefined start value, reserving
+   * identifiers per thread
+   * 
+   * @param startValue start value of counter
+   * @param rangeSize number of identifiers each thread reserves at once
+   */
+  public UIDGenerator(long startValue, int rangeSize) {
+    if (rangeSize < 1) {
+      throw new IllegalArgumentException("Range size must be positive: " + rangeSize);
     }
+    this.value = new AtomicLong(startValue);
+    this.rangeSize = rangeSize;
+    this.ranges = rangeSize == 1 ? null : new ThreadLocal<Range>() {
+      protected Range initialValue() {
+        return new Range();
+      }
+    };
+  }
 
-    /**
-     * Return next uid as int
-     * 
-     * @return  uid
-     */
-    public int nextInt() {
-        return (int) (0x7FFFFFFF & nextLong());
-    }
+  /**
+   * Return next uid as int
+   * 
+   * @return  uid
+   */
+  public int nextInt() {
+    return (int) (0x7FFFFFFF & nextLong());
+  }
 
-    /**
-     * Return next uid as long
-     * 
-     * @return uid as long
-     */
-    public long nextLong() {
-        Delta d = ranges.get();
-        if (d.start <= d.stop) {
-            mutex.lock();
-            value = d.update(value);
-            mutex.unlock();
-        }
-        return d.start++;
+  /**
+   * Return next uid as long
+   * 
+   * @return uid as long
+   */
+  public long nextLong() {
+    if (ranges == null) {
+      return value.getAndIncrement();
+    }
+    Range range = ranges.get();
+    if (range.next == range.stop) {
+      range.next = value.getAndAdd(rangeSize);
+      range.stop = range.next + rangeSize;
     }
+    return range.next++;
+  }
 }
@@ -66,7 +66,10 @@ import static org.jdiameter.client.impl.helpers.Parameters.KDManager;
 import static org.jdiameter.client.impl.helpers.Parameters.KDPwd;
 import static org.jdiameter.client.impl.helpers.Parameters.KDStore;
 import static org.jdiameter.client.impl.helpers.Parameters.KeyData;
+import static org.jdiameter.client.impl.helpers.Parameters.LoadBalancerClass;
 import static org.jdiameter.client.impl.helpers.Parameters.MessageTimeOut;
+import static org.jdiameter.client.impl.helpers.Parameters.OffHeapSessionMaxResident;
+import static org.jdiameter.client.impl.helpers.Parameters.OffHeapSessionSegmentRecords;
 import static org.jdiameter.client.impl.helpers.Parameters.OwnDiameterURI;
 import static org.jdiameter.client.impl.helpers.Parameters.OwnFirmwareRevision;
 import static org.jdiameter.client.impl.helpers.Parameters.OwnIPAddress;
@@ -74,7 +77,16 @@ import static org.jdiameter.client.impl.helpers.Parameters.OwnProductName;
 import static org.jdiameter.client.impl.helpers.Parameters.OwnRealm;
 import static org.jdiameter.client.impl.helpers.Parameters.OwnVendorID;
 import static org.jdiameter.client.impl.helpers.Parameters.PeerIp;
+import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMLaneCount;
+import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMOrderedDispatch;
 import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMThreadCount;
+import static org.jdiameter.client.impl.helpers.Parameters.ReactorThreadCount;
+import static org.jdiameter.client.impl.helpers.Parameters.SendQueueHighWaterMark;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionPassivationIdleTime;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionPassivationLogFile;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionPassivationMaxResident;
+import static org.jdiameter.client.impl.helpers.Parameters.ClusterBackendClass;
+import static org.jdiameter.client.impl.helpers.Parameters.ClusterReplicaCount;
 import static org.jdiameter.client.impl.helpers.Parameters.PeerLocalPortRange;
 import static org.jdiameter.client.impl.helpers.Parameters.PeerName;
 import static org.jdiameter.client.impl.helpers.Parameters.PeerRating;
@@ -327,6 +339,18 @@ public class XMLConfiguration extends EmptyConfiguration {
       else if (nodeName.equals("DpaTimeOut")) { add(DpaTimeOut, getLongValue(c.item(i)));               }
       else if (nodeName.equals("RecTimeOut")) { add(RecTimeOut, getLongValue(c.item(i)));               }
       else if (nodeName.equals("PeerFSMThreadCount")) { add(PeerFSMThreadCount, getIntValue(c.item(i)));}
+      else if (nodeName.equals("PeerFSMOrderedDispatch")) { add(PeerFSMOrderedDispatch, Boolean.valueOf(getValue(c.item(i))));}
+      else if (nodeName.equals("PeerFSMLaneCount")) { add(PeerFSMLaneCount, getIntValue(c.item(i)));}
+      else if (nodeName.equals("ReactorThreadCount")) { add(ReactorThreadCount, getIntValue(c.item(i)));}
+      else if (nodeName.equals("SendQueueHighWaterMark")) { add(SendQueueHighWaterMark, getIntValue(c.item(i)));}
+      else if (nodeName.equals("LoadBalancerClass")) { add(LoadBalancerClass, getValue(c.item(i)));}
+      else if (nodeName.equals("SessionPassivationIdleTime")) { add(SessionPassivationIdleTime, getLongValue(c.item(i)));}
+      else if (nodeName.equals("SessionPassivationMaxResident")) { add(SessionPassivationMaxResident, getIntValue(c.item(i)));}
+      else if (nodeName.equals("SessionPassivationLogFile")) { add(SessionPassivationLogFile, getValue(c.item(i)));}
+      else if (nodeName.equals("OffHeapSessionMaxResident")) { add(OffHeapSessionMaxResident, getIntValue(c.item(i)));}
+      else if (nodeName.equals("OffHeapSessionSegmentRecords")) { add(OffHeapSessionSegmentRecords, getIntValue(c.item(i)));}
+      else if (nodeName.equals("ClusterBackendClass")) { add(ClusterBackendClass, getValue(c.item(i)));}
+      else if (nodeName.equals("ClusterReplicaCount")) { add(ClusterReplicaCount, getIntValue(c.item(i)));}
       else if (nodeName.equals("Statistics")) { addStatisticLogger(Statistics, c.item(i));              }
       else if (nodeName.equals("Concurrent")) { addConcurrent(Concurrent, c.item(i));                   }
       else if (nodeName.equals("Dictionary")) { addDictionary(Dictionary, c.item(i));                   }
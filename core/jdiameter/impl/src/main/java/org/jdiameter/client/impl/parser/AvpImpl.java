@@ -22,9 +22,13 @@
 
 package org.jdiameter.client.impl.parser;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.URISyntaxException;
 import java.net.UnknownServiceException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Date;
 
@@ -33,6 +37,7 @@ import org.jdiameter.api.AvpDataException;
 import org.jdiameter.api.AvpSet;
 import org.jdiameter.api.InternalException;
 import org.jdiameter.api.URI;
+import org.jdiameter.client.api.parser.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,7 +59,13 @@ class AvpImpl implements Avp {
   private boolean isVendorSpecific = false;
 
   private byte[] rawData = null;
-  private AvpSet groupedData = new AvpSetImpl();
+  // Grouped children, created or decoded on first access
+  private AvpSet groupedData = null;
+
+  // Undecoded payload, kept as a view into the frame this AVP was read from
+  private transient ByteBuffer frame = null;
+  private transient int frameOffset;
+  private transient int frameLength;
 
   private static final Logger logger = LoggerFactory.getLogger(AvpImpl.class);
 
@@ -72,6 +83,75 @@ class AvpImpl implements Avp {
     }
   }
 
+  /**
+   * Creates an AVP whose payload is not copied out of the received frame. The
+   * frame must not be modified afterwards, the payload is only materialized as
+   * a byte[] when it is actually requested.
+   *
+   * @param frame buffer holding the encoded AVP
+   * @param offset absolute index of the payload in the frame
+   * @param length length of the payload, without padding
+   */
+  AvpImpl(int code, int flags, long vnd, ByteBuffer frame, int offset, int length) {
+    this(code, flags, vnd, null);
+    this.frame = frame;
+    this.frameOffset = offset;
+    this.frameLength = length;
+  }
+
+  /**
+   * Creates an AVP which takes over data instead of copying it, for payloads
+   * just encoded by the parser.
+   */
+  static AvpImpl wrap(int code, int flags, long vnd, byte[] data) {
+    AvpImpl avp = new AvpImpl(code, flags, vnd, null);
+    avp.rawData = data;
+    return avp;
+  }
+
+  /*
+   * Builders below keep the value itself, it is written straight into the
+   * frame the AVP is encoded to, see ValueAvpImpl.
+   */
+
+  /**
+   * Creates an AVP with a four byte value: Integer32, Unsigned32, Float32 bits or Time.
+   */
+  static AvpImpl int32(int code, int flags, long vnd, int value) {
+    return new ValueAvpImpl(code, flags, vnd, ValueAvpImpl.INT32, value, null, 4);
+  }
+
+  /**
+   * Creates an AVP with an eight byte value: Integer64, Unsigned64 or Float64 bits.
+   */
+  static AvpImpl int64(int code, int flags, long vnd, long value) {
+    return new ValueAvpImpl(code, flags, vnd, ValueAvpImpl.INT64, value, null, 8);
+  }
+
+  /**
+   * Creates an UTF8String or OctetString AVP. Strings with characters the
+   * encoding does not map one to one, surrogates or beyond ISO-8859-1 for
+   * octets, are encoded at once as before.
+   */
+  static AvpImpl string(int code, int flags, long vnd, String value, boolean asOctetString) throws ParseException {
+    int length = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (asOctetString ? c > 0xFF : (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)) {
+        return wrap(code, flags, vnd, asOctetString ? parser.octetStringToBytes(value) : parser.utf8StringToBytes(value));
+      }
+      length += (asOctetString || c < 0x80) ? 1 : c < 0x800 ? 2 : 3;
+    }
+    return new ValueAvpImpl(code, flags, vnd, asOctetString ? ValueAvpImpl.OCTETS : ValueAvpImpl.UTF8, 0, value, length);
+  }
+
+  /**
+   * Creates an Address AVP.
+   */
+  static AvpImpl address(int code, int flags, long vnd, InetAddress value) {
+    return new ValueAvpImpl(code, flags, vnd, ValueAvpImpl.ADDRESS, 0, value, (value instanceof Inet4Address ? 4 : 16) + 2);
+  }
+
   AvpImpl(Avp avp) {
     avpCode     = avp.getCode();
     vendorID    = avp.getVendorId();
@@ -79,6 +159,14 @@ class AvpImpl implements Avp {
     isEncrypted = avp.isEncrypted();
     isVendorSpecific = avp.isVendorId();
     try {
+    	if (avp instanceof AvpImpl && ((AvpImpl) avp).frame != null && ((AvpImpl) avp).groupedData == null) {
+    		// received frames are never modified, no need to copy
+    		AvpImpl other = (AvpImpl) avp;
+    		frame = other.frame;
+    		frameOffset = other.frameOffset;
+    		frameLength = other.frameLength;
+    		return;
+    	}
     	byte[] data = avp.getRaw();
     	if (data != null) { // simple AVP
     		rawData = Arrays.copyOf(data, data.length);
@@ -87,7 +175,8 @@ class AvpImpl implements Avp {
     		AvpSet grouped = avp.getGrouped();
     		
     		if (grouped != null) {
-    			groupedData = parser.decodeAvpSet(parser.encodeAvpSet(grouped)); // copy all
+    			// copy all, children are only decoded again if accessed
+    			rawData = parser.encodeAvpSet(grouped);
     		}
     	}
     } catch (Exception e) {
@@ -121,16 +210,56 @@ class AvpImpl implements Avp {
   }
 
   public byte[] getRaw() throws AvpDataException {
-    return rawData;
+    return getRawData();
   }
 
   public byte[] getOctetString() throws AvpDataException {
-    return rawData;
+    return raw();
+  }
+
+  byte[] raw() {
+    byte[] data = rawData;
+    if (data == null) {
+      data = materialize();
+      rawData = data;
+    }
+    return data;
+  }
+
+  /**
+   * @return the payload as a new byte[], once it is asked for as such, or null if there is none
+   */
+  byte[] materialize() {
+    return frame != null ? parser.getBytes(frame, frameOffset, frameLength) : null;
+  }
+
+  /**
+   * @return true if the payload was handed out as a byte[], it is the one to use from then on
+   */
+  boolean isMaterialized() {
+    return rawData != null;
+  }
+
+  /*
+   * Typed getters read the value in place, from the received frame when
+   * there is one, so no byte[] is materialized for them.
+   */
+
+  private byte[] payload() {
+    return (frame != null && frame.hasArray()) ? frame.array() : raw();
+  }
+
+  private int payloadOffset() {
+    return (frame != null && frame.hasArray()) ? frame.arrayOffset() + frameOffset : 0;
+  }
+
+  private int payloadLength() {
+    return frame != null ? frameLength : rawData.length;
   }
 
   public String getUTF8String() throws AvpDataException {
     try {
-      return parser.bytesToUtf8String(rawData);
+      return parser.bytesToUtf8String(payload(), payloadOffset(), payloadLength());
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -139,7 +268,7 @@ class AvpImpl implements Avp {
 
   public int getInteger32() throws AvpDataException {
     try {
-      return parser.bytesToInt(rawData);
+      return parser.bytesToInt(payload(), payloadOffset(), payloadLength());
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -148,7 +277,7 @@ class AvpImpl implements Avp {
 
   public long getInteger64() throws AvpDataException {
     try {
-      return parser.bytesToLong(rawData);
+      return parser.bytesToLong(payload(), payloadOffset(), payloadLength());
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -157,9 +286,7 @@ class AvpImpl implements Avp {
 
   public long getUnsigned32() throws AvpDataException {
     try {
-      byte[] u32ext = new byte[8];
-      System.arraycopy(rawData, 0, u32ext, 4, 4);
-      return parser.bytesToLong(u32ext);
+      return parser.bytesToUnsigned32(payload(), payloadOffset(), payloadLength());
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -168,7 +295,7 @@ class AvpImpl implements Avp {
 
   public long getUnsigned64() throws AvpDataException {
     try {
-      return parser.bytesToLong(rawData);
+      return parser.bytesToLong(payload(), payloadOffset(), payloadLength());
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -177,7 +304,7 @@ class AvpImpl implements Avp {
 
   public float getFloat32() throws AvpDataException {
     try {
-      return parser.bytesToFloat(rawData);
+      return parser.bytesToFloat(payload(), payloadOffset(), payloadLength());
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -186,7 +313,7 @@ class AvpImpl implements Avp {
 
   public double getFloat64() throws AvpDataException {
     try {
-      return parser.bytesToDouble(rawData);
+      return parser.bytesToDouble(payload(), payloadOffset(), payloadLength());
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -195,7 +322,7 @@ class AvpImpl implements Avp {
 
   public InetAddress getAddress() throws AvpDataException {
     try {
-      return parser.bytesToAddress(rawData);
+      return parser.bytesToAddress(payload(), payloadOffset(), payloadLength());
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -204,7 +331,7 @@ class AvpImpl implements Avp {
 
   public Date getTime() throws AvpDataException {
     try {
-      return parser.bytesToDate(rawData);
+      return parser.bytesToDate(payload(), payloadOffset(), payloadLength());
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -213,7 +340,7 @@ class AvpImpl implements Avp {
 
   public String getDiameterIdentity() throws AvpDataException {
     try {
-      return parser.bytesToOctetString(rawData);
+      return parser.bytesToOctetString(payload(), payloadOffset(), payloadLength());
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -222,7 +349,7 @@ class AvpImpl implements Avp {
 
   public URI getDiameterURI() throws AvpDataException {
     try {
-      return new URI(parser.bytesToOctetString(rawData));
+      return new URI(parser.bytesToOctetString(payload(), payloadOffset(), payloadLength()));
     }
     catch (URISyntaxException e) {
       throw new AvpDataException(e, this);
@@ -233,15 +360,24 @@ class AvpImpl implements Avp {
   }
 
   public AvpSet getGrouped() throws AvpDataException {
+    AvpSet grouped = groupedData;
+    if (grouped != null) {
+      return grouped;
+    }
     try {
-    	if (rawData != null) {
-    		return parser.decodeAvpSet(rawData);
+    	if (frame != null) {
+    		grouped = parser.decodeAvpSet(frame, frameOffset, frameLength);
+    	} else if (raw() != null) {
+    		grouped = parser.decodeAvpSet(rawData);
     	} else {
-    		return groupedData;
+    		grouped = new AvpSetImpl();
     	}
     } catch (Exception e) {
       throw new AvpDataException(e, this);
     }
+    // decoded once, further reads and changes go to the same children
+    groupedData = grouped;
+    return grouped;
   }
 
   public boolean isWrapperFor(Class<?> aClass) throws InternalException {
@@ -253,7 +389,67 @@ class AvpImpl implements Avp {
   }
 
   public byte[] getRawData() {
-    return rawData;
+    if (groupedData != null) {
+      // children may have been changed since they were decoded
+      return (rawData != null || frame != null) ? parser.encodeAvpSet(groupedData) : null;
+    }
+    return raw();
+  }
+
+  /**
+   * @return true if the payload is still only a view into the received frame,
+   *         it was neither handed out as a byte[] nor decoded into children,
+   *         so it cannot have been changed in place
+   */
+  boolean isUntouched() {
+    return frame != null && rawData == null && groupedData == null;
+  }
+
+  /**
+   * @return length of the payload, or -1 if it has to be encoded from the grouped children
+   */
+  int getRawLength() {
+    if (groupedData != null) {
+      return -1;
+    }
+    if (rawData != null) {
+      return rawData.length;
+    }
+    return frame != null ? frameLength : 0;
+  }
+
+  /**
+   * Writes the payload to buffer, straight from the received frame when it was not materialized.
+   */
+  void writeRaw(ByteBuffer buffer) {
+    if (rawData != null) {
+      buffer.put(rawData);
+    }
+    else if (frame != null) {
+      if (frame.hasArray()) {
+        buffer.put(frame.array(), frame.arrayOffset() + frameOffset, frameLength);
+      }
+      else {
+        ByteBuffer view = frame.duplicate();
+        view.clear();
+        view.limit(frameOffset + frameLength);
+        view.position(frameOffset);
+        buffer.put(view);
+      }
+    }
+  }
+
+  /**
+   * @return length of a value kept by a builder, null if there is none
+   */
+  Integer valueLength() {
+    return null;
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    // the frame view is transient, make sure the payload goes along
+    raw();
+    out.defaultWriteObject();
   }
 
   // Caching toString.. Avp shouldn't be modified once created.
@@ -263,7 +459,8 @@ class AvpImpl implements Avp {
   public String toString() {
     if(toString == null) {
     	this.toString = new StringBuffer("AvpImpl [avpCode=").append(avpCode).append(", vendorID=").append(vendorID)
-    		  .append(", len=").append((rawData != null) ? rawData.length : null).append("]@").append(super.hashCode()).toString(); 
+    		  .append(", len=").append((rawData != null) ? Integer.valueOf(rawData.length) : (frame != null) ? Integer.valueOf(frameLength) : valueLength())
+    		  .append("]@").append(super.hashCode()).toString(); 
     }
 
     return this.toString;
@@ -0,0 +1,200 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.client.impl.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.jdiameter.api.Avp;
+
+/**
+ * Backing list of {@link AvpSetImpl}. AVPs are kept in insertion order, as
+ * they have to be encoded, and an open addressing index from AVP code to the
+ * positions holding that code is kept next to them, so lookups do not need to
+ * scan the whole list. Positions with the same code are chained in list order,
+ * lookups by code and vendor walk that chain.
+ *
+ * The index is only built for lists with more than a few AVPs, it is updated
+ * in place when AVPs are appended and rebuilt on the next lookup after any
+ * other change to the list. A rebuilt index is complete before it is
+ * published through a volatile field, so messages may be read by several
+ * threads at once once they are no longer changed.
+ */
+class AvpList extends ArrayList<Avp> {
+
+  private static final long serialVersionUID = 1L;
+
+  // below this size a plain scan is cheaper than keeping the index
+  private static final int INDEX_THRESHOLD = 8;
+
+  private static final int EMPTY = -1;
+
+  private transient volatile Index index;
+
+  @Override
+  public boolean add(Avp avp) {
+    super.add(avp);
+    Index index = this.index;
+    if (index != null && index.modCount == modCount - 1) {
+      // plain append, keep index up to date
+      if (index.append(size() - 1, avp.getCode())) {
+        index.modCount = modCount;
+      }
+      else {
+        this.index = null;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return position of the first AVP with the given code, or -1 if none
+   */
+  int first(int code) {
+    Index index = index();
+    if (index == null) {
+      return scan(code, 0);
+    }
+    int slot = index.slot(code);
+    return slot == EMPTY ? EMPTY : index.heads[slot];
+  }
+
+  /**
+   * @return position of the next AVP with the same code as the one at the
+   *         given position, or -1 if none
+   */
+  int next(int position) {
+    Index index = index();
+    if (index == null) {
+      return scan(get(position).getCode(), position + 1);
+    }
+    return index.next[position];
+  }
+
+  /**
+   * @return count of structural changes made to the list so far
+   */
+  int getModCount() {
+    return modCount;
+  }
+
+  private int scan(int code, int from) {
+    for (int i = from; i < size(); i++) {
+      if (get(i).getCode() == code) {
+        return i;
+      }
+    }
+    return EMPTY;
+  }
+
+  /**
+   * @return index of the current content, or null if the list is too short to need one
+   */
+  private Index index() {
+    int size = size();
+    if (size < INDEX_THRESHOLD) {
+      return null;
+    }
+    Index index = this.index;
+    if (index == null || index.modCount != modCount) {
+      // readers racing here each build their own copy, the last one is kept
+      index = new Index(this);
+      this.index = index;
+    }
+    return index;
+  }
+
+  /**
+   * Open addressing table from AVP code to the first and last position with
+   * that code, and the chain of positions with the same code.
+   */
+  private static final class Index {
+
+    final int[] codes;
+    final int[] heads;
+    final int[] tails;
+    // position -> next position with the same code
+    final int[] next;
+    int entries;
+    // modCount of the list the index reflects
+    int modCount;
+
+    Index(AvpList list) {
+      int size = list.size();
+      int capacity = Integer.highestOneBit(size) << 2;
+      codes = new int[capacity];
+      heads = new int[capacity];
+      tails = new int[capacity];
+      next = new int[capacity];
+      Arrays.fill(heads, EMPTY);
+      for (int i = 0; i < size; i++) {
+        append(i, list.get(i).getCode());
+      }
+      modCount = list.modCount;
+    }
+
+    /**
+     * Adds the AVP at the given position, which must be the last one, to the index.
+     *
+     * @return false if the index is out of room and has to be rebuilt
+     */
+    boolean append(int position, int code) {
+      if (position >= next.length || (entries + 1) * 2 > codes.length) {
+        return false;
+      }
+      next[position] = EMPTY;
+      int mask = codes.length - 1;
+      int slot = hash(code) & mask;
+      while (heads[slot] != EMPTY) {
+        if (codes[slot] == code) {
+          next[tails[slot]] = position;
+          tails[slot] = position;
+          return true;
+        }
+        slot = (slot + 1) & mask;
+      }
+      codes[slot] = code;
+      heads[slot] = position;
+      tails[slot] = position;
+      entries++;
+      return true;
+    }
+
+    int slot(int code) {
+      int mask = codes.length - 1;
+      int slot = hash(code) & mask;
+      while (heads[slot] != EMPTY) {
+        if (codes[slot] == code) {
+          return slot;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return EMPTY;
+    }
+
+    private static int hash(int code) {
+      int h = code * 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+  }
+}
@@ -31,11 +31,9 @@ package org.jdiameter.client.impl.parser;
  */
 
 import java.net.InetAddress;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
-import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,19 +60,28 @@ class AvpSetImpl implements AvpSet {
   private static final long serialVersionUID = 1L;
   private static final ElementParser parser = new ElementParser();
 
-    List<Avp> avps = new ArrayList<Avp>();
+    AvpList avps = new AvpList();
 
     AvpSetImpl() {
 
     }
 
-    public Avp getAvp(int avpCode) {
-        for (Avp avp : this.avps) {
-            if (avp.getCode() == avpCode) {
-                return avp;
+    /**
+     * @return true if every AVP of the set is still undecoded, see {@link AvpImpl#isUntouched()}
+     */
+    boolean isUntouched() {
+        for (int i = 0; i < this.avps.size(); i++) {
+            Avp avp = this.avps.get(i);
+            if (!(avp instanceof AvpImpl) || !((AvpImpl) avp).isUntouched()) {
+                return false;
             }
         }
-        return null;
+        return true;
+    }
+
+    public Avp getAvp(int avpCode) {
+        int i = this.avps.first(avpCode);
+        return i < 0 ? null : this.avps.get(i);
     }
 
     public Avp getAvpByIndex(int avpIndex) {
@@ -82,8 +89,9 @@ class AvpSetImpl implements AvpSet {
     }
 
     public Avp getAvp(int avpCode, long vendorId) {
-        for (Avp avp : this.avps) {
-            if (avp.getCode() == avpCode && avp.getVendorId() == vendorId) {
+        for (int i = this.avps.first(avpCode); i >= 0; i = this.avps.next(i)) {
+            Avp avp = this.avps.get(i);
+            if (avp.getVendorId() == vendorId) {
               return avp;
             }
         }
@@ -92,10 +100,8 @@ class AvpSetImpl implements AvpSet {
 
     public AvpSet getAvps(int avpCode) {
         AvpSet result = new AvpSetImpl();
-        for (Avp avp : this.avps) {
-            if (avp.getCode() == avpCode) {
-                result.addAvp(avp);
-            }
+        for (int i = this.avps.first(avpCode); i >= 0; i = this.avps.next(i)) {
+            result.addAvp(this.avps.get(i));
         }
         return result;
     }
@@ -104,8 +110,9 @@ class AvpSetImpl implements AvpSet {
 
     public AvpSet getAvps(int avpCode, long vendorId) {
         AvpSet result = new AvpSetImpl();
-        for (Avp avp : this.avps) {
-            if (avp.getCode() == avpCode && avp.getVendorId() == vendorId) {
+        for (int i = this.avps.first(avpCode); i >= 0; i = this.avps.next(i)) {
+            Avp avp = this.avps.get(i);
+            if (avp.getVendorId() == vendorId) {
               result.addAvp(avp);
             }
         }
@@ -144,21 +151,21 @@ class AvpSetImpl implements AvpSet {
     }
 
     public Avp addAvp(int avpCode, long value, boolean asUnsigned) {
-        Avp res = new AvpImpl(avpCode, 0, 0, asUnsigned ? parser.intU32ToBytes(value) : parser.int64ToBytes(value));
+        Avp res = asUnsigned ? AvpImpl.int32(avpCode, 0, 0, (int) value) : AvpImpl.int64(avpCode, 0, 0, value);
         this.avps.add(res);
         return res;
     }
 
     public Avp addAvp(int avpCode, long value, boolean mFlag, boolean pFlag, boolean asUnsigned) {
         int flags = ((mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags , 0, asUnsigned ? parser.intU32ToBytes(value) : parser.int64ToBytes(value));
+        Avp res = asUnsigned ? AvpImpl.int32(avpCode, flags , 0, (int) value) : AvpImpl.int64(avpCode, flags , 0, value);
         this.avps.add(res);
         return res;
     }
 
     public Avp addAvp(int avpCode, long value, long vndId, boolean mFlag, boolean pFlag, boolean asUnsigned) {
         int flags = ((vndId !=0 ? 0x80:0) | (mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, vndId, asUnsigned ? parser.intU32ToBytes(value) : parser.int64ToBytes(value));
+        Avp res = asUnsigned ? AvpImpl.int32(avpCode, flags, vndId, (int) value) : AvpImpl.int64(avpCode, flags, vndId, value);
         this.avps.add(res);
         return res;
     }
@@ -172,21 +179,21 @@ class AvpSetImpl implements AvpSet {
     }
 
     public Avp insertAvp(int index, int avpCode, long value, boolean asUnsigned) {
-        Avp res = new AvpImpl(avpCode, 0, 0, asUnsigned ? parser.intU32ToBytes(value) : parser.int64ToBytes(value));
+        Avp res = asUnsigned ? AvpImpl.int32(avpCode, 0, 0, (int) value) : AvpImpl.int64(avpCode, 0, 0, value);
         this.avps.add(index, res);
         return res;
     }
 
     public Avp insertAvp(int index, int avpCode, long value, boolean mFlag, boolean pFlag, boolean asUnsigned) {
         int flags = ((mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags , 0, asUnsigned ? parser.intU32ToBytes(value) : parser.int64ToBytes(value));
+        Avp res = asUnsigned ? AvpImpl.int32(avpCode, flags , 0, (int) value) : AvpImpl.int64(avpCode, flags , 0, value);
         this.avps.add(index, res);
         return res;
     }
 
     public Avp insertAvp(int index, int avpCode, long value, long vndId, boolean mFlag, boolean pFlag, boolean asUnsigned) {
         int flags = ((vndId !=0 ? 0x80:0) | (mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, vndId, asUnsigned ? parser.intU32ToBytes(value) : parser.int64ToBytes(value));
+        Avp res = asUnsigned ? AvpImpl.int32(avpCode, flags, vndId, (int) value) : AvpImpl.int64(avpCode, flags, vndId, value);
         this.avps.add(res);
         return res;
     }
@@ -242,67 +249,67 @@ class AvpSetImpl implements AvpSet {
     }
 
     public Avp addAvp(int avpCode, int value) {
-        Avp res = new AvpImpl(avpCode, 0, 0, parser.int32ToBytes(value));
+        Avp res = AvpImpl.int32(avpCode, 0, 0, value);
         this.avps.add(res);
         return res;
     }
 
     public Avp addAvp(int avpCode, int value, boolean mFlag, boolean pFlag) {
         int flags = ((mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, 0, parser.int32ToBytes(value));
+        Avp res = AvpImpl.int32(avpCode, flags, 0, value);
         this.avps.add(res);
         return res;
     }
 
     public Avp addAvp(int avpCode, int value, long vndId, boolean mFlag, boolean pFlag) {
         int flags = ((vndId !=0 ? 0x80:0) | (mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, vndId, parser.int32ToBytes(value));
+        Avp res = AvpImpl.int32(avpCode, flags, vndId, value);
         this.avps.add(res);
         return res;
     }
 
     public Avp addAvp(int avpCode, long value) {
-        Avp res = new AvpImpl(avpCode, 0, 0, parser.int64ToBytes(value) );
+        Avp res = AvpImpl.int64(avpCode, 0, 0, value);
         this.avps.add(res);
         return res;
     }
 
     public Avp addAvp(int avpCode, long value, boolean mFlag, boolean pFlag) {
         int flags = ((mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, 0, parser.int64ToBytes(value) );
+        Avp res = AvpImpl.int64(avpCode, flags, 0, value);
         this.avps.add(res);
         return res;
     }
 
     public Avp addAvp(int avpCode, long value, long vndId, boolean mFlag, boolean pFlag) {
         int flags = ((vndId !=0 ? 0x80:0) | (mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, vndId, parser.int64ToBytes(value) );
+        Avp res = AvpImpl.int64(avpCode, flags, vndId, value);
         this.avps.add(res);
         return res;
     }
 
     public Avp addAvp(int avpCode, float value) {
-        Avp res = new AvpImpl(avpCode, 0, 0, parser.float32ToBytes(value));
+        Avp res = AvpImpl.int32(avpCode, 0, 0, Float.floatToIntBits(value));
         this.avps.add(res);
         return res;
     }
 
     public Avp addAvp(int avpCode, float value, boolean mFlag, boolean pFlag) {
         int flags = ((mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, 0, parser.float32ToBytes(value));
+        Avp res = AvpImpl.int32(avpCode, flags, 0, Float.floatToIntBits(value));
         this.avps.add(res);
         return res;
     }
 
     public Avp addAvp(int avpCode, float value, long vndId, boolean mFlag, boolean pFlag) {
         int flags = ((vndId !=0 ? 0x80:0) | (mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-         Avp res = new AvpImpl(avpCode, flags, vndId, parser.float32ToBytes(value));
+         Avp res = AvpImpl.int32(avpCode, flags, vndId, Float.floatToIntBits(value));
         this.avps.add(res);
         return res;
     }
 
     public Avp addAvp(int avpCode, double value) {
-        Avp res = new AvpImpl(avpCode, 0, 0, parser.float64ToBytes(value));
+        Avp res = AvpImpl.int64(avpCode, 0, 0, Double.doubleToLongBits(value));
         this.avps.add(res);
         return res;
 
@@ -310,22 +317,21 @@ class AvpSetImpl implements AvpSet {
 
     public Avp addAvp(int avpCode, double value, boolean mFlag, boolean pFlag) {
         int flags = ((mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, 0, parser.float64ToBytes(value));
+        Avp res = AvpImpl.int64(avpCode, flags, 0, Double.doubleToLongBits(value));
         this.avps.add(res);
         return res;
     }
 
     public Avp addAvp(int avpCode, double value, long vndId, boolean mFlag, boolean pFlag) {
         int flags = ((vndId !=0 ? 0x80:0) | (mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, vndId, parser.float64ToBytes(value));
+        Avp res = AvpImpl.int64(avpCode, flags, vndId, Double.doubleToLongBits(value));
         this.avps.add(res);
         return res;
     }
 
     public Avp addAvp(int avpCode, String value, boolean asOctetString) {
         try {
-            Avp res = new AvpImpl(avpCode, 0, 0, asOctetString ? parser.octetStringToBytes(value) : parser.utf8StringToBytes(value)
-            );
+            Avp res = AvpImpl.string(avpCode, 0, 0, value, asOctetString);
             this.avps.add(res);
             return res;
         } catch(Exception e) {
@@ -336,8 +342,7 @@ class AvpSetImpl implements AvpSet {
     public Avp addAvp(int avpCode, String value, boolean mFlag, boolean pFlag,  boolean asOctetString) {
         int flags = ((mFlag ? 0x40:0) | (pFlag ? 0x20:0));
         try {
-            Avp res = new AvpImpl(avpCode, flags, 0, asOctetString ? parser.octetStringToBytes(value) : parser.utf8StringToBytes(value)
-            );
+            Avp res = AvpImpl.string(avpCode, flags, 0, value, asOctetString);
             this.avps.add(res);
             return res;
         } catch(Exception e) {
@@ -348,8 +353,7 @@ class AvpSetImpl implements AvpSet {
     public Avp addAvp(int avpCode, String value, long vndId, boolean mFlag, boolean pFlag,  boolean asOctetString) {
         int flags = ((vndId !=0 ? 0x80:0) | (mFlag ? 0x40:0) | (pFlag ? 0x20:0));
         try {
-            Avp res = new AvpImpl(avpCode, flags, vndId, asOctetString ? parser.octetStringToBytes(value) : parser.utf8StringToBytes(value)
-            );
+            Avp res = AvpImpl.string(avpCode, flags, vndId, value, asOctetString);
             this.avps.add(res);
             return res;
         } catch(Exception e) {
@@ -359,7 +363,7 @@ class AvpSetImpl implements AvpSet {
 
     public Avp addAvp(int avpCode, URI value) {
         try {
-            Avp res = new AvpImpl(avpCode, 0, 0, parser.octetStringToBytes(value.toString()));
+            Avp res = AvpImpl.string(avpCode, 0, 0, value.toString(), true);
             this.avps.add(res);
             return res;
         } catch (ParseException e) {
@@ -370,7 +374,7 @@ class AvpSetImpl implements AvpSet {
     public Avp addAvp(int avpCode, URI value, boolean mFlag, boolean pFlag) {
         int flags = ((mFlag ? 0x40:0) | (pFlag ? 0x20:0));
         try {
-            Avp res = new AvpImpl(avpCode, flags, 0, parser.octetStringToBytes(value.toString()));
+            Avp res = AvpImpl.string(avpCode, flags, 0, value.toString(), true);
             this.avps.add(res);
             return res;
         } catch (ParseException e) {
@@ -381,7 +385,7 @@ class AvpSetImpl implements AvpSet {
     public Avp addAvp(int avpCode, URI value, long vndId, boolean mFlag, boolean pFlag) {
         int flags = ((vndId !=0 ? 0x80:0) | (mFlag ? 0x40:0) | (pFlag ? 0x20:0));
         try {
-            Avp res = new AvpImpl(avpCode, flags, vndId, parser.octetStringToBytes(value.toString()));
+            Avp res = AvpImpl.string(avpCode, flags, vndId, value.toString(), true);
             this.avps.add(res);
             return res;
         } catch (ParseException e) {
@@ -390,27 +394,27 @@ class AvpSetImpl implements AvpSet {
     }
 
     public Avp addAvp(int avpCode, InetAddress value) {
-        Avp res = new AvpImpl(avpCode, 0, 0, parser.addressToBytes(value));
+        Avp res = AvpImpl.address(avpCode, 0, 0, value);
         this.avps.add(res);
         return res;
     }
 
     public Avp addAvp(int avpCode, InetAddress value, boolean mFlag, boolean pFlag) {
         int flags = ((mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, 0, parser.addressToBytes(value));
+        Avp res = AvpImpl.address(avpCode, flags, 0, value);
         this.avps.add(res);
         return res;
     }
 
     public Avp addAvp(int avpCode, InetAddress value, long vndId, boolean mFlag, boolean pFlag) {
         int flags = ((vndId !=0 ? 0x80:0) | (mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, vndId, parser.addressToBytes(value));
+        Avp res = AvpImpl.address(avpCode, flags, vndId, value);
         this.avps.add(res);
         return res;
     }
 
     public Avp addAvp(int avpCode, Date value) {
-        Avp res = new AvpImpl(avpCode, 0, 0, parser.dateToBytes(value));
+        Avp res = AvpImpl.int32(avpCode, 0, 0, parser.dateToInt32(value));
         this.avps.add(res);
         return res;
 
@@ -418,14 +422,14 @@ class AvpSetImpl implements AvpSet {
 
     public Avp addAvp(int avpCode, Date value, boolean mFlag, boolean pFlag) {
         int flags = ((mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, 0, parser.dateToBytes(value));
+        Avp res = AvpImpl.int32(avpCode, flags, 0, parser.dateToInt32(value));
         this.avps.add(res);
         return res;
     }
 
     public Avp addAvp(int avpCode, Date value, long vndId, boolean mFlag, boolean pFlag) {
         int flags = ((vndId !=0 ? 0x80:0) | (mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, vndId, parser.dateToBytes(value));
+        Avp res = AvpImpl.int32(avpCode, flags, vndId, parser.dateToInt32(value));
         this.avps.add(res);
         return res;
     }
@@ -490,89 +494,88 @@ class AvpSetImpl implements AvpSet {
     }
 
     public Avp insertAvp(int index, int avpCode, int value) {
-        Avp res = new AvpImpl(avpCode, 0, 0, parser.int32ToBytes(value));
+        Avp res = AvpImpl.int32(avpCode, 0, 0, value);
         this.avps.add(index, res);
         return res;
     }
 
     public Avp insertAvp(int index, int avpCode, int value, boolean mFlag, boolean pFlag) {
         int flags = ((mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, 0, parser.int32ToBytes(value));
+        Avp res = AvpImpl.int32(avpCode, flags, 0, value);
         this.avps.add(index, res);
         return res;
     }
 
     public Avp insertAvp(int index, int avpCode, int value, long vndId, boolean mFlag, boolean pFlag) {
         int flags = ((vndId !=0 ? 0x80:0) | (mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, vndId, parser.int32ToBytes(value));
+        Avp res = AvpImpl.int32(avpCode, flags, vndId, value);
         this.avps.add(index, res);
         return res;
     }
 
     public Avp insertAvp(int index, int avpCode, long value) {
-        Avp res = new AvpImpl(avpCode, 0, 0, parser.int64ToBytes(value));
+        Avp res = AvpImpl.int64(avpCode, 0, 0, value);
         this.avps.add(index, res);
         return res;
     }
 
     public Avp insertAvp(int index, int avpCode, long value, boolean mFlag, boolean pFlag) {
         int flags = ((mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, 0, parser.int64ToBytes(value));
+        Avp res = AvpImpl.int64(avpCode, flags, 0, value);
         this.avps.add(index, res);
         return res;
     }
 
     public Avp insertAvp(int index, int avpCode, long value, long vndId, boolean mFlag, boolean pFlag) {
         int flags = ((vndId !=0 ? 0x80:0) | (mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, vndId, parser.int64ToBytes(value));
+        Avp res = AvpImpl.int64(avpCode, flags, vndId, value);
         this.avps.add(index, res);
         return res;
     }
 
     public Avp insertAvp(int index, int avpCode, float value) {
-        Avp res = new AvpImpl(avpCode, 0, 0, parser.float32ToBytes(value));
+        Avp res = AvpImpl.int32(avpCode, 0, 0, Float.floatToIntBits(value));
         this.avps.add(index, res);
         return res;
     }
 
     public Avp insertAvp(int index, int avpCode, float value, boolean mFlag, boolean pFlag) {
         int flags = ((mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, 0, parser.float32ToBytes(value));
+        Avp res = AvpImpl.int32(avpCode, flags, 0, Float.floatToIntBits(value));
         this.avps.add(index, res);
         return res;
     }
 
     public Avp insertAvp(int index, int avpCode, float value, long vndId, boolean mFlag, boolean pFlag) {
         int flags = ((vndId !=0 ? 0x80:0) | (mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, vndId, parser.float32ToBytes(value));
+        Avp res = AvpImpl.int32(avpCode, flags, vndId, Float.floatToIntBits(value));
         this.avps.add(index, res);
         return res;
     }
 
     public Avp insertAvp(int index, int avpCode, double value) {
-        Avp res = new AvpImpl(avpCode, 0, 0, parser.float64ToBytes(value));
+        Avp res = AvpImpl.int64(avpCode, 0, 0, Double.doubleToLongBits(value));
         this.avps.add(index, res);
         return res;
     }
 
     public Avp insertAvp(int index, int avpCode, double value, boolean mFlag, boolean pFlag) {
         int flags = ((mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, 0, parser.float64ToBytes(value));
+        Avp res = AvpImpl.int64(avpCode, flags, 0, Double.doubleToLongBits(value));
         this.avps.add(index, res);
         return res;
     }
 
     public Avp insertAvp(int index, int avpCode, double value, long vndId, boolean mFlag, boolean pFlag) {
         int flags = ((vndId !=0 ? 0x80:0) | (mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, vndId, parser.float64ToBytes(value));
+        Avp res = AvpImpl.int64(avpCode, flags, vndId, Double.doubleToLongBits(value));
         this.avps.add(index, res);
         return res;
     }
 
     public Avp insertAvp(int index, int avpCode, String value, boolean asOctetString) {
         try {
-            Avp res = new AvpImpl(avpCode, 0, 0, asOctetString ? parser.octetStringToBytes(value) :
-            parser.utf8StringToBytes(value));
+            Avp res = AvpImpl.string(avpCode, 0, 0, value, asOctetString);
             this.avps.add(index, res);
             return res;
         } catch(Exception e) {
@@ -583,8 +586,7 @@ class AvpSetImpl implements AvpSet {
     public Avp insertAvp(int index, int avpCode, String value, boolean mFlag, boolean pFlag, boolean asOctetString) {
         int flags = ((mFlag ? 0x40:0) | (pFlag ? 0x20:0));
         try {
-            Avp res = new AvpImpl(avpCode, flags, 0, asOctetString ? parser.octetStringToBytes(value) :
-            parser.utf8StringToBytes(value));
+            Avp res = AvpImpl.string(avpCode, flags, 0, value, asOctetString);
             this.avps.add(index, res);
             return res;
         } catch(Exception e) {
@@ -596,8 +598,7 @@ class AvpSetImpl implements AvpSet {
     public Avp insertAvp(int index, int avpCode, String value, long vndId, boolean mFlag, boolean pFlag, boolean asOctetString) {
         int flags = ((vndId !=0 ? 0x80:0) | (mFlag ? 0x40:0) | (pFlag ? 0x20:0));
         try {
-            Avp res = new AvpImpl(avpCode, flags, vndId, asOctetString ? parser.octetStringToBytes(value) :
-            parser.utf8StringToBytes(value));
+            Avp res = AvpImpl.string(avpCode, flags, vndId, value, asOctetString);
             this.avps.add(index, res);
             return res;
         } catch(Exception e) {
@@ -607,7 +608,7 @@ class AvpSetImpl implements AvpSet {
 
     public Avp insertAvp(int index, int avpCode, URI value) {
         try {
-            Avp res = new AvpImpl(avpCode, 0, 0, parser.octetStringToBytes(value.toString()));
+            Avp res = AvpImpl.string(avpCode, 0, 0, value.toString(), true);
             this.avps.add(index, res);
             return res;
         } catch(Exception e) {
@@ -618,7 +619,7 @@ class AvpSetImpl implements AvpSet {
     public Avp insertAvp(int index, int avpCode, URI value, boolean mFlag, boolean pFlag) {
         int flags = ((mFlag ? 0x40:0) | (pFlag ? 0x20:0));
         try {
-            Avp res = new AvpImpl(avpCode, flags, 0, parser.octetStringToBytes(value.toString()));
+            Avp res = AvpImpl.string(avpCode, flags, 0, value.toString(), true);
             this.avps.add(index, res);
             return res;
         } catch(Exception e) {
@@ -629,7 +630,7 @@ class AvpSetImpl implements AvpSet {
     public Avp insertAvp(int index, int avpCode, URI value, long vndId, boolean mFlag, boolean pFlag) {
         int flags = ((vndId !=0 ? 0x80:0) | (mFlag ? 0x40:0) | (pFlag ? 0x20:0));
         try {
-            Avp res = new AvpImpl(avpCode, flags, vndId, parser.octetStringToBytes(value.toString()));
+            Avp res = AvpImpl.string(avpCode, flags, vndId, value.toString(), true);
             this.avps.add(index, res);
             return res;
         } catch(Exception e) {
@@ -638,41 +639,41 @@ class AvpSetImpl implements AvpSet {
     }
 
     public Avp insertAvp(int index, int avpCode, InetAddress value) {
-        Avp res = new AvpImpl(avpCode, 0, 0, parser.addressToBytes(value));
+        Avp res = AvpImpl.address(avpCode, 0, 0, value);
         this.avps.add(index, res);
         return res;
     }
 
     public Avp insertAvp(int index, int avpCode, InetAddress value, boolean mFlag, boolean pFlag) {
         int flags = ((mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, 0, parser.addressToBytes(value));
+        Avp res = AvpImpl.address(avpCode, flags, 0, value);
         this.avps.add(index, res);
         return res;
     }
 
     public Avp insertAvp(int index, int avpCode, InetAddress value, long vndId, boolean mFlag, boolean pFlag) {
         int flags = ((vndId !=0 ? 0x80:0) | (mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, vndId, parser.addressToBytes(value));
+        Avp res = AvpImpl.address(avpCode, flags, vndId, value);
         this.avps.add(index, res);
         return res;
     }
 
     public Avp insertAvp(int index, int avpCode, Date value) {
-        Avp res = new AvpImpl(avpCode, 0, 0, parser.dateToBytes(value));
+        Avp res = AvpImpl.int32(avpCode, 0, 0, parser.dateToInt32(value));
         this.avps.add(index, res);
         return res;
     }
 
     public Avp insertAvp(int index, int avpCode, Date value, boolean mFlag, boolean pFlag) {
         int flags = ((mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, 0, parser.dateToBytes(value));
+        Avp res = AvpImpl.int32(avpCode, flags, 0, parser.dateToInt32(value));
         this.avps.add(index, res);
         return res;
     }
 
     public Avp insertAvp(int index, int avpCode, Date value, long vndId, boolean mFlag, boolean pFlag) {
         int flags = ((vndId !=0 ? 0x80:0) | (mFlag ? 0x40:0) | (pFlag ? 0x20:0));
-        Avp res = new AvpImpl(avpCode, flags, vndId, parser.dateToBytes(value));
+        Avp res = AvpImpl.int32(avpCode, flags, vndId, parser.dateToInt32(value));
         this.avps.add(index, res);
         return res;
     }
@@ -32,15 +32,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.net.Inet4Address;
-import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.Date;
 
 /**
@@ -66,20 +63,100 @@ public class ElementParser implements IElementParser {
     private static final int FLOAT32_SIZE = 4;
     private static final int FLOAT64_SIZE = 8;
 
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
     public int bytesToInt(byte[] rawData) throws AvpDataException {
-      return prepareBuffer(rawData, INT32_SIZE).getInt();
+      return bytesToInt(rawData, 0, rawData.length);
     }
 
     public long bytesToLong(byte[] rawData) throws AvpDataException {
-      return prepareBuffer(rawData, INT64_SIZE).getLong();
+      return bytesToLong(rawData, 0, rawData.length);
     }
 
     public float bytesToFloat(byte[] rawData) throws AvpDataException {
-       return prepareBuffer(rawData, INT32_SIZE).getFloat();
+       return bytesToFloat(rawData, 0, rawData.length);
     }
 
     public double bytesToDouble(byte[] rawData) throws AvpDataException {
-         return prepareBuffer(rawData, FLOAT64_SIZE).getDouble();
+         return bytesToDouble(rawData, 0, rawData.length);
+    }
+
+    /*
+     * Variants below read the value in place from a region of an array, for
+     * instance the payload of an AVP inside a received frame, without any
+     * intermediate buffer.
+     */
+
+    public int bytesToInt(byte[] data, int offset, int length) throws AvpDataException {
+      checkLength(length, INT32_SIZE);
+      return getInt(data, offset);
+    }
+
+    public long bytesToUnsigned32(byte[] data, int offset, int length) throws AvpDataException {
+      // longer values were always read from their first four bytes, keep doing so
+      if (length < INT32_SIZE) {
+        throw new AvpDataException("Incorrect data length");
+      }
+      return getInt(data, offset) & 0xFFFFFFFFL;
+    }
+
+    public long bytesToLong(byte[] data, int offset, int length) throws AvpDataException {
+      checkLength(length, INT64_SIZE);
+      return ((long) getInt(data, offset) << 32) | (getInt(data, offset + 4) & 0xFFFFFFFFL);
+    }
+
+    public float bytesToFloat(byte[] data, int offset, int length) throws AvpDataException {
+      checkLength(length, FLOAT32_SIZE);
+      return Float.intBitsToFloat(getInt(data, offset));
+    }
+
+    public double bytesToDouble(byte[] data, int offset, int length) throws AvpDataException {
+      return Double.longBitsToDouble(bytesToLong(data, offset, length));
+    }
+
+    public String bytesToOctetString(byte[] data, int offset, int length) throws AvpDataException {
+      return new String(data, offset, length, ISO_8859_1);
+    }
+
+    public String bytesToUtf8String(byte[] data, int offset, int length) throws AvpDataException {
+      String value = new String(data, offset, length, UTF8);
+      return value.indexOf((char) 0x0) < 0 ? value : value.replace(String.valueOf((char) 0x0), "");
+    }
+
+    public Date bytesToDate(byte[] data, int offset, int length) throws AvpDataException {
+      if (length < INT32_SIZE) {
+        throw new AvpDataException("Incorrect data length");
+      }
+      return new Date(((getInt(data, offset) & 0xFFFFFFFFL) - SECOND_SHIFT) * 1000L);
+    }
+
+    public InetAddress bytesToAddress(byte[] data, int offset, int length) throws AvpDataException {
+      try {
+        byte[] address = new byte[data[offset + INT_INET4] == INT_INET4 ? 4 : 16];
+        System.arraycopy(data, offset + 2, address, 0, address.length);
+        return InetAddress.getByAddress(address);
+      }
+      catch (Exception e) {
+        throw new AvpDataException(e);
+      }
+    }
+
+    private static void checkLength(int length, int expected) throws AvpDataException {
+      if (length != expected) {
+        throw new AvpDataException("Incorrect data length");
+      }
+    }
+
+    private static int getInt(byte[] data, int offset) {
+      return (data[offset] << 24) | ((data[offset + 1] & 0xFF) << 16) | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+    }
+
+    private static void putInt(byte[] data, int offset, int value) {
+      data[offset] = (byte) (value >> 24);
+      data[offset + 1] = (byte) (value >> 16);
+      data[offset + 2] = (byte) (value >> 8);
+      data[offset + 3] = (byte) value;
     }
 
     protected ByteBuffer prepareBuffer(byte [] bytes, int len) throws AvpDataException  {
@@ -92,33 +169,15 @@ public class ElementParser implements IElementParser {
     }
 
     public String bytesToOctetString(byte[] rawData) throws AvpDataException {
-        try {
         	//TODO: veirfy ISO-8859-1 is correct here, according to google results its only ... western EU..
         	//TODO: verify this, it octet sting we can not discard some chars, we have no idea whats there....
         	// issue: http://code.google.com/p/mobicents/issues/detail?id=2757
-//            char[] ca = new String(rawData, "iso-8859-1").toCharArray();
-//            StringBuffer rc = new StringBuffer(ca.length);
-//            
-//            for (char c:ca)
-//                if (c != (char)0x0) 
-//                {	//easier to debug...
-//                	rc.append(c);
-//                }
-//          
-//            return rc.toString();
-        	return new String(rawData, "iso-8859-1");
-        } catch (UnsupportedEncodingException e) {
-            throw new AvpDataException("Invalid data type", e);
-        }
+        	return bytesToOctetString(rawData, 0, rawData.length);
     }
 
     public String bytesToUtf8String(byte[] rawData) throws AvpDataException {
         try {
-            char[] ca = new String(rawData, "utf8").toCharArray();
-            StringBuffer rc = new StringBuffer(ca.length);
-            for (char c:ca)
-                if (c != (char)0x0) rc.append(c);
-            return rc.toString();
+            return bytesToUtf8String(rawData, 0, rawData.length);
         } catch (Exception e) {
              throw new AvpDataException("Invalid data type", e);
         }
@@ -126,96 +185,57 @@ public class ElementParser implements IElementParser {
 
     public Date bytesToDate(byte[] rawData) throws AvpDataException {
         try {
-            byte[] tmp = new byte[8];
-            System.arraycopy(rawData, 0 , tmp, 4, 4);
-            return new Date(((bytesToLong(tmp) - SECOND_SHIFT) * 1000L));
+            return bytesToDate(rawData, 0, rawData.length);
         } catch (Exception e) {
             throw new AvpDataException(e);
         }
     }
 
     public InetAddress bytesToAddress(byte[] rawData) throws AvpDataException {
-        InetAddress inetAddress;
-        byte[] address;
-        try {
-            if (rawData[INT_INET4] == INT_INET4) {
-                address = new byte[4];
-                System.arraycopy(rawData, 2, address, 0, address.length);
-                inetAddress = Inet4Address.getByAddress(address);
-            } else {
-                address = new byte[16];
-                System.arraycopy(rawData, 2, address, 0, address.length);
-                inetAddress = Inet6Address.getByAddress(address);
-            }
-        } catch (Exception e) {
-            throw new AvpDataException(e);
-        }
-        return inetAddress;
+        return bytesToAddress(rawData, 0, rawData.length);
     }
 
     public byte [] int32ToBytes(int value){
         byte [] bytes = new byte[INT32_SIZE];
-        //ByteBuffer buffer = ByteBuffer.allocate(INT32_SIZE);
-        ByteBuffer buffer = ByteBuffer.wrap(bytes);
-        buffer.putInt(value);
-        //buffer.flip();
-        //buffer.get(bytes);
+        putInt(bytes, 0, value);
         return bytes;
     }
 
     public byte [] intU32ToBytes(long value){
-        // FIXME: this needs to reworked!
         byte [] bytes = new byte[INT32_SIZE];
-        ByteBuffer buffer = ByteBuffer.allocate(INT64_SIZE);
-        buffer.putLong(value);
-        buffer.flip();
-        buffer.get(bytes);
-        buffer.get(bytes);
+        putInt(bytes, 0, (int) value);
         return bytes;
     }
 
     public byte [] int64ToBytes(long value){
         byte [] bytes = new byte[INT64_SIZE];
-        //ByteBuffer buffer = ByteBuffer.allocate(INT64_SIZE);
-        ByteBuffer buffer = ByteBuffer.wrap(bytes);
-        buffer.putLong(value);
-        //buffer.flip();
-        //buffer.get(bytes);
+        putInt(bytes, 0, (int) (value >> 32));
+        putInt(bytes, 4, (int) value);
         return bytes;
     }
 
     public byte [] float32ToBytes(float value){
         byte [] bytes = new byte[FLOAT32_SIZE];
-        //ByteBuffer buffer = ByteBuffer.allocate(FLOAT32_SIZE);
-        ByteBuffer buffer = ByteBuffer.wrap(bytes);
-        buffer.putFloat(value);
-        //buffer.flip();
-        //buffer.get(bytes);
+        putInt(bytes, 0, Float.floatToIntBits(value));
         return bytes;
     }
 
     public byte [] float64ToBytes(double value){
-        byte [] bytes = new byte[FLOAT64_SIZE];
-        //ByteBuffer buffer = ByteBuffer.allocate(FLOAT64_SIZE);
-        ByteBuffer buffer = ByteBuffer.wrap(bytes);
-        buffer.putDouble(value);
-        //buffer.flip();
-        //buffer.get(bytes);
-        return bytes;
+        return int64ToBytes(Double.doubleToLongBits(value));
     }
 
     public byte[] octetStringToBytes(String value) throws ParseException{
         try {
-            return value.getBytes("iso-8859-1");
+            return value.getBytes(ISO_8859_1);
         }
-        catch (UnsupportedEncodingException e) {
+        catch (Exception e) {
             throw new ParseException(e);
         }
     }
 
     public byte[] utf8StringToBytes(String value) throws ParseException {
         try {
-            return value.getBytes("utf8");
+            return value.getBytes(UTF8);
         }
         catch (Exception e) {
             throw new ParseException(e);
@@ -236,11 +256,18 @@ public class ElementParser implements IElementParser {
     }
 
     public byte[] dateToBytes(Date date) {
-        byte[] data = new byte[4];
-        System.arraycopy(int64ToBytes((date.getTime()/1000L) + SECOND_SHIFT), 4, data, 0, 4);
+        byte[] data = new byte[INT32_SIZE];
+        putInt(data, 0, dateToInt32(date));
         return data;
     }
 
+    /**
+     * @return the Time value of date, seconds since 1900 as in the encoded AVP
+     */
+    public int dateToInt32(Date date) {
+        return (int) ((date.getTime()/1000L) + SECOND_SHIFT);
+    }
+
     public <T> T bytesToObject(java.lang.Class<?> iface, byte[] rawdata) throws AvpDataException {
         return null;
     }
@@ -298,45 +325,83 @@ public class ElementParser implements IElementParser {
      * @throws AvpDataException
      */
     public AvpSetImpl decodeAvpSet(byte[] buffer, int shift) throws IOException, AvpDataException {
-      AvpSetImpl avps = new AvpSetImpl();
-      
       if (buffer == null) {
-    	  return avps; // empty
+    	  return new AvpSetImpl(); // empty
       }
-      
-      int tmp, counter = shift;
-      DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer, shift, buffer.length /* - shift ? */));
+      return decodeAvpSet(ByteBuffer.wrap(buffer), shift, buffer.length - shift);
+    }
 
-      while (counter < buffer.length) {
-        int code = in.readInt();
-        tmp = in.readInt();
+    /**
+     * Decodes the AVPs found in a region of a frame. Only AVP headers are read,
+     * payloads are kept as views into the frame, so it must not be modified
+     * while the resulting AVPs are in use.
+     * 
+     * @param frame buffer holding the encoded AVPs, its position and limit are not used
+     * @param offset absolute index of the first AVP in the frame
+     * @param length number of bytes to decode
+     * @return
+     * @throws AvpDataException
+     */
+    public AvpSetImpl decodeAvpSet(ByteBuffer frame, int offset, int length) throws AvpDataException {
+      AvpSetImpl avps = new AvpSetImpl();
+
+      int end = offset + length;
+      int counter = offset;
+      while (counter < end) {
+        if (end - counter < 8) {
+          logDecodeError(frame, offset, length, 0, 0, end - counter, counter);
+          throw new AvpDataException("Not enough data in buffer!");
+        }
+        int code = frame.getInt(counter);
+        int tmp = frame.getInt(counter + 4);
         int flags = (tmp >> 24) & 0xFF;
-        int length  = tmp & 0xFFFFFF;
-        
-        if(length < 0 || counter + length > buffer.length) {
-        	logger.error("unable to decode code: {}, flags: {}, length: {}, counter: {}, shift:{}, buf_size: {}\n{}\n{}",
-        			new Object[]{code, (short)flags, length, counter, shift, buffer.length, MessageParser.byteArrayToHexString(buffer), fullDecode(buffer,shift)});
-        	throw new AvpDataException("Not enough data in buffer!");
+        int avpLength = tmp & 0xFFFFFF;
+        // Determine body L = length - 4(code) -1(flags) -3(length) [-4(vendor)]
+        int headerLength = (flags & 0x80) != 0 ? 12 : 8;
+
+        if (avpLength < headerLength || counter + avpLength > end) {
+          logDecodeError(frame, offset, length, code, flags, avpLength, counter);
+          throw new AvpDataException("Not enough data in buffer!");
         }
         long vendor = 0;
-        if ((flags & 0x80) != 0) {
-          vendor = in.readInt();
-        }
-        // Determine body L = length - 4(code) -1(flags) -3(length) [-4(vendor)]
-        byte[] rawData = new byte[length - (8 + (vendor == 0 ? 0 : 4))];
-        in.read(rawData);
-        // skip remaining.
-        // TODO: Do we need to padd everything? Or on send stack should properly fill byte[] ... ?
-        if (length % 4 != 0) {
-          for (int i; length % 4 != 0; length += i) {
-            i = (int) in.skip((4 - length % 4));
-          }
+        if (headerLength == 12) {
+          vendor = frame.getInt(counter + 8);
         }
-        AvpImpl avp = new AvpImpl(code, (short) flags, (int) vendor, rawData);
-        avps.addAvp(avp);
-        counter += length;
+        avps.addAvp(new AvpImpl(code, (short) flags, vendor, frame, counter + headerLength, avpLength - headerLength));
+        // skip padding
+        counter += (avpLength + 3) & ~3;
       }
-      return avps;  
+      return avps;
+    }
+
+    private void logDecodeError(ByteBuffer frame, int offset, int length, int code, int flags, int avpLength, int counter) {
+      byte[] buffer = getBytes(frame, offset, length);
+      String decoded;
+      try {
+        decoded = fullDecode(buffer, 0);
+      }
+      catch (IOException e) {
+        decoded = e.toString();
+      }
+      logger.error("unable to decode code: {}, flags: {}, length: {}, counter: {}, shift:{}, buf_size: {}\n{}\n{}",
+          new Object[]{code, (short)flags, avpLength, counter, offset, offset + length, MessageParser.byteArrayToHexString(buffer), decoded});
+    }
+
+    /**
+     * Copies a region of a frame into a new byte array. The position and limit
+     * of the frame are not used nor changed.
+     */
+    protected byte[] getBytes(ByteBuffer frame, int offset, int length) {
+      byte[] data = new byte[length];
+      if (frame.hasArray()) {
+        System.arraycopy(frame.array(), frame.arrayOffset() + offset, data, 0, length);
+      }
+      else {
+        ByteBuffer view = frame.duplicate();
+        view.position(offset);
+        view.get(data);
+      }
+      return data;
     }
     
     public byte[] encodeAvpSet(AvpSet avps) {
@@ -344,59 +409,109 @@ public class ElementParser implements IElementParser {
     }
     
     public byte[] encodeAvpSet(AvpSet avps, StringBuilder sb, String prefix) {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
         try {
-          DataOutputStream data = new DataOutputStream(out);
-          for (Avp a : avps) {
-        	  byte[] raw = a.getRaw();
-              byte[] enc = encodeAvp(a);
-              
-              if (sb != null) {
-            	  sb.append(prefix).append(a).append(", len: ").append((raw != null) ? raw.length : null)
-            	  	.append(", enc: ").append(MessageParser.byteArrayToHexStringLine(enc)).append("\n");
-              }
-              
-              data.write(enc);
-          }
+          ByteBuffer buffer = ByteBuffer.allocate(getAvpSetLength(avps));
+          encodeAvpSet(avps, buffer, sb, prefix);
+          return buffer.array();
         } catch (Exception e) {
           logger.error("Error during encode avps", e);
         }
-        return out.toByteArray();
+        return new byte[0];
     }
-    
+
     public byte[] encodeAvp(Avp avp) {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
         try {
-          DataOutputStream data = new DataOutputStream(out);
-          data.writeInt(avp.getCode());
-          int flags = (byte) ((avp.getVendorId() != 0 ? 0x80 : 0) |
-              (avp.isMandatory() ? 0x40 : 0) | (avp.isEncrypted() ? 0x20 : 0));
-          
-          byte[] raw = avp.getRaw();
-          if (raw == null) {
-        	  raw = encodeAvpSet(avp.getGrouped());
-          }
-          
-          int origLength = raw.length + 8 + (avp.getVendorId() != 0 ? 4 : 0);
-          // newLength is never used. Should it?
-          //int newLength  = origLength;
-          //if (newLength % 4 != 0) {
-          //  newLength += 4 - (newLength % 4);
-          //}
-          data.writeInt(((flags << 24) & 0xFF000000) + origLength);
-          if (avp.getVendorId() != 0) {
-            data.writeInt((int) avp.getVendorId());
-          }
-          data.write(raw);
-          if (raw.length % 4 != 0) {
-            for(int i = 0; i < 4 - raw.length % 4; i++) {
-              data.write(0);
-            }
-          }
+          ByteBuffer buffer = ByteBuffer.allocate((getAvpLength(avp) + 3) & ~3);
+          encodeAvp(avp, buffer);
+          return buffer.array();
         }
         catch (Exception e) {
           logger.debug("Error during encode avp", e);
         }
-        return out.toByteArray();
+        return new byte[0];
+    }
+
+    /**
+     * @return number of bytes the AVPs take once encoded, padding included
+     */
+    public int getAvpSetLength(AvpSet avps) throws AvpDataException {
+      int length = 0;
+      for (Avp a : avps) {
+        length += (getAvpLength(a) + 3) & ~3;
       }
+      return length;
+    }
+
+    /**
+     * @return number of bytes the AVP takes once encoded, padding not included
+     */
+    public int getAvpLength(Avp avp) throws AvpDataException {
+      return (avp.getVendorId() != 0 ? 12 : 8) + getPayloadLength(avp);
+    }
+
+    private int getPayloadLength(Avp avp) throws AvpDataException {
+      if (avp instanceof AvpImpl) {
+        int length = ((AvpImpl) avp).getRawLength();
+        return length >= 0 ? length : getAvpSetLength(avp.getGrouped());
+      }
+      byte[] raw = avp.getRaw();
+      return raw != null ? raw.length : getAvpSetLength(avp.getGrouped());
+    }
+
+    /**
+     * Encodes AVPs at the buffer position. Buffer must have room for
+     * {@link #getAvpSetLength(AvpSet)} bytes.
+     */
+    public void encodeAvpSet(AvpSet avps, ByteBuffer buffer) throws AvpDataException {
+      encodeAvpSet(avps, buffer, null, "");
+    }
+
+    protected void encodeAvpSet(AvpSet avps, ByteBuffer buffer, StringBuilder sb, String prefix) throws AvpDataException {
+      for (Avp a : avps) {
+        int start = buffer.position();
+        encodeAvp(a, buffer);
+
+        if (sb != null) {
+          byte[] enc = new byte[buffer.position() - start];
+          ByteBuffer view = buffer.duplicate();
+          view.position(start);
+          view.get(enc);
+          sb.append(prefix).append(a).append(", len: ").append(getPayloadLength(a))
+          .append(", enc: ").append(MessageParser.byteArrayToHexStringLine(enc)).append("\n");
+        }
+      }
+    }
+
+    /**
+     * Encodes AVP, padding included, at the buffer position. Payload of AVPs
+     * read from the wire is copied straight from the received frame.
+     */
+    public void encodeAvp(Avp avp, ByteBuffer buffer) throws AvpDataException {
+      int flags = (avp.getVendorId() != 0 ? 0x80 : 0) |
+          (avp.isMandatory() ? 0x40 : 0) | (avp.isEncrypted() ? 0x20 : 0);
+
+      int payloadLength = getPayloadLength(avp);
+      int origLength = payloadLength + 8 + (avp.getVendorId() != 0 ? 4 : 0);
+
+      buffer.putInt(avp.getCode());
+      buffer.putInt(((flags << 24) & 0xFF000000) + origLength);
+      if (avp.getVendorId() != 0) {
+        buffer.putInt((int) avp.getVendorId());
+      }
+      if (avp instanceof AvpImpl && ((AvpImpl) avp).getRawLength() >= 0) {
+        ((AvpImpl) avp).writeRaw(buffer);
+      }
+      else {
+        byte[] raw = avp.getRaw();
+        if (raw != null) {
+          buffer.put(raw);
+        }
+        else {
+          encodeAvpSet(avp.getGrouped(), buffer);
+        }
+      }
+      for (int i = payloadLength; i % 4 != 0; i++) {
+        buffer.put((byte) 0);
+      }
+    }
 }
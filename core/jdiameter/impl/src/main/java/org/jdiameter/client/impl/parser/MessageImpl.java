@@ -24,9 +24,6 @@ package org.jdiameter.client.impl.parser;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.jdiameter.api.Answer;
@@ -37,6 +34,7 @@ import org.jdiameter.api.AvpSet;
 import org.jdiameter.api.InternalException;
 import org.jdiameter.client.api.IEventListener;
 import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.IRequestTimeoutManager;
 import org.jdiameter.client.api.controller.IPeer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,11 +68,18 @@ public class MessageImpl implements IMessage {
   transient IPeer peer;
   transient TimerTask timerTask;
   transient IEventListener listener;
+  // System.nanoTime() when handed to the peer, 0 if not timed
+  transient long sendTime;
 
   // Cached result for getApplicationIdAvps() method. It is called extensively and takes some time.
   // Potential place for dirt, but Application IDs don't change during message life time.
   transient List<ApplicationId> applicationIds;
 
+  // Encoded frame this message was created from, kept so it can be written
+  // again without encoding the AVPs. Valid while the AVP list is unchanged.
+  transient byte[] frame;
+  transient int frameModCount;
+
   /**
    * Create empty message
    * 
@@ -87,7 +92,7 @@ public class MessageImpl implements IMessage {
     this.applicationId = appId;
 
     this.avpSet = new AvpSetImpl();
-    this.endToEndId = parser.getNextEndToEndId();
+    this.endToEndId = parser.getNextEndToEndId() & 0xFFFFFFFFL;
   }
 
   /**
@@ -413,6 +418,14 @@ public class MessageImpl implements IMessage {
     return state;
   }
 
+  public long getSendTime() {
+    return sendTime;
+  }
+
+  public void setSendTime(long sendTime) {
+    this.sendTime = sendTime;
+  }
+
   public long getHeaderApplicationId() {
     return applicationId;
   }
@@ -429,19 +442,23 @@ public class MessageImpl implements IMessage {
     state = newState;
   }
 
-  public void createTimer(ScheduledExecutorService scheduledFacility, long timeOut, TimeUnit timeUnit) {
+  public void createTimer(IRequestTimeoutManager timeoutManager, long timeOut, TimeUnit timeUnit) {
+    if (timerTask != null) {
+      // message is being sent again, the previous timeout no longer applies
+      timerTask.cancel();
+    }
     timerTask = new TimerTask(this);
-    timerTask.setTimerHandler(scheduledFacility, scheduledFacility.schedule(timerTask, timeOut, timeUnit));
+    timerTask.setTimeout(timeoutManager.schedule(timerTask, timeOut, timeUnit));
   }
 
   public void runTimer() {
-    if (timerTask != null && !timerTask.isDone() && !timerTask.isCancelled()) {
-      timerTask.run();
+    if (timerTask != null) {
+      timerTask.expire();
     }
   }
 
   public boolean isTimeOut() {
-    return timerTask != null && timerTask.isDone() && !timerTask.isCancelled();
+    return timerTask != null && timerTask.isExpired();
   }
 
   public void setListener(IEventListener listener) {
@@ -499,6 +516,28 @@ public class MessageImpl implements IMessage {
     return host + endToEndId;
   }
 
+  /**
+   * Keeps the encoded frame of this message, which must hold its current AVPs,
+   * all of them still undecoded views into it.
+   */
+  void setFrame(byte[] frame) {
+    this.frame = frame;
+    this.frameModCount = avpSet.avps.getModCount();
+  }
+
+  /**
+   * @return the encoded frame this message was created from, or null if
+   *         there is none or the message was touched since: an AVP was added
+   *         or removed, or the payload or grouped children of one were handed
+   *         out and so may have been changed in place
+   */
+  byte[] getFrame() {
+    if (frame != null && (frameModCount != avpSet.avps.getModCount() || !avpSet.isUntouched())) {
+      frame = null;
+    }
+    return frame;
+  }
+
   public Object clone() {
     try {
       return parser.createMessage(parser.encodeMessage(this));
@@ -510,17 +549,15 @@ public class MessageImpl implements IMessage {
 
   protected static class TimerTask implements Runnable {
 
-    ScheduledFuture timerHandler;
+    volatile IRequestTimeoutManager.Timeout timeout;
     MessageImpl message;
-    ScheduledExecutorService scheduledFacility;
 
     public TimerTask(MessageImpl message) {
       this.message = message;
     }
 
-    public void setTimerHandler(ScheduledExecutorService scheduledFacility, ScheduledFuture timerHandler) {
-      this.scheduledFacility = scheduledFacility;
-      this.timerHandler = timerHandler;
+    public void setTimeout(IRequestTimeoutManager.Timeout timeout) {
+      this.timeout = timeout;
     }
 
     public void run() {
@@ -544,21 +581,20 @@ public class MessageImpl implements IMessage {
     }
 
     public void cancel() {
-      if (timerHandler != null) {
-        timerHandler.cancel(true);
-        if (scheduledFacility instanceof ThreadPoolExecutor && timerHandler instanceof Runnable) {
-          ((ThreadPoolExecutor) scheduledFacility).remove((Runnable) timerHandler);
-        }
+      if (timeout != null) {
+        timeout.cancel();
       }
       message = null;
     }
 
-    public boolean isDone() {
-      return timerHandler != null && timerHandler.isDone();
+    public void expire() {
+      if (timeout != null) {
+        timeout.expire();
+      }
     }
 
-    public boolean isCancelled() {
-      return timerHandler == null || timerHandler.isCancelled();
+    public boolean isExpired() {
+      return timeout != null && timeout.isExpired();
     }
   }
 }
@@ -47,10 +47,6 @@ import static org.jdiameter.api.Avp.AUTH_APPLICATION_ID;
 import static org.jdiameter.api.Avp.SESSION_ID;
 import static org.jdiameter.api.Avp.VENDOR_SPECIFIC_APPLICATION_ID;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 
@@ -60,6 +56,7 @@ import org.jdiameter.api.AvpSet;
 import org.jdiameter.api.Request;
 import org.jdiameter.client.api.IMessage;
 import org.jdiameter.client.api.IRequest;
+import org.jdiameter.client.api.io.IBufferPool;
 import org.jdiameter.client.api.parser.IMessageParser;
 import org.jdiameter.client.api.parser.ParseException;
 import org.jdiameter.client.impl.helpers.UIDGenerator;
@@ -76,8 +73,12 @@ public class MessageParser extends ElementParser implements IMessageParser {
 
   private static final org.slf4j.Logger logger = LoggerFactory.getLogger(MessageParser.class);
 
+  // number of End-to-End ids each thread reserves at once
+  private static final int END_TO_END_RANGE_SIZE = 32;
+
+  // high order 12 bits seeded with the low order 12 bits of the current time (RFC 6733, 3)
   protected UIDGenerator endToEndGen = new UIDGenerator(
-      (int) (TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) & 0xFFF) << 20
+      (TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) & 0xFFF) << 20, END_TO_END_RANGE_SIZE
   );
 
  
@@ -86,34 +87,36 @@ public class MessageParser extends ElementParser implements IMessageParser {
 
   }
 
+  /**
+   * Creates a message from the frame between the buffer position and limit.
+   * Header fields are read in place and AVP payloads are not copied, they
+   * remain views into the frame, which must not be modified afterwards.
+   */
   public IMessage createMessage(ByteBuffer data) throws AvpDataException {
     // Read header
     try {
-      byte[] message = data.array();
+      int start = data.position();
+      int length = data.remaining();
       long tmp;
-      DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
-      tmp = in.readInt();
+      tmp = data.getInt(start);
       short version = (short) (tmp >> 24);
       if (version != 1) {
         throw new Exception("Illegal value of version " + version);
       }
       
-      if (message.length != (tmp & 0x00FFFFFF)) {
+      if (length != (tmp & 0x00FFFFFF)) {
         //throw new ParseException("Wrong length of data: " + (tmp & 0x00FFFFFF));
         throw new Exception("Wrong length of data: " + (tmp & 0x00FFFFFF));
       }
       
-      tmp = in.readInt();
+      tmp = data.getInt(start + 4);
       short flags        = (short) ((tmp >> 24) & 0xFF);
       int commandCode    = (int) (tmp & 0xFFFFFF);
-      long applicationId = ((long) in.readInt() << 32) >>> 32;
-      long hopByHopId    = ((long) in.readInt() << 32) >>> 32;
-      long endToEndId    = ((long) in.readInt() << 32) >>> 32;
+      long applicationId = ((long) data.getInt(start + 8) << 32) >>> 32;
+      long hopByHopId    = ((long) data.getInt(start + 12) << 32) >>> 32;
+      long endToEndId    = ((long) data.getInt(start + 16) << 32) >>> 32;
       // Read body
-      // byte[] body = new byte[message.length - 20];
-      // System.arraycopy(message, 20, body, 0, body.length);
-      // AvpSetImpl avpSet = decodeAvpSet(body);
-      AvpSetImpl avpSet = decodeAvpSet(message, 20);
+      AvpSetImpl avpSet = decodeAvpSet(data, start + 20, length - 20);
 
       return new MessageImpl(commandCode, applicationId, flags, hopByHopId, endToEndId, avpSet);
     }
@@ -122,6 +125,19 @@ public class MessageParser extends ElementParser implements IMessageParser {
     }
   }
 
+  /**
+   * Creates a message from a whole frame and keeps the frame with it. Encoding
+   * the message writes the header from its fields and copies the encoded AVPs
+   * from the frame, as long as the message is untouched: no AVP was added or
+   * removed, and none had its payload or grouped children read out. Typed
+   * getters of the AVPs read in place and leave the frame usable.
+   */
+  public IMessage createEncodedMessage(byte[] data) throws AvpDataException {
+    MessageImpl message = (MessageImpl) createMessage(ByteBuffer.wrap(data));
+    message.setFrame(data);
+    return message;
+  }
+
   public <T> T createMessage(Class<?> iface, ByteBuffer data) throws AvpDataException {
     if (iface == IMessage.class) {
       return (T) createMessage(data);
@@ -149,7 +165,7 @@ public class MessageParser extends ElementParser implements IMessageParser {
         prnMessage.getHeaderApplicationId(),
         (short) prnMessage.getFlags(),
         prnMessage.getHopByHopIdentifier(),
-        endToEndGen.nextLong(),
+        getNextEndToEndId() & 0xFFFFFFFFL,
         null
     );
     copyBasicAvps(newMessage, prnMessage, false);
@@ -272,56 +288,62 @@ public class MessageParser extends ElementParser implements IMessageParser {
   }
 
   public ByteBuffer encodeMessage(IMessage message) throws ParseException {
-    ByteArrayOutputStream out = new ByteArrayOutputStream();
-    
+    return encodeMessage(message, null);
+  }
+
+  /**
+   * Encodes the message in a single pass. Its length is computed first, so
+   * it can be written straight into a buffer of the right size, borrowed
+   * from pool if one is given or allocated on heap otherwise.
+   */
+  public ByteBuffer encodeMessage(IMessage message, IBufferPool pool) throws ParseException {
     StringBuilder sb = null;
     if (logger.isTraceEnabled()) {
     	sb = new StringBuilder();
     }
-    
+
+    ByteBuffer buffer = null;
+    byte[] frame = message instanceof MessageImpl ? ((MessageImpl) message).getFrame() : null;
     try {
-      byte[] rawData = encodeAvpSet(message.getAvps(), sb, "");
-      DataOutputStream data = new DataOutputStream(out);
+      int length = frame != null ? frame.length : 20 + getAvpSetLength(message.getAvps());
+      buffer = pool != null ? pool.acquire(length) : ByteBuffer.allocate(length);
       // Wasting processor time, are we ?
       // int tmp = (1 << 24) & 0xFF000000;
       int tmp = (1 << 24);
-      tmp += 20 + rawData.length;
-      data.writeInt(tmp);
+      tmp += length;
+      buffer.putInt(tmp);
       // Again, unneeded operation ?
       // tmp = (message.getFlags() << 24) & 0xFF000000;
       tmp = (message.getFlags() << 24);
       tmp += message.getCommandCode();
-      data.writeInt(tmp);
-      data.write(toBytes(message.getHeaderApplicationId()));
-      data.write(toBytes(message.getHopByHopIdentifier()));
-      data.write(toBytes(message.getEndToEndIdentifier())); 
-      data.write(rawData);
+      buffer.putInt(tmp);
+      buffer.putInt((int) message.getHeaderApplicationId());
+      buffer.putInt((int) message.getHopByHopIdentifier());
+      buffer.putInt((int) message.getEndToEndIdentifier());
+      if (frame != null) {
+        // header is rewritten above, so new flags and hop-by-hop id are kept
+        buffer.put(frame, 20, length - 20);
+      }
+      else {
+        encodeAvpSet(message.getAvps(), buffer, sb, "");
+      }
+      buffer.flip();
     }
     catch (Exception e) {
       //logger.debug("Error during encode message", e);
+      if (pool != null) {
+        pool.release(buffer);
+      }
       throw new ParseException("Failed to encode message.", e);
     }
-    try{
-    	byte[] enc = out.toByteArray();
-    	
-    	if (logger.isTraceEnabled()) {
-    		String hex = byteArrayToHexString(enc);
-    		logger.trace("encoded message {} of size [{}]:\n{}\n{}", new Object[]{message, enc.length, sb.toString(), hex});
-    	}
-    	return prepareBuffer(enc, out.size());
-    }
-    catch(AvpDataException ade) {
-    	throw new ParseException(ade);
-    }
-  }
 
-  private byte[] toBytes(long value) {
-    byte[] data = new byte[4];
-    data[0] = (byte) ((value >> 24) & 0xFF);
-    data[1] = (byte) ((value >> 16) & 0xFF);
-    data[2] = (byte) ((value >> 8) & 0xFF);
-    data[3] = (byte) ((value) & 0xFF);
-    return data;
+    if (logger.isTraceEnabled()) {
+      byte[] enc = new byte[buffer.remaining()];
+      buffer.duplicate().get(enc);
+      String hex = byteArrayToHexString(enc);
+      logger.trace("encoded message {} of size [{}]:\n{}\n{}", new Object[]{message, enc.length, sb.toString(), hex});
+    }
+    return buffer;
   }
 
   public IMessage createEmptyMessage(int commandCode, long headerAppId) {
@@ -337,6 +359,7 @@ public class MessageParser extends ElementParser implements IMessageParser {
 
 
   public int getNextEndToEndId() {
-    return endToEndGen.nextInt();
+    // all 32 bits of the identifier, read it as unsigned to match the decoder
+    return (int) endToEndGen.nextLong();
   }
 }
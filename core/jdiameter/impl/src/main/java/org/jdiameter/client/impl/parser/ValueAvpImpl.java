@@ -0,0 +1,191 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.client.impl.parser;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+
+import org.jdiameter.api.AvpDataException;
+
+/**
+ * AVP created by a builder of {@link AvpSetImpl}, which keeps the value itself
+ * instead of its bytes. The value is written straight into the frame the AVP
+ * is encoded to, and read back by the matching typed getter, so no byte[] is
+ * made for it. Once the payload is asked for as a byte[] it is encoded once,
+ * and that array is used from then on, as for any other AVP.
+ */
+class ValueAvpImpl extends AvpImpl {
+
+  private static final long serialVersionUID = 1L;
+
+  static final int INT32 = 1;
+  static final int INT64 = 2;
+  static final int UTF8 = 3;
+  static final int OCTETS = 4;
+  static final int ADDRESS = 5;
+
+  private final int type;
+  private final long value;
+  // String or InetAddress
+  private final Object object;
+  private final int length;
+
+  ValueAvpImpl(int code, int flags, long vnd, int type, long value, Object object, int length) {
+    super(code, flags, vnd, null);
+    this.type = type;
+    this.value = value;
+    this.object = object;
+    this.length = length;
+  }
+
+  public String getUTF8String() throws AvpDataException {
+    if (type == UTF8 && !isMaterialized() && ((String) object).indexOf((char) 0x0) < 0) {
+      return (String) object;
+    }
+    return super.getUTF8String();
+  }
+
+  public String getDiameterIdentity() throws AvpDataException {
+    if (type == OCTETS && !isMaterialized()) {
+      return (String) object;
+    }
+    return super.getDiameterIdentity();
+  }
+
+  public int getInteger32() throws AvpDataException {
+    if (type == INT32 && !isMaterialized()) {
+      return (int) value;
+    }
+    return super.getInteger32();
+  }
+
+  public long getUnsigned32() throws AvpDataException {
+    if (type == INT32 && !isMaterialized()) {
+      return value & 0xFFFFFFFFL;
+    }
+    return super.getUnsigned32();
+  }
+
+  public long getInteger64() throws AvpDataException {
+    if (type == INT64 && !isMaterialized()) {
+      return value;
+    }
+    return super.getInteger64();
+  }
+
+  public long getUnsigned64() throws AvpDataException {
+    if (type == INT64 && !isMaterialized()) {
+      return value;
+    }
+    return super.getUnsigned64();
+  }
+
+  byte[] materialize() {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    writeValue(buffer);
+    return buffer.array();
+  }
+
+  int getRawLength() {
+    return isMaterialized() ? super.getRawLength() : length;
+  }
+
+  void writeRaw(ByteBuffer buffer) {
+    if (isMaterialized()) {
+      super.writeRaw(buffer);
+    }
+    else {
+      writeValue(buffer);
+    }
+  }
+
+  Integer valueLength() {
+    return Integer.valueOf(length);
+  }
+
+  /**
+   * Writes the value, length bytes, the way {@link ElementParser} encodes it.
+   */
+  private void writeValue(ByteBuffer buffer) {
+    switch (type) {
+      case INT32:
+        buffer.putInt((int) value);
+        break;
+      case INT64:
+        buffer.putLong(value);
+        break;
+      case OCTETS:
+        writeLatin1(buffer, (String) object);
+        break;
+      case UTF8:
+        String utf8 = (String) object;
+        if (utf8.length() == length) {
+          // plain ASCII
+          writeLatin1(buffer, utf8);
+          break;
+        }
+        for (int i = 0; i < utf8.length(); i++) {
+          char c = utf8.charAt(i);
+          if (c < 0x80) {
+            buffer.put((byte) c);
+          }
+          else if (c < 0x800) {
+            buffer.put((byte) (0xC0 | (c >> 6)));
+            buffer.put((byte) (0x80 | (c & 0x3F)));
+          }
+          else {
+            buffer.put((byte) (0xE0 | (c >> 12)));
+            buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+            buffer.put((byte) (0x80 | (c & 0x3F)));
+          }
+        }
+        break;
+      case ADDRESS:
+        // InetAddress only hands out a copy of its bytes
+        buffer.putShort((short) (object instanceof Inet4Address ? 1 : 2));
+        buffer.put(((InetAddress) object).getAddress());
+        break;
+    }
+  }
+
+  /**
+   * Writes the low byte of every char, into the backing array when there is one.
+   */
+  private static void writeLatin1(ByteBuffer buffer, String value) {
+    int count = value.length();
+    if (buffer.hasArray()) {
+      byte[] array = buffer.array();
+      int offset = buffer.arrayOffset() + buffer.position();
+      for (int i = 0; i < count; i++) {
+        array[offset + i] = (byte) value.charAt(i);
+      }
+      buffer.position(buffer.position() + count);
+    }
+    else {
+      for (int i = 0; i < count; i++) {
+        buffer.put((byte) value.charAt(i));
+      }
+    }
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.client.impl.router;
+
+import java.util.Arrays;
+
+/**
+ * Table holding route information of received requests until their answers
+ * are sent. Keys are primitive longs, so storing an entry does not create a
+ * key object, and the table is split in segments with a lock each.
+ *
+ * Every entry expires on its own once it is older than the expire time. Each
+ * segment keeps a timer wheel of the keys stored in every tick. The wheels are
+ * moved forward by the calls to the table, all of them by the first put of
+ * each tick, so expiring entries needs no thread and no pass over the whole
+ * table.
+ */
+public class AnswerRouteTable<V> {
+
+  private static final int SEGMENT_COUNT = 16;
+  // number of ticks an entry lives
+  private static final int WHEEL_SIZE = 64;
+  // wheel buckets larger than this are dropped once drained
+  private static final int MAX_KEPT_BUCKET = 256;
+
+  private final Segment<V>[] segments;
+  private final long tickDuration;
+  private volatile long lastTick;
+
+  /**
+   * @param capacity expected number of entries
+   * @param expireTime time in milliseconds entries are kept
+   */
+  @SuppressWarnings("unchecked")
+  public AnswerRouteTable(int capacity, long expireTime) {
+    this.tickDuration = Math.max(1, (expireTime + WHEEL_SIZE - 1) / WHEEL_SIZE);
+    this.segments = new Segment[SEGMENT_COUNT];
+    long tick = lastTick = currentTick();
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      segments[i] = new Segment<V>(Math.max(capacity / SEGMENT_COUNT, 8), tick);
+    }
+  }
+
+  public void put(long key, V value) {
+    long tick = currentTick();
+    if (tick != lastTick) {
+      lastTick = tick;
+      // segments nobody uses must not keep old entries
+      for (Segment<V> segment : segments) {
+        segment.advance(tick);
+      }
+    }
+    long hash = hash(key);
+    segmentFor(hash).put(key, hash, value, tick);
+  }
+
+  public V get(long key) {
+    long hash = hash(key);
+    return segmentFor(hash).get(key, hash, currentTick());
+  }
+
+  public V remove(long key) {
+    long hash = hash(key);
+    return segmentFor(hash).remove(key, hash);
+  }
+
+  public int size() {
+    int size = 0;
+    for (Segment<V> segment : segments) {
+      size += segment.size;
+    }
+    return size;
+  }
+
+  public void clear() {
+    for (Segment<V> segment : segments) {
+      segment.clear();
+    }
+  }
+
+  protected long currentTick() {
+    return System.currentTimeMillis() / tickDuration;
+  }
+
+  private Segment<V> segmentFor(long hash) {
+    return segments[(int) (hash >>> 60) & (SEGMENT_COUNT - 1)];
+  }
+
+  private static long hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return h ^ (h >>> 32);
+  }
+
+  private static class Segment<V> {
+
+    // open addressing with linear probing, a null value marks a free slot
+    private long[] keys;
+    private Object[] values;
+    private long[] ticks;
+    private int size;
+
+    // keys stored in each tick, the bucket of a tick is drained when the
+    // wheel comes around to it again
+    private final long[][] wheel = new long[WHEEL_SIZE][];
+    private final int[] wheelCounts = new int[WHEEL_SIZE];
+    private long lastTick;
+
+    Segment(int capacity, long tick) {
+      int length = Integer.highestOneBit(Math.max(capacity, 4) * 2 - 1) << 1;
+      this.keys = new long[length];
+      this.values = new Object[length];
+      this.ticks = new long[length];
+      this.lastTick = tick;
+    }
+
+    synchronized void put(long key, long hash, V value, long tick) {
+      expire(tick);
+      if ((size + 1) * 2 > keys.length) {
+        resize();
+      }
+      int slot = find(key, hash);
+      if (values[slot] == null) {
+        keys[slot] = key;
+        size++;
+      }
+      values[slot] = value;
+      ticks[slot] = tick;
+
+      int bucket = (int) (tick % WHEEL_SIZE);
+      long[] bucketKeys = wheel[bucket];
+      int count = wheelCounts[bucket];
+      if (bucketKeys == null) {
+        bucketKeys = wheel[bucket] = new long[16];
+      }
+      else if (count == bucketKeys.length) {
+        long[] grown = new long[count * 2];
+        System.arraycopy(bucketKeys, 0, grown, 0, count);
+        bucketKeys = wheel[bucket] = grown;
+      }
+      bucketKeys[count] = key;
+      wheelCounts[bucket] = count + 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized V get(long key, long hash, long tick) {
+      expire(tick);
+      return (V) values[find(key, hash)];
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized V remove(long key, long hash) {
+      int slot = find(key, hash);
+      V value = (V) values[slot];
+      if (value != null) {
+        delete(slot);
+      }
+      return value;
+    }
+
+    synchronized void advance(long tick) {
+      expire(tick);
+    }
+
+    synchronized void clear() {
+      Arrays.fill(values, null);
+      Arrays.fill(wheelCounts, 0);
+      size = 0;
+    }
+
+    /**
+     * Drains the buckets of the ticks passed since the last call, all keys in
+     * them were stored at least a full turn of the wheel ago.
+     */
+    private void expire(long tick) {
+      if (tick <= lastTick) {
+        return;
+      }
+      long from = Math.max(lastTick + 1, tick - WHEEL_SIZE + 1);
+      for (long t = from; t <= tick; t++) {
+        int bucket = (int) (t % WHEEL_SIZE);
+        long[] bucketKeys = wheel[bucket];
+        int count = wheelCounts[bucket];
+        for (int i = 0; i < count; i++) {
+          long key = bucketKeys[i];
+          int slot = find(key, hash(key));
+          // skip keys removed, or stored again later
+          if (values[slot] != null && ticks[slot] + WHEEL_SIZE <= tick) {
+            delete(slot);
+          }
+        }
+        wheelCounts[bucket] = 0;
+        if (bucketKeys != null && bucketKeys.length > MAX_KEPT_BUCKET) {
+          wheel[bucket] = null;
+        }
+      }
+      lastTick = tick;
+    }
+
+    private int find(long key, long hash) {
+      int mask = keys.length - 1;
+      int slot = (int) hash & mask;
+      while (values[slot] != null && keys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    /**
+     * Frees a slot, moving back entries of the same probe sequence.
+     */
+    private void delete(int slot) {
+      int mask = keys.length - 1;
+      int free = slot;
+      int next = (free + 1) & mask;
+      while (values[next] != null) {
+        int home = (int) hash(keys[next]) & mask;
+        // move entry unless its home slot lies after the free one
+        if (((next - home) & mask) >= ((next - free) & mask)) {
+          keys[free] = keys[next];
+          values[free] = values[next];
+          ticks[free] = ticks[next];
+          free = next;
+        }
+        next = (next + 1) & mask;
+      }
+      values[free] = null;
+      size--;
+    }
+
+    private void resize() {
+      long[] oldKeys = keys;
+      Object[] oldValues = values;
+      long[] oldTicks = ticks;
+      keys = new long[oldKeys.length * 2];
+      values = new Object[oldKeys.length * 2];
+      ticks = new long[oldKeys.length * 2];
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldValues[i] != null) {
+          int slot = find(oldKeys[i], hash(oldKeys[i]));
+          keys[slot] = oldKeys[i];
+          values[slot] = oldValues[i];
+          ticks[slot] = oldTicks[i];
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.client.impl.router;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdiameter.client.api.controller.IPeer;
+import org.jdiameter.client.api.router.ILoadBalancer;
+
+/**
+ * Selects the peer with the fewest requests waiting for an answer, then the
+ * one with the emptiest FSM queue. The scan starts at a different peer on
+ * each call so that equally loaded peers take turns.
+ */
+public class LeastOutstandingLoadBalancer implements ILoadBalancer {
+
+  private final AtomicInteger start = new AtomicInteger(0);
+
+  public IPeer selectPeer(List<IPeer> availablePeers) {
+    int size = availablePeers.size();
+    int offset = (start.getAndIncrement() & Integer.MAX_VALUE) % size;
+    IPeer selected = availablePeers.get(offset);
+    for (int i = 1; i < size; i++) {
+      IPeer peer = availablePeers.get((offset + i) % size);
+      if (compareLoad(peer, selected) < 0) {
+        selected = peer;
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Orders peers by outstanding requests, then by FSM queue fill.
+   */
+  static int compareLoad(IPeer a, IPeer b) {
+    int outstandingA = a.getOutstandingRequests();
+    int outstandingB = b.getOutstandingRequests();
+    if (outstandingA != outstandingB) {
+      return outstandingA < outstandingB ? -1 : 1;
+    }
+    return Double.compare(a.getQueueInfo(), b.getQueueInfo());
+  }
+}
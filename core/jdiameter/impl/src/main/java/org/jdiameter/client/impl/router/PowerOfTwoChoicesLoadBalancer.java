@@ -0,0 +1,58 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.client.impl.router;
+
+import java.util.List;
+import java.util.Random;
+
+import org.jdiameter.client.api.controller.IPeer;
+import org.jdiameter.client.api.router.ILoadBalancer;
+
+/**
+ * Picks two peers at random and selects the less loaded of them, using the
+ * same ordering as {@link LeastOutstandingLoadBalancer}. This keeps load even
+ * without reading the state of every peer on each request.
+ */
+public class PowerOfTwoChoicesLoadBalancer implements ILoadBalancer {
+
+  // one generator per thread, a shared one would be contended
+  private static final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+    protected Random initialValue() {
+      return new Random();
+    }
+  };
+
+  public IPeer selectPeer(List<IPeer> availablePeers) {
+    int size = availablePeers.size();
+    if (size == 1) {
+      return availablePeers.get(0);
+    }
+    Random rnd = random.get();
+    int first = rnd.nextInt(size);
+    // any other peer
+    int second = (first + 1 + rnd.nextInt(size - 1)) % size;
+    IPeer a = availablePeers.get(first);
+    IPeer b = availablePeers.get(second);
+    return LeastOutstandingLoadBalancer.compareLoad(b, a) < 0 ? b : a;
+  }
+}
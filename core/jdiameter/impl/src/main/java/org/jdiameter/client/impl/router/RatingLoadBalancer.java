@@ -0,0 +1,45 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.client.impl.router;
+
+import java.util.List;
+
+import org.jdiameter.client.api.controller.IPeer;
+import org.jdiameter.client.api.router.ILoadBalancer;
+
+/**
+ * Default balancer, always selects the peer with the highest rating. If
+ * several peers share it the last of them is selected.
+ */
+public class RatingLoadBalancer implements ILoadBalancer {
+
+  public IPeer selectPeer(List<IPeer> availablePeers) {
+    IPeer p = null;
+    for (IPeer c : availablePeers) {
+      if (p == null || c.getRating() >= p.getRating()) {
+        p = c;
+      }
+    }
+    return p;
+  }
+}
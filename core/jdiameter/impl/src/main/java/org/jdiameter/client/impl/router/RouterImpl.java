@@ -26,6 +26,7 @@ import static org.jdiameter.client.impl.helpers.Parameters.AcctApplId;
 import static org.jdiameter.client.impl.helpers.Parameters.Agent;
 import static org.jdiameter.client.impl.helpers.Parameters.ApplicationId;
 import static org.jdiameter.client.impl.helpers.Parameters.AuthApplId;
+import static org.jdiameter.client.impl.helpers.Parameters.LoadBalancerClass;
 import static org.jdiameter.client.impl.helpers.Parameters.OwnRealm;
 import static org.jdiameter.client.impl.helpers.Parameters.RealmEntry;
 import static org.jdiameter.client.impl.helpers.Parameters.RealmTable;
@@ -37,6 +38,7 @@ import static org.jdiameter.server.impl.helpers.Parameters.RealmLocalAction;
 import static org.jdiameter.server.impl.helpers.Parameters.RealmName;
 import static org.jdiameter.server.impl.helpers.Parameters.RequestTable;
 import static org.jdiameter.server.impl.helpers.Parameters.RequestTableClearSize;
+import static org.jdiameter.server.impl.helpers.Parameters.RequestTableExpTime;
 import static org.jdiameter.server.impl.helpers.Parameters.RequestTableSize;
 
 import java.io.IOException;
@@ -45,12 +47,7 @@ import java.net.UnknownServiceException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-//PCB added for thread safe
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.jdiameter.api.ApplicationId;
@@ -74,6 +71,7 @@ import org.jdiameter.client.api.controller.IPeer;
 import org.jdiameter.client.api.controller.IPeerTable;
 import org.jdiameter.client.api.controller.IRealm;
 import org.jdiameter.client.api.controller.IRealmTable;
+import org.jdiameter.client.api.router.ILoadBalancer;
 import org.jdiameter.client.api.router.IRouter;
 import org.jdiameter.client.impl.helpers.AppConfiguration;
 import org.jdiameter.client.impl.helpers.Parameters;
@@ -111,14 +109,22 @@ public class RouterImpl implements IRouter {
 
   protected IContainer container;
 
+  // selects one of the peers of a realm
+  protected ILoadBalancer loadBalancer;
+
   // Answer routing feature
   public static int REQUEST_TABLE_SIZE = 10 * 1024;
+  /**
+   * @deprecated not used, entries expire one by one after REQUEST_TABLE_EXP_TIME
+   */
+  @Deprecated
   public static int REQUEST_TABLE_CLEAR_SIZE = 2 * 1024;
+  // time route info of a request is kept for its answer
+  public static long REQUEST_TABLE_EXP_TIME = 120000;
 
-  protected Lock requestEntryTableLock = new ReentrantLock();
   protected ReadWriteLock redirectTableLock = new ReentrantReadWriteLock();
-  //PCB added
-  protected Map<String, AnswerEntry> requestEntryMap;
+  // keyed by end-to-end and hop-by-hop id, see makeRoutingKey
+  protected AnswerRouteTable<AnswerEntry> requestEntryMap;
   //protected List<Long> requestSortedEntryTable = new ArrayList<Long>();
   protected boolean isStopped = true;
 
@@ -148,19 +154,24 @@ public class RouterImpl implements IRouter {
     if (config.getChildren(RequestTable.ordinal()) != null) {
       AppConfiguration requestTableConfig = (AppConfiguration) config.getChildren(org.jdiameter.server.impl.helpers.Parameters.RequestTable.ordinal())[0];
       int tSize = (int)requestTableConfig.getIntValue(RequestTableSize.ordinal(),(Integer) RequestTableSize.defValue());
-      int tClearSize = (int)requestTableConfig.getIntValue(RequestTableClearSize.ordinal(),(Integer) RequestTableClearSize.defValue());
-      if(tClearSize >= tSize) {
-        logger.warn("Configuration entry RequestTable, attribute 'clear_size' [{}] should not be greater than 'size' [{}]. Adjusting.", tSize, tClearSize);
-        while (tClearSize >= tSize) {
-          tSize *= 10;
-        }
-      }
       REQUEST_TABLE_SIZE = (int) tSize;
-      REQUEST_TABLE_CLEAR_SIZE = (int) tClearSize;
+      if (requestTableConfig.isAttributeExist(RequestTableClearSize.ordinal())) {
+        logger.warn("RequestTable clear_size is deprecated and ignored, entries expire after expire_time");
+      }
+      REQUEST_TABLE_EXP_TIME = requestTableConfig.getLongValue(RequestTableExpTime.ordinal(), (Long) RequestTableExpTime.defValue());
+    }
+    // entries expire one by one, size is only the expected number of entries
+    this.requestEntryMap = new AnswerRouteTable<AnswerEntry>(REQUEST_TABLE_SIZE, REQUEST_TABLE_EXP_TIME);
+
+    String loadBalancerClass = config.getStringValue(LoadBalancerClass.ordinal(), (String) LoadBalancerClass.defValue());
+    try {
+      this.loadBalancer = (ILoadBalancer) Class.forName(loadBalancerClass).newInstance();
+    }
+    catch (Exception e) {
+      throw new RuntimeException("Unable to create load balancer from LoadBalancerClass config value:" + loadBalancerClass, e);
     }
-    //PCB added thread safety
-    this.requestEntryMap = new ConcurrentHashMap<String, AnswerEntry>(REQUEST_TABLE_SIZE);
-    logger.debug("Configured Request Table with size[{}] and clear size[{}].", REQUEST_TABLE_SIZE, REQUEST_TABLE_CLEAR_SIZE);
+    logger.debug("Using load balancer [{}]", loadBalancerClass);
+    logger.debug("Configured Request Table with size[{}] and expire time[{}].", REQUEST_TABLE_SIZE, REQUEST_TABLE_EXP_TIME);
 
     //add realms based on realm table.
     if (config.getChildren(RealmTable.ordinal()) != null) {
@@ -233,39 +244,7 @@ public class RouterImpl implements IRouter {
       AnswerEntry entry = new AnswerEntry(hopByHopId, hostAvp != null ? hostAvp.getDiameterIdentity() : null,
           realmAvp != null ? realmAvp.getDiameterIdentity() : null);
 
-      int s = requestEntryMap.size();
-      // PCB added logging
-      logger.debug("RequestRoute map size is [{}]", s);
-
-      //PCB added
-      if (s > REQUEST_TABLE_CLEAR_SIZE) {
-        try {
-          requestEntryTableLock.lock();
-          s = requestEntryMap.size();
-          logger.debug("After 'lock', RequestRoute map size is [{}]", s);
-          // The double-check with a gap is in case while about to clear the map, it drops below REQUEST_TABLE_SIZE due to a
-          // response being sent, and then the lock might not be in effect for another thread
-          // Hence lock at REQUEST_TABLE_CLEAR_SIZE and clear at REQUEST_TABLE_SIZE so that all threads would be locked not
-          // just the first to reach REQUEST_TABLE_SIZE
-          if (s > REQUEST_TABLE_SIZE) {
-            // Going to clear it out and suffer the consequences of some messages possibly not being routed back the clients..
-            logger.warn("RequestRoute map size is [{}]. There's probably a leak. Cleaning up after a short wait...", s);
-            // Lets do our best to avoid lost messages by locking table from writes (as this is the only code writing to it),
-            // sleeping for a while for responses to be sent and then clearing it
-            Thread.sleep(5000);
-            logger.warn("RequestRoute map size is now [{}] after sleeping. Clearing it!", requestEntryMap.size());
-            requestEntryMap.clear();
-          }
-        }
-        catch (Exception e) {
-          logger.warn("Failure trying to clear RequestRoute map", e);
-        }
-        finally {
-          requestEntryTableLock.unlock();
-        }
-      }
-
-      String messageKey = makeRoutingKey(request);
+      long messageKey = makeRoutingKey(request);
       logger.debug("Adding request key [{}] to RequestRoute map for routing answers back to the requesting peer", messageKey);
       requestEntryMap.put(messageKey, entry);
       // requestSortedEntryTable.add(hopByHopId);
@@ -278,15 +257,13 @@ public class RouterImpl implements IRouter {
     }
   }
 
-  // PCB - Made better routing algorithm that should not grow all the time
-  private String makeRoutingKey(Message message) {
-    String sessionId = message.getSessionId();
-    return new StringBuilder(sessionId != null ? sessionId : "null").append(message.getEndToEndIdentifier())
-        .append(message.getHopByHopIdentifier()).toString();
+  // both ids are 32 bit, a request and its answer share them
+  private long makeRoutingKey(Message message) {
+    return (message.getEndToEndIdentifier() << 32) | (message.getHopByHopIdentifier() & 0xFFFFFFFFL);
   }
 
   public String[] getRequestRouteInfo(IMessage message) {
-    String messageKey = makeRoutingKey(message);
+    long messageKey = makeRoutingKey(message);
     AnswerEntry ans = requestEntryMap.get(messageKey);
     if (ans != null) {
       if (logger.isDebugEnabled()) {
@@ -304,7 +281,7 @@ public class RouterImpl implements IRouter {
 
   //PCB added
   public void garbageCollectRequestRouteInfo(IMessage message) {
-    String messageKey = makeRoutingKey(message);
+    long messageKey = makeRoutingKey(message);
     requestEntryMap.remove(messageKey);
   }
 
@@ -698,17 +675,13 @@ public class RouterImpl implements IRouter {
     //redirectScheduler = null;
     redirectTable = null;
     requestEntryMap = null;
-    requestEntryMap = null;
   }
 
   protected IPeer selectPeer(List<IPeer> availablePeers) {
-    IPeer p = null;
-    for (IPeer c : availablePeers) {
-      if (p == null || c.getRating() >= p.getRating()) {
-        p = c;
-      }
+    if (availablePeers.isEmpty()) {
+      return null;
     }
-    return p;
+    return loadBalancer.selectPeer(availablePeers);
   }
 
   //    protected void redirectProcessing(IMessage message, final String destRealm, final String destHost) throws AvpDataException {
@@ -0,0 +1,61 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.client.impl.router;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdiameter.client.api.controller.IPeer;
+import org.jdiameter.client.api.router.ILoadBalancer;
+
+/**
+ * Spreads requests over peers in proportion to their rating, a peer with
+ * rating 3 gets three times the requests of a peer with rating 1. Peers with
+ * no rating are counted as rating 1.
+ */
+public class WeightedRoundRobinLoadBalancer implements ILoadBalancer {
+
+  private final AtomicLong counter = new AtomicLong(0);
+
+  public IPeer selectPeer(List<IPeer> availablePeers) {
+    int size = availablePeers.size();
+    long total = 0;
+    for (int i = 0; i < size; i++) {
+      total += weight(availablePeers.get(i));
+    }
+    long position = (counter.getAndIncrement() & Long.MAX_VALUE) % total;
+    for (int i = 0; i < size; i++) {
+      IPeer peer = availablePeers.get(i);
+      position -= weight(peer);
+      if (position < 0) {
+        return peer;
+      }
+    }
+    // list changed under us
+    return availablePeers.get(size - 1);
+  }
+
+  private static int weight(IPeer peer) {
+    return Math.max(peer.getRating(), 1);
+  }
+}
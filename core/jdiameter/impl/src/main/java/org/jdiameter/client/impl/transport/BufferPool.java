@@ -0,0 +1,85 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.client.impl.transport;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdiameter.client.api.io.IBufferPool;
+
+/**
+ * Pool of fixed size direct buffers. Requests bigger than the pooled buffer
+ * size get a heap buffer which is not pooled.
+ */
+public class BufferPool implements IBufferPool {
+
+  public static final int DEFAULT_BUFFER_SIZE = 8192;
+  public static final int DEFAULT_POOL_SIZE = 16;
+
+  private final int bufferSize;
+  private final int poolSize;
+
+  private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+  private final AtomicInteger pooled = new AtomicInteger();
+
+  public BufferPool() {
+    this(DEFAULT_BUFFER_SIZE, DEFAULT_POOL_SIZE);
+  }
+
+  /**
+   * @param bufferSize size of pooled buffers
+   * @param poolSize maximum number of idle buffers kept
+   */
+  public BufferPool(int bufferSize, int poolSize) {
+    this.bufferSize = bufferSize;
+    this.poolSize = poolSize;
+  }
+
+  public ByteBuffer acquire(int size) {
+    if (size > bufferSize) {
+      return ByteBuffer.allocate(size);
+    }
+    ByteBuffer buffer = buffers.poll();
+    if (buffer == null) {
+      buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+    else {
+      pooled.decrementAndGet();
+    }
+    buffer.limit(size);
+    return buffer;
+  }
+
+  public void release(ByteBuffer buffer) {
+    if (buffer == null || !buffer.isDirect() || buffer.capacity() != bufferSize) {
+      return;
+    }
+    if (pooled.incrementAndGet() > poolSize) {
+      pooled.decrementAndGet();
+      return;
+    }
+    buffer.clear();
+    buffers.offer(buffer);
+  }
+}
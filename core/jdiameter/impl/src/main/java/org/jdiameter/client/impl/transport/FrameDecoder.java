@@ -0,0 +1,182 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.client.impl.transport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import org.jdiameter.api.AvpDataException;
+
+/**
+ * Splits a byte stream into Diameter messages using the length in the
+ * message header. Each message is assembled in its own right-sized buffer,
+ * which is handed over to the {@link FrameHandler} and not touched by the
+ * decoder afterwards, so decoded messages may keep referring to it.
+ *
+ * Bytes are read into a fixed receive buffer and copied once into the
+ * message buffer. Once the header of a message has been seen, the rest of it
+ * is read straight into the message buffer.
+ *
+ * Instances are not thread safe, a decoder is meant to be used by the single
+ * thread reading from a connection.
+ */
+public class FrameDecoder {
+
+  public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+  // Diameter header is 20 bytes, the length is in the first word
+  private static final int HEADER_SIZE = 20;
+  private static final int LENGTH_SIZE = 4;
+
+  /**
+   * Receives complete messages.
+   */
+  public interface FrameHandler {
+
+    /**
+     * @param frame buffer holding exactly one message, positioned at its start
+     */
+    void onFrame(ByteBuffer frame);
+  }
+
+  private final int bufferSize;
+  // allocated on the first read from a channel
+  private ByteBuffer receiveBuffer;
+  // first word of a message split between reads
+  private final ByteBuffer lengthBuffer = ByteBuffer.allocate(LENGTH_SIZE);
+  // message being assembled
+  private ByteBuffer frame;
+
+  public FrameDecoder() {
+    this(DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * @param bufferSize size of the buffer used for reads from a channel
+   */
+  public FrameDecoder(int bufferSize) {
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+   * Performs one read from the channel and passes every message completed by
+   * it to the handler.
+   *
+   * @return number of bytes read, -1 at the end of stream
+   * @throws AvpDataException if the stream does not hold a valid Diameter header
+   * where one is expected, everything received so far is dropped
+   */
+  public int read(ReadableByteChannel channel, FrameHandler handler) throws IOException, AvpDataException {
+    if (frame != null) {
+      // rest of the message goes straight to its buffer
+      int dataLength = channel.read(frame);
+      if (dataLength > 0 && !frame.hasRemaining()) {
+        complete(handler);
+      }
+      return dataLength;
+    }
+    if (receiveBuffer == null) {
+      receiveBuffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+    receiveBuffer.clear();
+    int dataLength = channel.read(receiveBuffer);
+    if (dataLength > 0) {
+      receiveBuffer.flip();
+      decode(receiveBuffer, handler);
+    }
+    return dataLength;
+  }
+
+  /**
+   * Passes every message completed by the given data to the handler. The data
+   * is consumed.
+   *
+   * @throws AvpDataException if the data does not hold a valid Diameter header
+   * where one is expected, everything received so far is dropped
+   */
+  public void decode(ByteBuffer data, FrameHandler handler) throws AvpDataException {
+    while (data.hasRemaining()) {
+      if (frame == null) {
+        int word;
+        if (lengthBuffer.position() == 0 && data.remaining() >= LENGTH_SIZE) {
+          word = data.getInt(data.position());
+        }
+        else {
+          while (lengthBuffer.hasRemaining() && data.hasRemaining()) {
+            lengthBuffer.put(data.get());
+          }
+          if (lengthBuffer.hasRemaining()) {
+            return;
+          }
+          word = lengthBuffer.getInt(0);
+        }
+        // 0                   1                   2                   3
+        // 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+        // +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+        // |    Version    |                 Message Length                |
+        // +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+        int messageLength = word & 0xFFFFFF;
+        if ((word >>> 24) != 1 || messageLength < HEADER_SIZE) {
+          reset();
+          data.position(data.limit());
+          throw new AvpDataException("Invalid message header, version " + (word >>> 24) + ", length " + messageLength);
+        }
+        frame = ByteBuffer.allocate(messageLength);
+        if (lengthBuffer.position() != 0) {
+          frame.putInt(word);
+          lengthBuffer.clear();
+        }
+      }
+      int count = Math.min(frame.remaining(), data.remaining());
+      if (data.hasArray()) {
+        frame.put(data.array(), data.arrayOffset() + data.position(), count);
+        data.position(data.position() + count);
+      }
+      else {
+        int limit = data.limit();
+        data.limit(data.position() + count);
+        frame.put(data);
+        data.limit(limit);
+      }
+      if (!frame.hasRemaining()) {
+        complete(handler);
+      }
+    }
+  }
+
+  /**
+   * Drops any partially received message.
+   */
+  public void reset() {
+    frame = null;
+    lengthBuffer.clear();
+  }
+
+  private void complete(FrameHandler handler) {
+    ByteBuffer message = frame;
+    frame = null;
+    message.flip();
+    handler.onFrame(message);
+  }
+}
@@ -0,0 +1,329 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.client.impl.transport;
+
+import static org.jdiameter.client.impl.helpers.Parameters.ReactorThreadCount;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdiameter.api.Configuration;
+import org.jdiameter.common.api.concurrent.DummyConcurrentFactory;
+import org.jdiameter.common.api.concurrent.IConcurrentFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared network I/O engine. A fixed number of selector threads multiplexes
+ * the channels of all connections, each channel is served by one of them
+ * for its whole life. Handlers are invoked on the selector thread and must
+ * not block. Channels are always registered for reads, write readiness is
+ * only selected while a handler has data it could not write.
+ *
+ * A single reactor is shared by all connections of the JVM, it is started by
+ * the first {@link #acquire(Configuration, IConcurrentFactory)} and stopped
+ * once every user has called {@link #release()}.
+ */
+public class NetworkReactor {
+
+  private static final Logger logger = LoggerFactory.getLogger(NetworkReactor.class);
+
+  /**
+   * Receives readiness events of a registered channel.
+   */
+  public interface Handler {
+
+    /**
+     * Called when the channel has data to read.
+     *
+     * @return false if the end of stream has been reached and the channel should be closed
+     */
+    boolean onReadable() throws IOException;
+
+    /**
+     * Called when the channel can accept more data after {@link NetworkReactor#requestWrite(SelectableChannel)}.
+     *
+     * @return true if all pending data has been written and write readiness is no longer needed
+     */
+    boolean onWritable() throws IOException;
+
+    /**
+     * Called once the channel has been closed, either on request, at the end
+     * of stream or after an I/O error.
+     */
+    void onClosed();
+  }
+
+  private static NetworkReactor instance;
+
+  private final Worker[] workers;
+  private final AtomicInteger nextWorker = new AtomicInteger();
+  private final ConcurrentHashMap<SelectableChannel, Worker> channels = new ConcurrentHashMap<SelectableChannel, Worker>();
+  private int users;
+
+  /**
+   * Returns the shared reactor, starting it if needed. Every call must be
+   * paired with a call to {@link #release()}.
+   *
+   * @param config configuration the number of threads is taken from, may be null
+   * @param concurrentFactory factory for reactor threads, may be null
+   */
+  public static NetworkReactor acquire(Configuration config, IConcurrentFactory concurrentFactory) throws IOException {
+    synchronized (NetworkReactor.class) {
+      if (instance == null) {
+        int threadCount = (Integer) ReactorThreadCount.defValue();
+        if (config != null) {
+          threadCount = config.getIntValue(ReactorThreadCount.ordinal(), threadCount);
+        }
+        instance = new NetworkReactor(threadCount, concurrentFactory == null ? new DummyConcurrentFactory() : concurrentFactory);
+      }
+      instance.users++;
+      return instance;
+    }
+  }
+
+  protected NetworkReactor(int threadCount, IConcurrentFactory concurrentFactory) throws IOException {
+    workers = new Worker[Math.max(1, threadCount)];
+    try {
+      for (int i = 0; i < workers.length; i++) {
+        workers[i] = new Worker(Selector.open());
+      }
+    }
+    catch (IOException e) {
+      for (Worker worker : workers) {
+        if (worker != null) {
+          worker.selector.close();
+        }
+      }
+      throw e;
+    }
+    for (int i = 0; i < workers.length; i++) {
+      Thread thread = concurrentFactory.getThread("NetworkReactor-" + i, workers[i]);
+      thread.setDaemon(true);
+      thread.start();
+    }
+    logger.debug("Started network reactor with {} selector threads", workers.length);
+  }
+
+  /**
+   * Releases the reactor obtained with {@link #acquire(Configuration, IConcurrentFactory)}.
+   * The last release stops the selector threads.
+   */
+  public void release() {
+    synchronized (NetworkReactor.class) {
+      if (--users > 0) {
+        return;
+      }
+      if (instance == this) {
+        instance = null;
+      }
+    }
+    for (Worker worker : workers) {
+      worker.stop();
+    }
+    logger.debug("Network reactor is stopped");
+  }
+
+  /**
+   * Registers a non blocking channel for read events.
+   */
+  public void register(final SelectableChannel channel, final Handler handler) {
+    final Worker worker = workers[(nextWorker.getAndIncrement() & Integer.MAX_VALUE) % workers.length];
+    channels.put(channel, worker);
+    worker.execute(new Runnable() {
+      public void run() {
+        try {
+          channel.register(worker.selector, SelectionKey.OP_READ, handler);
+        }
+        catch (ClosedChannelException e) {
+          channels.remove(channel);
+          handler.onClosed();
+        }
+      }
+    });
+  }
+
+  /**
+   * Selects write readiness of a registered channel until its handler reports
+   * that it has nothing left to write.
+   */
+  public void requestWrite(final SelectableChannel channel) {
+    final Worker worker = channels.get(channel);
+    if (worker == null) {
+      return;
+    }
+    worker.execute(new Runnable() {
+      public void run() {
+        SelectionKey key = channel.keyFor(worker.selector);
+        if (key != null && key.isValid()) {
+          key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+      }
+    });
+  }
+
+  /**
+   * Closes a channel. If the channel is registered, it is closed by its
+   * selector thread and the handler is notified once it is done, otherwise it
+   * is just closed. Data still pending is written as far as the channel
+   * accepts it without blocking.
+   */
+  public void close(final SelectableChannel channel) throws IOException {
+    final Worker worker = channels.remove(channel);
+    if (worker == null) {
+      channel.close();
+      return;
+    }
+    worker.execute(new Runnable() {
+      public void run() {
+        SelectionKey key = channel.keyFor(worker.selector);
+        if (key != null) {
+          Handler handler = (Handler) key.attachment();
+          if (handler != null && key.isValid()) {
+            try {
+              handler.onWritable();
+            }
+            catch (Throwable e) {
+              logger.debug("Failed to write pending data before closing channel", e);
+            }
+          }
+          worker.close(key);
+        }
+        else {
+          closeChannel(channel);
+        }
+      }
+    });
+  }
+
+  private static void closeChannel(SelectableChannel channel) {
+    try {
+      channel.close();
+    }
+    catch (IOException e) {
+      logger.debug("Failed to close channel", e);
+    }
+  }
+
+  private class Worker implements Runnable {
+
+    private final Selector selector;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private volatile boolean stop = false;
+
+    Worker(Selector selector) {
+      this.selector = selector;
+    }
+
+    void execute(Runnable task) {
+      tasks.add(task);
+      selector.wakeup();
+    }
+
+    void stop() {
+      stop = true;
+      selector.wakeup();
+    }
+
+    public void run() {
+      try {
+        while (!stop) {
+          selector.select();
+          runTasks();
+          Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+          while (it.hasNext()) {
+            SelectionKey key = it.next();
+            it.remove();
+            Handler handler = (Handler) key.attachment();
+            if (handler == null) {
+              continue;
+            }
+            try {
+              if (key.isValid() && key.isWritable() && handler.onWritable()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+              }
+              if (key.isValid() && key.isReadable() && !handler.onReadable()) {
+                close(key);
+              }
+            }
+            catch (Throwable e) {
+              logger.debug("Failure on channel, closing it", e);
+              close(key);
+            }
+          }
+        }
+      }
+      catch (Throwable e) {
+        logger.error("Network reactor thread failed", e);
+      }
+      finally {
+        runTasks();
+        for (SelectionKey key : selector.keys()) {
+          close(key);
+        }
+        try {
+          selector.close();
+        }
+        catch (IOException e) {
+          logger.debug("Failed to close selector", e);
+        }
+      }
+    }
+
+    private void runTasks() {
+      Runnable task;
+      while ((task = tasks.poll()) != null) {
+        try {
+          task.run();
+        }
+        catch (Throwable e) {
+          logger.error("Failed to run reactor task", e);
+        }
+      }
+    }
+
+    void close(SelectionKey key) {
+      // handler is detached so it is notified only once
+      Handler handler = (Handler) key.attach(null);
+      if (handler == null) {
+        return;
+      }
+      key.cancel();
+      channels.remove(key.channel());
+      closeChannel(key.channel());
+      try {
+        handler.onClosed();
+      }
+      catch (Throwable e) {
+        logger.error("Failure while closing channel", e);
+      }
+    }
+  }
+}
@@ -152,6 +152,10 @@ public class SCTPClientConnection implements IConnection {
     return false;
   }
 
+  public boolean isSharedThreadDelivery() {
+    return false;
+  }
+
   public boolean isConnected() {
     return getClient() != null && getClient().isConnected();
   }
@@ -24,6 +24,7 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import org.jdiameter.api.AvpDataException;
 import org.jdiameter.client.api.io.NotInitializedException;
+import org.jdiameter.client.impl.transport.FrameDecoder;
 import org.mobicents.protocols.api.Association;
 import org.mobicents.protocols.api.AssociationListener;
 import org.mobicents.protocols.api.IpChannelType;
@@ -157,10 +158,15 @@ public class SCTPTransportClient {
     logger.trace("Client Association [{}]", clientAssociation);
   }
 
-  private class ClientAssociationListener implements AssociationListener {
+  private class ClientAssociationListener implements AssociationListener, FrameDecoder.FrameHandler {
 
     private final Logger logger = LoggerFactory.getLogger(ClientAssociationListener.class);
 
+    // splits payloads of the association into messages, only used by the
+    // thread delivering payloads; notifications just publish a fresh one
+    // when the association comes up, dropping any partial message
+    private volatile FrameDecoder decoder = new FrameDecoder();
+
     /*
      * (non-Javadoc)
      * 
@@ -169,6 +175,7 @@ public class SCTPTransportClient {
     @Override
     public void onCommunicationUp(Association association, int maxInboundStreams, int maxOutboundStreams) {
       logger.debug("onCommunicationUp called for [{}]", this);
+      decoder = new FrameDecoder();
       getParent().onConnected();
     }
 
@@ -206,6 +213,7 @@ public class SCTPTransportClient {
     @Override
     public void onCommunicationRestart(Association association) {
       logger.debug("onCommunicationRestart called for [{}]", this);
+      decoder = new FrameDecoder();
     }
 
     /*
@@ -216,17 +224,26 @@ public class SCTPTransportClient {
      */
     @Override
     public void onPayload(Association association, PayloadData payloadData) {
-      byte[] data = new byte[payloadData.getDataLength()];
-      System.arraycopy(payloadData.getData(), 0, data, 0, payloadData.getDataLength());
-      logger.debug("SCTP Client received data of length [{}]", data.length);
+      logger.debug("SCTP Client received data of length [{}]", payloadData.getDataLength());
+
+      FrameDecoder payloadDecoder = decoder;
+      try {
+        // messages are copied out of the payload by the decoder
+        payloadDecoder.decode(ByteBuffer.wrap(payloadData.getData(), 0, payloadData.getDataLength()), this);
+      }
+      catch (AvpDataException e) {
+        logger.debug("Garbage was received. Discarding.");
+        getParent().onAvpDataException(e);
+      }
+    }
 
+    public void onFrame(ByteBuffer frame) {
       try {
         // make a message out of data and process it
-        getParent().onMessageReceived(ByteBuffer.wrap(data));
+        getParent().onMessageReceived(frame);
       }
       catch (AvpDataException e) {
         logger.debug("Garbage was received. Discarding.");
-        // storage.clear();
         getParent().onAvpDataException(e);
       }
     }
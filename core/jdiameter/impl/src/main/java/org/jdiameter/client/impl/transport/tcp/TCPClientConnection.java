@@ -70,22 +70,25 @@ public class TCPClientConnection implements IConnection {
   private String cachedKey = null;
 
   protected TCPClientConnection(IConcurrentFactory concurrentFactory, IMessageParser parser) {
+    this(null, concurrentFactory, parser);
+  }
+
+  protected TCPClientConnection(Configuration config, IConcurrentFactory concurrentFactory, IMessageParser parser) {
     this.createdTime = System.currentTimeMillis();
     this.parser = parser;
-    client = new TCPTransportClient(concurrentFactory, this);
+    client = new TCPTransportClient(config, concurrentFactory, this);
   }
 
   public TCPClientConnection(Configuration config, IConcurrentFactory concurrentFactory, Socket socket,
       IMessageParser parser, String ref) throws Exception {
-    this(concurrentFactory, parser);
-    client = new TCPTransportClient(concurrentFactory, this);
+    this(config, concurrentFactory, parser);
     client.initialize(socket);
     client.start();
   }
 
   public TCPClientConnection(Configuration config, IConcurrentFactory concurrentFactory, InetAddress remoteAddress,
       int remotePort, InetAddress localAddress, int localPort, IMessageParser parser, String ref) {
-    this(concurrentFactory, parser);
+    this(config, concurrentFactory, parser);
     client.setDestAddress(new InetSocketAddress(remoteAddress, remotePort));
     client.setOrigAddress(new InetSocketAddress(localAddress, localPort));
   }
@@ -93,7 +96,7 @@ public class TCPClientConnection implements IConnection {
   public TCPClientConnection(Configuration config, IConcurrentFactory concurrentFactory, InetAddress remoteAddress,
       int remotePort, InetAddress localAddress, int localPort, IConnectionListener listener,
       IMessageParser parser, String ref) {
-    this(concurrentFactory, parser);
+    this(config, concurrentFactory, parser);
     client.setDestAddress(new InetSocketAddress(remoteAddress, remotePort));
     client.setOrigAddress(new InetSocketAddress(localAddress, localPort));
     listeners.add(listener);
@@ -158,7 +161,9 @@ public class TCPClientConnection implements IConnection {
         //    logger.warn("Diameter Message processing took [{}]ms", millis);
         //  }
         //}
-        getClient().sendMessage(parser.encodeMessage(message));
+        // the transport releases the buffer once it has been written
+        ByteBuffer bytes = parser.encodeMessage(message, getClient().getBufferPool());
+        getClient().sendMessage(bytes);
         //PCB added logging
         //if (receivedAt != null) {
         //  long millis = System.currentTimeMillis() - receivedAt;
@@ -168,6 +173,9 @@ public class TCPClientConnection implements IConnection {
         //}
       }
     }
+    catch (OverloadException e) {
+      throw e;
+    }
     catch (Exception e) {
       throw new TransportException("Cannot send message: ", TransportError.FailedSendMessage, e);
     }
@@ -181,6 +189,11 @@ public class TCPClientConnection implements IConnection {
     return false;
   }
 
+  public boolean isSharedThreadDelivery() {
+    // read by the network reactor, a thread serving many connections
+    return true;
+  }
+
   public boolean isConnected() {
     return getClient() != null && getClient().isConnected();
   }
@@ -42,9 +42,17 @@
 
 package org.jdiameter.client.impl.transport.tcp;
 
+import static org.jdiameter.client.impl.helpers.Parameters.SendQueueHighWaterMark;
+
 import org.jdiameter.api.AvpDataException;
+import org.jdiameter.api.Configuration;
+import org.jdiameter.api.OverloadException;
+import org.jdiameter.client.api.io.IBufferPool;
 import org.jdiameter.client.api.io.NotInitializedException;
 import org.jdiameter.client.impl.parser.MessageParser;
+import org.jdiameter.client.impl.transport.BufferPool;
+import org.jdiameter.client.impl.transport.FrameDecoder;
+import org.jdiameter.client.impl.transport.NetworkReactor;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,16 +60,11 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.nio.BufferOverflowException;
-import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
-import java.nio.channels.AsynchronousCloseException;
-import java.nio.channels.ClosedByInterruptException;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.SelectorProvider;
-import java.util.Iterator;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -71,19 +74,19 @@ import java.util.concurrent.locks.ReentrantLock;
  * @author <a href="mailto:baranowb@gmail.com"> Bartosz Baranowski </a>
  * @author <a href="mailto:brainslog@gmail.com"> Alexandre Mendonca </a>
  */
-public class TCPTransportClient implements Runnable {
+public class TCPTransportClient {
 
   private TCPClientConnection parentConnection;
+  private Configuration config;
   private IConcurrentFactory concurrentFactory;
 
-  public static final int DEFAULT_BUFFER_SIZE  = 1024;
-  public static final int DEFAULT_STORAGE_SIZE = 2048;
+  public static final int DEFAULT_BUFFER_SIZE  = FrameDecoder.DEFAULT_BUFFER_SIZE;
 
-  protected boolean stop = false;
-  protected Thread selfThread;
+  // registration of the current channel with the network reactor
+  protected volatile ReadHandler readHandler;
 
-  protected int bufferSize = DEFAULT_BUFFER_SIZE;
-  protected ByteBuffer buffer = ByteBuffer.allocate(this.bufferSize);
+  // splits received data into messages, only used by the reactor thread
+  protected FrameDecoder decoder = new FrameDecoder(DEFAULT_BUFFER_SIZE);
 
   protected InetSocketAddress destAddress;
   protected InetSocketAddress origAddress;
@@ -91,8 +94,16 @@ public class TCPTransportClient implements Runnable {
   protected SocketChannel socketChannel;
   protected Lock lock = new ReentrantLock();
 
-  protected int storageSize = DEFAULT_STORAGE_SIZE;
-  protected ByteBuffer storage = ByteBuffer.allocate(storageSize);
+  // most buffers handed to a single gathering write
+  private static final int MAX_GATHER = 64;
+
+  // Buffers outgoing messages are encoded into
+  private IBufferPool bufferPool = new BufferPool();
+  // encoded messages not yet written, guarded by lock
+  private ArrayDeque<ByteBuffer> sendQueue = new ArrayDeque<ByteBuffer>();
+  private ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+  private int queuedBytes;
+  private int highWaterMark = (Integer) SendQueueHighWaterMark.defValue();
 
   private String socketDescription = null;
 
@@ -100,7 +111,6 @@ public class TCPTransportClient implements Runnable {
 
   //PCB - allow non blocking IO
   private static final boolean BLOCKING_IO = false;
-  private static final long SELECT_TIMEOUT = 500; // milliseconds
 
   public TCPTransportClient() {
   }
@@ -112,8 +122,21 @@ public class TCPTransportClient implements Runnable {
    * @param parenConnection connection created this transport
    */
   TCPTransportClient(IConcurrentFactory concurrentFactory, TCPClientConnection parenConnection) {
+    this(null, concurrentFactory, parenConnection);
+  }
+
+  /**
+   * @param config stack configuration, used to size the network reactor
+   * @param concurrentFactory factory for create threads
+   * @param parenConnection connection created this transport
+   */
+  TCPTransportClient(Configuration config, IConcurrentFactory concurrentFactory, TCPClientConnection parenConnection) {
+    this.config = config;
     this.parentConnection = parenConnection;
     this.concurrentFactory = concurrentFactory;
+    if (config != null) {
+      this.highWaterMark = config.getIntValue(SendQueueHighWaterMark.ordinal(), highWaterMark);
+    }
   }
 
   /**
@@ -147,7 +170,7 @@ public class TCPTransportClient implements Runnable {
     destAddress = new InetSocketAddress(socket.getInetAddress(), socket.getPort());
   }
 
-  public void start() throws NotInitializedException {
+  public void start() throws IOException, NotInitializedException {
     // for client
     if(socketDescription == null && socketChannel != null) {
       socketDescription = socketChannel.socket().toString();
@@ -162,99 +185,35 @@ public class TCPTransportClient implements Runnable {
     if (getParent() == null) {
       throw new NotInitializedException("No parent connection is set is set");
     }
-    if (selfThread == null || !selfThread.isAlive()) {
-      selfThread = concurrentFactory.getThread("TCPReader", this);
-    }
-
-    if (!selfThread.isAlive()) {
-      selfThread.setDaemon(true);
-      selfThread.start();
-    }
-  }
-
-  //PCB added logging
-  public void run() {
-    // Workaround for Issue #4 (http://code.google.com/p/jdiameter/issues/detail?id=4)
-    // BEGIN WORKAROUND // Give some time to initialization...
-    int sleepTime = 250;
-    logger.debug("Sleeping for {}ms before starting transport so that listeners can all be added and ready for messages", sleepTime);
-    try {
-      Thread.sleep(sleepTime);
-    }
-    catch (InterruptedException e) {
-      // ignore
+    if (readHandler != null && readHandler.channel == socketChannel) {
+      return;
     }
-    logger.debug("Finished sleeping for {}ms. By now, MutablePeerTableImpl should have added its listener", sleepTime);
-
-    logger.debug("Transport is started. Socket is [{}]", socketDescription);
-    Selector selector = null;
+    // Messages arriving before listeners are added are buffered by the parent
+    // connection, so reading can start right away
+    readHandler = new ReadHandler(NetworkReactor.acquire(config, concurrentFactory), socketChannel);
+    readHandler.reactor.register(socketChannel, readHandler);
+    lock.lock();
     try {
-      selector = Selector.open();
-      socketChannel.register(selector, SelectionKey.OP_READ);
-      while (!stop) {
-        selector.select(SELECT_TIMEOUT);
-        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
-        while (it.hasNext()) {
-          // Get the selection key
-          SelectionKey selKey = it.next();
-          // Remove it from the list to indicate that it is being processed
-          it.remove();
-          if (selKey.isValid() && selKey.isReadable()) {
-            // Get channel with bytes to read
-            SocketChannel sChannel = (SocketChannel) selKey.channel();
-            int dataLength = sChannel.read(buffer);
-            logger.debug("Just read [{}] bytes on [{}]", dataLength, socketDescription);
-            if (dataLength == -1) {
-              stop = true;
-              break;
-            }
-            buffer.flip();
-            byte[] data = new byte[buffer.limit()];
-            buffer.get(data);
-            append(data);
-            buffer.clear();
-          }
-        }
+      if (!sendQueue.isEmpty()) {
+        readHandler.reactor.requestWrite(socketChannel);
       }
     }
-    catch (ClosedByInterruptException e) {
-      logger.error("Transport exception ", e);
-    }
-    catch (AsynchronousCloseException e) {
-      logger.error("Transport is closed");
-    }
-    catch (Throwable e) {
-      logger.error("Transport exception ", e);
-    }
     finally {
-      try {
-        clearBuffer();
-        if (selector != null) {
-          selector.close();
-        }
-        if (socketChannel != null && socketChannel.isOpen()) {
-          socketChannel.close();
-        }
-        getParent().onDisconnect();
-      }
-      catch (Exception e) {
-        logger.error("Error", e);
-      }
-      stop = false;
-      logger.info("Read thread is stopped for socket [{}]", socketDescription);
+      lock.unlock();
     }
+    logger.debug("Transport is started. Socket is [{}]", socketDescription);
   }
 
   public void stop() throws Exception {
     logger.debug("Stopping transport. Socket is [{}]", socketDescription);
-    stop = true;
-    if (socketChannel != null && socketChannel.isOpen()) {
-      socketChannel.close();
+    ReadHandler handler = readHandler;
+    if (handler != null) {
+      // closed by the reactor thread, which notifies the parent
+      handler.reactor.close(handler.channel);
     }
-    if (selfThread != null) {
-      selfThread.join(100);
+    else if (socketChannel != null && socketChannel.isOpen()) {
+      socketChannel.close();
     }
-    clearBuffer();
     logger.debug("Transport is stopped. Socket is [{}]", socketDescription);
   }
 
@@ -263,9 +222,8 @@ public class TCPTransportClient implements Runnable {
     destAddress = null;
   }
 
-  private void clearBuffer() throws IOException {
-    bufferSize = DEFAULT_BUFFER_SIZE;
-    buffer = ByteBuffer.allocate(bufferSize);
+  private void clearBuffer() {
+    decoder.reset();
   }
 
   public InetSocketAddress getDestAddress() {
@@ -290,36 +248,118 @@ public class TCPTransportClient implements Runnable {
     return this.origAddress;
   }
 
-  public void sendMessage(ByteBuffer bytes) throws IOException {
+  public IBufferPool getBufferPool() {
+    return bufferPool;
+  }
+
+  /**
+   * Sends an encoded message without blocking. What the socket does not take
+   * right away is queued and written by the network reactor, together with
+   * any messages queued after it. The buffer belongs to the transport from
+   * now on and is released to {@link #getBufferPool()} once written or if
+   * sending fails.
+   *
+   * @throws OverloadException if the queued data is over the high-water mark
+   */
+  public void sendMessage(ByteBuffer bytes) throws IOException, OverloadException {
+    int length = bytes.remaining();
 	if (logger.isDebugEnabled()) {
 		if (logger.isTraceEnabled()) {
-			String hex = MessageParser.byteArrayToHexString(bytes.array());
+			byte[] data = new byte[length];
+			bytes.duplicate().get(data);
+			String hex = MessageParser.byteArrayToHexString(data);
 			logger.trace("About to send a byte buffer of size [{}] over the TCP nio socket [{}]\n{}", 
-	    		  new Object[]{bytes.array().length, socketDescription, hex});
+	    		  new Object[]{length, socketDescription, hex});
 		} else {
-			logger.debug("About to send a byte buffer of size [{}] over the TCP nio socket [{}]", bytes.array().length, socketDescription);
+			logger.debug("About to send a byte buffer of size [{}] over the TCP nio socket [{}]", length, socketDescription);
 		}
     }
-    int rc = 0;
-    // PCB - removed locking
-    // lock.lock();
+    boolean requestWrite = false;
+    lock.lock();
     try {
-      while (rc < bytes.array().length) {
-        rc += socketChannel.write(bytes);
+      if (socketChannel == null || !socketChannel.isOpen()) {
+        throw new IOException("Connection closed");
+      }
+      if (sendQueue.isEmpty()) {
+        socketChannel.write(bytes);
+        if (!bytes.hasRemaining()) {
+          bufferPool.release(bytes);
+          if (logger.isDebugEnabled()) {
+            logger.debug("Sent a byte buffer of size [{}] over the TCP nio socket [{}]", length, socketDescription);
+          }
+          return;
+        }
+      }
+      else if (queuedBytes + bytes.remaining() > highWaterMark) {
+        bufferPool.release(bytes);
+        throw new OverloadException(0, highWaterMark, queuedBytes);
       }
+      requestWrite = sendQueue.isEmpty();
+      sendQueue.add(bytes);
+      queuedBytes += bytes.remaining();
     }
-    catch (Exception e) {
+    catch (IOException e) {
+      bufferPool.release(bytes);
       logger.error("Unable to send message", e);
       throw new IOException("Error while sending message: " + e);
     }
     finally {
-      // lock.unlock();
+      lock.unlock();
     }
-    if (rc == -1) {
-      throw new IOException("Connection closed");
+    ReadHandler handler = readHandler;
+    if (requestWrite && handler != null) {
+      handler.reactor.requestWrite(handler.channel);
     }
     if (logger.isDebugEnabled()) {
-      logger.debug("Sent a byte buffer of size [{}] over the TCP nio socket [{}]", bytes.array().length, socketDescription);
+      logger.debug("Queued a byte buffer of size [{}] for the TCP nio socket [{}]", length, socketDescription);
+    }
+  }
+
+  /**
+   * Writes queued messages, as many as fit, with one gathering write.
+   *
+   * @return true if the queue is empty
+   */
+  private boolean flush(SocketChannel channel) throws IOException {
+    lock.lock();
+    try {
+      while (!sendQueue.isEmpty()) {
+        int count = 0;
+        for (ByteBuffer bytes : sendQueue) {
+          gather[count++] = bytes;
+          if (count == MAX_GATHER) {
+            break;
+          }
+        }
+        long written = channel.write(gather, 0, count);
+        queuedBytes -= written;
+        while (!sendQueue.isEmpty() && !sendQueue.peek().hasRemaining()) {
+          bufferPool.release(sendQueue.poll());
+        }
+        Arrays.fill(gather, 0, count, null);
+        if (!sendQueue.isEmpty() && (written == 0 || count < MAX_GATHER)) {
+          // socket buffer is full
+          return false;
+        }
+      }
+      return true;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  private void clearSendQueue() {
+    lock.lock();
+    try {
+      ByteBuffer bytes;
+      while ((bytes = sendQueue.poll()) != null) {
+        bufferPool.release(bytes);
+      }
+      queuedBytes = 0;
+    }
+    finally {
+      lock.unlock();
     }
   }
 
@@ -344,93 +384,64 @@ public class TCPTransportClient implements Runnable {
   }
 
   /**
-   * Adds data to storage
-   *
-   * @param data data to add
+   * Reads from the channel on the reactor thread.
    */
-  private void append(byte[] data) {
-    if (storage.position() + data.length >= storage.capacity()) {
-      ByteBuffer tmp = ByteBuffer.allocate(storage.limit() + data.length * 2);
-      byte[] tmpData = new byte[storage.position()];
-      storage.flip();
-      storage.get(tmpData);
-      tmp.put(tmpData);
-      storage = tmp;
-      logger.warn("Increase storage size. Current size is {}", storage.array().length);
-    }
+  protected class ReadHandler implements NetworkReactor.Handler, FrameDecoder.FrameHandler {
 
-    try {
-      storage.put(data);
-    }
-    catch (BufferOverflowException boe) {
-      logger.error("Buffer overflow occured", boe);
+    private final NetworkReactor reactor;
+    private final SocketChannel channel;
+
+    ReadHandler(NetworkReactor reactor, SocketChannel channel) {
+      this.reactor = reactor;
+      this.channel = channel;
     }
-    boolean messageReceived;
-    do {
-      messageReceived = seekMessage();
-    } while (messageReceived);
-  }
 
-  private boolean seekMessage() {
-    // make sure there's actual data written on the buffer
-    if (storage.position() == 0) {
-      return false;
+    public boolean onWritable() throws IOException {
+      return flush(channel);
     }
 
-    storage.flip();
-    try {
-      // get first four bytes for version and message length
-      // 0                   1                   2                   3
-      // 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
-      // +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
-      // |    Version    |                 Message Length                |
-      // +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
-      int tmp = storage.getInt();
-      // reset position so we can now read whole message
-      storage.position(0);
-
-      // check that version is 1, as per RFC 3588 - Section 3:
-      // This Version field MUST be set to 1 to indicate Diameter Version 1
-      byte vers = (byte) (tmp >> 24);
-      if (vers != 1) {
-        return false;
+    public boolean onReadable() throws IOException {
+      try {
+        int dataLength = decoder.read(channel, this);
+        logger.debug("Just read [{}] bytes on [{}]", dataLength, socketDescription);
+        return dataLength != -1;
       }
-      // extract the message length, so we know how much to read
-      int messageLength = (tmp & 0xFFFFFF);
-
-      // verify that we do have the whole message in the storage
-      if (storage.limit() < messageLength) {
-        // we don't have it all.. let's restore buffer to receive more
-        storage.position(storage.limit());
-        storage.limit(storage.capacity());
-        logger.debug("Received partial message, waiting for remaining (expected: {} bytes, got {} bytes).", messageLength, storage.position());
-        return false;
+      catch (AvpDataException e) {
+        logger.debug("Garbage was received. Discarding.");
+        getParent().onAvpDataException(e);
+        return true;
       }
+    }
 
-      // read the complete message
-      byte[] data = new byte[messageLength];
-      storage.get(data);
-      storage.compact();
-
+    public void onFrame(ByteBuffer frame) {
       try {
         // make a message out of data and process it
         logger.debug("Passing message on to parent");
-        getParent().onMessageReceived(ByteBuffer.wrap(data));
+        getParent().onMessageReceived(frame);
         logger.debug("Finished passing message on to parent");
       }
       catch (AvpDataException e) {
         logger.debug("Garbage was received. Discarding.");
-        storage.clear();
         getParent().onAvpDataException(e);
       }
     }
-    catch(BufferUnderflowException bue) {
-      // we don't have enough data to read message length.. wait for more
-      storage.position(storage.limit());
-      storage.limit(storage.capacity());
-      logger.debug("Buffer underflow occured, waiting for more data.", bue);
-      return false;
+
+    public void onClosed() {
+      try {
+        if (readHandler == this) {
+          readHandler = null;
+          clearBuffer();
+          clearSendQueue();
+        }
+        getParent().onDisconnect();
+      }
+      catch (Exception e) {
+        logger.error("Error", e);
+      }
+      finally {
+        reactor.release();
+      }
+      logger.info("Transport is closed for socket [{}]", socketDescription);
     }
-    return true;
   }
 }
@@ -0,0 +1,121 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.client.impl.transport.tls;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import javax.net.ssl.SSLSession;
+
+import org.jdiameter.client.api.io.IBufferPool;
+
+/**
+ * Holds TLS data received from the network until it can be unwrapped. The
+ * buffer is sized from the packet buffer size of the session, so a record
+ * split over several reads is assembled in place, and it grows when the
+ * session asks for larger records.
+ */
+public class RecordBuffer {
+
+  private final IBufferPool bufferPool;
+  // received data, in write mode between reads
+  private ByteBuffer buffer;
+  private int size;
+
+  public RecordBuffer(IBufferPool bufferPool) {
+    this.bufferPool = bufferPool;
+  }
+
+  /**
+   * Reads from the channel after the partial record kept from the previous read.
+   *
+   * @return number of bytes read, -1 at the end of stream
+   */
+  public int read(ReadableByteChannel channel, SSLSession session) throws IOException {
+    if (buffer == null) {
+      size = session.getPacketBufferSize();
+      buffer = bufferPool.acquire(size);
+    }
+    return channel.read(buffer);
+  }
+
+  /**
+   * Returns the received data to be unwrapped, must be followed by {@link #compact()}.
+   */
+  public ByteBuffer flip() {
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Called when the engine needs more data to unwrap the next record. Grows
+   * the buffer if the rest of the record would not fit in it.
+   */
+  public void underflow(SSLSession session) {
+    int needed = Math.max(size, session.getPacketBufferSize());
+    if (buffer.remaining() >= needed) {
+      // the buffer is full and still holds no whole record
+      needed = buffer.remaining() * 2;
+    }
+    if (needed > size) {
+      ByteBuffer bigger = bufferPool.acquire(needed);
+      bigger.put(buffer);
+      bigger.flip();
+      bufferPool.release(buffer);
+      buffer = bigger;
+      size = needed;
+    }
+  }
+
+  /**
+   * Keeps a partial record for the next read, or gives the buffer back once
+   * everything has been unwrapped.
+   */
+  public void compact() {
+    if (buffer.hasRemaining()) {
+      buffer.compact();
+      buffer.limit(size);
+    }
+    else {
+      release();
+    }
+  }
+
+  /**
+   * Drops received data.
+   */
+  public void release() {
+    if (buffer != null) {
+      bufferPool.release(buffer);
+      buffer = null;
+    }
+  }
+
+  /**
+   * @return number of bytes the buffer can hold
+   */
+  public int getSize() {
+    return buffer == null ? 0 : size;
+  }
+}
@@ -58,6 +58,7 @@ public class TLSClientConnection implements IConnection {
   private static Logger logger = LoggerFactory.getLogger(TLSClientConnection.class);
 
   private TLSTransportClient client;
+  private SSLContext sslContext;
   private SSLSocketFactory factory;
   private Configuration sslConfig;
 
@@ -74,7 +75,7 @@ public class TLSClientConnection implements IConnection {
   public TLSClientConnection(Configuration config, IConcurrentFactory concurrentFactory, InetAddress remoteAddress, int remotePort, InetAddress localAddress,
       int localPort, IMessageParser parser, String ref) {
     this.createdTime = System.currentTimeMillis();
-    this.client = new TLSTransportClient(this, concurrentFactory, parser);
+    this.client = new TLSTransportClient(config, this, concurrentFactory, parser);
     this.client.setDestAddress(new InetSocketAddress(remoteAddress, remotePort));
     this.client.setOrigAddress(new InetSocketAddress(localAddress, localPort));
 
@@ -95,7 +96,7 @@ public class TLSClientConnection implements IConnection {
     this.createdTime = System.currentTimeMillis();
     this.listeners.add(listener);
 
-    this.client = new TLSTransportClient(this, concurrentFactory, parser);
+    this.client = new TLSTransportClient(config, this, concurrentFactory, parser);
     this.client.setDestAddress(new InetSocketAddress(remoteAddress, remotePort));
     this.client.setOrigAddress(new InetSocketAddress(localAddress, localPort));
 
@@ -115,12 +116,10 @@ public class TLSClientConnection implements IConnection {
       IMessageParser parser) throws Exception {
     this.createdTime = System.currentTimeMillis();
     this.sslConfig = localPeerSSLConfig;
-    this.client = new TLSTransportClient(this, concurrentFactory, parser);
+    this.client = new TLSTransportClient(config, this, concurrentFactory, parser);
 
     this.client.setDestAddress(new InetSocketAddress(socket.getRemoteSocketAddress().toString(), socket.getPort()));
     this.client.setOrigAddress(new InetSocketAddress(socket.getInetAddress().getHostAddress(), socket.getLocalPort()));
-    this.client.initialize(socket);
-    this.client.start();
     try {
       if (localPeerSSLConfig == null) {
         throw new Exception("Can not create connection without TLS parameters");
@@ -130,6 +129,9 @@ public class TLSClientConnection implements IConnection {
     catch (Exception e) {
       throw new IllegalArgumentException(e);
     }
+    // security data has to be there before the peer can ask for TLS
+    this.client.initialize(socket);
+    this.client.start();
   }
 
   private void fillSecurityData(Configuration config, String ref) throws Exception {
@@ -137,11 +139,12 @@ public class TLSClientConnection implements IConnection {
     if (sslConfig == null) {
       throw new Exception("Incorrect reference to secutity data");
     }
-    this.factory = getSSLContext(sslConfig);
+    fillSecurityData(sslConfig);
   }
 
   private void fillSecurityData(Configuration config) throws Exception {
-    this.factory = getSSLContext(config);
+    this.sslContext = TLSUtils.getSecureContext(config);
+    this.factory = sslContext.getSocketFactory();
   }
 
   protected TLSTransportClient getClient() {
@@ -156,9 +159,8 @@ public class TLSClientConnection implements IConnection {
     return factory;
   }
 
-  private SSLSocketFactory getSSLContext(Configuration sslConfig) throws Exception {
-    SSLContext ctx = TLSUtils.getSecureContext(sslConfig);
-    return ctx.getSocketFactory();
+  public SSLContext getSSLContext() {
+    return sslContext;
   }
 
   public long getCreatedTime() {
@@ -245,6 +247,10 @@ public class TLSClientConnection implements IConnection {
     return false;
   }
 
+  public boolean isSharedThreadDelivery() {
+    return false;
+  }
+
   public String getKey() {
     if (this.cachedKey == null) {
       this.cachedKey = new StringBuffer("aaas://").append(getRemoteAddress().getHostName()).append(":").append(getRemotePort()).toString();
@@ -283,6 +289,9 @@ public class TLSClientConnection implements IConnection {
         getClient().sendMessage(message);
       }
     }
+    catch (OverloadException e) {
+      throw e;
+    }
     catch (Exception e) {
       throw new TransportException("Cannot send message: ", TransportError.FailedSendMessage, e);
     }
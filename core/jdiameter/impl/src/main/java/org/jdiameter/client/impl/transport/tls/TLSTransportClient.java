@@ -24,85 +24,106 @@ package org.jdiameter.client.impl.transport.tls;
 
 import static org.jdiameter.client.impl.helpers.Parameters.CipherSuites;
 import static org.jdiameter.client.impl.helpers.Parameters.SDEnableSessionCreation;
+import static org.jdiameter.client.impl.helpers.Parameters.SendQueueHighWaterMark;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
-import java.nio.channels.AsynchronousCloseException;
-import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
-import javax.net.ssl.HandshakeCompletedEvent;
-import javax.net.ssl.HandshakeCompletedListener;
-import javax.net.ssl.SSLSocket;
-import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
 
 import org.jdiameter.api.Avp;
 import org.jdiameter.api.AvpDataException;
 import org.jdiameter.api.AvpSet;
+import org.jdiameter.api.Configuration;
+import org.jdiameter.api.OverloadException;
 import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.io.IBufferPool;
 import org.jdiameter.client.api.io.NotInitializedException;
 import org.jdiameter.client.api.parser.IMessageParser;
 import org.jdiameter.client.api.parser.ParseException;
+import org.jdiameter.client.impl.transport.BufferPool;
+import org.jdiameter.client.impl.transport.FrameDecoder;
+import org.jdiameter.client.impl.transport.NetworkReactor;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * TLS transport on a non blocking channel served by the {@link NetworkReactor}.
+ * The connection starts in plain text, as required for the in band security
+ * negotiation of CER/CEA (Inband-Security-Id), and switches to TLS once both
+ * sides agreed on it. TLS is done by an {@link SSLEngine}, handshake and
+ * record data go through buffers taken from a pool shared by all TLS
+ * connections, so idle connections do not hold any.
  * 
  * @author <a href="mailto:baranowb@gmail.com"> Bartosz Baranowski </a>
  * @author <a href="mailto:brainslog@gmail.com"> Alexandre Mendonca </a>
  */
 public class TLSTransportClient {
-  // NOTE: SSL Does not provide channels, need to do plain old sync R/W :/
-  // So SSLSocket.getChannel() returns NULL!
+
   private static final Logger logger = LoggerFactory.getLogger(TLSTransportClient.class);
+
+  // large enough for a TLS record and for the data it carries
+  public static final int DEFAULT_BUFFER_SIZE = 32768;
+  private static final int DEFAULT_POOL_SIZE = 64;
+  // most buffers handed to a single gathering write
+  private static final int MAX_GATHER = 64;
+
+  private static final IBufferPool bufferPool = new BufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_POOL_SIZE);
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+  // marks the end of the handshake in the received events
+  private static final Object CONNECTED = new Object();
+
   private TLSClientConnection parentConnection;
+  private Configuration config;
   private IConcurrentFactory concurrentFactory;
-  private boolean stop = false;
 
   // flag to indicate that initial shake did happen
   private boolean shaken;
   // flag indicating that SSL handshake is going on, while this is set to true, no messages can be exchanged.
   private boolean shaking;
 
-  private Thread readThread;
-
   private InetSocketAddress destAddress;
   private InetSocketAddress origAddress;
 
   private String socketDescription = null;
 
-  // sync streams to get data.
-  private InputStream inputStream;
-  private OutputStream outputStream;
-
-  //private SSLSocket sslSocket;
-  private Socket plainSocket;
-
-  public static final int DEFAULT_BUFFER_SIZE = 4096;
-  public static final int DEFAULT_STORAGE_SIZE = 4096;
-
-  private int bufferSize = DEFAULT_BUFFER_SIZE;
-  private ByteBuffer buffer = ByteBuffer.allocate(this.bufferSize);
-  private int storageSize = DEFAULT_STORAGE_SIZE;
-  private ByteBuffer storage = ByteBuffer.allocate(storageSize);
+  private SocketChannel socketChannel;
+  // registration of the current channel with the network reactor
+  private volatile ChannelHandler channelHandler;
+
+  // TLS state, guarded by lock
+  private SSLEngine engine;
+  // received TLS data not unwrapped yet
+  private final RecordBuffer netIn = new RecordBuffer(bufferPool);
+  // data not yet written, guarded by lock
+  private ArrayDeque<ByteBuffer> sendQueue = new ArrayDeque<ByteBuffer>();
+  private ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+  private int queuedBytes;
+  private int highWaterMark = (Integer) SendQueueHighWaterMark.defValue();
+
+  // splits received data into messages, only used by the reactor thread
+  private FrameDecoder decoder = new FrameDecoder();
+  // messages, errors and handshake completion to pass to the parent once the lock is released
+  private ArrayDeque<Object> events = new ArrayDeque<Object>();
 
   private Lock lock = new ReentrantLock();
 
   private IMessageParser parser;
 
-  private final DiameterSSLHandshakeListener handshakeListener = new DiameterSSLHandshakeListener();
-  private final ReadTask readTash = new ReadTask();
-
   //tell weather we are in a client mode
   private boolean client;
   private boolean receivedInband;
+
   /**
    * Default constructor
    * 
@@ -110,9 +131,22 @@ public class TLSTransportClient {
    *          connection created this transport
    */
   public TLSTransportClient(TLSClientConnection parenConnection, IConcurrentFactory concurrentFactory, IMessageParser parser) {
+    this(null, parenConnection, concurrentFactory, parser);
+  }
+
+  /**
+   * @param config stack configuration, may be null
+   * @param parenConnection connection created this transport
+   */
+  public TLSTransportClient(Configuration config, TLSClientConnection parenConnection, IConcurrentFactory concurrentFactory,
+      IMessageParser parser) {
+    this.config = config;
     this.parentConnection = parenConnection;
     this.concurrentFactory = concurrentFactory;
     this.parser = parser;
+    if (config != null) {
+      this.highWaterMark = config.getIntValue(SendQueueHighWaterMark.ordinal(), highWaterMark);
+    }
   }
 
   public void initialize() throws IOException, NotInitializedException {
@@ -120,30 +154,12 @@ public class TLSTransportClient {
       throw new NotInitializedException("Destination address is not set");
     }
     this.client = true;
-    // SSLSocketFactory cltFct = parentConnection.getSSLFactory();
-    // this.sslSocket = (SSLSocket) cltFct.createSocket();
-    //
-    // this.sslSocket.setEnableSessionCreation(parentConnection.getSSLConfig().getBooleanValue(SDEnableSessionCreation.ordinal(), true));
-    // this.sslSocket.setUseClientMode(true);
-    // if (parentConnection.getSSLConfig().getStringValue(CipherSuites.ordinal(), null) != null) {
-    //   this.sslSocket.setEnabledCipherSuites(parentConnection.getSSLConfig().getStringValue(CipherSuites.ordinal(), null).split(","));
-    // }
-    //
-    // if (this.origAddress != null) {
-    //   this.sslSocket.bind(this.origAddress);
-    // }
-    // this.sslSocket.connect(this.destAddress);
-    //
-    // // now lets get streams.
-    // this.sslInputStream = this.sslSocket.getInputStream();
-    // this.sslOutputStream = this.sslSocket.getOutputStream();
-    this.plainSocket = new Socket();
+    this.socketChannel = SocketChannel.open();
     if (this.origAddress != null) {
-      this.plainSocket.bind(this.origAddress);
+      this.socketChannel.socket().bind(this.origAddress);
     }
-    this.plainSocket.connect(this.destAddress);
-    this.inputStream = this.plainSocket.getInputStream();
-    this.outputStream = this.plainSocket.getOutputStream();
+    this.socketChannel.connect(this.destAddress);
+    this.socketChannel.configureBlocking(false);
     // now, we need to notify parent, this will START CER/CEA exchange
     // on CEA 2xxx we can enable TLS
     parentConnection.onConnected();
@@ -151,36 +167,46 @@ public class TLSTransportClient {
 
   public void initialize(Socket socket) throws IOException, NotInitializedException {
     logger.debug("Initialising TLSTransportClient for a socket on [{}]", socket);
+    if (socket.getChannel() == null) {
+      throw new NotInitializedException("Socket is not bound to a channel");
+    }
     this.client = false;
-    this.plainSocket = socket;
+    this.socketChannel = socket.getChannel();
+    this.socketChannel.configureBlocking(false);
     this.socketDescription = socket.toString();
 
     this.destAddress = new InetSocketAddress(socket.getInetAddress(), socket.getPort());
-
-    this.inputStream = this.plainSocket.getInputStream();
-    this.outputStream = this.plainSocket.getOutputStream();
   }
 
-  public void start() throws NotInitializedException {
+  public void start() throws IOException, NotInitializedException {
+    if (this.socketChannel == null) {
+      throw new NotInitializedException("Transport is not initialized");
+    }
     // for client
     if (this.socketDescription == null) {
-      this.socketDescription = this.plainSocket.toString();
+      this.socketDescription = this.socketChannel.socket().toString();
     }
     logger.debug("Starting transport. Socket is {}", socketDescription);
 
-    if (!this.plainSocket.isConnected()) {
+    if (!this.socketChannel.isConnected()) {
       throw new NotInitializedException("Socket is not connected");
     }
     if (getParent() == null) {
       throw new NotInitializedException("No parent connection is set is set");
     }
-    if (this.readThread == null || !this.readThread.isAlive()) {
-      this.readThread = this.concurrentFactory.getThread("TLSReader", this.readTash);
+    if (channelHandler != null && channelHandler.channel == socketChannel) {
+      return;
     }
-
-    if (!this.readThread.isAlive()) {
-      this.readThread.setDaemon(true);
-      this.readThread.start();
+    channelHandler = new ChannelHandler(NetworkReactor.acquire(config, concurrentFactory), socketChannel);
+    channelHandler.reactor.register(socketChannel, channelHandler);
+    lock.lock();
+    try {
+      if (!sendQueue.isEmpty()) {
+        channelHandler.reactor.requestWrite(socketChannel);
+      }
+    }
+    finally {
+      lock.unlock();
     }
   }
 
@@ -213,7 +239,7 @@ public class TLSTransportClient {
   }
 
   // ---------------- helper methods ---------------------
-  void sendMessage(IMessage message) throws IOException, AvpDataException, NotInitializedException, ParseException {
+  void sendMessage(IMessage message) throws IOException, AvpDataException, NotInitializedException, ParseException, OverloadException {
 
     if (!isConnected()) {
       throw new IOException("Failed to send message over [" + socketDescription + "]");
@@ -227,16 +253,31 @@ public class TLSTransportClient {
 
     doTLSPreSendProcessing(message);
 
-    final ByteBuffer messageBuffer = this.parser.encodeMessage(message);
+    ByteBuffer messageBuffer = this.parser.encodeMessage(message, bufferPool);
+    int length = messageBuffer.remaining();
     if (logger.isDebugEnabled()) {
-      logger.debug("About to send a byte buffer of size [{}] over the TLS socket [{}]", messageBuffer.array().length, socketDescription);
+      logger.debug("About to send a byte buffer of size [{}] over the TLS socket [{}]", length, socketDescription);
     }
     lock.lock();
     try {
-      this.outputStream.write(messageBuffer.array(), messageBuffer.position(), messageBuffer.limit());
+      if (!sendQueue.isEmpty() && queuedBytes + length > highWaterMark) {
+        bufferPool.release(messageBuffer);
+        throw new OverloadException(0, highWaterMark, queuedBytes);
+      }
+      if (engine == null) {
+        write(messageBuffer);
+      }
+      else {
+        try {
+          wrap(messageBuffer);
+        }
+        finally {
+          bufferPool.release(messageBuffer);
+        }
+      }
       doTLSPostSendProcessing(message);
-
-    } catch (Exception e) {
+    }
+    catch (IOException e) {
       logger.debug("Unable to send message", e);
       throw new IOException("Error while sending message: " + e);
     }
@@ -245,25 +286,38 @@ public class TLSTransportClient {
     }
 
     if (logger.isDebugEnabled()) {
-      logger.debug("Sent a byte buffer of size [{}] over the TLS nio socket [{}]", messageBuffer.array().length, socketDescription);
+      logger.debug("Sent a byte buffer of size [{}] over the TLS nio socket [{}]", length, socketDescription);
     }
   }
 
-
   boolean isConnected() {
-    return this.plainSocket != null && this.plainSocket.isConnected();
+    return this.socketChannel != null && this.socketChannel.isOpen() && this.socketChannel.isConnected();
   }
 
   void stop() throws Exception {
     logger.debug("Stopping transport. Socket is [{}]", socketDescription);
-    stop = true;
-    if (plainSocket != null && !plainSocket.isClosed()) {
-      plainSocket.close();
+    lock.lock();
+    try {
+      if (engine != null && isConnected()) {
+        // queue close_notify, written before the channel is closed
+        engine.closeOutbound();
+        wrap(EMPTY);
+      }
     }
-    if (this.readThread != null) {
-      this.readThread.join(100);
+    catch (IOException e) {
+      logger.debug("Failed to close TLS session", e);
+    }
+    finally {
+      lock.unlock();
+    }
+    ChannelHandler handler = channelHandler;
+    if (handler != null) {
+      // closed by the reactor thread, which notifies the parent
+      handler.reactor.close(handler.channel);
+    }
+    else if (socketChannel != null && socketChannel.isOpen()) {
+      socketChannel.close();
     }
-    clearBuffer();
     logger.debug("Transport is stopped. Socket is [{}]", socketDescription);
   }
 
@@ -272,29 +326,6 @@ public class TLSTransportClient {
     destAddress = null;
   }
 
-  void append(byte[] data) {
-    if (storage.position() + data.length >= storage.capacity()) {
-      ByteBuffer tmp = ByteBuffer.allocate(storage.limit() + data.length * 2);
-      byte[] tmpData = new byte[storage.position()];
-      storage.flip();
-      storage.get(tmpData);
-      tmp.put(tmpData);
-      storage = tmp;
-      logger.warn("Increase storage size. Current size is {}", storage.array().length);
-    }
-
-    try {
-      storage.put(data);
-    }
-    catch (BufferOverflowException boe) {
-      logger.error("Buffer overflow occured", boe);
-    }
-    boolean messageReseived;
-    do {
-      messageReseived = seekMessage(storage);
-    } while (messageReseived);
-  }
-
   private boolean isExchangeAllowed(){
     this.lock.lock();
     try{
@@ -329,52 +360,28 @@ public class TLSTransportClient {
     return resultCode >= 2000 && resultCode < 3000;
   }
 
-  private boolean seekMessage(ByteBuffer localStorage) {
-    if (storage.position() == 0) {
-      return false;
-    }
-
-    storage.flip();
-    int tmp = localStorage.getInt();
-    localStorage.position(0);
-
-    byte vers = (byte) (tmp >> 24);
-    if (vers != 1) {
-      return false;
-    }
-    int dataLength = (tmp & 0xFFFFFF);
-
-    if (localStorage.limit() < dataLength) {
-      localStorage.position(localStorage.limit());
-      localStorage.limit(localStorage.capacity());
-      return false;
-    }
-
-    byte[] data = new byte[dataLength];
-    localStorage.get(data);
-    localStorage.position(dataLength);
-    localStorage.compact();
-
-    ByteBuffer messageBuffer = ByteBuffer.wrap(data);
+  /**
+   * Called on the reactor thread with the lock held, the message is passed to
+   * the parent once the lock is released.
+   */
+  private void onFrame(ByteBuffer messageBuffer) {
     try {
       if (logger.isDebugEnabled()) {
-        logger.debug("Received message of size [{}]", data.length);
+        logger.debug("Received message of size [{}]", messageBuffer.remaining());
       }
 
       IMessage message = this.parser.createMessage(messageBuffer);
       // check if
-      if(isExchangeAllowed()){
+      if(!this.shaking){
         doTLSPreReceiveProcessing(message);
-        getParent().onMessageReceived(message);
+        events.add(message);
       }
     }
     catch (Exception e) {
       logger.debug("Garbage was received. Discarding.");
-      storage.clear();
       // not a best way.
-      getParent().onAvpDataException(new AvpDataException(e));
+      events.add(new AvpDataException(e));
     }
-    return true;
   }
 
   /**
@@ -438,123 +445,320 @@ public class TLSTransportClient {
     // startTLS;
     // }
 
-    if (this.shaken || this.client || this.plainSocket instanceof SSLSocket || message.isRequest()
+    if (this.shaken || this.client || this.engine != null || message.isRequest()
         || message.getCommandCode() != IMessage.CAPABILITIES_EXCHANGE_ANSWER) {
       return;
     }
 
     if (this.receivedInband && isSuccess(message)) {
       this.receivedInband = false;
+      // the CEA is queued in plain text, everything after it is TLS
       startTLS();
     }
   }
 
   /**
-   * @throws NotInitializedException 
+   * Switches the connection to TLS, called with the lock held. The client
+   * sends its hello right away, the server waits for it.
    * 
+   * @throws NotInitializedException 
    */
   private void startTLS() throws NotInitializedException {
     try {
       this.shaking = true;
-      SSLSocketFactory cltFct = parentConnection.getSSLFactory();
-      SSLSocket sslSocket = (SSLSocket) cltFct.createSocket(this.plainSocket, null, this.plainSocket.getPort(), false);
-
-      sslSocket.setEnableSessionCreation(parentConnection.getSSLConfig().getBooleanValue(
-          SDEnableSessionCreation.ordinal(), true));
-      // only clients start shake
+      SSLEngine sslEngine = parentConnection.getSSLContext().createSSLEngine(destAddress.getAddress().getHostAddress(), destAddress.getPort());
+      sslEngine.setEnableSessionCreation(parentConnection.getSSLConfig().getBooleanValue(SDEnableSessionCreation.ordinal(), true));
       if (parentConnection.getSSLConfig().getStringValue(CipherSuites.ordinal(), null) != null) {
-        sslSocket.setEnabledCipherSuites(parentConnection.getSSLConfig().getStringValue(CipherSuites.ordinal(), null)
-            .split(","));
-      }
-
-      this.inputStream = sslSocket.getInputStream();
-      this.outputStream = sslSocket.getOutputStream();
-      this.plainSocket = sslSocket;
-
-      if (this.client) {
-        sslSocket.setUseClientMode(true);
-        // TODO: catch this to check for failure
-        sslSocket.addHandshakeCompletedListener(this.handshakeListener);
-        sslSocket.startHandshake();
-      } else {
-        sslSocket.addHandshakeCompletedListener(this.handshakeListener);
-        sslSocket.setUseClientMode(false);
+        sslEngine.setEnabledCipherSuites(parentConnection.getSSLConfig().getStringValue(CipherSuites.ordinal(), null).split(","));
       }
-
-    } catch (Exception e) {
+      // only clients start shake
+      sslEngine.setUseClientMode(this.client);
+      this.engine = sslEngine;
+      sslEngine.beginHandshake();
+      handshake();
+    }
+    catch (Exception e) {
       // TODO: ensure close?
       throw new NotInitializedException(e);
     }
   }
 
-  private void clearBuffer() throws IOException {
-    bufferSize = DEFAULT_BUFFER_SIZE;
-    buffer = ByteBuffer.allocate(bufferSize);
+  /**
+   * Runs the handshake as far as it can go without data from the peer.
+   */
+  private void handshake() throws IOException {
+    while (true) {
+      HandshakeStatus status = engine.getHandshakeStatus();
+      if (status == HandshakeStatus.NEED_TASK) {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+          task.run();
+        }
+      }
+      else if (status == HandshakeStatus.NEED_WRAP) {
+        if (wrap(EMPTY).getStatus() == SSLEngineResult.Status.CLOSED) {
+          return;
+        }
+      }
+      else if (status == HandshakeStatus.NOT_HANDSHAKING || status == HandshakeStatus.FINISHED) {
+        if (shaking) {
+          logger.debug("TLS handshake finished on [{}]", socketDescription);
+          // connected comes from here!
+          shaking = false;
+          shaken = true;
+          events.add(CONNECTED);
+        }
+        return;
+      }
+      else {
+        // waiting for the peer
+        return;
+      }
+    }
   }
 
-  // ---------------- helper classes ---------------------
-  private class DiameterSSLHandshakeListener implements HandshakeCompletedListener {
+  /**
+   * Encrypts the whole source buffer and writes or queues the records.
+   */
+  private SSLEngineResult wrap(ByteBuffer src) throws IOException {
+    int size = engine.getSession().getPacketBufferSize();
+    SSLEngineResult result;
+    do {
+      ByteBuffer netOut = bufferPool.acquire(size);
+      result = engine.wrap(src, netOut);
+      netOut.flip();
+      if (netOut.hasRemaining()) {
+        write(netOut);
+      }
+      else {
+        bufferPool.release(netOut);
+      }
+      if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+        size = Math.max(size * 2, engine.getSession().getPacketBufferSize());
+      }
+      else if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+        if (src.hasRemaining()) {
+          throw new IOException("TLS session is closed");
+        }
+        break;
+      }
+    } while (src.hasRemaining() || result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW);
+    return result;
+  }
 
-    @Override
-    public void handshakeCompleted(HandshakeCompletedEvent event) {
-      // connected comes from here!
+  /**
+   * Writes a buffer, or queues what the socket does not take right away. The
+   * buffer is released to the pool once written. Called with the lock held.
+   */
+  private void write(ByteBuffer bytes) throws IOException {
+    if (sendQueue.isEmpty()) {
       try {
-        lock.lock();
-        shaking = false;
-        shaken = true;
-        ((SSLSocket)plainSocket).removeHandshakeCompletedListener(this);
-        getParent().onConnected();
+        socketChannel.write(bytes);
       }
-      finally {
-        lock.unlock();
+      catch (IOException e) {
+        bufferPool.release(bytes);
+        throw e;
+      }
+      if (!bytes.hasRemaining()) {
+        bufferPool.release(bytes);
+        return;
       }
     }
+    boolean requestWrite = sendQueue.isEmpty();
+    sendQueue.add(bytes);
+    queuedBytes += bytes.remaining();
+    ChannelHandler handler = channelHandler;
+    if (requestWrite && handler != null) {
+      handler.reactor.requestWrite(handler.channel);
+    }
   }
 
-  private class ReadTask implements Runnable {
+  /**
+   * Writes queued data, as much as fits, with gathering writes.
+   *
+   * @return true if the queue is empty
+   */
+  private boolean flush(SocketChannel channel) throws IOException {
+    lock.lock();
+    try {
+      while (!sendQueue.isEmpty()) {
+        int count = 0;
+        for (ByteBuffer bytes : sendQueue) {
+          gather[count++] = bytes;
+          if (count == MAX_GATHER) {
+            break;
+          }
+        }
+        long written = channel.write(gather, 0, count);
+        queuedBytes -= written;
+        while (!sendQueue.isEmpty() && !sendQueue.peek().hasRemaining()) {
+          bufferPool.release(sendQueue.poll());
+        }
+        Arrays.fill(gather, 0, count, null);
+        if (!sendQueue.isEmpty() && (written == 0 || count < MAX_GATHER)) {
+          // socket buffer is full
+          return false;
+        }
+      }
+      return true;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
 
-    @Override
-    public void run() {
-      logger.debug("Transport is started. Socket is [{}]", socketDescription);
+  /**
+   * Reads from the channel and decrypts what has been received.
+   *
+   * @return false at the end of stream
+   */
+  private boolean read(SocketChannel channel, FrameDecoder.FrameHandler frameHandler) throws IOException {
+    if (engine == null) {
       try {
-        while (!stop) {
-          int dataLength = inputStream.read(buffer.array());
-          logger.debug("Just read [{}] bytes on [{}]", dataLength, socketDescription);
-          if (dataLength == -1) {
-            break;
+        return decoder.read(channel, frameHandler) != -1;
+      }
+      catch (AvpDataException e) {
+        logger.debug("Garbage was received. Discarding.");
+        events.add(e);
+        return true;
+      }
+    }
+    int dataLength = netIn.read(channel, engine.getSession());
+    logger.debug("Just read [{}] bytes on [{}]", dataLength, socketDescription);
+    if (dataLength == -1) {
+      return false;
+    }
+    ByteBuffer data = netIn.flip();
+    ByteBuffer appIn = bufferPool.acquire(engine.getSession().getApplicationBufferSize());
+    try {
+      while (data.hasRemaining()) {
+        SSLEngineResult result = engine.unwrap(data, appIn);
+        if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+          bufferPool.release(appIn);
+          appIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize() + appIn.capacity());
+          continue;
+        }
+        if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
+          // rest of the record comes with the next read
+          netIn.underflow(engine.getSession());
+          break;
+        }
+        if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+          return false;
+        }
+        appIn.flip();
+        if (appIn.hasRemaining()) {
+          try {
+            decoder.decode(appIn, frameHandler);
+          }
+          catch (AvpDataException e) {
+            logger.debug("Garbage was received. Discarding.");
+            events.add(e);
           }
-          buffer.position(dataLength);
-          buffer.flip();
-          byte[] data = new byte[buffer.limit()];
-          buffer.get(data);
-          append(data);
-          buffer.clear();
+        }
+        appIn.clear();
+        if (result.getHandshakeStatus() != HandshakeStatus.NOT_HANDSHAKING) {
+          handshake();
         }
       }
-      catch (ClosedByInterruptException e) {
-        logger.debug("Transport exception ", e);
+    }
+    finally {
+      bufferPool.release(appIn);
+    }
+    netIn.compact();
+    return true;
+  }
+
+  private void clearBuffer() {
+    lock.lock();
+    try {
+      decoder.reset();
+      netIn.release();
+      ByteBuffer bytes;
+      while ((bytes = sendQueue.poll()) != null) {
+        bufferPool.release(bytes);
       }
-      catch (AsynchronousCloseException e) {
-        logger.debug("Transport exception ", e);
+      queuedBytes = 0;
+      engine = null;
+      shaking = false;
+      shaken = false;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Passes received events to the parent, called without the lock held.
+   */
+  private void fireEvents() {
+    Object event;
+    while ((event = events.poll()) != null) {
+      try {
+        if (event == CONNECTED) {
+          getParent().onConnected();
+        }
+        else if (event instanceof AvpDataException) {
+          getParent().onAvpDataException((AvpDataException) event);
+        }
+        else {
+          getParent().onMessageReceived((IMessage) event);
+        }
       }
-      catch (Throwable e) {
-        logger.debug("Transport exception ", e);
+      catch (Exception e) {
+        logger.debug("Failed to pass received event to parent", e);
+      }
+    }
+  }
+
+  // ---------------- helper classes ---------------------
+  private class ChannelHandler implements NetworkReactor.Handler, FrameDecoder.FrameHandler {
+
+    private final NetworkReactor reactor;
+    private final SocketChannel channel;
+
+    ChannelHandler(NetworkReactor reactor, SocketChannel channel) {
+      this.reactor = reactor;
+      this.channel = channel;
+    }
+
+    public void onFrame(ByteBuffer frame) {
+      TLSTransportClient.this.onFrame(frame);
+    }
+
+    public boolean onReadable() throws IOException {
+      boolean open;
+      lock.lock();
+      try {
+        open = read(channel, this);
       }
       finally {
-        try {
+        lock.unlock();
+      }
+      fireEvents();
+      return open;
+    }
+
+    public boolean onWritable() throws IOException {
+      return flush(channel);
+    }
+
+    public void onClosed() {
+      try {
+        if (channelHandler == this) {
+          channelHandler = null;
           clearBuffer();
-          if (plainSocket != null && !plainSocket.isClosed()) {
-            plainSocket.close();
-          }
-          getParent().onDisconnect();
         }
-        catch (Exception e) {
-          logger.debug("Error", e);
-        }
-        stop = false;
-        logger.info("Read thread is stopped for socket [{}]", socketDescription);
+        fireEvents();
+        getParent().onDisconnect();
+      }
+      catch (Exception e) {
+        logger.debug("Error", e);
       }
+      finally {
+        reactor.release();
+      }
+      logger.info("Transport is closed for socket [{}]", socketDescription);
     }
   }
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,61 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.common.api.statistic;
+
+/**
+ * Record keeping the distribution of recorded values, such as latencies, so
+ * percentiles can be read from it. Its value is the count of recorded values.
+ */
+public interface IHistogramRecord extends IStatisticRecord {
+
+  /**
+   * Record a value, ignored if the record is disabled
+   *
+   * @param value non negative value
+   */
+  void record(long value);
+
+  /**
+   * Return count of recorded values
+   *
+   * @return count of recorded values
+   */
+  long getCount();
+
+  /**
+   * Return value below or at which the given percentage of recorded values
+   * are, within the precision of the histogram
+   *
+   * @param percentile percentage, from 0 to 100
+   * @return value at percentile, 0 if nothing was recorded
+   */
+  long getValueAtPercentile(double percentile);
+
+  /**
+   * Return highest recorded value
+   *
+   * @return highest recorded value, 0 if nothing was recorded
+   */
+  long getMaxValue();
+
+}
@@ -38,7 +38,9 @@ public interface IStatistic extends Statistic{
     PeerFSM("Peer FSM statistic"),
     Network("Network statistic"),
     Concurrent(" Concurrent factory statistics"),
-    ScheduledExecService("ScheduledExecutorService statistic");
+    ScheduledExecService("ScheduledExecutorService statistic"),
+    TimerFacility("Timer facility statistic"),
+    DuplicateCache("Duplicate answer cache statistic");
 
     private String description;
 
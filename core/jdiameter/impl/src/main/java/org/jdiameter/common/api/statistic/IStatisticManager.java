@@ -45,6 +45,8 @@ public interface IStatisticManager {
 
 	IStatisticRecord newPerSecondCounterRecord(String name,IStatisticRecord.Counters recordDescription, IStatisticRecord record);
 
+	IHistogramRecord newHistogramRecord(String name, String description);
+
 	IStatistic newStatistic(String name, IStatistic.Groups group, IStatisticRecord... rec);
 
 	//IStatistic newStatistic(String name, String description, IStatisticRecord... rec);
@@ -56,6 +56,7 @@ public interface IStatisticRecord extends StatisticRecord{
 		    HeapMemory("Heap memory usage"),
 		    NoHeapMemory("No-heap memory usage"),
 		    MessageProcessingTime("Average time of processing message"),
+		    MessageLatency("Request to answer latency percentiles in microseconds, by application id and command code"),
 
 		    ConcurrentThread("Count thread in default thread group"),
 		    ConcurrentScheduledExecutedServices("Count of ScheduledExecutorServices"),
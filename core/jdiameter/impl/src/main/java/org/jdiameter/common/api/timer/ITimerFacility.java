@@ -35,4 +35,10 @@ public interface ITimerFacility {
 
   public void cancel(Serializable id);
 
+  /**
+   * Releases the resources held by the facility, timers still pending may no
+   * longer fire. Called once when the stack is destroyed.
+   */
+  public void destroy();
+
 }
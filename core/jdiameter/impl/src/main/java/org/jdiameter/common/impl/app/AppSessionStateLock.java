@@ -0,0 +1,106 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.common.impl.app;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jdiameter.common.api.app.IAppSessionData;
+import org.jdiameter.common.api.app.IBatchedAppSessionData;
+
+/**
+ * Lock guarding the state of an application session while an event is being
+ * processed. If the session data supports it, changes made to the data while
+ * the lock is held are grouped and stored in a single update when the lock
+ * is released by its outermost holder.
+ */
+public class AppSessionStateLock extends ReentrantLock {
+
+  private static final long serialVersionUID = 1L;
+
+  private final transient AppSessionImpl session;
+
+  public AppSessionStateLock(AppSessionImpl session) {
+    super();
+    this.session = session;
+  }
+
+  @Override
+  public void lock() {
+    super.lock();
+    beginBatch();
+  }
+
+  @Override
+  public void lockInterruptibly() throws InterruptedException {
+    super.lockInterruptibly();
+    beginBatch();
+  }
+
+  @Override
+  public boolean tryLock() {
+    if (super.tryLock()) {
+      beginBatch();
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+    if (super.tryLock(timeout, unit)) {
+      beginBatch();
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public void unlock() {
+    try {
+      if (getHoldCount() == 1) {
+        IBatchedAppSessionData data = getBatchedData();
+        if (data != null) {
+          data.endBatch();
+        }
+      }
+    }
+    finally {
+      super.unlock();
+    }
+  }
+
+  private void beginBatch() {
+    if (getHoldCount() == 1) {
+      IBatchedAppSessionData data = getBatchedData();
+      if (data != null) {
+        data.beginBatch();
+      }
+    }
+  }
+
+  private IBatchedAppSessionData getBatchedData() {
+    IAppSessionData data = session.appSessionData;
+    return data instanceof IBatchedAppSessionData ? (IBatchedAppSessionData) data : null;
+  }
+}
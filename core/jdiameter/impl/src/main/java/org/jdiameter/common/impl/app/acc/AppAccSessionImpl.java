@@ -25,7 +25,6 @@ package org.jdiameter.common.impl.app.acc;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.jdiameter.api.Answer;
 import org.jdiameter.api.NetworkReqListener;
@@ -36,6 +35,7 @@ import org.jdiameter.api.app.StateChangeListener;
 import org.jdiameter.client.api.ISessionFactory;
 import org.jdiameter.common.api.app.IAppSessionData;
 import org.jdiameter.common.impl.app.AppSessionImpl;
+import org.jdiameter.common.impl.app.AppSessionStateLock;
 
 /**
  * 
@@ -44,7 +44,7 @@ import org.jdiameter.common.impl.app.AppSessionImpl;
  */
 public abstract class AppAccSessionImpl extends AppSessionImpl implements  NetworkReqListener, org.jdiameter.api.app.StateMachine {
 
-  protected Lock sendAndStateLock = new ReentrantLock();
+  protected Lock sendAndStateLock = new AppSessionStateLock(this);
 
   protected transient List<StateChangeListener> stateListeners = new CopyOnWriteArrayList<StateChangeListener>();
   
@@ -25,7 +25,6 @@ package org.jdiameter.common.impl.app.auth;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.jdiameter.api.ApplicationId;
 import org.jdiameter.api.NetworkReqListener;
@@ -33,6 +32,7 @@ import org.jdiameter.api.app.StateChangeListener;
 import org.jdiameter.client.api.ISessionFactory;
 import org.jdiameter.common.api.app.auth.IAuthSessionData;
 import org.jdiameter.common.impl.app.AppSessionImpl;
+import org.jdiameter.common.impl.app.AppSessionStateLock;
 
 /**
  * 
@@ -41,7 +41,7 @@ import org.jdiameter.common.impl.app.AppSessionImpl;
  */
 public abstract class AppAuthSessionImpl extends AppSessionImpl implements NetworkReqListener, org.jdiameter.api.app.StateMachine {
 
-  protected Lock sendAndStateLock = new ReentrantLock();
+  protected Lock sendAndStateLock = new AppSessionStateLock(this);
   protected ApplicationId appId;
 
   protected transient List<StateChangeListener> stateListeners = new CopyOnWriteArrayList<StateChangeListener>();
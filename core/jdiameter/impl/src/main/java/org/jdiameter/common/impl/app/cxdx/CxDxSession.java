@@ -26,7 +26,6 @@ import java.io.Serializable;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.jdiameter.api.NetworkReqListener;
 import org.jdiameter.api.app.StateChangeListener;
@@ -35,6 +34,7 @@ import org.jdiameter.client.api.ISessionFactory;
 import org.jdiameter.common.api.app.cxdx.ICxDxMessageFactory;
 import org.jdiameter.common.api.app.cxdx.ICxDxSessionData;
 import org.jdiameter.common.impl.app.AppSessionImpl;
+import org.jdiameter.common.impl.app.AppSessionStateLock;
 
 /**
  * 
@@ -45,7 +45,7 @@ public abstract class CxDxSession extends AppSessionImpl implements NetworkReqLi
 
   public static final int _TX_TIMEOUT = 30 * 1000;
 
-  protected Lock sendAndStateLock = new ReentrantLock();
+  protected Lock sendAndStateLock = new AppSessionStateLock(this);
 
   protected transient List<StateChangeListener> stateListeners = new CopyOnWriteArrayList<StateChangeListener>();
   protected transient ICxDxMessageFactory messageFactory;
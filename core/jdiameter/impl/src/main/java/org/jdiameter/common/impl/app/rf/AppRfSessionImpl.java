@@ -25,7 +25,6 @@ package org.jdiameter.common.impl.app.rf;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.jdiameter.api.Answer;
 import org.jdiameter.api.ApplicationId;
@@ -37,6 +36,7 @@ import org.jdiameter.api.rf.events.RfAccountingRequest;
 import org.jdiameter.client.api.ISessionFactory;
 import org.jdiameter.common.api.app.rf.IRfSessionData;
 import org.jdiameter.common.impl.app.AppSessionImpl;
+import org.jdiameter.common.impl.app.AppSessionStateLock;
 
 /**
  * 
@@ -45,7 +45,7 @@ import org.jdiameter.common.impl.app.AppSessionImpl;
  */
 public abstract class AppRfSessionImpl extends AppSessionImpl implements  NetworkReqListener, org.jdiameter.api.app.StateMachine {
 
-  protected Lock sendAndStateLock = new ReentrantLock();
+  protected Lock sendAndStateLock = new AppSessionStateLock(this);
   protected ApplicationId appId;
 
   protected transient List<StateChangeListener> stateListeners = new CopyOnWriteArrayList<StateChangeListener>();
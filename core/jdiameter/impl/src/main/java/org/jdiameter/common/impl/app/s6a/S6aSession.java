@@ -25,7 +25,6 @@ import java.io.Serializable;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import org.jdiameter.api.NetworkReqListener;
 import org.jdiameter.api.app.StateChangeListener;
 import org.jdiameter.api.app.StateMachine;
@@ -33,6 +32,7 @@ import org.jdiameter.client.api.ISessionFactory;
 import org.jdiameter.common.api.app.s6a.IS6aMessageFactory;
 import org.jdiameter.common.api.app.s6a.IS6aSessionData;
 import org.jdiameter.common.impl.app.AppSessionImpl;
+import org.jdiameter.common.impl.app.AppSessionStateLock;
 
 /**
  * 
@@ -44,7 +44,7 @@ public abstract class S6aSession extends AppSessionImpl implements NetworkReqLis
 
   public static final int _TX_TIMEOUT = 30 * 1000;
 
-  protected Lock sendAndStateLock = new ReentrantLock();
+  protected Lock sendAndStateLock = new AppSessionStateLock(this);
 
   protected transient List<StateChangeListener> stateListeners = new CopyOnWriteArrayList<StateChangeListener>();
   protected transient IS6aMessageFactory messageFactory;
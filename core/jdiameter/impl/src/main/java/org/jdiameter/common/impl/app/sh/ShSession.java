@@ -25,7 +25,6 @@ package org.jdiameter.common.impl.app.sh;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.jdiameter.api.NetworkReqListener;
 import org.jdiameter.api.app.StateChangeListener;
@@ -33,6 +32,7 @@ import org.jdiameter.api.app.StateMachine;
 import org.jdiameter.client.api.ISessionFactory;
 import org.jdiameter.common.api.app.sh.IShSessionData;
 import org.jdiameter.common.impl.app.AppSessionImpl;
+import org.jdiameter.common.impl.app.AppSessionStateLock;
 
 /**
  * 
@@ -41,7 +41,7 @@ import org.jdiameter.common.impl.app.AppSessionImpl;
  */
 public abstract class ShSession extends AppSessionImpl implements NetworkReqListener, StateMachine {
 
-  protected Lock sendAndStateLock = new ReentrantLock();
+  protected Lock sendAndStateLock = new AppSessionStateLock(this);
 
   protected transient List<StateChangeListener> stateListeners = new CopyOnWriteArrayList<StateChangeListener>();
 
@@ -44,6 +44,7 @@ package org.jdiameter.common.impl.controller;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -51,7 +52,9 @@ import org.jdiameter.api.IllegalDiameterStateException;
 import org.jdiameter.api.InternalException;
 import org.jdiameter.api.Peer;
 import org.jdiameter.api.URI;
+import org.jdiameter.client.api.IMessage;
 import org.jdiameter.client.impl.helpers.UIDGenerator;
+import org.jdiameter.common.api.statistic.IHistogramRecord;
 import org.jdiameter.common.api.statistic.IStatistic;
 import org.jdiameter.common.api.statistic.IStatisticManager;
 import org.jdiameter.common.api.statistic.IStatisticRecord;
@@ -76,6 +79,21 @@ public class AbstractPeer implements Comparable<Peer> {
   protected URI uri;
   protected IStatisticManager statisticFactory;
 
+  // records of the statistic, resolved once so counting does not look them up
+  protected volatile IStatisticRecord appGenRequestCounter;
+  protected volatile IStatisticRecord appGenRejectedRequestCounter;
+  protected volatile IStatisticRecord appGenResponseCounter;
+  protected volatile IStatisticRecord appGenRejectedResponseCounter;
+  protected volatile IStatisticRecord netGenRequestCounter;
+  protected volatile IStatisticRecord netGenRejectedRequestCounter;
+  protected volatile IStatisticRecord netGenResponseCounter;
+  protected volatile IStatisticRecord netGenRejectedResponseCounter;
+  protected volatile IStatisticRecord sysGenResponseCounter;
+
+  // request to answer latency, by application id and command code; copied on
+  // write, a peer only sees a handful of commands
+  private volatile Latency[] latencies = new Latency[0];
+
   //Added locks to make statistics creation and removal thread safe
   private Lock statisticsLock = new ReentrantLock();
 
@@ -94,31 +112,31 @@ public class AbstractPeer implements Comparable<Peer> {
         return;
       }
       String uriString = uri == null ? "local" : uri.toString();
-      IStatisticRecord appGenRequestCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.AppGenRequest);
+      appGenRequestCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.AppGenRequest);
       IStatisticRecord appGenCPSRequestCounter = statisticFactory.newPerSecondCounterRecord(uriString,IStatisticRecord.Counters.AppGenRequestPerSecond, appGenRequestCounter);
-      IStatisticRecord appGenRejectedRequestCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.AppGenRejectedRequest);
+      appGenRejectedRequestCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.AppGenRejectedRequest);
 
       perSecondRecords.add(appGenCPSRequestCounter);
 
-      IStatisticRecord appGenResponseCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.AppGenResponse);
+      appGenResponseCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.AppGenResponse);
       IStatisticRecord appGenCPSResponseCounter = statisticFactory.newPerSecondCounterRecord(uriString,IStatisticRecord.Counters.AppGenResponsePerSecond, appGenResponseCounter);
-      IStatisticRecord appGenRejectedResponseCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.AppGenRejectedResponse);
+      appGenRejectedResponseCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.AppGenRejectedResponse);
 
       perSecondRecords.add(appGenCPSResponseCounter);
 
-      IStatisticRecord netGenRequestCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.NetGenRequest);
+      netGenRequestCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.NetGenRequest);
       IStatisticRecord netGenCPSRequestCounter = statisticFactory.newPerSecondCounterRecord(uriString,IStatisticRecord.Counters.NetGenRequestPerSecond, netGenRequestCounter);
-      IStatisticRecord netGenRejectedRequestCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.NetGenRejectedRequest);
+      netGenRejectedRequestCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.NetGenRejectedRequest);
 
       perSecondRecords.add(netGenCPSRequestCounter);
 
-      IStatisticRecord netGenResponseCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.NetGenResponse);
+      netGenResponseCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.NetGenResponse);
       IStatisticRecord netGenCPSResponseCounter = statisticFactory.newPerSecondCounterRecord(uriString,IStatisticRecord.Counters.NetGenResponsePerSecond, netGenResponseCounter);
-      IStatisticRecord netGenRejectedResponseCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.NetGenRejectedResponse);
+      netGenRejectedResponseCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.NetGenRejectedResponse);
 
       perSecondRecords.add(netGenCPSResponseCounter);
 
-      IStatisticRecord sysGenResponseCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.SysGenResponse);
+      sysGenResponseCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.SysGenResponse);
 
       this.statistic = statisticFactory.newStatistic(uriString,IStatistic.Groups.Peer,
           appGenRequestCounter, appGenCPSRequestCounter, appGenRejectedRequestCounter,
@@ -153,6 +171,9 @@ public class AbstractPeer implements Comparable<Peer> {
 
       this.statisticFactory.removeStatistic(this.statistic);
       this.perSecondRecords.clear();
+      synchronized (this) {
+        this.latencies = new Latency[0];
+      }
       this.statistic = null;
     }
     finally {
@@ -161,6 +182,73 @@ public class AbstractPeer implements Comparable<Peer> {
     }
   }
 
+  /**
+   * Marks a request sent to this peer with the current time, if statistics
+   * are enabled, so the latency of its answer can be recorded.
+   */
+  protected void timeRequest(IMessage request) {
+    IStatistic statistic = this.statistic;
+    if (statistic != null && statistic.isEnabled()) {
+      request.setSendTime(System.nanoTime());
+    }
+  }
+
+  /**
+   * Records the latency of an answered request, in the histogram of its
+   * application id and command code. Requests that were not timed are skipped.
+   */
+  protected void recordLatency(IMessage request) {
+    long sendTime = request.getSendTime();
+    IStatistic statistic = this.statistic;
+    if (sendTime == 0 || statistic == null || !statistic.isEnabled()) {
+      return;
+    }
+    long applicationId = request.getApplicationId();
+    int commandCode = request.getCommandCode();
+    IHistogramRecord latency = findLatency(latencies, applicationId, commandCode);
+    if (latency == null) {
+      latency = addLatency(statistic, applicationId, commandCode);
+    }
+    latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sendTime));
+  }
+
+  private static IHistogramRecord findLatency(Latency[] latencies, long applicationId, int commandCode) {
+    for (Latency latency : latencies) {
+      if (latency.applicationId == applicationId && latency.commandCode == commandCode) {
+        return latency.record;
+      }
+    }
+    return null;
+  }
+
+  private synchronized IHistogramRecord addLatency(IStatistic statistic, long applicationId, int commandCode) {
+    Latency[] current = latencies;
+    IHistogramRecord record = findLatency(current, applicationId, commandCode);
+    if (record == null) {
+      record = statisticFactory.newHistogramRecord(IStatisticRecord.Counters.MessageLatency.name() + "." + applicationId + "." + commandCode,
+          IStatisticRecord.Counters.MessageLatency.getDescription());
+      Latency[] added = new Latency[current.length + 1];
+      System.arraycopy(current, 0, added, 0, current.length);
+      added[current.length] = new Latency(applicationId, commandCode, record);
+      latencies = added;
+      statistic.appendCounter(record);
+    }
+    return record;
+  }
+
+  private static class Latency {
+
+    final long applicationId;
+    final int commandCode;
+    final IHistogramRecord record;
+
+    Latency(long applicationId, int commandCode, IHistogramRecord record) {
+      this.applicationId = applicationId;
+      this.commandCode = commandCode;
+      this.record = record;
+    }
+  }
+
   public int compareTo(Peer o) {
     return uri.compareTo(o.getUri());
   }
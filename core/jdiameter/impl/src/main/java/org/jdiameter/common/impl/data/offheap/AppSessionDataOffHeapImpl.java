@@ -0,0 +1,193 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.common.impl.data.offheap;
+
+import java.io.Serializable;
+
+import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.Request;
+import org.jdiameter.api.app.AppSession;
+import org.jdiameter.api.cca.ClientCCASession;
+import org.jdiameter.api.cca.ServerCCASession;
+import org.jdiameter.api.gx.ClientGxSession;
+import org.jdiameter.api.gx.ServerGxSession;
+import org.jdiameter.api.ro.ClientRoSession;
+import org.jdiameter.api.ro.ServerRoSession;
+import org.jdiameter.common.api.app.IAppSessionData;
+import org.jdiameter.common.api.app.cca.ClientCCASessionState;
+import org.jdiameter.common.api.app.gx.ClientGxSessionState;
+import org.jdiameter.common.api.app.ro.ClientRoSessionState;
+
+/**
+ * Base class for session data kept in a {@link SessionRecordStore} record.
+ * Records are zeroed when allocated, so fields are encoded in a way that all
+ * zero bytes read back as the defaults of the local implementations.
+ */
+public abstract class AppSessionDataOffHeapImpl implements IAppSessionData {
+
+  // record types, index into APP_SESSION_IFACES
+  protected static final byte CLIENT_CCA = 1;
+  protected static final byte SERVER_CCA = 2;
+  protected static final byte CLIENT_RO = 3;
+  protected static final byte SERVER_RO = 4;
+  protected static final byte CLIENT_GX = 5;
+  protected static final byte SERVER_GX = 6;
+
+  private static final Class<?>[] APP_SESSION_IFACES = new Class<?>[] {
+    null, ClientCCASession.class, ServerCCASession.class, ClientRoSession.class, ServerRoSession.class, ClientGxSession.class, ServerGxSession.class
+  };
+
+  protected final SessionRecordStore store;
+  protected final String sessionId;
+  protected final int index;
+
+  protected AppSessionDataOffHeapImpl(SessionRecordStore store, String sessionId, byte type) {
+    this.store = store;
+    this.sessionId = sessionId;
+    this.index = store.allocate(sessionId, type);
+  }
+
+  @SuppressWarnings("unchecked")
+  static Class<? extends AppSession> getAppSessionIface(byte type) {
+    return type > 0 && type < APP_SESSION_IFACES.length ? (Class<? extends AppSession>) APP_SESSION_IFACES[type] : null;
+  }
+
+  /**
+   * Tells whether the live object of a session may be dropped. It may not
+   * while a client session waits for an answer, or while the session has a
+   * timer or a request pending, as those are delivered to the live object.
+   *
+   * @return false also if the record is no longer owned by the session
+   */
+  static boolean isQuiescent(SessionRecordStore store, int index, String sessionId) {
+    try {
+      if (store.getReference(index, sessionId, SessionRecordStore.REF_TIMER_ID) != null
+          || store.getReference(index, sessionId, SessionRecordStore.REF_TIMER_REQUEST) != null
+          || store.getReference(index, sessionId, SessionRecordStore.REF_BUFFER) != null) {
+        return false;
+      }
+      int state = store.getByte(index, sessionId, SessionRecordStore.STATE);
+      switch (store.getType(index)) {
+      case CLIENT_CCA:
+        return state == ClientCCASessionState.IDLE.ordinal() || state == ClientCCASessionState.OPEN.ordinal();
+      case CLIENT_RO:
+        return state == ClientRoSessionState.IDLE.ordinal() || state == ClientRoSessionState.OPEN.ordinal();
+      case CLIENT_GX:
+        return state == ClientGxSessionState.IDLE.ordinal() || state == ClientGxSessionState.OPEN.ordinal();
+      default:
+        return true;
+      }
+    }
+    catch (IllegalStateException e) {
+      // record freed meanwhile
+      return false;
+    }
+  }
+
+  public String getSessionId() {
+    return sessionId;
+  }
+
+  public void setApplicationId(ApplicationId applicationId) {
+    store.putLong(index, sessionId, SessionRecordStore.VENDOR_ID, applicationId == null ? 0 : applicationId.getVendorId());
+    store.putLong(index, sessionId, SessionRecordStore.AUTH_APP_ID, applicationId == null ? 0 : applicationId.getAuthAppId());
+    store.putLong(index, sessionId, SessionRecordStore.ACCT_APP_ID, applicationId == null ? 0 : applicationId.getAcctAppId());
+  }
+
+  public ApplicationId getApplicationId() {
+    long vendorId = store.getLong(index, sessionId, SessionRecordStore.VENDOR_ID);
+    long authAppId = store.getLong(index, sessionId, SessionRecordStore.AUTH_APP_ID);
+    long acctAppId = store.getLong(index, sessionId, SessionRecordStore.ACCT_APP_ID);
+    if (acctAppId != ApplicationId.UNDEFINED_VALUE) {
+      return ApplicationId.createByAccAppId(vendorId, acctAppId);
+    }
+    if (authAppId != ApplicationId.UNDEFINED_VALUE || vendorId != ApplicationId.UNDEFINED_VALUE) {
+      return ApplicationId.createByAuthAppId(vendorId, authAppId);
+    }
+    return null;
+  }
+
+  public boolean remove() {
+    return store.free(sessionId);
+  }
+
+  // Some util methods for the record encoding
+
+  protected boolean getFlag(int flag) {
+    return (store.getByte(index, sessionId, SessionRecordStore.FLAGS) & flag) != 0;
+  }
+
+  protected void setFlag(int flag, boolean value) {
+    store.updateByte(index, sessionId, SessionRecordStore.FLAGS, value ? flag : 0, value ? 0 : flag);
+  }
+
+  protected int getState() {
+    return store.getByte(index, sessionId, SessionRecordStore.STATE);
+  }
+
+  protected void setState(Enum<?> state) {
+    store.putByte(index, sessionId, SessionRecordStore.STATE, (byte) state.ordinal());
+  }
+
+  // NON_INITIALIZED is stored as 0
+  protected int getInt(int field) {
+    return store.getInt(index, sessionId, field) ^ NON_INITIALIZED;
+  }
+
+  protected void setInt(int field, int value) {
+    store.putInt(index, sessionId, field, value ^ NON_INITIALIZED);
+  }
+
+  protected Serializable getTimerId() {
+    return (Serializable) store.getReference(index, sessionId, SessionRecordStore.REF_TIMER_ID);
+  }
+
+  protected void setTimerId(Serializable timerId) {
+    store.putReference(index, sessionId, SessionRecordStore.REF_TIMER_ID, timerId);
+  }
+
+  protected Request getRequest(int ref) {
+    return (Request) store.getReference(index, sessionId, ref);
+  }
+
+  protected void setRequest(int ref, Request request) {
+    store.putReference(index, sessionId, ref, request);
+  }
+
+  @Override
+  public int hashCode() {
+    return sessionId.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null || getClass() != obj.getClass()) {
+      return false;
+    }
+    return sessionId.equals(((AppSessionDataOffHeapImpl) obj).sessionId);
+  }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.common.impl.data.offheap;
+
+import org.jdiameter.api.app.AppSession;
+import org.jdiameter.api.cca.ClientCCASession;
+import org.jdiameter.api.cca.ServerCCASession;
+import org.jdiameter.common.api.app.IAppSessionDataFactory;
+import org.jdiameter.common.api.app.cca.ICCASessionData;
+
+/**
+ */
+public class CCAOffHeapSessionDataFactory implements IAppSessionDataFactory<ICCASessionData> {
+
+  private SessionRecordStore store;
+
+  CCAOffHeapSessionDataFactory(SessionRecordStore store) {
+    this.store = store;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.jdiameter.common.api.app.IAppSessionDataFactory#getAppSessionData(java.lang.Class, java.lang.String)
+   */
+  @Override
+  public ICCASessionData getAppSessionData(Class<? extends AppSession> clazz, String sessionId) {
+    if (clazz.equals(ClientCCASession.class)) {
+      return new ClientCCASessionDataOffHeapImpl(store, sessionId);
+    }
+    else if (clazz.equals(ServerCCASession.class)) {
+      return new ServerCCASessionDataOffHeapImpl(store, sessionId);
+    }
+    throw new IllegalArgumentException(clazz.toString());
+  }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.common.impl.data.offheap;
+
+import java.io.Serializable;
+
+import org.jdiameter.api.Request;
+
+/**
+ * Off-heap data shared by the credit control client sessions (CCA, Ro and Gx),
+ * which only differ in the type of their state.
+ */
+public abstract class ClientCCSessionDataOffHeapImpl extends AppSessionDataOffHeapImpl {
+
+  // event based is the default, so the flag is stored inverted
+  private static final int SESSION_BASED = 0x01;
+  private static final int REQUEST_TYPE_SET = 0x02;
+
+  protected ClientCCSessionDataOffHeapImpl(SessionRecordStore store, String sessionId, byte type) {
+    super(store, sessionId, type);
+  }
+
+  public boolean isEventBased() {
+    return !getFlag(SESSION_BASED);
+  }
+
+  public void setEventBased(boolean isEventBased) {
+    setFlag(SESSION_BASED, !isEventBased);
+  }
+
+  public boolean isRequestTypeSet() {
+    return getFlag(REQUEST_TYPE_SET);
+  }
+
+  public void setRequestTypeSet(boolean requestTypeSet) {
+    setFlag(REQUEST_TYPE_SET, requestTypeSet);
+  }
+
+  public Serializable getTxTimerId() {
+    return getTimerId();
+  }
+
+  public void setTxTimerId(Serializable txTimerId) {
+    setTimerId(txTimerId);
+  }
+
+  public Request getTxTimerRequest() {
+    return getRequest(SessionRecordStore.REF_TIMER_REQUEST);
+  }
+
+  public void setTxTimerRequest(Request txTimerRequest) {
+    setRequest(SessionRecordStore.REF_TIMER_REQUEST, txTimerRequest);
+  }
+
+  public Request getBuffer() {
+    return getRequest(SessionRecordStore.REF_BUFFER);
+  }
+
+  public void setBuffer(Request buffer) {
+    setRequest(SessionRecordStore.REF_BUFFER, buffer);
+  }
+
+  public int getGatheredRequestedAction() {
+    return getInt(SessionRecordStore.REQUESTED_ACTION);
+  }
+
+  public void setGatheredRequestedAction(int gatheredRequestedAction) {
+    setInt(SessionRecordStore.REQUESTED_ACTION, gatheredRequestedAction);
+  }
+
+  public int getGatheredCCFH() {
+    return getInt(SessionRecordStore.CCFH);
+  }
+
+  public void setGatheredCCFH(int gatheredCCFH) {
+    setInt(SessionRecordStore.CCFH, gatheredCCFH);
+  }
+
+  public int getGatheredDDFH() {
+    return getInt(SessionRecordStore.DDFH);
+  }
+
+  public void setGatheredDDFH(int gatheredDDFH) {
+    setInt(SessionRecordStore.DDFH, gatheredDDFH);
+  }
+
+}
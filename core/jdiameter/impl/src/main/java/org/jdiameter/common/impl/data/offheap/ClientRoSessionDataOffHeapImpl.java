@@ -0,0 +1,47 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.common.impl.data.offheap;
+
+import org.jdiameter.client.impl.app.ro.IClientRoSessionData;
+import org.jdiameter.common.api.app.ro.ClientRoSessionState;
+
+/**
+ * Off-heap implementation of {@link IClientRoSessionData}.
+ */
+public class ClientRoSessionDataOffHeapImpl extends ClientCCSessionDataOffHeapImpl implements IClientRoSessionData {
+
+  private static final ClientRoSessionState[] STATES = ClientRoSessionState.values();
+
+  public ClientRoSessionDataOffHeapImpl(SessionRecordStore store, String sessionId) {
+    super(store, sessionId, CLIENT_RO);
+  }
+
+  public ClientRoSessionState getClientRoSessionState() {
+    return STATES[getState()];
+  }
+
+  public void setClientRoSessionState(ClientRoSessionState state) {
+    setState(state);
+  }
+
+}
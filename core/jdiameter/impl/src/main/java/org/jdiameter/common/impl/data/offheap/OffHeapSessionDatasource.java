@@ -0,0 +1,294 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.common.impl.data.offheap;
+
+import static org.jdiameter.client.impl.helpers.Parameters.OffHeapSessionMaxResident;
+import static org.jdiameter.client.impl.helpers.Parameters.OffHeapSessionSegmentRecords;
+
+import java.util.HashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jdiameter.api.BaseSession;
+import org.jdiameter.api.Configuration;
+import org.jdiameter.api.IllegalDiameterStateException;
+import org.jdiameter.api.NetworkReqListener;
+import org.jdiameter.api.app.AppSession;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.client.api.ISessionFactory;
+import org.jdiameter.common.api.app.IAppSessionData;
+import org.jdiameter.common.api.app.IAppSessionDataFactory;
+import org.jdiameter.common.api.app.IAppSessionFactory;
+import org.jdiameter.common.api.app.cca.ICCASessionData;
+import org.jdiameter.common.api.app.gx.IGxSessionData;
+import org.jdiameter.common.api.app.ro.IRoSessionData;
+import org.jdiameter.common.api.data.ISessionDatasource;
+import org.jdiameter.common.impl.data.LocalDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Datasource implementation for {@link ISessionDatasource} which keeps the
+ * state of credit control sessions (CCA, Ro and Gx) in off-heap records, see
+ * {@link SessionRecordStore}. Other applications use local session data.
+ *
+ * Live application session objects are kept in a {@link LocalDataSource} for a
+ * bounded number of sessions only. When there are more, the ones not used
+ * recently are dropped (clock sweep) and created again from their record,
+ * through the application session factory, on the next access. Sessions
+ * waiting for an answer or with a timer scheduled are never dropped.
+ */
+public class OffHeapSessionDatasource implements ISessionDatasource {
+
+  private static final Logger logger = LoggerFactory.getLogger(OffHeapSessionDatasource.class);
+
+  private static final int LOCK_COUNT = 64;
+
+  private IContainer container;
+  private ISessionDatasource localDataSource;
+  private SessionRecordStore store;
+  private int maxResidentSessions;
+
+  // provided by impl, no way to change that, no conf! :)
+  protected HashMap<Class<? extends IAppSessionData>, IAppSessionDataFactory<? extends IAppSessionData>> appSessionDataFactories = new HashMap<Class<? extends IAppSessionData>, IAppSessionDataFactory<? extends IAppSessionData>>();
+
+  // serialize creation and eviction of the live object of a session
+  private final Object[] locks = new Object[LOCK_COUNT];
+  private final ReentrantLock sweepLock = new ReentrantLock();
+  private int sweepHand;
+
+  public OffHeapSessionDatasource(IContainer container) {
+    Configuration config = container.getConfiguration();
+    int maxResidentSessions = (Integer) OffHeapSessionMaxResident.defValue();
+    int segmentRecords = (Integer) OffHeapSessionSegmentRecords.defValue();
+    if (config != null) {
+      maxResidentSessions = config.getIntValue(OffHeapSessionMaxResident.ordinal(), maxResidentSessions);
+      segmentRecords = config.getIntValue(OffHeapSessionSegmentRecords.ordinal(), segmentRecords);
+    }
+    init(container, new LocalDataSource(container), maxResidentSessions, segmentRecords);
+  }
+
+  /**
+   * @param container stack container, may be null if sessions are never made resident again
+   * @param localDataSource datasource for live sessions
+   * @param maxResidentSessions number of sessions with off-heap records whose live objects are kept
+   * @param segmentRecords number of records in each off-heap segment
+   */
+  public OffHeapSessionDatasource(IContainer container, ISessionDatasource localDataSource, int maxResidentSessions, int segmentRecords) {
+    init(container, localDataSource, maxResidentSessions, segmentRecords);
+  }
+
+  private void init(IContainer container, ISessionDatasource localDataSource, int maxResidentSessions, int segmentRecords) {
+    this.container = container;
+    this.localDataSource = localDataSource;
+    this.maxResidentSessions = maxResidentSessions;
+    this.store = new SessionRecordStore(segmentRecords);
+    for (int i = 0; i < LOCK_COUNT; i++) {
+      locks[i] = new Object();
+    }
+    // this is coded, its tied to specific impl of SessionDatasource
+    appSessionDataFactories.put(ICCASessionData.class, new CCAOffHeapSessionDataFactory(store));
+    appSessionDataFactories.put(IRoSessionData.class, new RoOffHeapSessionDataFactory(store));
+    appSessionDataFactories.put(IGxSessionData.class, new GxOffHeapSessionDataFactory(store));
+  }
+
+  public boolean exists(String sessionId) {
+    return this.localDataSource.exists(sessionId) || this.store.indexOf(sessionId) != -1;
+  }
+
+  public void addSession(BaseSession session) {
+    this.localDataSource.addSession(session);
+    if (session.isAppSession()) {
+      String sessionId = session.getSessionId();
+      int index = this.store.indexOf(sessionId);
+      if (index != -1) {
+        this.store.markResident(index, sessionId);
+        if (this.store.getResidentCount() > this.maxResidentSessions) {
+          sweep();
+        }
+      }
+    }
+  }
+
+  public BaseSession getSession(String sessionId) {
+    int index = this.store.indexOf(sessionId);
+    if (index == -1) {
+      return this.localDataSource.getSession(sessionId);
+    }
+    return makeResident(sessionId, index);
+  }
+
+  public NetworkReqListener getSessionListener(String sessionId) {
+    int index = this.store.indexOf(sessionId);
+    if (index != -1) {
+      makeResident(sessionId, index);
+    }
+    return this.localDataSource.getSessionListener(sessionId);
+  }
+
+  public void setSessionListener(String sessionId, NetworkReqListener data) {
+    if (!this.localDataSource.exists(sessionId)) {
+      int index = this.store.indexOf(sessionId);
+      if (index != -1) {
+        makeResident(sessionId, index);
+      }
+    }
+    this.localDataSource.setSessionListener(sessionId, data);
+  }
+
+  public NetworkReqListener removeSessionListener(String sessionId) {
+    // sessions which are not resident have no listener registered
+    return this.localDataSource.removeSessionListener(sessionId);
+  }
+
+  public void removeSession(String sessionId) {
+    logger.debug("removeSession({})", sessionId);
+    this.localDataSource.removeSession(sessionId);
+    this.store.free(sessionId);
+  }
+
+  public void start() {
+    this.localDataSource.start();
+  }
+
+  public void stop() {
+    this.localDataSource.stop();
+  }
+
+  public boolean isClustered() {
+    return false;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.jdiameter.common.api.data.ISessionDatasource#getDataFactory(java. lang.Class)
+   */
+  @Override
+  public IAppSessionDataFactory<? extends IAppSessionData> getDataFactory(Class<? extends IAppSessionData> x) {
+    IAppSessionDataFactory<? extends IAppSessionData> factory = this.appSessionDataFactories.get(x);
+    return factory != null ? factory : this.localDataSource.getDataFactory(x);
+  }
+
+  /**
+   * @return number of sessions with off-heap records
+   */
+  public int getStoredSessionCount() {
+    return this.store.size();
+  }
+
+  /**
+   * @return number of sessions with off-heap records which also have a live object
+   */
+  public int getResidentSessionCount() {
+    return this.store.getResidentCount();
+  }
+
+  /**
+   * Returns the live object of a session with an off-heap record, creating it
+   * if it was dropped before.
+   */
+  private BaseSession makeResident(String sessionId, int index) {
+    BaseSession session = this.localDataSource.getSession(sessionId);
+    if (session != null && session.isAppSession()) {
+      this.store.markReferenced(index, sessionId);
+      return session;
+    }
+    synchronized (lock(sessionId)) {
+      session = this.localDataSource.getSession(sessionId);
+      if (session == null || !session.isAppSession()) {
+        session = makeLocal(sessionId, this.store.getType(index));
+        if (session == null) {
+          return null;
+        }
+      }
+    }
+    if (this.store.getResidentCount() > this.maxResidentSessions) {
+      sweep();
+    }
+    return session;
+  }
+
+  private BaseSession makeLocal(String sessionId, byte type) {
+    Class<? extends AppSession> appSessionInterfaceClass = AppSessionDataOffHeapImpl.getAppSessionIface(type);
+    try {
+      IAppSessionFactory fct = ((ISessionFactory) this.container.getSessionFactory()).getAppSessionFactory(appSessionInterfaceClass);
+      if (fct == null) {
+        logger.warn("Session with id:{}, is in off-heap data source, but no Application Session Factory for:{}.", sessionId, appSessionInterfaceClass);
+        return null;
+      }
+      BaseSession session = fct.getSession(sessionId, appSessionInterfaceClass);
+      if (session == null) {
+        return null;
+      }
+      // marks it resident
+      addSession(session);
+      this.localDataSource.setSessionListener(sessionId, (NetworkReqListener) session);
+      logger.debug("Session with id:{} restored from off-heap data source", sessionId);
+      return session;
+    }
+    catch (IllegalDiameterStateException e) {
+      logger.error("Failed to obtain factory from stack...", e);
+      return null;
+    }
+  }
+
+  /**
+   * Drops live objects of quiescent sessions not used recently, until no more
+   * than the allowed number are left. Only one thread sweeps at a time, others
+   * go on.
+   */
+  private void sweep() {
+    if (!this.sweepLock.tryLock()) {
+      return;
+    }
+    try {
+      int capacity = this.store.capacity();
+      for (int scanned = 0; scanned < capacity * 2 && this.store.getResidentCount() > this.maxResidentSessions; scanned++) {
+        int index = this.sweepHand;
+        this.sweepHand = index + 1 < capacity ? index + 1 : 0;
+        String sessionId = this.store.getSessionId(index);
+        if (sessionId == null) {
+          continue;
+        }
+        synchronized (lock(sessionId)) {
+          if (!AppSessionDataOffHeapImpl.isQuiescent(this.store, index, sessionId)) {
+            // answers and timers are delivered to the live object
+            continue;
+          }
+          if (this.store.sweep(index, sessionId)) {
+            logger.debug("Dropping live object of idle session with id:{}", sessionId);
+            this.localDataSource.removeSession(sessionId);
+          }
+        }
+      }
+    }
+    finally {
+      this.sweepLock.unlock();
+    }
+  }
+
+  private Object lock(String sessionId) {
+    return locks[sessionId.hashCode() & (LOCK_COUNT - 1)];
+  }
+
+}
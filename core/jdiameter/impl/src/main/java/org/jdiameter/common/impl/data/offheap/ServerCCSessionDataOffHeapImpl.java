@@ -0,0 +1,56 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.common.impl.data.offheap;
+
+import java.io.Serializable;
+
+/**
+ * Off-heap data shared by the credit control server sessions (CCA, Ro and Gx),
+ * which only differ in the type of their state.
+ */
+public abstract class ServerCCSessionDataOffHeapImpl extends AppSessionDataOffHeapImpl {
+
+  // stateless is the default, so the flag is stored inverted
+  private static final int STATEFUL = 0x01;
+
+  protected ServerCCSessionDataOffHeapImpl(SessionRecordStore store, String sessionId, byte type) {
+    super(store, sessionId, type);
+  }
+
+  public boolean isStateless() {
+    return !getFlag(STATEFUL);
+  }
+
+  public void setStateless(boolean stateless) {
+    setFlag(STATEFUL, !stateless);
+  }
+
+  public Serializable getTccTimerId() {
+    return getTimerId();
+  }
+
+  public void setTccTimerId(Serializable tccTimerId) {
+    setTimerId(tccTimerId);
+  }
+
+}
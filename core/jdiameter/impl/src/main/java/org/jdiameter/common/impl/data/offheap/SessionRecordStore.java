@@ -0,0 +1,517 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.common.impl.data.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed size session records kept in direct (off-heap) buffers. Records are
+ * allocated in segments of {@link #RECORD_SIZE} bytes each, freed records are
+ * zeroed and reused. Every record also has a few heap references next to it,
+ * for values which have no binary form, like timer handles.
+ *
+ * All access to a record goes through one of a set of striped locks. Record
+ * fields are checked against the session id the record was allocated for, so
+ * stale session data objects can not change a record reused by another
+ * session.
+ *
+ * Sessions are found through an index of record numbers kept in int arrays,
+ * the session id is compared with the one held by the record, so indexing a
+ * session creates no heap object.
+ */
+class SessionRecordStore {
+
+  static final int RECORD_SIZE = 48;
+
+  // record layout, the first bytes hold the hash of the owner session id
+  static final int OWNER_HASH = 0;
+  static final int TYPE = 4;
+  static final int FLAGS = 5;
+  static final int STATE = 6;
+  static final int RESIDENCY = 7;
+  static final int VENDOR_ID = 8;
+  static final int AUTH_APP_ID = 16;
+  static final int ACCT_APP_ID = 24;
+  static final int REQUESTED_ACTION = 32;
+  static final int CCFH = 36;
+  static final int DDFH = 40;
+
+  // heap references of a record
+  static final int REF_SESSION_ID = 0;
+  static final int REF_TIMER_ID = 1;
+  static final int REF_TIMER_REQUEST = 2;
+  static final int REF_BUFFER = 3;
+  static final int REF_COUNT = 4;
+
+  // residency bits
+  static final int RESIDENT = 0x01;
+  static final int REFERENCED = 0x02;
+
+  private static final int LOCK_COUNT = 64;
+  private static final int INDEX_SEGMENT_COUNT = 16;
+
+  private final int segmentShift;
+  private final int segmentMask;
+
+  private final Object[] locks = new Object[LOCK_COUNT];
+  private final IndexSegment[] indexSegments = new IndexSegment[INDEX_SEGMENT_COUNT];
+  private final AtomicInteger residentCount = new AtomicInteger();
+
+  // guarded by allocationLock, published through the volatile arrays
+  private final Object allocationLock = new Object();
+  private volatile ByteBuffer[] segments = new ByteBuffer[0];
+  private volatile Object[][] references = new Object[0][];
+  private volatile int capacity;
+  private int next;
+  private int[] free = new int[64];
+  private int freeCount;
+
+  /**
+   * @param segmentRecords number of records in each segment, rounded up to a power of two
+   */
+  SessionRecordStore(int segmentRecords) {
+    if (segmentRecords <= 0) {
+      throw new IllegalArgumentException("Segment size must be positive: " + segmentRecords);
+    }
+    int size = Integer.highestOneBit(segmentRecords);
+    if (size < segmentRecords) {
+      size <<= 1;
+    }
+    this.segmentShift = Integer.numberOfTrailingZeros(size);
+    this.segmentMask = size - 1;
+    for (int i = 0; i < LOCK_COUNT; i++) {
+      locks[i] = new Object();
+    }
+    for (int i = 0; i < INDEX_SEGMENT_COUNT; i++) {
+      indexSegments[i] = new IndexSegment();
+    }
+  }
+
+  /**
+   * @return index of the session record, or -1 if there is none
+   */
+  int indexOf(String sessionId) {
+    int hash = hash(sessionId);
+    return indexSegment(hash).get(sessionId, hash);
+  }
+
+  /**
+   * Returns the record of the session, allocating a zeroed one of the given
+   * type if there is none yet.
+   */
+  int allocate(String sessionId, byte type) {
+    int hash = hash(sessionId);
+    IndexSegment indexSegment = indexSegment(hash);
+    int existing = indexSegment.get(sessionId, hash);
+    if (existing >= 0) {
+      return existing;
+    }
+    synchronized (allocationLock) {
+      existing = indexSegment.get(sessionId, hash);
+      if (existing >= 0) {
+        return existing;
+      }
+      int index;
+      if (freeCount > 0) {
+        index = free[--freeCount];
+      }
+      else {
+        if (next == capacity) {
+          grow();
+        }
+        index = next++;
+      }
+      synchronized (lock(index)) {
+        ByteBuffer segment = segment(index);
+        int offset = offset(index);
+        segment.putInt(offset + OWNER_HASH, sessionId.hashCode());
+        segment.put(offset + TYPE, type);
+        references[index >>> segmentShift][reference(index, REF_SESSION_ID)] = sessionId;
+      }
+      indexSegment.put(hash, index);
+      return index;
+    }
+  }
+
+  /**
+   * Zeroes and releases the record of the session.
+   *
+   * @return true if there was a record to release
+   */
+  boolean free(String sessionId) {
+    int hash = hash(sessionId);
+    synchronized (allocationLock) {
+      int index = indexSegment(hash).remove(sessionId, hash);
+      if (index < 0) {
+        return false;
+      }
+      synchronized (lock(index)) {
+        ByteBuffer segment = segment(index);
+        int offset = offset(index);
+        if ((segment.get(offset + RESIDENCY) & RESIDENT) != 0) {
+          residentCount.decrementAndGet();
+        }
+        for (int i = 0; i < RECORD_SIZE; i += 8) {
+          segment.putLong(offset + i, 0L);
+        }
+        Object[] refs = references[index >>> segmentShift];
+        for (int i = 0; i < REF_COUNT; i++) {
+          refs[reference(index, i)] = null;
+        }
+      }
+      if (freeCount == free.length) {
+        int[] grown = new int[free.length * 2];
+        System.arraycopy(free, 0, grown, 0, freeCount);
+        free = grown;
+      }
+      free[freeCount++] = index;
+      return true;
+    }
+  }
+
+  int size() {
+    int size = 0;
+    for (IndexSegment indexSegment : indexSegments) {
+      size += indexSegment.size();
+    }
+    return size;
+  }
+
+  /**
+   * @return number of record indexes handed out so far, used or free
+   */
+  int capacity() {
+    synchronized (allocationLock) {
+      return next;
+    }
+  }
+
+  byte getType(int index) {
+    synchronized (lock(index)) {
+      return segment(index).get(offset(index) + TYPE);
+    }
+  }
+
+  byte getByte(int index, String owner, int field) {
+    synchronized (lock(index)) {
+      return checked(index, owner).get(offset(index) + field);
+    }
+  }
+
+  void putByte(int index, String owner, int field, byte value) {
+    synchronized (lock(index)) {
+      checked(index, owner).put(offset(index) + field, value);
+    }
+  }
+
+  /**
+   * Sets and clears bits of a byte field in one step.
+   *
+   * @return previous value of the field
+   */
+  byte updateByte(int index, String owner, int field, int set, int clear) {
+    synchronized (lock(index)) {
+      ByteBuffer segment = checked(index, owner);
+      byte old = segment.get(offset(index) + field);
+      segment.put(offset(index) + field, (byte) ((old | set) & ~clear));
+      return old;
+    }
+  }
+
+  int getInt(int index, String owner, int field) {
+    synchronized (lock(index)) {
+      return checked(index, owner).getInt(offset(index) + field);
+    }
+  }
+
+  void putInt(int index, String owner, int field, int value) {
+    synchronized (lock(index)) {
+      checked(index, owner).putInt(offset(index) + field, value);
+    }
+  }
+
+  long getLong(int index, String owner, int field) {
+    synchronized (lock(index)) {
+      return checked(index, owner).getLong(offset(index) + field);
+    }
+  }
+
+  void putLong(int index, String owner, int field, long value) {
+    synchronized (lock(index)) {
+      checked(index, owner).putLong(offset(index) + field, value);
+    }
+  }
+
+  Object getReference(int index, String owner, int ref) {
+    synchronized (lock(index)) {
+      checked(index, owner);
+      return references[index >>> segmentShift][reference(index, ref)];
+    }
+  }
+
+  void putReference(int index, String owner, int ref, Object value) {
+    synchronized (lock(index)) {
+      checked(index, owner);
+      references[index >>> segmentShift][reference(index, ref)] = value;
+    }
+  }
+
+  /**
+   * @return session id of the record, or null if it is free
+   */
+  String getSessionId(int index) {
+    synchronized (lock(index)) {
+      if (index >= capacity) {
+        return null;
+      }
+      return (String) references[index >>> segmentShift][reference(index, REF_SESSION_ID)];
+    }
+  }
+
+  // residency, used by the datasource to track which sessions have live objects
+
+  int getResidentCount() {
+    return residentCount.get();
+  }
+
+  /**
+   * Marks the session as resident and recently used.
+   */
+  void markResident(int index, String owner) {
+    synchronized (lock(index)) {
+      ByteBuffer segment = checked(index, owner);
+      byte old = segment.get(offset(index) + RESIDENCY);
+      segment.put(offset(index) + RESIDENCY, (byte) (old | RESIDENT | REFERENCED));
+      if ((old & RESIDENT) == 0) {
+        residentCount.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Marks the session as recently used, if it is resident.
+   */
+  void markReferenced(int index, String owner) {
+    synchronized (lock(index)) {
+      ByteBuffer segment = segment(index);
+      int offset = offset(index);
+      if (isOwner(index, owner)) {
+        byte old = segment.get(offset + RESIDENCY);
+        if ((old & RESIDENT) != 0) {
+          segment.put(offset + RESIDENCY, (byte) (old | REFERENCED));
+        }
+      }
+    }
+  }
+
+  /**
+   * One step of the clock sweep: a resident record used since the previous
+   * step gets a second chance, otherwise it stops being resident.
+   *
+   * @return true if the record stopped being resident
+   */
+  boolean sweep(int index, String owner) {
+    synchronized (lock(index)) {
+      ByteBuffer segment = segment(index);
+      int offset = offset(index);
+      if (!isOwner(index, owner)) {
+        return false;
+      }
+      byte old = segment.get(offset + RESIDENCY);
+      if ((old & RESIDENT) == 0) {
+        return false;
+      }
+      if ((old & REFERENCED) != 0) {
+        segment.put(offset + RESIDENCY, (byte) (old & ~REFERENCED));
+        return false;
+      }
+      segment.put(offset + RESIDENCY, (byte) 0);
+      residentCount.decrementAndGet();
+      return true;
+    }
+  }
+
+  private ByteBuffer checked(int index, String owner) {
+    if (!isOwner(index, owner)) {
+      throw new IllegalStateException("Session record " + index + " is no longer owned by this session");
+    }
+    return segment(index);
+  }
+
+  /**
+   * Tells whether the record is allocated for the given session. The hash
+   * rejects most other sessions without touching the heap reference.
+   */
+  private boolean isOwner(int index, String owner) {
+    if (index >= capacity || segment(index).getInt(offset(index) + OWNER_HASH) != owner.hashCode()) {
+      return false;
+    }
+    return owner.equals(references[index >>> segmentShift][reference(index, REF_SESSION_ID)]);
+  }
+
+  private ByteBuffer segment(int index) {
+    return segments[index >>> segmentShift];
+  }
+
+  private int offset(int index) {
+    return (index & segmentMask) * RECORD_SIZE;
+  }
+
+  private int reference(int index, int ref) {
+    return (index & segmentMask) * REF_COUNT + ref;
+  }
+
+  private Object lock(int index) {
+    return locks[index & (LOCK_COUNT - 1)];
+  }
+
+  private IndexSegment indexSegment(int hash) {
+    return indexSegments[(hash >>> 28) & (INDEX_SEGMENT_COUNT - 1)];
+  }
+
+  private static int hash(String sessionId) {
+    int h = sessionId.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private void grow() {
+    int count = segments.length;
+    int segmentRecords = segmentMask + 1;
+    ByteBuffer[] grownSegments = new ByteBuffer[count + 1];
+    Object[][] grownReferences = new Object[count + 1][];
+    System.arraycopy(segments, 0, grownSegments, 0, count);
+    System.arraycopy(references, 0, grownReferences, 0, count);
+    grownSegments[count] = ByteBuffer.allocateDirect(segmentRecords * RECORD_SIZE);
+    grownReferences[count] = new Object[segmentRecords * REF_COUNT];
+    references = grownReferences;
+    segments = grownSegments;
+    capacity = (count + 1) * segmentRecords;
+  }
+
+  /**
+   * Part of the session index, open addressing with linear probing. Slots
+   * hold the record number plus one, zero marks a free slot, and the hash of
+   * the session id so most probes do not have to look at the record.
+   */
+  private final class IndexSegment {
+
+    private int[] records = new int[16];
+    private int[] hashes = new int[16];
+    private int size;
+
+    /**
+     * @return record of the session, or -1 if it is not indexed
+     */
+    synchronized int get(String sessionId, int hash) {
+      return records[find(sessionId, hash)] - 1;
+    }
+
+    /**
+     * Indexes a record, the session must not be indexed yet.
+     */
+    synchronized void put(int hash, int record) {
+      if ((size + 1) * 2 > records.length) {
+        resize();
+      }
+      int slot = freeSlot(hash);
+      records[slot] = record + 1;
+      hashes[slot] = hash;
+      size++;
+    }
+
+    /**
+     * @return record the session was indexed with, or -1 if it was not
+     */
+    synchronized int remove(String sessionId, int hash) {
+      int slot = find(sessionId, hash);
+      int record = records[slot] - 1;
+      if (record >= 0) {
+        delete(slot);
+      }
+      return record;
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    private int find(String sessionId, int hash) {
+      int mask = records.length - 1;
+      int slot = hash & mask;
+      while (records[slot] != 0 && (hashes[slot] != hash || !sessionId.equals(sessionIdOf(records[slot] - 1)))) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    private int freeSlot(int hash) {
+      int mask = records.length - 1;
+      int slot = hash & mask;
+      while (records[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    /**
+     * Frees a slot, moving back entries of the same probe sequence.
+     */
+    private void delete(int slot) {
+      int mask = records.length - 1;
+      int free = slot;
+      int next = (free + 1) & mask;
+      while (records[next] != 0) {
+        int home = hashes[next] & mask;
+        // move entry unless its home slot lies after the free one
+        if (((next - home) & mask) >= ((next - free) & mask)) {
+          records[free] = records[next];
+          hashes[free] = hashes[next];
+          free = next;
+        }
+        next = (next + 1) & mask;
+      }
+      records[free] = 0;
+      size--;
+    }
+
+    private void resize() {
+      int[] oldRecords = records;
+      int[] oldHashes = hashes;
+      records = new int[oldRecords.length * 2];
+      hashes = new int[oldRecords.length * 2];
+      for (int i = 0; i < oldRecords.length; i++) {
+        if (oldRecords[i] != 0) {
+          int slot = freeSlot(oldHashes[i]);
+          records[slot] = oldRecords[i];
+          hashes[slot] = oldHashes[i];
+        }
+      }
+    }
+
+    // set before the record is indexed and cleared only after it is removed
+    private Object sessionIdOf(int record) {
+      return references[record >>> segmentShift][reference(record, REF_SESSION_ID)];
+    }
+  }
+}
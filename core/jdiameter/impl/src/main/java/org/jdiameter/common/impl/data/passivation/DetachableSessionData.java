@@ -0,0 +1,201 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.common.impl.data.passivation;
+
+import java.io.Serializable;
+
+import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.Request;
+import org.jdiameter.client.impl.app.gx.ClientGxSessionDataLocalImpl;
+import org.jdiameter.client.impl.app.rx.ClientRxSessionDataLocalImpl;
+import org.jdiameter.common.api.app.gx.ClientGxSessionState;
+import org.jdiameter.common.api.app.gx.ServerGxSessionState;
+import org.jdiameter.common.api.app.rx.ClientRxSessionState;
+import org.jdiameter.common.api.app.rx.ServerRxSessionState;
+import org.jdiameter.server.impl.app.gx.ServerGxSessionDataLocalImpl;
+import org.jdiameter.server.impl.app.rx.ServerRxSessionDataLocalImpl;
+
+/**
+ * Gx and Rx session data of the {@link PassivatingSessionDatasource}. When a
+ * session is passivated its data object is detached: setters called on it
+ * afterwards, by code which kept a reference to the old session object, fail
+ * with an IllegalStateException instead of changing data which is no longer
+ * read. The session has to be looked up again to get its restored data.
+ */
+final class DetachableSessionData {
+
+  private DetachableSessionData() {
+  }
+
+  interface Detachable {
+
+    void detach();
+  }
+
+  private static void checkAttached(boolean detached, String sessionId) {
+    if (detached) {
+      throw new IllegalStateException("Data of session " + sessionId + " was passivated, look the session up again to change it");
+    }
+  }
+
+  static final class ClientGx extends ClientGxSessionDataLocalImpl implements Detachable {
+
+    private volatile boolean detached;
+
+    public void detach() {
+      detached = true;
+    }
+
+    public void setApplicationId(ApplicationId applicationId) {
+      checkAttached(detached, getSessionId());
+      super.setApplicationId(applicationId);
+    }
+
+    public void setEventBased(boolean isEventBased) {
+      checkAttached(detached, getSessionId());
+      super.setEventBased(isEventBased);
+    }
+
+    public void setRequestTypeSet(boolean requestTypeSet) {
+      checkAttached(detached, getSessionId());
+      super.setRequestTypeSet(requestTypeSet);
+    }
+
+    public void setClientGxSessionState(ClientGxSessionState state) {
+      checkAttached(detached, getSessionId());
+      super.setClientGxSessionState(state);
+    }
+
+    public void setTxTimerId(Serializable txTimerId) {
+      checkAttached(detached, getSessionId());
+      super.setTxTimerId(txTimerId);
+    }
+
+    public void setTxTimerRequest(Request txTimerRequest) {
+      checkAttached(detached, getSessionId());
+      super.setTxTimerRequest(txTimerRequest);
+    }
+
+    public void setBuffer(Request buffer) {
+      checkAttached(detached, getSessionId());
+      super.setBuffer(buffer);
+    }
+
+    public void setGatheredRequestedAction(int gatheredRequestedAction) {
+      checkAttached(detached, getSessionId());
+      super.setGatheredRequestedAction(gatheredRequestedAction);
+    }
+
+    public void setGatheredCCFH(int gatheredCCFH) {
+      checkAttached(detached, getSessionId());
+      super.setGatheredCCFH(gatheredCCFH);
+    }
+
+    public void setGatheredDDFH(int gatheredDDFH) {
+      checkAttached(detached, getSessionId());
+      super.setGatheredDDFH(gatheredDDFH);
+    }
+  }
+
+  static final class ServerGx extends ServerGxSessionDataLocalImpl implements Detachable {
+
+    private volatile boolean detached;
+
+    public void detach() {
+      detached = true;
+    }
+
+    public void setApplicationId(ApplicationId applicationId) {
+      checkAttached(detached, getSessionId());
+      super.setApplicationId(applicationId);
+    }
+
+    public void setStateless(boolean stateless) {
+      checkAttached(detached, getSessionId());
+      super.setStateless(stateless);
+    }
+
+    public void setServerGxSessionState(ServerGxSessionState state) {
+      checkAttached(detached, getSessionId());
+      super.setServerGxSessionState(state);
+    }
+
+    public void setTccTimerId(Serializable tccTimerId) {
+      checkAttached(detached, getSessionId());
+      super.setTccTimerId(tccTimerId);
+    }
+  }
+
+  static final class ClientRx extends ClientRxSessionDataLocalImpl implements Detachable {
+
+    private volatile boolean detached;
+
+    public void detach() {
+      detached = true;
+    }
+
+    public void setApplicationId(ApplicationId applicationId) {
+      checkAttached(detached, getSessionId());
+      super.setApplicationId(applicationId);
+    }
+
+    public void setEventBased(boolean isEventBased) {
+      checkAttached(detached, getSessionId());
+      super.setEventBased(isEventBased);
+    }
+
+    public void setRequestTypeSet(boolean requestTypeSet) {
+      checkAttached(detached, getSessionId());
+      super.setRequestTypeSet(requestTypeSet);
+    }
+
+    public void setClientRxSessionState(ClientRxSessionState state) {
+      checkAttached(detached, getSessionId());
+      super.setClientRxSessionState(state);
+    }
+  }
+
+  static final class ServerRx extends ServerRxSessionDataLocalImpl implements Detachable {
+
+    private volatile boolean detached;
+
+    public void detach() {
+      detached = true;
+    }
+
+    public void setApplicationId(ApplicationId applicationId) {
+      checkAttached(detached, getSessionId());
+      super.setApplicationId(applicationId);
+    }
+
+    public void setStateless(boolean stateless) {
+      checkAttached(detached, getSessionId());
+      super.setStateless(stateless);
+    }
+
+    public void setServerRxSessionState(ServerRxSessionState state) {
+      checkAttached(detached, getSessionId());
+      super.setServerRxSessionState(state);
+    }
+  }
+}
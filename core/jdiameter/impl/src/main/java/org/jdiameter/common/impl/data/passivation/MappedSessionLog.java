@@ -0,0 +1,176 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.common.impl.data.passivation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append log of passivated session records in a memory mapped file. Records
+ * are only appended, space of removed records is reclaimed by moving the
+ * remaining ones to the start of the file when the end is reached. If that
+ * does not free enough room, the mapping is doubled.
+ */
+class MappedSessionLog {
+
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private MappedByteBuffer buffer;
+
+  // session id -> offset << 32 | length
+  private final HashMap<String, Long> records = new HashMap<String, Long>();
+  private int position;
+  private int garbage;
+
+  MappedSessionLog(File file, int initialSize) throws IOException {
+    this.file = new RandomAccessFile(file, "rw");
+    this.channel = this.file.getChannel();
+    this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, initialSize);
+  }
+
+  /**
+   * Appends the record of a session, replacing the previous one.
+   */
+  synchronized void put(String sessionId, byte[] record) throws IOException {
+    remove(sessionId);
+    if (position + record.length > buffer.capacity()) {
+      compact();
+      if (position + record.length > buffer.capacity()) {
+        grow(position + record.length);
+      }
+    }
+    buffer.position(position);
+    buffer.put(record);
+    records.put(sessionId, ((long) position << 32) | record.length);
+    position += record.length;
+  }
+
+  /**
+   * @return the record of a session, or null if there is none
+   */
+  synchronized byte[] get(String sessionId) {
+    Long location = records.get(sessionId);
+    return location != null ? read(location) : null;
+  }
+
+  /**
+   * Removes the record of a session.
+   *
+   * @return the record, or null if there was none
+   */
+  synchronized byte[] remove(String sessionId) {
+    Long location = records.remove(sessionId);
+    if (location == null) {
+      return null;
+    }
+    byte[] record = read(location);
+    garbage += record.length;
+    if (records.isEmpty()) {
+      position = 0;
+      garbage = 0;
+    }
+    return record;
+  }
+
+  synchronized boolean contains(String sessionId) {
+    return records.containsKey(sessionId);
+  }
+
+  synchronized int size() {
+    return records.size();
+  }
+
+  /**
+   * @return bytes used by records and by not yet reclaimed space
+   */
+  synchronized int getUsedBytes() {
+    return position;
+  }
+
+  private byte[] read(long location) {
+    byte[] record = new byte[length(location)];
+    buffer.position(offset(location));
+    buffer.get(record);
+    return record;
+  }
+
+  private void compact() {
+    if (garbage == 0) {
+      return;
+    }
+    ArrayList<Map.Entry<String, Long>> live = new ArrayList<Map.Entry<String, Long>>(records.entrySet());
+    Collections.sort(live, new Comparator<Map.Entry<String, Long>>() {
+      public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2) {
+        return o1.getValue().compareTo(o2.getValue());
+      }
+    });
+    int target = 0;
+    byte[] copy = new byte[256];
+    for (Map.Entry<String, Long> entry : live) {
+      long location = entry.getValue();
+      int offset = offset(location);
+      int length = length(location);
+      if (offset != target) {
+        if (copy.length < length) {
+          copy = new byte[length];
+        }
+        buffer.position(offset);
+        buffer.get(copy, 0, length);
+        buffer.position(target);
+        buffer.put(copy, 0, length);
+        entry.setValue(((long) target << 32) | length);
+      }
+      target += length;
+    }
+    position = target;
+    garbage = 0;
+  }
+
+  private void grow(int needed) throws IOException {
+    int size = buffer.capacity();
+    while (size < needed) {
+      if (size > Integer.MAX_VALUE / 2) {
+        throw new IOException("Session log is full");
+      }
+      size <<= 1;
+    }
+    buffer.force();
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+  }
+
+  private static int offset(long location) {
+    return (int) (location >>> 32);
+  }
+
+  private static int length(long location) {
+    return (int) location;
+  }
+}
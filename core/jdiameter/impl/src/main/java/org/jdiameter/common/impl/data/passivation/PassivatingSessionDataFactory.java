@@ -0,0 +1,64 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.common.impl.data.passivation;
+
+import org.jdiameter.api.app.AppSession;
+import org.jdiameter.common.api.app.IAppSessionData;
+import org.jdiameter.common.api.app.IAppSessionDataFactory;
+
+/**
+ * Session data factory of the {@link PassivatingSessionDatasource}. Data of
+ * passivated sessions is restored from the log, new data is created by the
+ * datasource, or by the wrapped local factory for sessions which can not be
+ * passivated.
+ */
+public class PassivatingSessionDataFactory<T extends IAppSessionData> implements IAppSessionDataFactory<T> {
+
+  private PassivatingSessionDatasource datasource;
+  private IAppSessionDataFactory<T> localFactory;
+
+  PassivatingSessionDataFactory(PassivatingSessionDatasource datasource, IAppSessionDataFactory<T> localFactory) {
+    this.datasource = datasource;
+    this.localFactory = localFactory;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.jdiameter.common.api.app.IAppSessionDataFactory#getAppSessionData(java.lang.Class, java.lang.String)
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public T getAppSessionData(Class<? extends AppSession> clazz, String sessionId) {
+    T data = (T) datasource.restoreData(sessionId);
+    if (data == null) {
+      data = (T) datasource.createData(clazz, sessionId);
+    }
+    if (data == null) {
+      data = localFactory.getAppSessionData(clazz, sessionId);
+    }
+    datasource.track(sessionId, data);
+    return data;
+  }
+
+}
@@ -0,0 +1,475 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.common.impl.data.passivation;
+
+import static org.jdiameter.client.impl.helpers.Parameters.SessionPassivationIdleTime;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionPassivationLogFile;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionPassivationMaxResident;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jdiameter.api.BaseSession;
+import org.jdiameter.api.Configuration;
+import org.jdiameter.api.IllegalDiameterStateException;
+import org.jdiameter.api.NetworkReqListener;
+import org.jdiameter.api.app.AppSession;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.client.api.ISessionFactory;
+import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.jdiameter.common.api.app.IAppSessionData;
+import org.jdiameter.common.api.app.IAppSessionDataFactory;
+import org.jdiameter.common.api.app.IAppSessionFactory;
+import org.jdiameter.common.api.app.gx.IGxSessionData;
+import org.jdiameter.common.api.app.rx.IRxSessionData;
+import org.jdiameter.common.api.concurrent.IConcurrentFactory;
+import org.jdiameter.common.api.data.ISessionDatasource;
+import org.jdiameter.common.impl.data.LocalDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Datasource implementation for {@link ISessionDatasource} which passivates
+ * idle Gx and Rx sessions: their data is written to a memory mapped append log
+ * and the live session objects are dropped. A passivated session is restored,
+ * through its application session factory, on the next message or timer for
+ * it. Other applications are kept in memory, as in {@link LocalDataSource}.
+ *
+ * Sessions are passivated when they were not used for the configured idle
+ * time, and, least recently used first, when there are more than the
+ * configured number of them in memory. A session handed out since it was
+ * last seen idle is not passivated. Applications should look sessions up by
+ * id rather than keep references to them: once a session is passivated its
+ * data is detached, and changing it through the old session object fails
+ * with an IllegalStateException.
+ *
+ * The passivation log stays open when the datasource is stopped, so
+ * passivated sessions survive a restart as the ones in memory do.
+ */
+public class PassivatingSessionDatasource implements ISessionDatasource {
+
+  private static final Logger logger = LoggerFactory.getLogger(PassivatingSessionDatasource.class);
+
+  private static final int DEFAULT_LOG_SIZE = 16 * 1024 * 1024;
+  private static final int LOCK_COUNT = 64;
+
+  private IContainer container;
+  private ISessionDatasource localDataSource;
+  private long idleTime;
+  private int maxResidentSessions;
+  private MappedSessionLog log;
+  private SessionDataCodec codec;
+
+  // provided by impl, no way to change that, no conf! :)
+  protected HashMap<Class<? extends IAppSessionData>, IAppSessionDataFactory<? extends IAppSessionData>> appSessionDataFactories = new HashMap<Class<? extends IAppSessionData>, IAppSessionDataFactory<? extends IAppSessionData>>();
+
+  private final ConcurrentHashMap<String, ResidentSession> residentSessions = new ConcurrentHashMap<String, ResidentSession>();
+  private final ConcurrentHashMap<String, PassivatedSession> passivatedSessions = new ConcurrentHashMap<String, PassivatedSession>();
+
+  // serialize passivation and restoration of a session
+  private final Object[] locks = new Object[LOCK_COUNT];
+  private final ReentrantLock scanLock = new ReentrantLock();
+  private ScheduledFuture<?> idleTask;
+
+  public PassivatingSessionDatasource(IContainer container) throws IOException {
+    Configuration config = container.getConfiguration();
+    long idleTime = (Long) SessionPassivationIdleTime.defValue();
+    int maxResidentSessions = (Integer) SessionPassivationMaxResident.defValue();
+    String logFile = (String) SessionPassivationLogFile.defValue();
+    if (config != null) {
+      idleTime = config.getLongValue(SessionPassivationIdleTime.ordinal(), idleTime);
+      maxResidentSessions = config.getIntValue(SessionPassivationMaxResident.ordinal(), maxResidentSessions);
+      logFile = config.getStringValue(SessionPassivationLogFile.ordinal(), logFile);
+    }
+    init(container, new LocalDataSource(container), idleTime, maxResidentSessions, logFile.length() > 0 ? new File(logFile) : null);
+  }
+
+  /**
+   * @param container stack container, may be null if sessions are never restored
+   * @param localDataSource datasource for live sessions
+   * @param idleTime milliseconds without activity after which a session is passivated
+   * @param maxResidentSessions number of passivatable sessions kept live
+   * @param logFile file for the passivation log, or null for a temporary file
+   */
+  public PassivatingSessionDatasource(IContainer container, ISessionDatasource localDataSource, long idleTime, int maxResidentSessions, File logFile) throws IOException {
+    init(container, localDataSource, idleTime, maxResidentSessions, logFile);
+  }
+
+  private void init(IContainer container, ISessionDatasource localDataSource, long idleTime, int maxResidentSessions, File logFile) throws IOException {
+    this.container = container;
+    this.localDataSource = localDataSource;
+    this.idleTime = idleTime;
+    this.maxResidentSessions = maxResidentSessions;
+    if (logFile == null) {
+      logFile = File.createTempFile("jdiameter-sessions", ".log");
+      logFile.deleteOnExit();
+    }
+    this.log = new MappedSessionLog(logFile, DEFAULT_LOG_SIZE);
+    IMessageParser parser = container != null ? container.getAssemblerFacility().getComponentInstance(IMessageParser.class) : new MessageParser();
+    this.codec = new SessionDataCodec(parser);
+    for (int i = 0; i < LOCK_COUNT; i++) {
+      locks[i] = new Object();
+    }
+    // this is coded, its tied to specific impl of SessionDatasource
+    appSessionDataFactories.put(IGxSessionData.class, wrap(IGxSessionData.class));
+    appSessionDataFactories.put(IRxSessionData.class, wrap(IRxSessionData.class));
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T extends IAppSessionData> PassivatingSessionDataFactory<T> wrap(Class<T> x) {
+    return new PassivatingSessionDataFactory<T>(this, (IAppSessionDataFactory<T>) localDataSource.getDataFactory(x));
+  }
+
+  public boolean exists(String sessionId) {
+    return this.localDataSource.exists(sessionId) || this.passivatedSessions.containsKey(sessionId);
+  }
+
+  public void addSession(BaseSession session) {
+    this.localDataSource.addSession(session);
+    touch(session.getSessionId());
+  }
+
+  public BaseSession getSession(String sessionId) {
+    // a session is only passivated under its lock, and not once touched
+    synchronized (lock(sessionId)) {
+      BaseSession session = this.localDataSource.getSession(sessionId);
+      if (session != null && session.isAppSession()) {
+        touch(sessionId);
+        return session;
+      }
+      if (this.passivatedSessions.containsKey(sessionId)) {
+        return makeLocal(sessionId);
+      }
+      return session;
+    }
+  }
+
+  public NetworkReqListener getSessionListener(String sessionId) {
+    synchronized (lock(sessionId)) {
+      if (this.passivatedSessions.containsKey(sessionId)) {
+        makeLocal(sessionId);
+      }
+      else {
+        touch(sessionId);
+      }
+      return this.localDataSource.getSessionListener(sessionId);
+    }
+  }
+
+  public void setSessionListener(String sessionId, NetworkReqListener data) {
+    if (!this.localDataSource.exists(sessionId) && this.passivatedSessions.containsKey(sessionId)) {
+      makeLocal(sessionId);
+    }
+    this.localDataSource.setSessionListener(sessionId, data);
+  }
+
+  public NetworkReqListener removeSessionListener(String sessionId) {
+    // passivated sessions have no listener registered
+    return this.localDataSource.removeSessionListener(sessionId);
+  }
+
+  public void removeSession(String sessionId) {
+    logger.debug("removeSession({})", sessionId);
+    this.localDataSource.removeSession(sessionId);
+    this.residentSessions.remove(sessionId);
+    if (this.passivatedSessions.remove(sessionId) != null) {
+      this.log.remove(sessionId);
+    }
+  }
+
+  public void start() {
+    this.localDataSource.start();
+    if (this.container != null && this.idleTask == null) {
+      long period = Math.max(1000, Math.min(this.idleTime / 10, 60000));
+      this.idleTask = this.container.getAssemblerFacility().getComponentInstance(IConcurrentFactory.class).getScheduledExecutorService(IConcurrentFactory.ScheduledExecServices.ApplicationSession.name()).scheduleWithFixedDelay(new Runnable() {
+        public void run() {
+          passivateIdleSessions();
+        }
+      }, period, period, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public void stop() {
+    if (this.idleTask != null) {
+      this.idleTask.cancel(false);
+      this.idleTask = null;
+    }
+    // passivated sessions stay in the log, to be restored once started again
+    this.localDataSource.stop();
+  }
+
+  public boolean isClustered() {
+    return false;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.jdiameter.common.api.data.ISessionDatasource#getDataFactory(java. lang.Class)
+   */
+  @Override
+  public IAppSessionDataFactory<? extends IAppSessionData> getDataFactory(Class<? extends IAppSessionData> x) {
+    IAppSessionDataFactory<? extends IAppSessionData> factory = this.appSessionDataFactories.get(x);
+    return factory != null ? factory : this.localDataSource.getDataFactory(x);
+  }
+
+  /**
+   * @return number of passivated sessions
+   */
+  public int getPassivatedSessionCount() {
+    return this.passivatedSessions.size();
+  }
+
+  /**
+   * @return number of passivatable sessions in memory
+   */
+  public int getResidentSessionCount() {
+    return this.residentSessions.size();
+  }
+
+  /**
+   * Passivates sessions idle for longer than the idle time and, least recently
+   * used first, the ones above the resident limit. Called periodically once
+   * started, and when the limit is exceeded.
+   */
+  public void passivateIdleSessions() {
+    if (!this.scanLock.tryLock()) {
+      return;
+    }
+    try {
+      long idleSince = System.currentTimeMillis() - this.idleTime;
+      // go a tenth below the limit, so this does not run on every new session
+      int excess = this.residentSessions.size() - this.maxResidentSessions;
+      int toEvict = excess > 0 ? excess + this.maxResidentSessions / 10 : 0;
+      ArrayList<ResidentSession> candidates = new ArrayList<ResidentSession>();
+      for (ResidentSession resident : this.residentSessions.values()) {
+        BaseSession session = this.localDataSource.getSession(resident.sessionId);
+        if (session != null && session.getLastAccessedTime() > resident.lastAccessed) {
+          // used by the application
+          resident.lastAccessed = session.getLastAccessedTime();
+        }
+        resident.sortKey = resident.lastAccessed;
+        if (toEvict > 0 || resident.sortKey <= idleSince) {
+          candidates.add(resident);
+        }
+      }
+      if (toEvict > 0) {
+        Collections.sort(candidates, new Comparator<ResidentSession>() {
+          public int compare(ResidentSession o1, ResidentSession o2) {
+            return o1.sortKey < o2.sortKey ? -1 : (o1.sortKey == o2.sortKey ? 0 : 1);
+          }
+        });
+      }
+      int passivated = 0;
+      for (ResidentSession resident : candidates) {
+        if (resident.sortKey > idleSince && passivated >= toEvict) {
+          break;
+        }
+        if (passivate(resident.sessionId, resident.sortKey)) {
+          passivated++;
+        }
+      }
+      if (passivated > 0) {
+        logger.debug("Passivated {} sessions, {} still in memory", passivated, this.residentSessions.size());
+      }
+    }
+    finally {
+      this.scanLock.unlock();
+    }
+  }
+
+  /**
+   * Writes the data of a session to the passivation log and drops its live objects.
+   *
+   * @return true if the session was passivated
+   */
+  public boolean passivate(String sessionId) {
+    return passivate(sessionId, Long.MAX_VALUE);
+  }
+
+  /**
+   * Passivates a session unless it was used after the given time, checked
+   * under its lock, so it is not handed out while being passivated.
+   */
+  private boolean passivate(String sessionId, long notUsedSince) {
+    synchronized (lock(sessionId)) {
+      ResidentSession resident = this.residentSessions.get(sessionId);
+      if (resident == null || !this.codec.isQuiescent(resident.data)) {
+        return false;
+      }
+      long lastAccessed = resident.lastAccessed;
+      BaseSession session = this.localDataSource.getSession(sessionId);
+      if (session != null) {
+        lastAccessed = Math.max(lastAccessed, session.getLastAccessedTime());
+      }
+      if (lastAccessed > notUsedSince) {
+        // used since it was chosen
+        return false;
+      }
+      this.residentSessions.remove(sessionId);
+      try {
+        this.log.put(sessionId, this.codec.encode(resident.data));
+      }
+      catch (IOException e) {
+        logger.warn("Failed to passivate session with id:" + sessionId + ", keeping it in memory.", e);
+        this.residentSessions.put(sessionId, resident);
+        return false;
+      }
+      this.passivatedSessions.put(sessionId, new PassivatedSession(this.codec.getAppSessionIface(resident.data), this.codec.getTimerId(resident.data)));
+      this.localDataSource.removeSession(sessionId);
+      if (resident.data instanceof DetachableSessionData.Detachable) {
+        ((DetachableSessionData.Detachable) resident.data).detach();
+      }
+      logger.debug("Passivated session with id:{}", sessionId);
+      return true;
+    }
+  }
+
+  /**
+   * Starts tracking the use of passivatable session data.
+   */
+  void track(String sessionId, IAppSessionData data) {
+    if (this.codec.isSupported(data)) {
+      this.residentSessions.put(sessionId, new ResidentSession(sessionId, data));
+      if (this.residentSessions.size() > this.maxResidentSessions) {
+        passivateIdleSessions();
+      }
+    }
+  }
+
+  /**
+   * @return new data which can be passivated, or null if the application is not supported
+   */
+  IAppSessionData createData(Class<? extends AppSession> appSessionIface, String sessionId) {
+    return this.codec.create(appSessionIface, sessionId);
+  }
+
+  /**
+   * @return data of a passivated session, or null if not passivated or it
+   *         could not be read, in which case its record is left in the log
+   */
+  IAppSessionData restoreData(String sessionId) {
+    PassivatedSession passivated = this.passivatedSessions.get(sessionId);
+    if (passivated == null) {
+      return null;
+    }
+    byte[] record = this.log.get(sessionId);
+    if (record == null) {
+      logger.error("No passivated data for session with id:{}, starting with new data.", sessionId);
+      this.passivatedSessions.remove(sessionId);
+      return null;
+    }
+    IAppSessionData data;
+    try {
+      data = this.codec.decode(sessionId, record);
+    }
+    catch (IOException e) {
+      logger.error("Failed to restore session with id:" + sessionId + ", starting with new data.", e);
+      return null;
+    }
+    this.codec.setTimerId(data, passivated.timerId);
+    // only dropped once restored
+    this.passivatedSessions.remove(sessionId);
+    this.log.remove(sessionId);
+    return data;
+  }
+
+  private void touch(String sessionId) {
+    ResidentSession resident = this.residentSessions.get(sessionId);
+    if (resident != null) {
+      resident.lastAccessed = System.currentTimeMillis();
+    }
+  }
+
+  private BaseSession makeLocal(String sessionId) {
+    synchronized (lock(sessionId)) {
+      BaseSession session = this.localDataSource.getSession(sessionId);
+      if (session != null && session.isAppSession()) {
+        return session;
+      }
+      PassivatedSession passivated = this.passivatedSessions.get(sessionId);
+      if (passivated == null || this.container == null) {
+        return session;
+      }
+      try {
+        IAppSessionFactory fct = ((ISessionFactory) this.container.getSessionFactory()).getAppSessionFactory(passivated.appSessionInterfaceClass);
+        if (fct == null) {
+          logger.warn("Session with id:{}, is passivated, but no Application Session Factory for:{}.", sessionId, passivated.appSessionInterfaceClass);
+          return null;
+        }
+        // restores the data through our data factory
+        session = fct.getSession(sessionId, passivated.appSessionInterfaceClass);
+        if (session == null) {
+          return null;
+        }
+        addSession(session);
+        this.localDataSource.setSessionListener(sessionId, (NetworkReqListener) session);
+        logger.debug("Restored passivated session with id:{}", sessionId);
+        return session;
+      }
+      catch (IllegalDiameterStateException e) {
+        logger.error("Failed to obtain factory from stack...", e);
+        return null;
+      }
+    }
+  }
+
+  private Object lock(String sessionId) {
+    return locks[sessionId.hashCode() & (LOCK_COUNT - 1)];
+  }
+
+  private static class ResidentSession {
+    final String sessionId;
+    final IAppSessionData data;
+    volatile long lastAccessed = System.currentTimeMillis();
+    // lastAccessed as seen by the running scan
+    long sortKey;
+
+    ResidentSession(String sessionId, IAppSessionData data) {
+      this.sessionId = sessionId;
+      this.data = data;
+    }
+  }
+
+  private static class PassivatedSession {
+    final Class<? extends AppSession> appSessionInterfaceClass;
+    // timers stay scheduled while passivated
+    final Serializable timerId;
+
+    PassivatedSession(Class<? extends AppSession> appSessionInterfaceClass, Serializable timerId) {
+      this.appSessionInterfaceClass = appSessionInterfaceClass;
+      this.timerId = timerId;
+    }
+  }
+
+}
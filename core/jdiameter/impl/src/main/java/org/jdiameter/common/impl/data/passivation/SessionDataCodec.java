@@ -0,0 +1,298 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.common.impl.data.passivation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.AvpDataException;
+import org.jdiameter.api.Request;
+import org.jdiameter.api.app.AppSession;
+import org.jdiameter.api.gx.ClientGxSession;
+import org.jdiameter.api.gx.ServerGxSession;
+import org.jdiameter.api.rx.ClientRxSession;
+import org.jdiameter.api.rx.ServerRxSession;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.client.api.parser.ParseException;
+import org.jdiameter.client.impl.app.gx.ClientGxSessionDataLocalImpl;
+import org.jdiameter.client.impl.app.gx.IClientGxSessionData;
+import org.jdiameter.client.impl.app.rx.ClientRxSessionDataLocalImpl;
+import org.jdiameter.client.impl.app.rx.IClientRxSessionData;
+import org.jdiameter.common.api.app.AppSessionDataLocalImpl;
+import org.jdiameter.common.api.app.IAppSessionData;
+import org.jdiameter.common.api.app.gx.ClientGxSessionState;
+import org.jdiameter.common.api.app.gx.ServerGxSessionState;
+import org.jdiameter.common.api.app.rx.ClientRxSessionState;
+import org.jdiameter.common.api.app.rx.ServerRxSessionState;
+import org.jdiameter.server.impl.app.gx.IServerGxSessionData;
+import org.jdiameter.server.impl.app.gx.ServerGxSessionDataLocalImpl;
+import org.jdiameter.server.impl.app.rx.IServerRxSessionData;
+import org.jdiameter.server.impl.app.rx.ServerRxSessionDataLocalImpl;
+
+/**
+ * Binary form of passivated Gx and Rx session data. Pending requests are
+ * stored encoded. Timer ids refer to timers still scheduled in this JVM, so
+ * they are not part of the record and have to be kept by the caller.
+ */
+class SessionDataCodec {
+
+  // record types, index into APP_SESSION_IFACES
+  private static final byte CLIENT_GX = 1;
+  private static final byte SERVER_GX = 2;
+  private static final byte CLIENT_RX = 3;
+  private static final byte SERVER_RX = 4;
+
+  private static final Class<?>[] APP_SESSION_IFACES = new Class<?>[] {
+    null, ClientGxSession.class, ServerGxSession.class, ClientRxSession.class, ServerRxSession.class
+  };
+
+  private IMessageParser parser;
+
+  SessionDataCodec(IMessageParser parser) {
+    this.parser = parser;
+  }
+
+  /**
+   * @return true if the data can be passivated
+   */
+  boolean isSupported(IAppSessionData data) {
+    return typeOf(data) != 0;
+  }
+
+  /**
+   * @return false while a client session waits for an answer, which would be
+   *         delivered to the live session object
+   */
+  boolean isQuiescent(IAppSessionData data) {
+    if (data instanceof IClientGxSessionData) {
+      ClientGxSessionState state = ((IClientGxSessionData) data).getClientGxSessionState();
+      return state == ClientGxSessionState.IDLE || state == ClientGxSessionState.OPEN;
+    }
+    else if (data instanceof IClientRxSessionData) {
+      ClientRxSessionState state = ((IClientRxSessionData) data).getClientRxSessionState();
+      return state == ClientRxSessionState.IDLE || state == ClientRxSessionState.OPEN;
+    }
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  Class<? extends AppSession> getAppSessionIface(IAppSessionData data) {
+    return (Class<? extends AppSession>) APP_SESSION_IFACES[typeOf(data)];
+  }
+
+  Serializable getTimerId(IAppSessionData data) {
+    if (data instanceof IClientGxSessionData) {
+      return ((IClientGxSessionData) data).getTxTimerId();
+    }
+    else if (data instanceof IServerGxSessionData) {
+      return ((IServerGxSessionData) data).getTccTimerId();
+    }
+    return null;
+  }
+
+  void setTimerId(IAppSessionData data, Serializable timerId) {
+    if (data instanceof IClientGxSessionData) {
+      ((IClientGxSessionData) data).setTxTimerId(timerId);
+    }
+    else if (data instanceof IServerGxSessionData) {
+      ((IServerGxSessionData) data).setTccTimerId(timerId);
+    }
+  }
+
+  /**
+   * @return new data for a session of the given application session
+   *         interface, or null if it can not be passivated
+   */
+  IAppSessionData create(Class<? extends AppSession> appSessionIface, String sessionId) {
+    AppSessionDataLocalImpl data;
+    if (appSessionIface.equals(ClientGxSession.class)) {
+      data = new DetachableSessionData.ClientGx();
+    }
+    else if (appSessionIface.equals(ServerGxSession.class)) {
+      data = new DetachableSessionData.ServerGx();
+    }
+    else if (appSessionIface.equals(ClientRxSession.class)) {
+      data = new DetachableSessionData.ClientRx();
+    }
+    else if (appSessionIface.equals(ServerRxSession.class)) {
+      data = new DetachableSessionData.ServerRx();
+    }
+    else {
+      return null;
+    }
+    data.setSessionId(sessionId);
+    return data;
+  }
+
+  byte[] encode(IAppSessionData data) throws IOException {
+    byte type = typeOf(data);
+    if (type == 0) {
+      throw new IllegalArgumentException("Session data can not be passivated: " + data);
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(type);
+    ApplicationId applicationId = data.getApplicationId();
+    out.writeBoolean(applicationId != null);
+    if (applicationId != null) {
+      out.writeLong(applicationId.getVendorId());
+      out.writeLong(applicationId.getAuthAppId());
+      out.writeLong(applicationId.getAcctAppId());
+    }
+    switch (type) {
+    case CLIENT_GX:
+      IClientGxSessionData clientGx = (IClientGxSessionData) data;
+      out.writeBoolean(clientGx.isEventBased());
+      out.writeBoolean(clientGx.isRequestTypeSet());
+      out.writeByte(clientGx.getClientGxSessionState().ordinal());
+      out.writeInt(clientGx.getGatheredRequestedAction());
+      out.writeInt(clientGx.getGatheredCCFH());
+      out.writeInt(clientGx.getGatheredDDFH());
+      writeRequest(out, clientGx.getTxTimerRequest());
+      writeRequest(out, clientGx.getBuffer());
+      break;
+    case SERVER_GX:
+      IServerGxSessionData serverGx = (IServerGxSessionData) data;
+      out.writeBoolean(serverGx.isStateless());
+      out.writeByte(serverGx.getServerGxSessionState().ordinal());
+      break;
+    case CLIENT_RX:
+      IClientRxSessionData clientRx = (IClientRxSessionData) data;
+      out.writeBoolean(clientRx.isEventBased());
+      out.writeBoolean(clientRx.isRequestTypeSet());
+      out.writeByte(clientRx.getClientRxSessionState().ordinal());
+      break;
+    case SERVER_RX:
+      IServerRxSessionData serverRx = (IServerRxSessionData) data;
+      out.writeBoolean(serverRx.isStateless());
+      out.writeByte(serverRx.getServerRxSessionState().ordinal());
+      break;
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  IAppSessionData decode(String sessionId, byte[] record) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+    byte type = in.readByte();
+    ApplicationId applicationId = null;
+    if (in.readBoolean()) {
+      long vendorId = in.readLong();
+      long authAppId = in.readLong();
+      long acctAppId = in.readLong();
+      applicationId = acctAppId != ApplicationId.UNDEFINED_VALUE ? ApplicationId.createByAccAppId(vendorId, acctAppId) : ApplicationId.createByAuthAppId(vendorId, authAppId);
+    }
+    switch (type) {
+    case CLIENT_GX:
+      ClientGxSessionDataLocalImpl clientGx = new DetachableSessionData.ClientGx();
+      clientGx.setSessionId(sessionId);
+      clientGx.setApplicationId(applicationId);
+      clientGx.setEventBased(in.readBoolean());
+      clientGx.setRequestTypeSet(in.readBoolean());
+      clientGx.setClientGxSessionState(ClientGxSessionState.values()[in.readByte()]);
+      clientGx.setGatheredRequestedAction(in.readInt());
+      clientGx.setGatheredCCFH(in.readInt());
+      clientGx.setGatheredDDFH(in.readInt());
+      clientGx.setTxTimerRequest(readRequest(in));
+      clientGx.setBuffer(readRequest(in));
+      return clientGx;
+    case SERVER_GX:
+      ServerGxSessionDataLocalImpl serverGx = new DetachableSessionData.ServerGx();
+      serverGx.setSessionId(sessionId);
+      serverGx.setApplicationId(applicationId);
+      serverGx.setStateless(in.readBoolean());
+      serverGx.setServerGxSessionState(ServerGxSessionState.values()[in.readByte()]);
+      return serverGx;
+    case CLIENT_RX:
+      ClientRxSessionDataLocalImpl clientRx = new DetachableSessionData.ClientRx();
+      clientRx.setSessionId(sessionId);
+      clientRx.setApplicationId(applicationId);
+      clientRx.setEventBased(in.readBoolean());
+      clientRx.setRequestTypeSet(in.readBoolean());
+      clientRx.setClientRxSessionState(ClientRxSessionState.values()[in.readByte()]);
+      return clientRx;
+    case SERVER_RX:
+      ServerRxSessionDataLocalImpl serverRx = new DetachableSessionData.ServerRx();
+      serverRx.setSessionId(sessionId);
+      serverRx.setApplicationId(applicationId);
+      serverRx.setStateless(in.readBoolean());
+      serverRx.setServerRxSessionState(ServerRxSessionState.values()[in.readByte()]);
+      return serverRx;
+    default:
+      throw new IOException("Unknown session record type: " + type);
+    }
+  }
+
+  private void writeRequest(DataOutputStream out, Request request) throws IOException {
+    if (request == null) {
+      out.writeInt(-1);
+      return;
+    }
+    try {
+      ByteBuffer buffer = parser.encodeMessage((IMessage) request);
+      out.writeInt(buffer.remaining());
+      out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    }
+    catch (ParseException e) {
+      throw new IOException("Failed to encode request: " + e.getMessage());
+    }
+  }
+
+  private Request readRequest(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] data = new byte[length];
+    in.readFully(data);
+    try {
+      return (Request) parser.createMessage(ByteBuffer.wrap(data));
+    }
+    catch (AvpDataException e) {
+      throw new IOException("Failed to decode request: " + e.getMessage());
+    }
+  }
+
+  private static byte typeOf(IAppSessionData data) {
+    if (data instanceof IClientGxSessionData) {
+      return CLIENT_GX;
+    }
+    else if (data instanceof IServerGxSessionData) {
+      return SERVER_GX;
+    }
+    else if (data instanceof IClientRxSessionData) {
+      return CLIENT_RX;
+    }
+    else if (data instanceof IServerRxSessionData) {
+      return SERVER_RX;
+    }
+    return 0;
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.common.impl.statistic;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.jdiameter.common.api.statistic.IHistogramRecord;
+
+/**
+ * Histogram with log-linear buckets, as in HdrHistogram: values below 64 are
+ * counted exactly, above that each power of two is split in 32 buckets, so a
+ * value is known within about 3%. Recording is a bucket lookup and two
+ * atomic increments, values above {@link #MAX_VALUE} are counted in the last
+ * bucket.
+ */
+class HistogramRecordImpl extends StatisticRecordImpl implements IHistogramRecord {
+
+  private static final int SUB_BUCKET_BITS = 6;
+
+  static final long MAX_VALUE = (1L << 36) - 1;
+
+  private static final double[] PERCENTILES = { 50, 99, 99.9 };
+
+  private final AtomicLongArray buckets = new AtomicLongArray(index(MAX_VALUE) + 1);
+  private final AtomicLong max = new AtomicLong();
+
+  public HistogramRecordImpl(String name, String description) {
+    super(name, description);
+  }
+
+  static int index(long value) {
+    int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+    return (shift << (SUB_BUCKET_BITS - 1)) + (int) (value >>> shift);
+  }
+
+  /**
+   * @return highest value counted in the given bucket
+   */
+  static long highestValue(int index) {
+    int shift = Math.max(0, (index >> (SUB_BUCKET_BITS - 1)) - 1);
+    long lowest = (long) (index - (shift << (SUB_BUCKET_BITS - 1))) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  public void record(long value) {
+    if (enable) {
+      value = Math.min(Math.max(value, 0), MAX_VALUE);
+      buckets.incrementAndGet(index(value));
+      this.value.incrementAndGet();
+      for (long current = max.get(); value > current && !max.compareAndSet(current, value); current = max.get()) {
+        // retry
+      }
+    }
+  }
+
+  public long getCount() {
+    return value.get();
+  }
+
+  public long getValueAtPercentile(double percentile) {
+    long count = getCount();
+    if (count == 0) {
+      return 0;
+    }
+    long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < buckets.length(); i++) {
+      seen += buckets.get(i);
+      if (seen >= target) {
+        return Math.min(highestValue(i), getMaxValue());
+      }
+    }
+    return getMaxValue();
+  }
+
+  public long getMaxValue() {
+    return max.get();
+  }
+
+  @Override
+  public double getValueAsDouble() {
+    return getCount();
+  }
+
+  @Override
+  public void reset() {
+    super.reset();
+    for (int i = 0; i < buckets.length(); i++) {
+      buckets.set(i, 0);
+    }
+    max.set(0);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("count=").append(getCount());
+    for (double percentile : PERCENTILES) {
+      sb.append(", p").append(percentile == (long) percentile ? String.valueOf((long) percentile) : String.valueOf(percentile));
+      sb.append('=').append(getValueAtPercentile(percentile));
+    }
+    return sb.append(", max=").append(getMaxValue()).toString();
+  }
+
+}
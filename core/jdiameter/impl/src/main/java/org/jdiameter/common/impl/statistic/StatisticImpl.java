@@ -23,6 +23,7 @@
 package org.jdiameter.common.impl.statistic;
 
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.jdiameter.api.StatisticRecord;
 import org.jdiameter.common.api.statistic.IStatistic;
@@ -30,14 +31,20 @@ import org.jdiameter.common.api.statistic.IStatisticRecord;
 import org.jdiameter.common.api.statistic.IStatisticRecord.Counters;
 
 /**
+ * Records named after a {@link Counters} value are also indexed by it, so
+ * {@link #getRecordByName(Counters)} does not have to scan the records.
  * 
  * @author <a href="mailto:brainslog@gmail.com"> Alexandre Mendonca </a>
  * @author <a href="mailto:baranowb@gmail.com"> Bartosz Baranowski </a>
  */
 class StatisticImpl implements IStatistic {
 
+  private static final Counters[] COUNTERS = Counters.values();
+
   protected boolean enable = true;
   protected ConcurrentLinkedQueue<StatisticRecord> records = new ConcurrentLinkedQueue<StatisticRecord>();
+  // first record named after each counter, by ordinal
+  private final AtomicReferenceArray<IStatisticRecord> counters = new AtomicReferenceArray<IStatisticRecord>(COUNTERS.length);
   protected String name;
   protected String description;
   protected IStatistic.Groups group;
@@ -70,12 +77,23 @@ class StatisticImpl implements IStatistic {
     this.description = desctiprion;
     for (IStatisticRecord r : rec) {
       records.add((IStatisticRecord) r);
+      index(r);
     }
   }
   public void appendCounter(IStatisticRecord... rec) {
     for (IStatisticRecord r : rec) {
       r.enable(this.enable);
       records.add(r);
+      index(r);
+    }
+  }
+
+  private void index(IStatisticRecord r) {
+    for (Counters counter : COUNTERS) {
+      if (counter.name().equals(r.getName())) {
+        counters.compareAndSet(counter.ordinal(), null, r);
+        return;
+      }
     }
   }
 
@@ -89,12 +107,7 @@ class StatisticImpl implements IStatistic {
   }
 
   public IStatisticRecord getRecordByName(Counters name) {
-    for (StatisticRecord r : records) {
-      if (r.getName().equals(name.toString())) {
-        return (IStatisticRecord) r;
-      }
-    }
-    return null;
+    return counters.get(name.ordinal());
   }
 
   public void enable(boolean e) {
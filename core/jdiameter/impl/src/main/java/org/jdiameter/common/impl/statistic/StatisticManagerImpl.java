@@ -30,6 +30,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.jdiameter.api.Configuration;
 import org.jdiameter.client.impl.helpers.Parameters;
+import org.jdiameter.common.api.statistic.IHistogramRecord;
 import org.jdiameter.common.api.statistic.IStatistic;
 import org.jdiameter.common.api.statistic.IStatisticManager;
 import org.jdiameter.common.api.statistic.IStatisticRecord;
@@ -122,6 +123,12 @@ public class StatisticManagerImpl implements IStatisticManager {
 		return psStatistic;
 	}
 
+	public IHistogramRecord newHistogramRecord(String name, String description) {
+		HistogramRecordImpl histogramRecord = new HistogramRecordImpl(name, description);
+		histogramRecord.enable(this.isEnabled(name));
+		return histogramRecord;
+	}
+
 	public IStatistic newStatistic(String name, IStatistic.Groups group, IStatisticRecord... rec) {
 		IStatistic statistic = new StatisticImpl(name,group, group.getDescription(), rec);
 		statistic.enable(this.isEnabled(statistic.getName()));
@@ -0,0 +1,479 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.common.impl.timer;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdiameter.api.BaseSession;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.common.api.concurrent.IConcurrentFactory;
+import org.jdiameter.common.api.data.ISessionDatasource;
+import org.jdiameter.common.api.statistic.IStatistic;
+import org.jdiameter.common.api.statistic.IStatisticManager;
+import org.jdiameter.common.api.statistic.IStatisticRecord;
+import org.jdiameter.common.api.timer.ITimerFacility;
+import org.jdiameter.common.impl.app.AppSessionImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashed timer wheel implementation of {@link ITimerFacility}, meant for stacks
+ * holding a large number of session timers.
+ * 
+ * Timers are kept in a three level hierarchical wheel (256 ticks of 100ms, then
+ * 64 slots of 256 ticks and 64 slots of 16384 ticks) owned by a single tick task
+ * running on the application session executor. Scheduling and cancelling only
+ * enqueue the timer handle, the tick task links it in (or out of) its bucket, so
+ * both are O(1) and never contend on a shared delay queue. Timers which expire
+ * in the same tick are handed to the executor in batches. Timers beyond the
+ * range of the outer wheel are parked in it and placed again when cascaded.
+ * 
+ * Scheduled, cancelled and fired timers are counted per timer name and exposed
+ * as records of the "TimerFacility" statistic.
+ * 
+ * Not the default, timers only fire on a tick boundary. Select it through the
+ * InternalTimerFacility extension point.
+ */
+public class HashedWheelTimerFacilityImpl implements ITimerFacility {
+
+  private static final Logger logger = LoggerFactory.getLogger(HashedWheelTimerFacilityImpl.class);
+
+  protected static final long DEFAULT_TICK_DURATION = 100;
+
+  // bits of the tick count resolved by each level of the wheel
+  private static final int ROOT_BITS = 8;
+  private static final int LEVEL_BITS = 6;
+  private static final int ROOT_SIZE = 1 << ROOT_BITS;
+  private static final int LEVEL_SIZE = 1 << LEVEL_BITS;
+  private static final int LEVELS = 3;
+
+  // max number of expired timers handed to the executor in a single task
+  private static final int BATCH_SIZE = 128;
+
+  private static final int ST_PENDING = 0;
+  private static final int ST_CANCELLED = 1;
+  private static final int ST_EXPIRED = 2;
+
+  private ScheduledExecutorService executor;
+  private ISessionDatasource sessionDataSource;
+
+  private final long tickDuration;
+  private final long startTime;
+  private final ScheduledFuture<?> tickFuture;
+
+  // handed over from schedule/cancel to the tick task
+  private final ConcurrentLinkedQueue<TimerHandle> scheduled = new ConcurrentLinkedQueue<TimerHandle>();
+  private final ConcurrentLinkedQueue<TimerHandle> cancelled = new ConcurrentLinkedQueue<TimerHandle>();
+
+  // only accessed by the tick task
+  private final Bucket[][] wheel = new Bucket[LEVELS][];
+  private long tick;
+  private List<TimerHandle> batch = new ArrayList<TimerHandle>(BATCH_SIZE);
+
+  private final ConcurrentHashMap<String, TimerCounters> counters = new ConcurrentHashMap<String, TimerCounters>();
+  private IStatisticManager statisticFactory;
+  private IStatistic statistic;
+
+  public HashedWheelTimerFacilityImpl(IContainer container, IStatisticManager statisticFactory) {
+    this(container.getConcurrentFactory().getScheduledExecutorService(IConcurrentFactory.ScheduledExecServices.ApplicationSession.name()),
+        container.getAssemblerFacility().getComponentInstance(ISessionDatasource.class), statisticFactory, DEFAULT_TICK_DURATION);
+  }
+
+  protected HashedWheelTimerFacilityImpl(ScheduledExecutorService executor, ISessionDatasource sessionDataSource, IStatisticManager statisticFactory, long tickDuration) {
+    super();
+    this.executor = executor;
+    this.sessionDataSource = sessionDataSource;
+    this.statisticFactory = statisticFactory;
+    this.tickDuration = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+    wheel[0] = newBuckets(ROOT_SIZE);
+    for (int i = 1; i < LEVELS; i++) {
+      wheel[i] = newBuckets(LEVEL_SIZE);
+    }
+    if (statisticFactory != null) {
+      try {
+        statistic = statisticFactory.newStatistic("TimerFacility", IStatistic.Groups.TimerFacility);
+      }
+      catch (IllegalArgumentException e) {
+        logger.debug("Timer facility statistic already defined", e);
+      }
+    }
+    this.startTime = System.nanoTime();
+    this.tickFuture = executor.scheduleAtFixedRate(new Runnable() {
+      public void run() {
+        try {
+          onTick();
+        }
+        catch (Throwable t) {
+          logger.error("Failure processing timer wheel tick", t);
+        }
+      }
+    }, tickDuration, tickDuration, TimeUnit.MILLISECONDS);
+  }
+
+  private static Bucket[] newBuckets(int size) {
+    Bucket[] buckets = new Bucket[size];
+    for (int i = 0; i < size; i++) {
+      buckets[i] = new Bucket();
+    }
+    return buckets;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see org.jdiameter.common.api.timer.ITimerFacility#schedule(java.lang.String, java.lang.String, long)
+   */
+  public Serializable schedule(String sessionId, String timerName, long milliseconds) throws IllegalArgumentException {
+    if (logger.isDebugEnabled()) {
+      logger.debug("Scheduling timer [{}] for session [{}]", timerName, sessionId);
+    }
+    TimerCounters timerCounters = getCounters(timerName);
+    TimerHandle handle = new TimerHandle(sessionId, timerName, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(milliseconds), timerCounters);
+    timerCounters.scheduled.incrementAndGet();
+    scheduled.offer(handle);
+    return handle;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see org.jdiameter.common.api.timer.ITimerFacility#cancel(java.io.Serializable)
+   */
+  public void cancel(Serializable id) {
+    if (id instanceof TimerHandle) {
+      TimerHandle handle = (TimerHandle) id;
+      if (STATE.compareAndSet(handle, ST_PENDING, ST_CANCELLED)) {
+        handle.counters.cancelled.incrementAndGet();
+        cancelled.offer(handle);
+      }
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.jdiameter.common.api.timer.ITimerFacility#destroy()
+   */
+  public void destroy() {
+    tickFuture.cancel(false);
+  }
+
+  /**
+   * @return number of timers with the given name scheduled so far
+   */
+  public long getScheduledCount(String timerName) {
+    TimerCounters c = counters.get(timerName);
+    return c == null ? 0 : c.scheduled.get();
+  }
+
+  /**
+   * @return number of timers with the given name cancelled before expiring
+   */
+  public long getCancelledCount(String timerName) {
+    TimerCounters c = counters.get(timerName);
+    return c == null ? 0 : c.cancelled.get();
+  }
+
+  /**
+   * @return number of timers with the given name which expired
+   */
+  public long getFiredCount(String timerName) {
+    TimerCounters c = counters.get(timerName);
+    return c == null ? 0 : c.fired.get();
+  }
+
+  /**
+   * Delivers an expired timer, called on the application session executor.
+   */
+  protected void fire(String sessionId, String timerName) {
+    BaseSession bSession = sessionDataSource.getSession(sessionId);
+    if (bSession == null || !bSession.isAppSession()) {
+      logger.error("Base Session is null for sessionId: {}", sessionId);
+      return;
+    }
+    try {
+      AppSessionImpl impl = (AppSessionImpl) bSession;
+      impl.onTimer(timerName);
+    }
+    catch (Exception e) {
+      logger.error("Caught exception from app session object!", e);
+    }
+  }
+
+  private TimerCounters getCounters(String timerName) {
+    TimerCounters timerCounters = counters.get(timerName);
+    if (timerCounters == null) {
+      timerCounters = new TimerCounters();
+      TimerCounters previous = counters.putIfAbsent(timerName, timerCounters);
+      if (previous != null) {
+        return previous;
+      }
+      if (statistic != null) {
+        statistic.appendCounter(
+            newRecord(timerName + ".Scheduled", "Count of scheduled " + timerName + " timers", timerCounters.scheduled),
+            newRecord(timerName + ".Cancelled", "Count of cancelled " + timerName + " timers", timerCounters.cancelled),
+            newRecord(timerName + ".Fired", "Count of fired " + timerName + " timers", timerCounters.fired));
+      }
+    }
+    return timerCounters;
+  }
+
+  private IStatisticRecord newRecord(String name, String description, final AtomicLong counter) {
+    return statisticFactory.newCounterRecord(name, description, new IStatisticRecord.LongValueHolder() {
+      public long getValueAsLong() {
+        return counter.get();
+      }
+
+      public String getValueAsString() {
+        return String.valueOf(getValueAsLong());
+      }
+    });
+  }
+
+  // --- tick task, everything below runs on a single thread at a time
+
+  private synchronized void onTick() {
+    TimerHandle handle;
+    while ((handle = cancelled.poll()) != null) {
+      if (handle.bucket != null) {
+        handle.bucket.remove(handle);
+      }
+    }
+    while ((handle = scheduled.poll()) != null) {
+      if (handle.state == ST_PENDING) {
+        handle.deadlineTick = (handle.deadline - startTime + tickDuration - 1) / tickDuration;
+        place(handle);
+      }
+    }
+    long target = (System.nanoTime() - startTime) / tickDuration;
+    while (tick < target) {
+      tick++;
+      if ((tick & (ROOT_SIZE - 1)) == 0) {
+        // outer levels first, so timers can move down more than one level
+        for (int level = LEVELS - 1; level > 0; level--) {
+          int shift = ROOT_BITS + (level - 1) * LEVEL_BITS;
+          if ((tick & ((1L << shift) - 1)) == 0) {
+            cascade(wheel[level][(int) ((tick >>> shift) & (LEVEL_SIZE - 1))]);
+          }
+        }
+      }
+      handle = wheel[0][(int) (tick & (ROOT_SIZE - 1))].clear();
+      while (handle != null) {
+        TimerHandle next = handle.next;
+        handle.next = null;
+        if (handle.deadlineTick > tick) {
+          place(handle);
+        }
+        else {
+          expire(handle);
+        }
+        handle = next;
+      }
+    }
+    flush();
+  }
+
+  private void place(TimerHandle handle) {
+    long remaining = handle.deadlineTick - tick;
+    if (remaining <= 0) {
+      expire(handle);
+      return;
+    }
+    if (remaining < ROOT_SIZE) {
+      wheel[0][(int) (handle.deadlineTick & (ROOT_SIZE - 1))].add(handle);
+      return;
+    }
+    for (int level = 1; level < LEVELS; level++) {
+      int shift = ROOT_BITS + (level - 1) * LEVEL_BITS;
+      if (remaining < 1L << (shift + LEVEL_BITS) || level == LEVELS - 1) {
+        // out of range timers are parked in the slot cascaded last
+        long slotTick = remaining < 1L << (shift + LEVEL_BITS) ? handle.deadlineTick : tick;
+        wheel[level][(int) ((slotTick >>> shift) & (LEVEL_SIZE - 1))].add(handle);
+        return;
+      }
+    }
+  }
+
+  private void cascade(Bucket bucket) {
+    // detached first, parked timers may be placed in the same bucket again
+    TimerHandle handle = bucket.clear();
+    while (handle != null) {
+      TimerHandle next = handle.next;
+      handle.next = null;
+      place(handle);
+      handle = next;
+    }
+  }
+
+  private void expire(TimerHandle handle) {
+    if (!STATE.compareAndSet(handle, ST_PENDING, ST_EXPIRED)) {
+      return;
+    }
+    handle.counters.fired.incrementAndGet();
+    batch.add(handle);
+    if (batch.size() >= BATCH_SIZE) {
+      flush();
+    }
+  }
+
+  private void flush() {
+    if (batch.isEmpty()) {
+      return;
+    }
+    final List<TimerHandle> expired = batch;
+    batch = new ArrayList<TimerHandle>(BATCH_SIZE);
+    try {
+      executor.execute(new Runnable() {
+        public void run() {
+          for (TimerHandle handle : expired) {
+            try {
+              fire(handle.sessionId, handle.timerName);
+            }
+            catch (Exception e) {
+              logger.error("Failure executing timer " + handle.timerName + " for session " + handle.sessionId, e);
+            }
+          }
+        }
+      });
+    }
+    catch (RejectedExecutionException e) {
+      logger.warn("Dropping {} expired timers, executor rejected them", expired.size());
+    }
+  }
+
+  private static final AtomicIntegerFieldUpdater<TimerHandle> STATE = AtomicIntegerFieldUpdater.newUpdater(TimerHandle.class, "state");
+
+  private static final class TimerCounters {
+    private final AtomicLong scheduled = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong fired = new AtomicLong();
+  }
+
+  /**
+   * Intrusive doubly linked list of timers sharing a wheel slot.
+   */
+  private static final class Bucket {
+    private TimerHandle head;
+    private TimerHandle tail;
+
+    void add(TimerHandle handle) {
+      handle.bucket = this;
+      handle.prev = tail;
+      handle.next = null;
+      if (tail == null) {
+        head = handle;
+      }
+      else {
+        tail.next = handle;
+      }
+      tail = handle;
+    }
+
+    void remove(TimerHandle handle) {
+      if (handle.prev == null) {
+        head = handle.next;
+      }
+      else {
+        handle.prev.next = handle.next;
+      }
+      if (handle.next == null) {
+        tail = handle.prev;
+      }
+      else {
+        handle.next.prev = handle.prev;
+      }
+      handle.bucket = null;
+      handle.prev = null;
+      handle.next = null;
+    }
+
+    /**
+     * Empties the bucket.
+     *
+     * @return first of the timers it held, still chained by their next field
+     */
+    TimerHandle clear() {
+      TimerHandle first = head;
+      for (TimerHandle handle = head; handle != null; handle = handle.next) {
+        handle.bucket = null;
+        handle.prev = null;
+      }
+      head = null;
+      tail = null;
+      return first;
+    }
+  }
+
+  private static final class TimerHandle implements Externalizable {
+    // its not really serializable;
+    private final String sessionId;
+    private final String timerName;
+    private final long deadline;
+    private final TimerCounters counters;
+    volatile int state = ST_PENDING;
+
+    // owned by the tick task
+    private long deadlineTick;
+    private Bucket bucket;
+    private TimerHandle prev;
+    private TimerHandle next;
+
+    TimerHandle(String sessionId, String timerName, long deadline, TimerCounters counters) {
+      this.sessionId = sessionId;
+      this.timerName = timerName;
+      this.deadline = deadline;
+      this.counters = counters;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.io.Externalizable#writeExternal(java.io.ObjectOutput)
+     */
+    public void writeExternal(ObjectOutput out) throws IOException {
+      throw new IOException("Failed to serialize local timer!");
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.io.Externalizable#readExternal(java.io.ObjectInput)
+     */
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+      throw new IOException("Failed to deserialize local timer!");
+    }
+  }
+
+}
@@ -97,6 +97,15 @@ public class LocalTimerFacilityImpl implements ITimerFacility {
     return ir;
   }
 
+  /*
+   * (non-Javadoc)
+   * @see org.jdiameter.common.api.timer.ITimerFacility#destroy()
+   */
+  public void destroy() {
+    // the executor belongs to the concurrent factory and is shut down with it
+    pool.clear();
+  }
+
   protected void returnTimerTaskHandle(TimerTaskHandle timerTaskHandle) {
     try {
       pool.returnObject(timerTaskHandle);
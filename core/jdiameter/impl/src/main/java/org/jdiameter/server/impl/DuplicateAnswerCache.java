@@ -0,0 +1,311 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2006, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jdiameter.server.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.common.api.statistic.IStatistic;
+import org.jdiameter.common.api.statistic.IStatisticManager;
+import org.jdiameter.common.api.statistic.IStatisticRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of sent answers used by duplicate protection. Answers are kept in
+ * their encoded form and decoded again on each hit, so every caller gets its
+ * own copy. The copy keeps the encoded frame, so sending it again only
+ * rewrites the header, with the hop-by-hop id of the retransmitted request,
+ * and copies the encoded AVPs.
+ *
+ * The cache is split in segments with a lock each. Every segment keeps its
+ * entries in a ring of time buckets, one bucket per fraction of the expire
+ * time, and expires a whole bucket at once when the ring comes around to it,
+ * so expiry needs no pass over the stored answers. When a segment is full the
+ * oldest answer it holds is evicted to make room for the new one.
+ */
+public class DuplicateAnswerCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(DuplicateAnswerCache.class);
+
+  private static final int SEGMENT_COUNT = 16;
+  // buckets covering the expire time, one more is kept for the current one
+  private static final int BUCKET_COUNT = 8;
+  private static final int RING_SIZE = BUCKET_COUNT + 1;
+
+  private final IMessageParser parser;
+  private final Segment[] segments;
+  private volatile long bucketDuration;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private IStatistic statistic;
+
+  /**
+   * @param parser parser used to encode and decode answers
+   * @param maxSize maximum number of answers kept
+   * @param expireTime time in milliseconds answers are kept
+   * @param statisticFactory factory for the cache statistic, may be null
+   */
+  public DuplicateAnswerCache(IMessageParser parser, int maxSize, long expireTime, IStatisticManager statisticFactory) {
+    this.parser = parser;
+    this.bucketDuration = bucketDuration(expireTime);
+    this.segments = new Segment[SEGMENT_COUNT];
+    int segmentSize = Math.max(1, (maxSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+    long bucket = currentBucket();
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      segments[i] = new Segment(segmentSize, bucket);
+    }
+    if (statisticFactory != null) {
+      try {
+        statistic = statisticFactory.newStatistic("DuplicateCache", IStatistic.Groups.DuplicateCache,
+            newRecord(statisticFactory, "Hits", "Count of requests answered from the cache", hits),
+            newRecord(statisticFactory, "Misses", "Count of requests not found in the cache", misses),
+            newRecord(statisticFactory, "Evictions", "Count of answers evicted before expiring", evictions));
+      }
+      catch (IllegalArgumentException e) {
+        logger.debug("Duplicate cache statistic already defined", e);
+      }
+    }
+  }
+
+  /**
+   * @return a copy of the answer stored with the given key, or null if none
+   */
+  public IMessage get(String key) {
+    byte[] data = segmentFor(key).get(key, currentBucket());
+    if (data == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    try {
+      IMessage answer = parser.createEncodedMessage(data);
+      hits.incrementAndGet();
+      return answer;
+    }
+    catch (Exception e) {
+      logger.debug("Unable to decode stored answer with key '{}'", key, e);
+      misses.incrementAndGet();
+      return null;
+    }
+  }
+
+  /**
+   * Stores the answer with the given key, evicting the oldest answer of its
+   * segment if needed.
+   */
+  public void put(String key, IMessage answer) {
+    byte[] data;
+    try {
+      ByteBuffer buffer = parser.encodeMessage(answer);
+      data = new byte[buffer.remaining()];
+      buffer.get(data);
+    }
+    catch (Exception e) {
+      logger.debug("Unable to encode answer with key '{}'", key, e);
+      return;
+    }
+    if (segmentFor(key).put(key, data, currentBucket())) {
+      evictions.incrementAndGet();
+    }
+  }
+
+  /**
+   * Drops the buckets that have expired, so memory is released even for
+   * segments which are not used anymore.
+   */
+  public void expire() {
+    long bucket = currentBucket();
+    for (Segment segment : segments) {
+      segment.advance(bucket);
+    }
+  }
+
+  /**
+   * Changes the time answers are kept. Answers stored before the change are
+   * dropped.
+   */
+  public void setExpireTime(long expireTime) {
+    long duration = bucketDuration(expireTime);
+    if (duration != bucketDuration) {
+      bucketDuration = duration;
+      clear();
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size;
+    }
+    return size;
+  }
+
+  public void clear() {
+    long bucket = currentBucket();
+    for (Segment segment : segments) {
+      segment.clear(bucket);
+    }
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  public IStatistic getStatistic() {
+    return statistic;
+  }
+
+  protected long currentTime() {
+    return System.currentTimeMillis();
+  }
+
+  private long currentBucket() {
+    return currentTime() / bucketDuration;
+  }
+
+  private Segment segmentFor(String key) {
+    int h = key.hashCode() * 0x9E3779B9;
+    return segments[(h >>> 28) & (SEGMENT_COUNT - 1)];
+  }
+
+  private static long bucketDuration(long expireTime) {
+    return Math.max(1, (expireTime + BUCKET_COUNT - 1) / BUCKET_COUNT);
+  }
+
+  private static IStatisticRecord newRecord(IStatisticManager statisticFactory, String name, String description, final AtomicLong counter) {
+    return statisticFactory.newCounterRecord(name, description, new IStatisticRecord.LongValueHolder() {
+      public long getValueAsLong() {
+        return counter.get();
+      }
+
+      public String getValueAsString() {
+        return String.valueOf(getValueAsLong());
+      }
+    });
+  }
+
+  private static class Segment {
+
+    // bucket n of the ring holds the answers stored during time bucket n,
+    // entries of each bucket are in insertion order
+    private final LinkedHashMap<String, byte[]>[] ring;
+    private final int maxSize;
+    private long lastBucket;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    Segment(int maxSize, long bucket) {
+      this.ring = new LinkedHashMap[RING_SIZE];
+      for (int i = 0; i < ring.length; i++) {
+        ring[i] = new LinkedHashMap<String, byte[]>();
+      }
+      this.maxSize = maxSize;
+      this.lastBucket = bucket;
+    }
+
+    synchronized byte[] get(String key, long bucket) {
+      advance(bucket);
+      for (int i = 0; i < RING_SIZE; i++) {
+        byte[] data = ring[slot(lastBucket - i)].get(key);
+        if (data != null) {
+          return data;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * @return true if an answer was evicted to make room
+     */
+    synchronized boolean put(String key, byte[] data, long bucket) {
+      advance(bucket);
+      for (int i = 0; i < RING_SIZE; i++) {
+        if (ring[i].remove(key) != null) {
+          size--;
+          break;
+        }
+      }
+      boolean evicted = false;
+      if (size >= maxSize) {
+        evicted = evictOldest();
+      }
+      ring[slot(lastBucket)].put(key, data);
+      size++;
+      return evicted;
+    }
+
+    synchronized void advance(long bucket) {
+      if (bucket <= lastBucket) {
+        return;
+      }
+      // buckets the ring comes around to hold answers older than the expire time
+      long from = Math.max(lastBucket + 1, bucket - BUCKET_COUNT);
+      for (long b = from; b <= bucket; b++) {
+        LinkedHashMap<String, byte[]> expired = ring[slot(b)];
+        size -= expired.size();
+        expired.clear();
+      }
+      lastBucket = bucket;
+    }
+
+    synchronized void clear(long bucket) {
+      for (LinkedHashMap<String, byte[]> entries : ring) {
+        entries.clear();
+      }
+      size = 0;
+      lastBucket = bucket;
+    }
+
+    private boolean evictOldest() {
+      for (int i = RING_SIZE - 1; i >= 0; i--) {
+        Iterator<byte[]> it = ring[slot(lastBucket - i)].values().iterator();
+        if (it.hasNext()) {
+          it.next();
+          it.remove();
+          size--;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static int slot(long bucket) {
+      int slot = (int) (bucket % RING_SIZE);
+      return slot < 0 ? slot + RING_SIZE : slot;
+    }
+  }
+}
@@ -141,7 +141,7 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
   protected long duplicateTimer;
   protected ScheduledExecutorService duplicationScheduler = null;
   protected ScheduledFuture duplicationHandler = null;
-  protected ConcurrentHashMap<String, StorageEntry> storageAnswers = new ConcurrentHashMap<String, StorageEntry>();
+  protected DuplicateAnswerCache duplicateCache;
 
   protected boolean isAcceptUndefinedPeer  = false;
 
@@ -164,32 +164,6 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
 
   private IContainer stack;
 
-  protected class StorageEntry {
-
-    private String duplicationKey;
-    private long time = System.currentTimeMillis();
-    private IMessage answer;
-
-    public StorageEntry(IMessage message) {
-      answer = message;
-      // duplicationKey = message.getDuplicationKey(); doesn't work because it's answer
-      String[] originInfo = router.getRequestRouteInfo(answer);
-      duplicationKey = message.getDuplicationKey(originInfo[0], message.getEndToEndIdentifier());
-    }
-
-    public IMessage getMessage() {
-      return answer;
-    }
-
-    public long getTime() {
-      return time;
-    }
-
-    public String getDuplicationKey() {
-      return duplicationKey;
-    }
-  }
-
   public MutablePeerTableImpl(Configuration config, MetaData metaData,IContainer stack, org.jdiameter.server.api.IRouter router,
       ISessionFactory sessionFactory, IFsmFactory fsmFactory, ITransportLayerFactory trFactory,
       IMessageParser parser, INetwork network, IOverloadManager ovrManager,
@@ -213,6 +187,7 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
     if (this.duplicateProtection) {
       this.duplicateTimer = config.getLongValue(DuplicateTimer.ordinal(), (Long) DuplicateTimer.defValue());
       this.duplicateSize = config.getIntValue(DuplicateSize.ordinal(), (Integer) DuplicateSize.defValue());
+      this.duplicateCache = new DuplicateAnswerCache(parser, duplicateSize, duplicateTimer, statisticFactory);
     }
     logger.debug("Duplicate Protection Configuration: Enabled? {}, Timer: {}, Size: {}", new Object[]{this.duplicateProtection, this.duplicateTimer, this.duplicateSize});
     if (predefinedPeerTable == null) {
@@ -272,6 +247,9 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
     Configuration newConf = (Configuration) data;
     stopTimeOut = newConf.getLongValue(StopTimeOut.ordinal(), (Long) StopTimeOut.defValue());
     duplicateTimer = newConf.getLongValue(DuplicateTimer.ordinal(), (Long) DuplicateTimer.defValue());
+    if (duplicateCache != null) {
+      duplicateCache.setExpireTime(duplicateTimer);
+    }
     isAcceptUndefinedPeer = newConf.getBooleanValue(AcceptUndefinedPeer.ordinal(), false);
     return true;
   }
@@ -299,27 +277,14 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
     // Start duplication protection procedure
     if (duplicateProtection) {
       duplicationScheduler = concurrentFactory.getScheduledExecutorService(DuplicationMessageTimer.name());
+      // stored answers expire by whole buckets, the task only drops buckets
+      // of segments which are not being used
       Runnable duplicateTask = new Runnable() {
         public void run() {
-          long now = System.currentTimeMillis();
+          duplicateCache.expire();
           if(logger.isDebugEnabled()) {
-            logger.debug("Running Duplicate Cleaning Task. Duplicate Storage size is: {}. Removing entries with time <= '{}'", storageAnswers.size(), now - duplicateTimer);
-          }
-          for (StorageEntry s : storageAnswers.values()) {
-            if (s != null && s.getTime() + duplicateTimer <= now) {
-              if(logger.isTraceEnabled()) {
-                logger.trace("Duplicate Cleaning Task - Removing Entry with key '{}' and time '{}'", s.getDuplicationKey(), s.getTime());
-              }
-              storageAnswers.remove(s.getDuplicationKey());
-            }
-            else {
-              if(logger.isTraceEnabled()) {
-                logger.trace("Duplicate Cleaning Task - Skipping Entry with key '{}' and time '{}'", s.getDuplicationKey(), s.getTime());
-              }
-            }
-          }
-          if(logger.isDebugEnabled()) {
-            logger.debug("Completed Duplicate Cleaning Task. New Duplicate Storage size is: {}. Total task runtime: {}ms", storageAnswers.size(), System.currentTimeMillis() - now);
+            logger.debug("Completed Duplicate Cleaning Task. Duplicate Storage size is: {}, hits: {}, misses: {}, evictions: {}",
+                new Object[] {duplicateCache.size(), duplicateCache.getHits(), duplicateCache.getMisses(), duplicateCache.getEvictions()});
           }
         }
       };
@@ -603,7 +568,9 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
       connHandler = null;
     }
     //remove incoming data
-    storageAnswers.clear();
+    if (duplicateCache != null) {
+      duplicateCache.clear();
+    }
 
     // Clear dynamic peers from peertable
     Iterator<String> it = super.peerTable.keySet().iterator();
@@ -722,22 +689,18 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
 
   public IMessage isDuplicate(IMessage request) {
     String key = request.getDuplicationKey();
-    if (key != null && storageAnswers != null) {
-      StorageEntry entry = storageAnswers.get(key);
-      return entry != null ? (IMessage) entry.getMessage().clone() : null;
+    if (key != null && duplicateCache != null) {
+      return duplicateCache.get(key);
     }
     return null;
   }
 
   public void saveToDuplicate(String key, IMessage answer) {
-    if (storageAnswers != null && storageAnswers.size() < duplicateSize) {
-      if (key != null) {
-        StorageEntry se = new StorageEntry((IMessage) answer.clone());
-        if(logger.isTraceEnabled()) {
-          logger.trace("Duplicate Protection - Inserting Entry with key '{}' and time '{}'", key, se.getTime());
-        }
-        storageAnswers.put(key, se);
+    if (key != null && duplicateCache != null) {
+      if(logger.isTraceEnabled()) {
+        logger.trace("Duplicate Protection - Inserting Entry with key '{}'", key);
       }
+      duplicateCache.put(key, answer);
     }
   }
 
@@ -144,6 +144,11 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
     return connection;
   }
 
+  protected IConnection findConnection(String connKey) {
+    IConnection conn = super.findConnection(connKey);
+    return conn != null || connKey == null ? conn : incConnections.get(connKey);
+  }
+
   public void addIncomingConnection(IConnection conn) {
     PeerState state = fsm.getState(PeerState.class);
     if (DOWN  ==  state || INITIAL == state) {
@@ -495,7 +500,7 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
             sendMessage(answer);
           }
           if (statistic.isEnabled()) {
-            statistic.getRecordByName(IStatisticRecord.Counters.SysGenResponse.name()).inc();
+            sysGenResponseCounter.inc();
           }
         }
         catch (Exception exc) {
@@ -508,7 +513,7 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
       if (isProcessed) {
         // NOTE: done to inc stat which informs on net work request consumption :)
         if (statistic.isEnabled()) {
-          statistic.getRecordByName(IStatisticRecord.Counters.NetGenRequest.name()).inc();
+          netGenRequestCounter.inc();
         }
       }
       return isProcessed;
@@ -528,7 +533,7 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
       if (!isProcessed) {
         if (statistic.isEnabled()) {
           // Decrement what we have incremented in super.receiveMessage(message) since it wasn't processed
-          statistic.getRecordByName(IStatisticRecord.Counters.NetGenRejectedRequest.name()).dec(); 
+          netGenRejectedRequestCounter.dec(); 
         }
 
         NetworkReqListener listener = network.getListener(message);
@@ -542,6 +547,8 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
           }
           if (answer != null) {
             logger.debug("This message was detected as being a duplicate");
+            // the stored frame is sent as is, with the header rewritten, unless
+            // Proxy-Info AVPs have to be replaced
             answer.setProxiable(message.isProxiable());
             answer.getAvps().removeAvp(Avp.PROXY_INFO);
             for (Avp avp : message.getAvps().getAvps(Avp.PROXY_INFO)) {
@@ -553,7 +560,7 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
             try{
               sendMessage(answer);
               if (statistic.isEnabled()) {
-                statistic.getRecordByName(IStatisticRecord.Counters.SysGenResponse.name()).inc();
+                sysGenResponseCounter.inc();
               }
             }
             catch (Exception e) {
@@ -581,7 +588,7 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
                   sendMessage(answer);
                 }
                 if (statistic.isEnabled()) {
-                  statistic.getRecordByName(IStatisticRecord.Counters.AppGenResponse.name()).inc();
+                  appGenResponseCounter.inc();
                 }
               }
               catch (Exception exc) {
@@ -604,7 +611,7 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
       if (isProcessed) {
         // NOTE: done to inc stat which informs on net work request consumption :)... 
         if (statistic.isEnabled()) {
-          statistic.getRecordByName(IStatisticRecord.Counters.NetGenRequest.name()).inc();
+          netGenRequestCounter.inc();
         }
       }
       return isProcessed;
@@ -24,7 +24,6 @@ package org.jdiameter.server.impl.app.cca;
 
 import java.io.Serializable;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.jdiameter.api.Answer;
 import org.jdiameter.api.Avp;
@@ -55,6 +54,7 @@ import org.jdiameter.common.api.app.cca.IServerCCASessionContext;
 import org.jdiameter.common.api.app.cca.ServerCCASessionState;
 import org.jdiameter.common.impl.app.AppAnswerEventImpl;
 import org.jdiameter.common.impl.app.AppRequestEventImpl;
+import org.jdiameter.common.impl.app.AppSessionStateLock;
 import org.jdiameter.common.impl.app.auth.ReAuthAnswerImpl;
 import org.jdiameter.common.impl.app.auth.ReAuthRequestImpl;
 import org.jdiameter.common.impl.app.cca.AppCCASessionImpl;
@@ -73,7 +73,7 @@ public class ServerCCASessionImpl extends AppCCASessionImpl implements ServerCCA
 
   protected IServerCCASessionData sessionData;
   // Session State Handling ---------------------------------------------------
-  protected Lock sendAndStateLock = new ReentrantLock();
+  protected Lock sendAndStateLock = new AppSessionStateLock(this);
 
   // Factories and Listeners --------------------------------------------------
   protected transient ICCAMessageFactory factory = null;
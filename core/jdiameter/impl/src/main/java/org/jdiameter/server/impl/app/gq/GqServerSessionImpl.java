@@ -32,7 +32,6 @@ import static org.jdiameter.server.impl.app.gq.Event.Type.TIMEOUT_EXPIRES;
 
 import java.io.Serializable;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.jdiameter.api.Answer;
 import org.jdiameter.api.EventListener;
@@ -62,6 +61,7 @@ import org.jdiameter.common.api.app.auth.IAuthMessageFactory;
 import org.jdiameter.common.api.app.auth.IServerAuthActionContext;
 import org.jdiameter.common.api.app.auth.ServerAuthSessionState;
 import org.jdiameter.common.impl.app.AppAnswerEventImpl;
+import org.jdiameter.common.impl.app.AppSessionStateLock;
 import org.jdiameter.common.impl.app.auth.AbortSessionAnswerImpl;
 import org.jdiameter.common.impl.app.auth.AbortSessionRequestImpl;
 import org.jdiameter.common.impl.app.auth.AppAuthSessionImpl;
@@ -86,7 +86,7 @@ public class GqServerSessionImpl extends AppAuthSessionImpl implements GqServerS
   protected IServerAuthSessionData sessionData;
 
   // Session State Handling ---------------------------------------------------
-  private Lock sendAndStateLock = new ReentrantLock();
+  private Lock sendAndStateLock = new AppSessionStateLock(this);
 
   // Factories and Listeners --------------------------------------------------
   protected transient IAuthMessageFactory factory;
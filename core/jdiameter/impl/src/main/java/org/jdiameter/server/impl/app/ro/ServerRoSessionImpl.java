@@ -24,7 +24,6 @@ package org.jdiameter.server.impl.app.ro;
 
 import java.io.Serializable;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.jdiameter.api.Answer;
 import org.jdiameter.api.Avp;
@@ -55,6 +54,7 @@ import org.jdiameter.common.api.app.ro.IServerRoSessionContext;
 import org.jdiameter.common.api.app.ro.ServerRoSessionState;
 import org.jdiameter.common.impl.app.AppAnswerEventImpl;
 import org.jdiameter.common.impl.app.AppRequestEventImpl;
+import org.jdiameter.common.impl.app.AppSessionStateLock;
 import org.jdiameter.common.impl.app.auth.ReAuthAnswerImpl;
 import org.jdiameter.common.impl.app.auth.ReAuthRequestImpl;
 import org.jdiameter.common.impl.app.ro.AppRoSessionImpl;
@@ -72,7 +72,7 @@ public class ServerRoSessionImpl extends AppRoSessionImpl implements ServerRoSes
   private static final Logger logger = LoggerFactory.getLogger(ServerRoSessionImpl.class);
 
   // Session State Handling ---------------------------------------------------
-  protected Lock sendAndStateLock = new ReentrantLock();
+  protected Lock sendAndStateLock = new AppSessionStateLock(this);
 
   // Factories and Listeners --------------------------------------------------
   protected transient IRoMessageFactory factory = null;
@@ -23,7 +23,6 @@
 package org.jdiameter.server.impl.app.rx;
 
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.jdiameter.api.Answer;
 import org.jdiameter.api.AvpDataException;
@@ -57,6 +56,7 @@ import org.jdiameter.common.api.app.rx.IServerRxSessionContext;
 import org.jdiameter.common.api.app.rx.ServerRxSessionState;
 import org.jdiameter.common.impl.app.AppAnswerEventImpl;
 import org.jdiameter.common.impl.app.AppRequestEventImpl;
+import org.jdiameter.common.impl.app.AppSessionStateLock;
 import org.jdiameter.common.impl.app.rx.AppRxSessionImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,7 +75,7 @@ public class ServerRxSessionImpl extends AppRxSessionImpl implements ServerRxSes
   // Session State Handling ---------------------------------------------------
   //protected boolean stateless = true;
   //protected ServerGxSessionState state = ServerGxSessionState.IDLE;
-  protected Lock sendAndStateLock = new ReentrantLock();
+  protected Lock sendAndStateLock = new AppSessionStateLock(this);
 
   // Factories and Listeners --------------------------------------------------
   protected transient IRxMessageFactory factory = null;
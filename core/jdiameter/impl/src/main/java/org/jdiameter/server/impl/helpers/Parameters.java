@@ -138,8 +138,18 @@ public class Parameters extends org.jdiameter.client.impl.helpers.Parameters {
 
   public static final Parameters RequestTableSize = new Parameters("RequestTableSize", Integer.class, new Integer(10240));
 
+  /**
+   *  Not used, request table entries expire one by one after RequestTableExpTime.
+   *  @deprecated ignored by the router, a warning is logged when it is set
+   */
+  @Deprecated
   public static final Parameters RequestTableClearSize = new Parameters("RequestTableClearSize", Integer.class, new Integer(2048));
 
+  /**
+   *  Time in milliseconds the route info of a request is kept for its answer.
+   */
+  public static final Parameters RequestTableExpTime = new Parameters("RequestTableExpTime", Long.class, 120000L);
+
   protected Parameters(String name, Class type) {
     super(name, type);
   }
@@ -58,7 +58,19 @@ import static org.jdiameter.client.impl.helpers.Parameters.KDManager;
 import static org.jdiameter.client.impl.helpers.Parameters.KDPwd;
 import static org.jdiameter.client.impl.helpers.Parameters.KDStore;
 import static org.jdiameter.client.impl.helpers.Parameters.KeyData;
+import static org.jdiameter.client.impl.helpers.Parameters.LoadBalancerClass;
+import static org.jdiameter.client.impl.helpers.Parameters.OffHeapSessionMaxResident;
+import static org.jdiameter.client.impl.helpers.Parameters.OffHeapSessionSegmentRecords;
+import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMLaneCount;
+import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMOrderedDispatch;
 import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMThreadCount;
+import static org.jdiameter.client.impl.helpers.Parameters.ReactorThreadCount;
+import static org.jdiameter.client.impl.helpers.Parameters.SendQueueHighWaterMark;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionPassivationIdleTime;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionPassivationLogFile;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionPassivationMaxResident;
+import static org.jdiameter.client.impl.helpers.Parameters.ClusterBackendClass;
+import static org.jdiameter.client.impl.helpers.Parameters.ClusterReplicaCount;
 import static org.jdiameter.client.impl.helpers.Parameters.Properties;
 import static org.jdiameter.client.impl.helpers.Parameters.PropertyName;
 import static org.jdiameter.client.impl.helpers.Parameters.PropertyValue;
@@ -272,6 +284,18 @@ public class XMLConfiguration extends EmptyConfiguration {
       else if (nodeName.equals("BindDelay"))  { add(BindDelay, getLongValue(c.item(i)));                }
       else if (nodeName.equals("ThreadPool")) { addThreadPool(c.item(i));                               }
       else if (nodeName.equals("PeerFSMThreadCount")) { add(PeerFSMThreadCount, getIntValue(c.item(i)));}
+      else if (nodeName.equals("PeerFSMOrderedDispatch")) { add(PeerFSMOrderedDispatch, Boolean.valueOf(getValue(c.item(i))));}
+      else if (nodeName.equals("PeerFSMLaneCount")) { add(PeerFSMLaneCount, getIntValue(c.item(i)));}
+      else if (nodeName.equals("ReactorThreadCount")) { add(ReactorThreadCount, getIntValue(c.item(i)));}
+      else if (nodeName.equals("SendQueueHighWaterMark")) { add(SendQueueHighWaterMark, getIntValue(c.item(i)));}
+      else if (nodeName.equals("LoadBalancerClass")) { add(LoadBalancerClass, getValue(c.item(i)));}
+      else if (nodeName.equals("SessionPassivationIdleTime")) { add(SessionPassivationIdleTime, getLongValue(c.item(i)));}
+      else if (nodeName.equals("SessionPassivationMaxResident")) { add(SessionPassivationMaxResident, getIntValue(c.item(i)));}
+      else if (nodeName.equals("SessionPassivationLogFile")) { add(SessionPassivationLogFile, getValue(c.item(i)));}
+      else if (nodeName.equals("OffHeapSessionMaxResident")) { add(OffHeapSessionMaxResident, getIntValue(c.item(i)));}
+      else if (nodeName.equals("OffHeapSessionSegmentRecords")) { add(OffHeapSessionSegmentRecords, getIntValue(c.item(i)));}
+      else if (nodeName.equals("ClusterBackendClass")) { add(ClusterBackendClass, getValue(c.item(i)));}
+      else if (nodeName.equals("ClusterReplicaCount")) { add(ClusterReplicaCount, getIntValue(c.item(i)));}
       else if (nodeName.equals("Statistics")) { addStatisticLogger(Statistics, c.item(i));              }
       else if (nodeName.equals("Concurrent")) { addConcurrent(Concurrent, c.item(i));                   }
       else if (nodeName.equals("Dictionary")) { addDictionary(Dictionary, c.item(i));                   }
@@ -398,6 +422,12 @@ public class XMLConfiguration extends EmptyConfiguration {
       tableConfiguration.add(Parameters.RequestTableClearSize,  Integer.parseInt(size));
     }
 
+    param = node.getAttributes().getNamedItem("expire_time");
+    if(param != null) {
+      String time = param.getNodeValue();
+      tableConfiguration.add(Parameters.RequestTableExpTime, Long.parseLong(time));
+    }
+
     add(name, tableConfiguration);
   }
   
@@ -173,6 +173,10 @@ public class SCTPServerConnection implements IConnection {
     return false;
   }
 
+  public boolean isSharedThreadDelivery() {
+    return false;
+  }
+
   public boolean isConnected() {
     return getServer() != null && getServer().isConnected();
   }
@@ -25,6 +25,7 @@ import java.nio.ByteBuffer;
 
 import org.jdiameter.api.AvpDataException;
 import org.jdiameter.client.api.io.NotInitializedException;
+import org.jdiameter.client.impl.transport.FrameDecoder;
 import org.mobicents.protocols.api.Association;
 import org.mobicents.protocols.api.AssociationListener;
 import org.mobicents.protocols.api.IpChannelType;
@@ -192,10 +193,15 @@ public class SCTPTransportServer {
     logger.trace("Server Association [{}]", serverAssociation);
   }
 
-  private class ServerAssociationListener implements AssociationListener {
+  private class ServerAssociationListener implements AssociationListener, FrameDecoder.FrameHandler {
 
     private final Logger logger = LoggerFactory.getLogger(ServerAssociationListener.class);
 
+    // splits payloads of the association into messages, only used by the
+    // thread delivering payloads; notifications just publish a fresh one
+    // when the association comes up, dropping any partial message
+    private volatile FrameDecoder decoder = new FrameDecoder();
+
     /*
      * (non-Javadoc)
      * 
@@ -204,6 +210,7 @@ public class SCTPTransportServer {
     @Override
     public void onCommunicationUp(Association association, int maxInboundStreams, int maxOutboundStreams) {
       logger.debug("onCommunicationUp called for [{}]", this);
+      decoder = new FrameDecoder();
       getParent().onConnected();
     }
 
@@ -247,6 +254,7 @@ public class SCTPTransportServer {
     @Override
     public void onCommunicationRestart(Association association) {
       logger.debug("onCommunicationRestart called for [{}]", this);
+      decoder = new FrameDecoder();
     }
 
     /*
@@ -261,17 +269,26 @@ public class SCTPTransportServer {
       payloadProtocolId = payloadData.getPayloadProtocolId();
       streamNumber = payloadData.getStreamNumber();
 
-      byte[] data = new byte[payloadData.getDataLength()];
-      System.arraycopy(payloadData.getData(), 0, data, 0, payloadData.getDataLength());
-      logger.debug("SCTP Server received a message of length: [{}] ", data.length);
+      logger.debug("SCTP Server received a message of length: [{}] ", payloadData.getDataLength());
+
+      FrameDecoder payloadDecoder = decoder;
+      try {
+        // messages are copied out of the payload by the decoder
+        payloadDecoder.decode(ByteBuffer.wrap(payloadData.getData(), 0, payloadData.getDataLength()), this);
+      }
+      catch (AvpDataException e) {
+        logger.debug("Garbage was received. Discarding.");
+        getParent().onAvpDataException(e);
+      }
+    }
 
+    public void onFrame(ByteBuffer frame) {
       try {
         // make a message out of data and process it
-        getParent().onMessageReceived(ByteBuffer.wrap(data));
+        getParent().onMessageReceived(frame);
       }
       catch (AvpDataException e) {
         logger.debug("Garbage was received. Discarding.");
-        // storage.clear();
         getParent().onAvpDataException(e);
       }
     }
@@ -401,4 +418,4 @@ public class SCTPTransportServer {
     }
     return this.remoteClientAssociation.isConnected();
   }
-}
\ No newline at end of file
+}
\ No newline at end of file
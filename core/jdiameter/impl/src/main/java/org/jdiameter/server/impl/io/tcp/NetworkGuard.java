@@ -45,6 +45,7 @@ package org.jdiameter.server.impl.io.tcp;
 
 import static org.jdiameter.server.impl.helpers.Parameters.BindDelay;
 
+import org.jdiameter.api.Configuration;
 import org.jdiameter.client.api.parser.IMessageParser;
 import org.jdiameter.client.impl.transport.tcp.TCPClientConnection;
 import org.jdiameter.common.api.concurrent.DummyConcurrentFactory;
@@ -86,6 +87,7 @@ public class NetworkGuard implements INetworkGuard {
   protected IConcurrentFactory concurrentFactory;
   protected int port;
   protected long bindDelay;
+  protected Configuration config;
   protected CopyOnWriteArrayList<INetworkConnectionListener> listeners = new CopyOnWriteArrayList<INetworkConnectionListener>();
   protected boolean isWork = false;
 //  protected Selector selector;
@@ -114,7 +116,8 @@ public class NetworkGuard implements INetworkGuard {
     this.parser = parser;
     this.concurrentFactory = concurrentFactory == null ? new DummyConcurrentFactory() : concurrentFactory;
     //this.thread = this.concurrentFactory.getThread("NetworkGuard", this);
-    this.bindDelay = data.getConfiguration().getLongValue(BindDelay.ordinal(), (Long) BindDelay.defValue());
+    this.config = data.getConfiguration();
+    this.bindDelay = config.getLongValue(BindDelay.ordinal(), (Long) BindDelay.defValue());
 
     try {        
       for (int addrIdx = 0; addrIdx < inetAddress.length; addrIdx++) {
@@ -216,7 +219,7 @@ public class NetworkGuard implements INetworkGuard {
                 try {
                   Socket s = serverSocket.accept();
                   logger.info("Open incomming connection {}", s);
-                  TCPClientConnection client = new TCPClientConnection(null, concurrentFactory, s, parser,
+                  TCPClientConnection client = new TCPClientConnection(config, concurrentFactory, s, parser,
                       null);
                   // PCB added logging
                   logger.debug("Finished initialising TCPClientConnection for {}", s);
@@ -283,4 +286,4 @@ public class NetworkGuard implements INetworkGuard {
     }
 
   }
-}
\ No newline at end of file
+}
\ No newline at end of file
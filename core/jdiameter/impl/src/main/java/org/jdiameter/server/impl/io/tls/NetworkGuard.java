@@ -25,8 +25,8 @@ package org.jdiameter.server.impl.io.tls;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.jdiameter.api.Configuration;
@@ -58,7 +58,9 @@ public class NetworkGuard implements INetworkGuard, Runnable {
   private CopyOnWriteArrayList<INetworkConnectionListener> listeners = new CopyOnWriteArrayList<INetworkConnectionListener>();
   private boolean isWork = false;
   // private SSLServerSocket serverSocket;
-  private ServerSocket serverSocket;
+  // accepted sockets need a channel to be served by the network reactor
+  private ServerSocketChannel serverSocket;
+  private Configuration config;
   private Configuration localPeerSSLConfig;
   private Thread thread;
   private String secRef;
@@ -70,6 +72,7 @@ public class NetworkGuard implements INetworkGuard, Runnable {
     this.thread = this.concurrentFactory.getThread("NetworkGuard", this);
     // extract sec_ref from local peer;
     Configuration conf = data.getConfiguration();
+    this.config = conf;
 
     if (!conf.isAttributeExist(Parameters.SecurityRef.ordinal())) {
       throw new IllegalArgumentException("No security_ref attribute present in local peer!");
@@ -88,8 +91,8 @@ public class NetworkGuard implements INetworkGuard, Runnable {
       // SSLServerSocketFactory sslServerSocketFactory = sslContext.getServerSocketFactory();
       // this.serverSocket = (SSLServerSocket) sslServerSocketFactory.createServerSocket();
 
-      this.serverSocket = new ServerSocket();
-      this.serverSocket.bind(new InetSocketAddress(inetAddress, port));
+      this.serverSocket = ServerSocketChannel.open();
+      this.serverSocket.socket().bind(new InetSocketAddress(inetAddress, port));
 
       this.isWork = true;
       logger.info("Open server socket {} ", serverSocket);
@@ -107,9 +110,9 @@ public class NetworkGuard implements INetworkGuard, Runnable {
       while (this.isWork) {
         // without timeout when we kill socket, this causes errors, bug in VM ?
         try {
-          Socket clientConnection = serverSocket.accept();
+          Socket clientConnection = serverSocket.accept().socket();
           logger.info("Open incomming SSL connection {}", clientConnection);
-          TLSClientConnection client = new TLSClientConnection(null, this.localPeerSSLConfig, this.concurrentFactory, clientConnection, parser);
+          TLSClientConnection client = new TLSClientConnection(config, this.localPeerSSLConfig, this.concurrentFactory, clientConnection, parser);
 
           this.notifyListeners(client);
         }
@@ -43,6 +43,7 @@ import org.jdiameter.api.validation.Dictionary;
 import org.jdiameter.client.api.IAssembler;
 import org.jdiameter.client.api.IContainer;
 import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.IRequestTimeoutManager;
 import org.jdiameter.client.api.StackState;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 
@@ -119,6 +120,10 @@ public class DiameterStackProxy implements Stack, IContainer {
     return ((IContainer)realStack).getScheduledFacility();
   }
 
+  public IRequestTimeoutManager getRequestTimeoutManager() {
+    return ((IContainer)realStack).getRequestTimeoutManager();
+  }
+
   public StackState getState() {
     return ((IContainer)realStack).getState();
   }
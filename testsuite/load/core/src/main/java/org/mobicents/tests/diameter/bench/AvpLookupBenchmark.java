@@ -0,0 +1,137 @@
+package org.mobicents.tests.diameter.bench;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.AvpDataException;
+import org.jdiameter.api.AvpSet;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH harness for decoding messages and looking AVPs up in them. Uses a
+ * credit control request with a few dozen AVPs, large enough for the AVP set
+ * to be indexed by code. The shared lookup reads one decoded message from all
+ * threads, run main to sweep 1 to 8 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AvpLookupBenchmark {
+
+	private static final int[] THREADS = { 1, 2, 4, 8 };
+
+	// looked up by a credit control server, the last two are absent
+	private static final int[] CODES = { Avp.SESSION_ID, Avp.ORIGIN_HOST, Avp.DESTINATION_REALM, Avp.CC_REQUEST_TYPE, Avp.CC_REQUEST_NUMBER,
+		Avp.SUBSCRIPTION_ID, Avp.MULTIPLE_SERVICES_CREDIT_CONTROL, Avp.USER_EQUIPMENT_INFO, Avp.TERMINATION_CAUSE, Avp.PROXY_INFO };
+
+	private final MessageParser parser = new MessageParser();
+	private final byte[] encoded = encode(parser, createRequest(parser));
+	private final IMessage shared = parse(parser, encoded);
+
+	@Benchmark
+	public Object parse() {
+		return parse(parser, encoded);
+	}
+
+	@Benchmark
+	public int parseAndLookup() {
+		return lookup(parse(parser, encoded));
+	}
+
+	@Benchmark
+	public int sharedLookup() {
+		return lookup(shared);
+	}
+
+	@Benchmark
+	public int allOfCode() {
+		return shared.getAvps().getAvps(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL).size();
+	}
+
+	private static int lookup(IMessage message) {
+		AvpSet avps = message.getAvps();
+		int found = 0;
+		for (int code : CODES) {
+			if (avps.getAvp(code) != null) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	private static IMessage createRequest(MessageParser parser) {
+		IMessage message = parser.createEmptyMessage(272, 4);
+		message.setRequest(true);
+		AvpSet avps = message.getAvps();
+		avps.addAvp(Avp.SESSION_ID, "client.example;1234567890;1", false);
+		avps.addAvp(Avp.ORIGIN_HOST, "client.example", true);
+		avps.addAvp(Avp.ORIGIN_REALM, "example", true);
+		avps.addAvp(Avp.DESTINATION_REALM, "server.example", true);
+		avps.addAvp(Avp.AUTH_APPLICATION_ID, 4L, true);
+		avps.addAvp(Avp.SERVICE_CONTEXT_ID, "32251@3gpp.org", false);
+		avps.addAvp(Avp.CC_REQUEST_TYPE, 2, true);
+		avps.addAvp(Avp.CC_REQUEST_NUMBER, 1L, true);
+		avps.addAvp(Avp.EVENT_TIMESTAMP, 3600000000L, true);
+		AvpSet subscription = avps.addGroupedAvp(Avp.SUBSCRIPTION_ID);
+		subscription.addAvp(Avp.SUBSCRIPTION_ID_TYPE, 0, true);
+		subscription.addAvp(Avp.SUBSCRIPTION_ID_DATA, "48600000001", false);
+		avps.addAvp(Avp.MULTIPLE_SERVICES_INDICATOR, 1, true);
+		for (int i = 0; i < 6; i++) {
+			AvpSet mscc = avps.addGroupedAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL);
+			mscc.addAvp(Avp.RATING_GROUP, 100L + i, true);
+			mscc.addGroupedAvp(Avp.REQUESTED_SERVICE_UNIT).addAvp(Avp.CC_TOTAL_OCTETS, 1000000L, true);
+			mscc.addGroupedAvp(Avp.USED_SERVICE_UNIT).addAvp(Avp.CC_TOTAL_OCTETS, 250000L * i, true);
+		}
+		for (int i = 0; i < 8; i++) {
+			avps.addAvp(Avp.ROUTE_RECORD, "relay" + i + ".example", true);
+		}
+		AvpSet equipment = avps.addGroupedAvp(Avp.USER_EQUIPMENT_INFO);
+		equipment.addAvp(Avp.USER_EQUIPMENT_INFO_TYPE, 0, false);
+		equipment.addAvp(Avp.USER_EQUIPMENT_INFO_VALUE, "3534560000000001", false);
+		return message;
+	}
+
+	private static byte[] encode(MessageParser parser, IMessage message) {
+		try {
+			ByteBuffer buffer = parser.encodeMessage(message);
+			return Arrays.copyOf(buffer.array(), buffer.limit());
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("Failed to encode request", e);
+		}
+	}
+
+	private static IMessage parse(MessageParser parser, byte[] encoded) {
+		try {
+			return parser.createMessage(ByteBuffer.wrap(encoded));
+		}
+		catch (AvpDataException e) {
+			throw new IllegalStateException("Failed to decode request", e);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		for (int threads : THREADS) {
+			Options options = new OptionsBuilder()
+					.include(AvpLookupBenchmark.class.getSimpleName())
+					.threads(threads)
+					.forks(1)
+					.warmupIterations(3)
+					.measurementIterations(5)
+					.build();
+			new Runner(options).run();
+		}
+	}
+}
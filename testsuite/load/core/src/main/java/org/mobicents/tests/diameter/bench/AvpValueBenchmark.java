@@ -0,0 +1,156 @@
+package org.mobicents.tests.diameter.bench;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.AvpSet;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH harness for building and reading primitive AVP values. Builds credit
+ * control requests and answers through the AvpSet.addAvp(int, long, ...)
+ * family, with Unsigned32, Integer64, Time, Address and UTF8String values,
+ * encodes them, and reads the values of a received answer back through the
+ * typed getters. Run main for one thread, use -prof gc to compare the
+ * allocation per message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AvpValueBenchmark {
+
+	private static final int SERVICES = 3;
+
+	private final MessageParser parser = new MessageParser();
+	private final Date timestamp = new Date();
+	private final InetAddress address = address();
+	private final byte[] answer = encode(parser, createAnswer(parser, timestamp, address));
+
+	@Benchmark
+	public Object buildRequest() {
+		return createRequest(parser, timestamp);
+	}
+
+	@Benchmark
+	public int buildAndEncodeRequest() throws Exception {
+		return parser.encodeMessage(createRequest(parser, timestamp)).limit();
+	}
+
+	@Benchmark
+	public int buildAndEncodeAnswer() throws Exception {
+		return parser.encodeMessage(createAnswer(parser, timestamp, address)).limit();
+	}
+
+	@Benchmark
+	public long readAnswer() throws Exception {
+		IMessage message = parser.createMessage(ByteBuffer.wrap(answer));
+		AvpSet avps = message.getAvps();
+		long sum = avps.getAvp(Avp.SESSION_ID).getUTF8String().length();
+		sum += avps.getAvp(Avp.ORIGIN_HOST).getDiameterIdentity().length();
+		sum += avps.getAvp(Avp.RESULT_CODE).getUnsigned32();
+		sum += avps.getAvp(Avp.CC_REQUEST_NUMBER).getUnsigned32();
+		sum += avps.getAvp(Avp.EVENT_TIMESTAMP).getTime().getTime();
+		sum += avps.getAvp(Avp.HOST_IP_ADDRESS).getAddress().hashCode();
+		for (Avp mscc : avps.getAvps(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL)) {
+			AvpSet services = mscc.getGrouped();
+			sum += services.getAvp(Avp.RATING_GROUP).getUnsigned32();
+			sum += services.getAvp(Avp.VALIDITY_TIME).getUnsigned32();
+			AvpSet granted = services.getAvp(Avp.GRANTED_SERVICE_UNIT).getGrouped();
+			sum += granted.getAvp(Avp.CC_TOTAL_OCTETS).getUnsigned64();
+			sum += granted.getAvp(Avp.CC_TIME).getUnsigned32();
+		}
+		return sum;
+	}
+
+	private static IMessage createRequest(MessageParser parser, Date timestamp) {
+		IMessage message = parser.createEmptyMessage(272, 4);
+		message.setRequest(true);
+		AvpSet avps = message.getAvps();
+		avps.addAvp(Avp.SESSION_ID, "client.example;1234567890;1", false);
+		avps.addAvp(Avp.ORIGIN_HOST, "client.example", true);
+		avps.addAvp(Avp.ORIGIN_REALM, "example", true);
+		avps.addAvp(Avp.DESTINATION_REALM, "server.example", true);
+		avps.addAvp(Avp.AUTH_APPLICATION_ID, 4L, true);
+		avps.addAvp(Avp.CC_REQUEST_TYPE, 2, true);
+		avps.addAvp(Avp.CC_REQUEST_NUMBER, 1L, true);
+		avps.addAvp(Avp.EVENT_TIMESTAMP, timestamp, true, false);
+		AvpSet subscription = avps.addGroupedAvp(Avp.SUBSCRIPTION_ID);
+		subscription.addAvp(Avp.SUBSCRIPTION_ID_TYPE, 0, true);
+		subscription.addAvp(Avp.SUBSCRIPTION_ID_DATA, "48600000001", false);
+		for (int i = 0; i < SERVICES; i++) {
+			AvpSet mscc = avps.addGroupedAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL);
+			mscc.addAvp(Avp.RATING_GROUP, 100L + i, true);
+			AvpSet used = mscc.addGroupedAvp(Avp.USED_SERVICE_UNIT);
+			used.addAvp(Avp.CC_TOTAL_OCTETS, 250000L * i, true, false);
+			used.addAvp(Avp.CC_TIME, 60L * i, true, false, true);
+		}
+		return message;
+	}
+
+	private static IMessage createAnswer(MessageParser parser, Date timestamp, InetAddress address) {
+		IMessage message = parser.createEmptyMessage(272, 4);
+		AvpSet avps = message.getAvps();
+		avps.addAvp(Avp.SESSION_ID, "client.example;1234567890;1", false);
+		avps.addAvp(Avp.RESULT_CODE, 2001L, true);
+		avps.addAvp(Avp.ORIGIN_HOST, "server.example", true);
+		avps.addAvp(Avp.ORIGIN_REALM, "example", true);
+		avps.addAvp(Avp.AUTH_APPLICATION_ID, 4L, true);
+		avps.addAvp(Avp.CC_REQUEST_TYPE, 2, true);
+		avps.addAvp(Avp.CC_REQUEST_NUMBER, 1L, true);
+		avps.addAvp(Avp.EVENT_TIMESTAMP, timestamp, true, false);
+		avps.addAvp(Avp.HOST_IP_ADDRESS, address, true, false);
+		for (int i = 0; i < SERVICES; i++) {
+			AvpSet mscc = avps.addGroupedAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL);
+			mscc.addAvp(Avp.RATING_GROUP, 100L + i, true);
+			mscc.addAvp(Avp.RESULT_CODE, 2001L, true);
+			mscc.addAvp(Avp.VALIDITY_TIME, 3600L, true);
+			AvpSet granted = mscc.addGroupedAvp(Avp.GRANTED_SERVICE_UNIT);
+			granted.addAvp(Avp.CC_TOTAL_OCTETS, 1000000L * (i + 1), true, false);
+			granted.addAvp(Avp.CC_TIME, 600L, true, false, true);
+		}
+		return message;
+	}
+
+	private static InetAddress address() {
+		try {
+			return InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("Failed to create address", e);
+		}
+	}
+
+	private static byte[] encode(MessageParser parser, IMessage message) {
+		try {
+			ByteBuffer buffer = parser.encodeMessage(message);
+			return Arrays.copyOf(buffer.array(), buffer.limit());
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("Failed to encode answer", e);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+				.include(AvpValueBenchmark.class.getSimpleName())
+				.forks(1)
+				.warmupIterations(3)
+				.measurementIterations(5)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,121 @@
+package org.mobicents.tests.diameter.bench;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.AvpSet;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.parser.ParseException;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.jdiameter.client.impl.transport.BufferPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH harness for the buffers outgoing messages are encoded into. Compares a
+ * heap and a direct buffer allocated for every message with buffers borrowed
+ * from a shared {@link BufferPool} and given back once written, as the
+ * transports do. Each encoded message is copied to a direct buffer standing
+ * for the socket, which a heap buffer needs anyway when it is written to a
+ * channel. Run main to sweep 1 to 8 threads, use -prof gc to compare the
+ * allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BufferPoolBenchmark {
+
+	private static final int[] THREADS = { 1, 2, 4, 8 };
+
+	private final MessageParser parser = new MessageParser();
+	private final IMessage request = createRequest(parser);
+	private final BufferPool pool = new BufferPool();
+
+	@State(Scope.Thread)
+	public static class Socket {
+		final ByteBuffer out = ByteBuffer.allocateDirect(BufferPool.DEFAULT_BUFFER_SIZE);
+
+		int write(ByteBuffer buffer) {
+			out.clear();
+			out.put(buffer);
+			return out.position();
+		}
+	}
+
+	@Benchmark
+	public int heapPerMessage(Socket socket) throws ParseException {
+		return socket.write(parser.encodeMessage(request));
+	}
+
+	@Benchmark
+	public int directPerMessage(Socket socket) throws ParseException {
+		return socket.write(parser.encodeMessage(request, new DirectAllocator()));
+	}
+
+	@Benchmark
+	public int pooled(Socket socket) throws ParseException {
+		ByteBuffer buffer = parser.encodeMessage(request, pool);
+		try {
+			return socket.write(buffer);
+		}
+		finally {
+			pool.release(buffer);
+		}
+	}
+
+	/**
+	 * Allocates a new direct buffer every time, never keeps one.
+	 */
+	private static class DirectAllocator extends BufferPool {
+
+		public ByteBuffer acquire(int size) {
+			return ByteBuffer.allocateDirect(size);
+		}
+
+		public void release(ByteBuffer buffer) {
+		}
+	}
+
+	private static IMessage createRequest(MessageParser parser) {
+		IMessage message = parser.createEmptyMessage(272, 4);
+		message.setRequest(true);
+		AvpSet avps = message.getAvps();
+		avps.addAvp(Avp.SESSION_ID, "client.example;1234567890;1", false);
+		avps.addAvp(Avp.ORIGIN_HOST, "client.example", true);
+		avps.addAvp(Avp.ORIGIN_REALM, "example", true);
+		avps.addAvp(Avp.DESTINATION_REALM, "server.example", true);
+		avps.addAvp(Avp.AUTH_APPLICATION_ID, 4L, true);
+		avps.addAvp(Avp.CC_REQUEST_TYPE, 2, true);
+		avps.addAvp(Avp.CC_REQUEST_NUMBER, 1L, true);
+		AvpSet subscription = avps.addGroupedAvp(Avp.SUBSCRIPTION_ID);
+		subscription.addAvp(Avp.SUBSCRIPTION_ID_TYPE, 0, true);
+		subscription.addAvp(Avp.SUBSCRIPTION_ID_DATA, "48600000001", false);
+		for (int i = 0; i < 3; i++) {
+			AvpSet mscc = avps.addGroupedAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL);
+			mscc.addAvp(Avp.RATING_GROUP, 100L + i, true);
+			mscc.addGroupedAvp(Avp.USED_SERVICE_UNIT).addAvp(Avp.CC_TOTAL_OCTETS, 250000L * i, true);
+		}
+		return message;
+	}
+
+	public static void main(String[] args) throws Exception {
+		for (int threads : THREADS) {
+			Options options = new OptionsBuilder()
+					.include(BufferPoolBenchmark.class.getSimpleName())
+					.threads(threads)
+					.forks(1)
+					.warmupIterations(3)
+					.measurementIterations(5)
+					.build();
+			new Runner(options).run();
+		}
+	}
+}
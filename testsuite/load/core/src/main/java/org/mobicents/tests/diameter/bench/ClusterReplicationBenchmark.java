@@ -0,0 +1,162 @@
+package org.mobicents.tests.diameter.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mobicents.diameter.api.ha.cluster.FailoverTimerScheduler.TimerHandler;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
+import org.mobicents.diameter.impl.ha.cluster.loopback.LoopbackCluster;
+import org.mobicents.diameter.impl.ha.cluster.loopback.LoopbackClusterBackend;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH harness for replicated session state on a three member loopback
+ * cluster. Measures replicated writes and reads of session sized values.
+ * Run main to first report how many sessions each member holds as the cluster
+ * grows and how long timers of a member that leaves take to fire on the
+ * remaining ones, then sweep 1 to 16 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ClusterReplicationBenchmark {
+
+	private static final int[] THREADS = { 1, 2, 4, 8, 16 };
+	private static final int MEMBERS = 3;
+	private static final int SESSIONS = 10000;
+
+	private List<LoopbackClusterBackend> members;
+	private ReplicatedStateStore store;
+	private final byte[] value = new byte[512];
+	private final AtomicLong sequence = new AtomicLong();
+
+	@Setup
+	public void setUp() {
+		members = startCluster(new LoopbackCluster(LoopbackCluster.DEFAULT_REPLICA_COUNT), MEMBERS);
+		store = members.get(0).getStateStore();
+		for (int i = 0; i < SESSIONS; i++) {
+			store.create("session;" + i);
+			store.put("session;" + i, value);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		for (LoopbackClusterBackend member : members) {
+			member.stop();
+		}
+	}
+
+	@Benchmark
+	public void put() {
+		store.put("session;" + (sequence.incrementAndGet() % SESSIONS), value);
+	}
+
+	@Benchmark
+	public byte[] get() {
+		return store.get("session;" + (sequence.incrementAndGet() % SESSIONS));
+	}
+
+	private static List<LoopbackClusterBackend> startCluster(LoopbackCluster cluster, int size) {
+		List<LoopbackClusterBackend> members = new ArrayList<LoopbackClusterBackend>();
+		for (int i = 0; i < size; i++) {
+			LoopbackClusterBackend member = new LoopbackClusterBackend(cluster);
+			member.start();
+			members.add(member);
+		}
+		return members;
+	}
+
+	/**
+	 * Writes sessions to clusters of growing size and reports the largest
+	 * number of sessions held by one member, and how many entries a member
+	 * joining the cluster took.
+	 */
+	private static void measureShare(int sessions, int maxMembers) {
+		for (int size = 2; size <= maxMembers; size++) {
+			LoopbackCluster cluster = new LoopbackCluster(LoopbackCluster.DEFAULT_REPLICA_COUNT);
+			List<LoopbackClusterBackend> members = startCluster(cluster, size - 1);
+			ReplicatedStateStore store = members.get(0).getStateStore();
+			byte[] value = new byte[512];
+			for (int i = 0; i < sessions; i++) {
+				store.create("session;" + i);
+				store.put("session;" + i, value);
+			}
+			LoopbackClusterBackend joined = new LoopbackClusterBackend(cluster);
+			joined.start();
+			members.add(joined);
+			int largest = 0;
+			for (LoopbackClusterBackend member : members) {
+				largest = Math.max(largest, member.getNode().getSessionCount());
+			}
+			System.out.println(size + " members: largest member holds " + largest + " of " + sessions + " sessions ("
+					+ (100 * largest / sessions) + "%), joining member took " + joined.getNode().getSessionCount());
+			for (LoopbackClusterBackend member : members) {
+				member.stop();
+			}
+		}
+	}
+
+	/**
+	 * Schedules timers on one member, stops it just before they are due and
+	 * reports when the remaining members fire them.
+	 */
+	private static void measureFailover(int timers, long delay) throws Exception {
+		List<LoopbackClusterBackend> members = startCluster(new LoopbackCluster(LoopbackCluster.DEFAULT_REPLICA_COUNT), MEMBERS);
+		final CountDownLatch fired = new CountDownLatch(timers);
+		final AtomicLong lastFired = new AtomicLong();
+		TimerHandler handler = new TimerHandler() {
+			public void onTimer(String sessionId, String timerName) {
+				lastFired.set(System.nanoTime());
+				fired.countDown();
+			}
+		};
+		for (LoopbackClusterBackend member : members) {
+			member.getTimerScheduler().setTimerHandler(handler);
+		}
+		LoopbackClusterBackend failing = members.remove(0);
+		for (int i = 0; i < timers; i++) {
+			failing.getTimerScheduler().schedule("session;" + i + "/TX", "session;" + i, "TX", delay);
+		}
+		Thread.sleep(delay / 2);
+		long stopped = System.nanoTime();
+		failing.stop();
+		long viewChanged = System.nanoTime();
+		if (!fired.await(delay * 10, TimeUnit.MILLISECONDS)) {
+			System.out.println("Only " + (timers - fired.getCount()) + " of " + timers + " timers fired");
+		}
+		System.out.println("Failover of " + timers + " timers: view change " + TimeUnit.NANOSECONDS.toMillis(viewChanged - stopped) + " ms, last timer fired "
+				+ TimeUnit.NANOSECONDS.toMillis(lastFired.get() - stopped) + " ms after the member left (due after " + (delay - delay / 2) + " ms)");
+		for (LoopbackClusterBackend member : members) {
+			member.stop();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		measureShare(SESSIONS, 8);
+		measureFailover(10000, 2000);
+		for (int threads : THREADS) {
+			Options options = new OptionsBuilder()
+					.include(ClusterReplicationBenchmark.class.getSimpleName())
+					.threads(threads)
+					.forks(1)
+					.warmupIterations(3)
+					.measurementIterations(5)
+					.build();
+			new Runner(options).run();
+		}
+	}
+}
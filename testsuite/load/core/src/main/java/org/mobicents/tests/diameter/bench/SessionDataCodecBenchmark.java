@@ -0,0 +1,129 @@
+package org.mobicents.tests.diameter.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.cca.ClientCCASession;
+import org.jdiameter.common.api.app.cca.ClientCCASessionState;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema.FieldType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH harness for replicated session data encoding. Compares Java
+ * serialization of the field map, which is what the cache stored before
+ * session data was packed, with the schema driven binary blob, using the
+ * fields of a client credit control session. Run main to print the encoded
+ * sizes and then run the round trip benchmarks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SessionDataCodecBenchmark {
+
+	private static final SessionDataSchema SCHEMA = new SessionDataSchema(1)
+			.add("SIFACE", FieldType.CLASS)
+			.add("APID", FieldType.APPLICATION_ID)
+			.add("EVENT_BASED", FieldType.BOOLEAN)
+			.add("REQUEST_TYPE", FieldType.BOOLEAN)
+			.addEnum("STATE", ClientCCASessionState.class)
+			.add("TXTIMER_ID", FieldType.SERIALIZABLE)
+			.add("TXTIMER_REQUEST", FieldType.BYTES)
+			.add("BUFFER", FieldType.BYTES)
+			.add("GRA", FieldType.INTEGER)
+			.add("GDDFH", FieldType.INTEGER)
+			.add("GCCFH", FieldType.INTEGER);
+
+	private final Map<String, Object> fields = createFields();
+	private final byte[] serialized = serialize(fields);
+	private final byte[] packed = SCHEMA.encode(fields);
+
+	@Benchmark
+	public Object serializedRoundTrip() {
+		return deserialize(serialize(fields));
+	}
+
+	@Benchmark
+	public Object packedRoundTrip() {
+		return SCHEMA.decode(SCHEMA.encode(fields));
+	}
+
+	@Benchmark
+	public Object serializedDecode() {
+		return deserialize(serialized);
+	}
+
+	@Benchmark
+	public Object packedDecode() {
+		return SCHEMA.decode(packed);
+	}
+
+	private static Map<String, Object> createFields() {
+		Map<String, Object> fields = new HashMap<String, Object>();
+		fields.put("SIFACE", ClientCCASession.class);
+		fields.put("APID", ApplicationId.createByAuthAppId(0, 4));
+		fields.put("EVENT_BASED", Boolean.FALSE);
+		fields.put("REQUEST_TYPE", Boolean.TRUE);
+		fields.put("STATE", ClientCCASessionState.OPEN);
+		fields.put("TXTIMER_ID", "aaa://host.example.com;1096298391;12345");
+		// roughly the size of an encoded CCR-U
+		fields.put("TXTIMER_REQUEST", new byte[420]);
+		fields.put("GRA", 0);
+		fields.put("GDDFH", 1);
+		fields.put("GCCFH", 0);
+		return fields;
+	}
+
+	private static byte[] serialize(Map<String, Object> fields) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(new HashMap<String, Object>(fields));
+			out.close();
+			return bytes.toByteArray();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Object deserialize(byte[] data) {
+		try {
+			return new ObjectInputStream(new ByteArrayInputStream(data)).readObject();
+		}
+		catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, Object> fields = createFields();
+		System.out.println("Java serialization: " + serialize(fields).length + " bytes");
+		System.out.println("Packed blob:        " + SCHEMA.encode(fields).length + " bytes");
+		fields.remove("TXTIMER_REQUEST");
+		System.out.println("Without buffered request, Java serialization: " + serialize(fields).length + " bytes, packed blob: " + SCHEMA.encode(fields).length + " bytes");
+
+		Options options = new OptionsBuilder()
+				.include(SessionDataCodecBenchmark.class.getSimpleName())
+				.forks(1)
+				.warmupIterations(3)
+				.measurementIterations(5)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,109 @@
+package org.mobicents.tests.diameter.bench;
+
+import static org.jdiameter.client.impl.helpers.Parameters.Statistics;
+import static org.jdiameter.client.impl.helpers.Parameters.StatisticsActiveList;
+import static org.jdiameter.client.impl.helpers.Parameters.StatisticsEnabled;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jdiameter.client.impl.helpers.EmptyConfiguration;
+import org.jdiameter.common.api.statistic.IHistogramRecord;
+import org.jdiameter.common.api.statistic.IStatistic;
+import org.jdiameter.common.api.statistic.IStatisticManager;
+import org.jdiameter.common.api.statistic.IStatisticRecord;
+import org.jdiameter.common.impl.statistic.StatisticManagerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH harness for counting a message in a peer statistic: looking the record
+ * up by name, as peers used to, against a record resolved once, recording a
+ * latency, and the cost of a disabled statistic. Run main to sweep 1 to 16
+ * threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StatisticBenchmark {
+
+	private static final int[] THREADS = { 1, 2, 4, 8, 16 };
+
+	private IStatistic statistic;
+	private IStatistic disabled;
+	private IStatisticRecord counter;
+	private IStatisticRecord disabledCounter;
+	private IHistogramRecord histogram;
+
+	@Setup
+	public void setUp() {
+		IStatisticManager manager = new StatisticManagerImpl(EmptyConfiguration.getInstance().add(Statistics,
+				EmptyConfiguration.getInstance().add(StatisticsEnabled, true).add(StatisticsActiveList, "Peer")));
+		statistic = createPeerStatistic(manager, "aaa://enabled.example:3868");
+		counter = statistic.getRecordByName(IStatisticRecord.Counters.NetGenRequest);
+		histogram = manager.newHistogramRecord("MessageLatency.4.272", "latency");
+		statistic.appendCounter(histogram);
+		disabled = createPeerStatistic(manager, "aaa://disabled.example:3868");
+		disabled.enable(false);
+		disabledCounter = disabled.getRecordByName(IStatisticRecord.Counters.NetGenRequest);
+	}
+
+	private static IStatistic createPeerStatistic(IStatisticManager manager, String uri) {
+		IStatistic statistic = manager.newStatistic(uri, IStatistic.Groups.Peer);
+		// same records as a peer, the one counted last
+		for (IStatisticRecord.Counters counter : new IStatisticRecord.Counters[] { IStatisticRecord.Counters.AppGenRequest,
+				IStatisticRecord.Counters.AppGenRejectedRequest, IStatisticRecord.Counters.AppGenResponse,
+				IStatisticRecord.Counters.AppGenRejectedResponse, IStatisticRecord.Counters.NetGenRejectedRequest,
+				IStatisticRecord.Counters.NetGenResponse, IStatisticRecord.Counters.NetGenRejectedResponse,
+				IStatisticRecord.Counters.SysGenResponse, IStatisticRecord.Counters.NetGenRequest }) {
+			statistic.appendCounter(manager.newCounterRecord(counter));
+		}
+		return statistic;
+	}
+
+	@Benchmark
+	public void lookupByName() {
+		if (statistic.isEnabled()) {
+			statistic.getRecordByName(IStatisticRecord.Counters.NetGenRequest.name()).inc();
+		}
+	}
+
+	@Benchmark
+	public void resolvedField() {
+		if (statistic.isEnabled()) {
+			counter.inc();
+		}
+	}
+
+	@Benchmark
+	public void disabled() {
+		if (disabled.isEnabled()) {
+			disabledCounter.inc();
+		}
+	}
+
+	@Benchmark
+	public void recordLatency() {
+		histogram.record(System.nanoTime() & 0xFFFF);
+	}
+
+	public static void main(String[] args) throws Exception {
+		for (int threads : THREADS) {
+			Options options = new OptionsBuilder()
+					.include(StatisticBenchmark.class.getSimpleName())
+					.threads(threads)
+					.forks(1)
+					.warmupIterations(3)
+					.measurementIterations(5)
+					.build();
+			new Runner(options).run();
+		}
+	}
+}
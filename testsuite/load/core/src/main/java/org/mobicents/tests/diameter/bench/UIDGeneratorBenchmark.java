@@ -0,0 +1,80 @@
+package org.mobicents.tests.diameter.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jdiameter.client.impl.helpers.UIDGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH harness for identifier generation under contention. Compares a mutex
+ * guarded counter, as UIDGenerator used to be, with the atomic counter and with
+ * per-thread reserved ranges. Run main to sweep 1 to 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UIDGeneratorBenchmark {
+
+	private static final int[] THREADS = { 1, 2, 4, 8, 16, 32, 64 };
+
+	private final LockedGenerator locked = new LockedGenerator();
+	private final UIDGenerator atomic = new UIDGenerator(0);
+	private final UIDGenerator ranged = new UIDGenerator(0, 32);
+
+	@Benchmark
+	public long locked() {
+		return locked.nextLong();
+	}
+
+	@Benchmark
+	public long atomic() {
+		return atomic.nextLong();
+	}
+
+	@Benchmark
+	public long ranged() {
+		return ranged.nextLong();
+	}
+
+	/**
+	 * Previous implementation, every call takes a shared lock.
+	 */
+	private static class LockedGenerator {
+
+		private final Lock mutex = new ReentrantLock();
+		private long value;
+
+		long nextLong() {
+			mutex.lock();
+			try {
+				return value++;
+			}
+			finally {
+				mutex.unlock();
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		for (int threads : THREADS) {
+			Options options = new OptionsBuilder()
+					.include(UIDGeneratorBenchmark.class.getSimpleName())
+					.threads(threads)
+					.forks(1)
+					.warmupIterations(3)
+					.measurementIterations(5)
+					.build();
+			new Runner(options).run();
+		}
+	}
+}
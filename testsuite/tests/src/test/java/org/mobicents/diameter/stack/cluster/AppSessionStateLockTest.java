@@ -0,0 +1,198 @@
+package org.mobicents.diameter.stack.cluster;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+import org.jdiameter.client.api.ISessionFactory;
+import org.jdiameter.common.api.app.cca.ServerCCASessionState;
+import org.jdiameter.common.impl.app.AppSessionImpl;
+import org.jdiameter.common.impl.app.AppSessionStateLock;
+import org.mobicents.diameter.api.ha.cluster.ReplicatedStateStore;
+import org.mobicents.diameter.api.ha.cluster.StateRemovalListener;
+import org.mobicents.diameter.impl.ha.server.cca.ServerCCASessionDataReplicatedImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AppSessionStateLockTest {
+
+	private static final String SESSION_ID = "server.example;1;1";
+
+	private CountingStateStore store;
+	private ServerCCASessionDataReplicatedImpl data;
+	private Lock lock;
+
+	@Before
+	public void setUp() {
+		store = new CountingStateStore();
+		data = new ServerCCASessionDataReplicatedImpl(SESSION_ID, store);
+		lock = new AppSessionStateLock(new TestAppSession(data));
+		store.puts = 0;
+	}
+
+	@Test
+	public void singleWriteTest() {
+		lock.lock();
+		try {
+			data.setStateless(false);
+			data.setServerCCASessionState(ServerCCASessionState.OPEN);
+			data.setTccTimerId("tcc");
+			Assert.assertEquals("Written before the lock was released", 0, store.puts);
+			Assert.assertEquals("Change not visible in the batch", ServerCCASessionState.OPEN, data.getServerCCASessionState());
+		}
+		finally {
+			lock.unlock();
+		}
+		Assert.assertEquals("Wrong number of writes", 1, store.puts);
+		ServerCCASessionDataReplicatedImpl other = new ServerCCASessionDataReplicatedImpl(SESSION_ID, store);
+		Assert.assertFalse("Wrong stateless", other.isStateless());
+		Assert.assertEquals("Wrong state", ServerCCASessionState.OPEN, other.getServerCCASessionState());
+		Assert.assertEquals("Wrong timer id", "tcc", other.getTccTimerId());
+	}
+
+	@Test
+	public void nestedLockTest() {
+		lock.lock();
+		try {
+			data.setServerCCASessionState(ServerCCASessionState.OPEN);
+			lock.lock();
+			try {
+				data.setTccTimerId("tcc");
+			}
+			finally {
+				lock.unlock();
+			}
+			Assert.assertEquals("Written when the nested lock was released", 0, store.puts);
+			data.setStateless(false);
+		}
+		finally {
+			lock.unlock();
+		}
+		Assert.assertEquals("Wrong number of writes", 1, store.puts);
+		ServerCCASessionDataReplicatedImpl other = new ServerCCASessionDataReplicatedImpl(SESSION_ID, store);
+		Assert.assertEquals("Wrong state", ServerCCASessionState.OPEN, other.getServerCCASessionState());
+		Assert.assertEquals("Wrong timer id", "tcc", other.getTccTimerId());
+		Assert.assertFalse("Wrong stateless", other.isStateless());
+	}
+
+	@Test
+	public void unlockedWriteTest() throws Exception {
+		data.setServerCCASessionState(ServerCCASessionState.OPEN);
+		Assert.assertEquals("Write without lock not stored", 1, store.puts);
+		data.setTccTimerId("tcc");
+		Assert.assertEquals("Write without lock not stored", 2, store.puts);
+
+		// writes of other threads are not part of the batch of the lock holder
+		lock.lock();
+		try {
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					data.setStateless(false);
+				}
+			};
+			thread.start();
+			thread.join();
+			Assert.assertEquals("Write of another thread not stored", 3, store.puts);
+		}
+		finally {
+			lock.unlock();
+		}
+		Assert.assertEquals("Empty batch written", 3, store.puts);
+		Assert.assertFalse("Wrong stateless", new ServerCCASessionDataReplicatedImpl(SESSION_ID, store).isStateless());
+	}
+
+	@Test
+	public void removedDataTest() {
+		lock.lock();
+		try {
+			data.setServerCCASessionState(ServerCCASessionState.OPEN);
+			data.setTccTimerId("tcc");
+			Assert.assertTrue("Data not removed", data.remove());
+		}
+		finally {
+			lock.unlock();
+		}
+		Assert.assertEquals("Removed data written", 0, store.puts);
+		Assert.assertFalse("Removed data stored again", store.exists(SESSION_ID));
+	}
+
+	private static class CountingStateStore implements ReplicatedStateStore {
+
+		private final Map<String, byte[]> entries = new HashMap<String, byte[]>();
+		private int puts;
+
+		public synchronized boolean create(String key) {
+			if (entries.containsKey(key)) {
+				return false;
+			}
+			entries.put(key, null);
+			return true;
+		}
+
+		public synchronized boolean exists(String key) {
+			return entries.containsKey(key);
+		}
+
+		public synchronized byte[] get(String key) {
+			return entries.get(key);
+		}
+
+		public synchronized void put(String key, byte[] value) {
+			puts++;
+			entries.put(key, value);
+		}
+
+		public synchronized boolean remove(String key) {
+			boolean existed = entries.containsKey(key);
+			entries.remove(key);
+			return existed;
+		}
+
+		public void setRemovalListener(StateRemovalListener listener) {
+		}
+	}
+
+	/**
+	 * Application session over the given data, with a session factory that returns empty stubs.
+	 */
+	private static class TestAppSession extends AppSessionImpl {
+
+		TestAppSession(ServerCCASessionDataReplicatedImpl data) {
+			super((ISessionFactory) stub(ISessionFactory.class), data);
+		}
+
+		public boolean isStateless() {
+			return false;
+		}
+
+		@Override
+		public void onTimer(String timerName) {
+		}
+
+		private static Object stub(Class<?> type) {
+			return Proxy.newProxyInstance(AppSessionStateLockTest.class.getClassLoader(), new Class[] {type}, new InvocationHandler() {
+				public Object invoke(Object proxy, Method method, Object[] args) {
+					Class<?> returnType = method.getReturnType();
+					if (method.getName().equals("getComponentInstance")) {
+						returnType = (Class<?>) args[0];
+					}
+					if (returnType == boolean.class) {
+						return false;
+					}
+					if (returnType == long.class) {
+						return 0L;
+					}
+					if (returnType == int.class) {
+						return 0;
+					}
+					return returnType.isInterface() ? stub(returnType) : null;
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,219 @@
+package org.mobicents.diameter.stack.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdiameter.common.api.app.cca.ServerCCASessionState;
+import org.mobicents.diameter.api.ha.cluster.FailoverTimerScheduler.TimerHandler;
+import org.mobicents.diameter.api.ha.cluster.StateRemovalListener;
+import org.mobicents.diameter.impl.ha.cluster.ConsistentHashRing;
+import org.mobicents.diameter.impl.ha.cluster.loopback.LoopbackCluster;
+import org.mobicents.diameter.impl.ha.cluster.loopback.LoopbackClusterBackend;
+import org.mobicents.diameter.impl.ha.server.cca.ServerCCASessionDataReplicatedImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LoopbackClusterTest {
+
+	private LoopbackCluster cluster;
+	private List<LoopbackClusterBackend> nodes;
+
+	@Before
+	public void setUp() {
+		cluster = new LoopbackCluster(2);
+		nodes = new ArrayList<LoopbackClusterBackend>();
+		for (int i = 0; i < 3; i++) {
+			LoopbackClusterBackend node = new LoopbackClusterBackend(cluster);
+			node.start();
+			nodes.add(node);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		for (LoopbackClusterBackend node : nodes) {
+			node.stop();
+		}
+	}
+
+	@Test
+	public void replicatedStateTest() throws Exception {
+		Assert.assertEquals("Wrong member count", 3, cluster.getMembers().size());
+		for (int i = 0; i < 100; i++) {
+			Assert.assertTrue("Entry not created", nodes.get(i % 3).getStateStore().create("session;" + i));
+			nodes.get(i % 3).getStateStore().put("session;" + i, new byte[] { (byte) i });
+		}
+		Assert.assertFalse("Entry created twice", nodes.get(1).getStateStore().create("session;0"));
+		for (int i = 0; i < 100; i++) {
+			Assert.assertArrayEquals("Wrong value", new byte[] { (byte) i }, nodes.get((i + 1) % 3).getStateStore().get("session;" + i));
+		}
+
+		// every entry has a replica left after a member leaves
+		nodes.remove(0).stop();
+		for (int i = 0; i < 100; i++) {
+			Assert.assertArrayEquals("Value lost on leave", new byte[] { (byte) i }, nodes.get(i % 2).getStateStore().get("session;" + i));
+		}
+
+		// and a member joining gets its share
+		LoopbackClusterBackend joined = new LoopbackClusterBackend(cluster);
+		joined.start();
+		nodes.add(joined);
+		nodes.remove(0).stop();
+		for (int i = 0; i < 100; i++) {
+			Assert.assertArrayEquals("Value lost on join", new byte[] { (byte) i }, nodes.get(i % 2).getStateStore().get("session;" + i));
+		}
+	}
+
+	@Test
+	public void sessionDataTest() throws Exception {
+		ServerCCASessionDataReplicatedImpl data = new ServerCCASessionDataReplicatedImpl("cca;1", nodes.get(0).getStateStore());
+		data.setServerCCASessionState(ServerCCASessionState.OPEN);
+		data.setStateless(false);
+
+		ServerCCASessionDataReplicatedImpl copy = new ServerCCASessionDataReplicatedImpl("cca;1", nodes.get(2).getStateStore());
+		Assert.assertEquals("Wrong state", ServerCCASessionState.OPEN, copy.getServerCCASessionState());
+		Assert.assertFalse("Wrong stateless flag", copy.isStateless());
+
+		final List<String> removed = new ArrayList<String>();
+		nodes.get(1).getStateStore().setRemovalListener(new StateRemovalListener() {
+			public void stateRemoved(String key) {
+				removed.add(key);
+			}
+		});
+		Assert.assertTrue("Data not removed", copy.remove());
+		Assert.assertFalse("Data still exists", data.exists());
+		Assert.assertTrue("Removal not notified", removed.contains("cca;1"));
+	}
+
+	@Test
+	public void timerFailoverTest() throws Exception {
+		final CountDownLatch fired = new CountDownLatch(1);
+		final AtomicInteger count = new AtomicInteger();
+		TimerHandler handler = new TimerHandler() {
+			public void onTimer(String sessionId, String timerName) {
+				count.incrementAndGet();
+				fired.countDown();
+			}
+		};
+		for (LoopbackClusterBackend node : nodes) {
+			node.getTimerScheduler().setTimerHandler(handler);
+		}
+		nodes.get(0).getTimerScheduler().schedule("cca;2/TX", "cca;2", "TX", 300);
+		Assert.assertTrue("Timer not replicated", nodes.get(1).getTimerScheduler().isScheduled("cca;2/TX"));
+		try {
+			nodes.get(0).getTimerScheduler().schedule("cca;2/TX", "cca;2", "TX", 300);
+			Assert.fail("Timer scheduled twice");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		nodes.remove(0).stop();
+		Assert.assertTrue("Timer not taken over", fired.await(5, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		Assert.assertEquals("Timer fired more than once", 1, count.get());
+		Assert.assertFalse("Fired timer still scheduled", nodes.get(0).getTimerScheduler().isScheduled("cca;2/TX"));
+	}
+
+	@Test
+	public void timerCancelTest() throws Exception {
+		final AtomicInteger count = new AtomicInteger();
+		TimerHandler handler = new TimerHandler() {
+			public void onTimer(String sessionId, String timerName) {
+				count.incrementAndGet();
+			}
+		};
+		for (LoopbackClusterBackend node : nodes) {
+			node.getTimerScheduler().setTimerHandler(handler);
+		}
+		nodes.get(0).getTimerScheduler().schedule("cca;3/TX", "cca;3", "TX", 200);
+		// cancelled from a member other than the one running it
+		nodes.get(2).getTimerScheduler().cancel("cca;3/TX");
+		Thread.sleep(400);
+		Assert.assertEquals("Cancelled timer fired", 0, count.get());
+	}
+
+	@Test
+	public void ringTest() throws Exception {
+		ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("a", "b", "c", "d"), ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+		ConsistentHashRing grown = new ConsistentHashRing(Arrays.asList("a", "b", "c", "d", "e"), ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+		int keys = 10000;
+		int[] share = new int[4];
+		int moved = 0;
+		for (int i = 0; i < keys; i++) {
+			String key = "host.example;" + i + ";1";
+			List<String> owners = ring.owners(key, 2);
+			Assert.assertEquals("Wrong owner count", 2, owners.size());
+			Assert.assertFalse("Owner repeated", owners.get(0).equals(owners.get(1)));
+			Assert.assertEquals("Primary not first owner", ring.primary(key), owners.get(0));
+			share[owners.get(0).charAt(0) - 'a']++;
+			if (!ring.primary(key).equals(grown.primary(key))) {
+				moved++;
+				// keys only move to the new member
+				Assert.assertEquals("Key moved between old members", "e", grown.primary(key));
+			}
+		}
+		for (int i = 0; i < share.length; i++) {
+			Assert.assertTrue("Unbalanced share " + share[i], share[i] > keys / 8 && share[i] < keys * 3 / 8);
+		}
+		// about 1/5 of the keys move to the fifth member
+		Assert.assertTrue("Too many keys moved " + moved, moved > keys / 10 && moved < keys * 3 / 10);
+	}
+
+	@Test
+	public void placementTest() throws Exception {
+		int sessions = 300;
+		for (int i = 0; i < sessions; i++) {
+			String sessionId = "cca;" + i;
+			nodes.get(i % 3).getStateStore().create(sessionId);
+			nodes.get(i % 3).getStateStore().put(sessionId, new byte[] { (byte) i });
+			nodes.get(i % 3).getTimerScheduler().schedule(sessionId + "/TX", sessionId, "TX", 60000);
+		}
+		int held = 0;
+		for (LoopbackClusterBackend node : nodes) {
+			int count = node.getNode().getSessionCount();
+			held += count;
+			// timers are held with their session
+			Assert.assertEquals("Timers not placed with sessions", count, node.getNode().getTimerCount());
+		}
+		Assert.assertEquals("Sessions not held by two members", sessions * 2, held);
+		for (LoopbackClusterBackend node : nodes) {
+			Assert.assertTrue("Member holds everything", node.getNode().getSessionCount() < sessions);
+		}
+	}
+
+	@Test
+	public void replicaCountTest() throws Exception {
+		LoopbackCluster triple = new LoopbackCluster(3);
+		List<LoopbackClusterBackend> members = new ArrayList<LoopbackClusterBackend>();
+		try {
+			for (int i = 0; i < 5; i++) {
+				LoopbackClusterBackend node = new LoopbackClusterBackend(triple);
+				node.start();
+				members.add(node);
+			}
+			for (int i = 0; i < 100; i++) {
+				members.get(0).getStateStore().create("session;" + i);
+				members.get(0).getStateStore().put("session;" + i, new byte[] { (byte) i });
+			}
+			// three replicas survive the loss of two members
+			members.remove(0).stop();
+			members.remove(0).stop();
+			for (int i = 0; i < 100; i++) {
+				Assert.assertArrayEquals("Value lost", new byte[] { (byte) i }, members.get(i % 3).getStateStore().get("session;" + i));
+			}
+			Assert.assertEquals("Replicas not rebuilt", 300, members.get(0).getNode().getSessionCount() + members.get(1).getNode().getSessionCount() + members.get(2).getNode().getSessionCount());
+		}
+		finally {
+			for (LoopbackClusterBackend node : members) {
+				node.stop();
+			}
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package org.mobicents.diameter.stack.cluster;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.jgroups.Address;
+import org.jgroups.stack.IpAddress;
+import org.mobicents.diameter.impl.ha.cluster.ConsistentHashRing;
+import org.mobicents.diameter.impl.ha.cluster.jbc.RingBuddyLocator;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RingBuddyLocatorTest {
+
+	private static final Map<Address, String> NO_POOLS = new HashMap<Address, String>();
+
+	@Test
+	public void ringPlacementTest() throws Exception {
+		List<Address> members = members(8);
+		RingBuddyLocator locator = locator(2);
+		List<String> names = new ArrayList<String>();
+		for (Address member : members) {
+			names.add(member.toString());
+		}
+		ConsistentHashRing ring = new ConsistentHashRing(names, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+		for (Address member : members) {
+			List<Address> buddies = locator.locateBuddies(NO_POOLS, members, member);
+			Assert.assertEquals("Wrong buddy count of " + member, 2, buddies.size());
+			Assert.assertFalse("Member is its own buddy", buddies.contains(member));
+			Assert.assertEquals("Buddies repeated", 2, new HashSet<Address>(buddies).size());
+
+			List<String> expected = ring.owners(member.toString(), 3);
+			expected.remove(member.toString());
+			Assert.assertEquals("Buddies not taken from the ring", expected.subList(0, 2), names(buddies));
+		}
+	}
+
+	@Test
+	public void memberLeavesTest() throws Exception {
+		List<Address> members = members(10);
+		RingBuddyLocator locator = locator(1);
+		Map<Address, List<Address>> before = new HashMap<Address, List<Address>>();
+		for (Address member : members) {
+			before.put(member, locator.locateBuddies(NO_POOLS, members, member));
+		}
+		Address lost = members.get(4);
+		List<Address> remaining = new ArrayList<Address>(members);
+		remaining.remove(lost);
+		for (Address member : remaining) {
+			List<Address> buddies = locator.locateBuddies(NO_POOLS, remaining, member);
+			if (!before.get(member).contains(lost)) {
+				Assert.assertEquals("Buddy of " + member + " changed by an unrelated member leaving", before.get(member), buddies);
+			}
+			else {
+				Assert.assertFalse("Lost member still a buddy", buddies.contains(lost));
+				Assert.assertEquals("Wrong buddy count of " + member, 1, buddies.size());
+			}
+		}
+	}
+
+	@Test
+	public void smallClusterTest() throws Exception {
+		List<Address> members = members(3);
+		RingBuddyLocator locator = locator(5);
+		for (Address member : members) {
+			List<Address> buddies = locator.locateBuddies(NO_POOLS, members, member);
+			Assert.assertEquals("Wrong buddy count of " + member, 2, buddies.size());
+			Assert.assertFalse("Member is its own buddy", buddies.contains(member));
+		}
+		List<Address> alone = members.subList(0, 1);
+		Assert.assertTrue("Buddy found for a single member", locator.locateBuddies(NO_POOLS, alone, alone.get(0)).isEmpty());
+		Assert.assertTrue("Buddy found with no buddies configured", locator(0).locateBuddies(NO_POOLS, members, members.get(0)).isEmpty());
+	}
+
+	private static RingBuddyLocator locator(int numBuddies) {
+		RingBuddyLocator locator = new RingBuddyLocator();
+		locator.init(RingBuddyLocator.createConfig(numBuddies));
+		return locator;
+	}
+
+	private static List<Address> members(int count) throws Exception {
+		List<Address> members = new ArrayList<Address>();
+		for (int i = 0; i < count; i++) {
+			members.add(new IpAddress("127.0.0.1", 7800 + i));
+		}
+		return members;
+	}
+
+	private static List<String> names(List<Address> members) {
+		List<String> names = new ArrayList<String>();
+		for (Address member : members) {
+			names.add(member.toString());
+		}
+		return names;
+	}
+}
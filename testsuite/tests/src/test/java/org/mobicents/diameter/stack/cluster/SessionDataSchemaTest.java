@@ -0,0 +1,179 @@
+package org.mobicents.diameter.stack.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jdiameter.api.ApplicationId;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema;
+import org.mobicents.diameter.impl.ha.common.SessionDataSchema.FieldType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SessionDataSchemaTest {
+
+	private enum State {
+		IDLE, OPEN, PENDING
+	}
+
+	private static final SessionDataSchema OLD_SCHEMA = new SessionDataSchema(1)
+			.add("boolean", FieldType.BOOLEAN)
+			.add("integer", FieldType.INTEGER)
+			.add("long", FieldType.LONG)
+			.add("string", FieldType.STRING)
+			.add("bytes", FieldType.BYTES)
+			.addEnum("enum", State.class)
+			.add("serializable", FieldType.SERIALIZABLE)
+			.add("applicationId", FieldType.APPLICATION_ID)
+			.add("class", FieldType.CLASS);
+
+	private static final SessionDataSchema NEW_SCHEMA = OLD_SCHEMA.extend(2)
+			.add("newString", FieldType.STRING)
+			.add("newLong", FieldType.LONG)
+			.add("newBytes", FieldType.BYTES);
+
+	@Test
+	public void roundTripTest() {
+		List<Object> list = new ArrayList<Object>(Arrays.asList("a", 1L));
+		checkRoundTrip(fields(true, 0, 0L, "", new byte[0], State.IDLE, "", ApplicationId.createByAuthAppId(0, 4), Object.class));
+		checkRoundTrip(fields(false, Integer.MIN_VALUE, Long.MIN_VALUE, "zółw 中", new byte[] { -1, 0, 127 }, State.PENDING, list,
+				ApplicationId.createByAccAppId(10415, 3), SessionDataSchema.class));
+		checkRoundTrip(fields(true, Integer.MAX_VALUE, Long.MAX_VALUE, "x", new byte[300], State.OPEN, 42L,
+				ApplicationId.createByAuthAppId(10415, 16777238), String.class));
+		checkRoundTrip(fields(false, -1, -1L, null, null, null, null, null, null));
+		checkRoundTrip(new HashMap<String, Object>());
+	}
+
+	@Test
+	public void unknownFieldTest() {
+		Map<String, Object> fields = new HashMap<String, Object>();
+		fields.put("newString", "unknown");
+		try {
+			OLD_SCHEMA.encode(fields);
+			Assert.fail("Field not in schema encoded");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void truncatedTest() {
+		byte[] data = OLD_SCHEMA.encode(fields(true, 1000, -5000000000L, "text", new byte[] { 1, 2, 3 }, State.OPEN, "value",
+				ApplicationId.createByAuthAppId(10415, 4), Object.class));
+		for (int length = 0; length < data.length; length++) {
+			try {
+				OLD_SCHEMA.decode(Arrays.copyOf(data, length));
+				Assert.fail("Blob truncated to " + length + " of " + data.length + " bytes decoded");
+			}
+			catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		try {
+			OLD_SCHEMA.decode(Arrays.copyOf(data, data.length + 1));
+			Assert.fail("Blob with trailing byte decoded");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+		data[0] = 2;
+		try {
+			OLD_SCHEMA.decode(data);
+			Assert.fail("Blob of unknown format decoded");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void olderToNewerTest() {
+		Map<String, Object> fields = fields(true, 7, 8L, "old", new byte[] { 9 }, State.OPEN, "value", ApplicationId.createByAuthAppId(4), Object.class);
+		Map<String, Object> decoded = NEW_SCHEMA.decode(OLD_SCHEMA.encode(fields));
+		assertFields(fields, decoded);
+		Assert.assertNull("Newer field set", decoded.get("newString"));
+
+		// the newer node adds its fields to the old blob
+		decoded.put("newString", "new");
+		decoded.put("newLong", -1L);
+		assertFields(decoded, NEW_SCHEMA.decode(NEW_SCHEMA.encode(decoded)));
+	}
+
+	@Test
+	public void newerToOlderTest() {
+		Map<String, Object> fields = fields(true, 7, 8L, "new", new byte[] { 9 }, State.OPEN, "value", ApplicationId.createByAuthAppId(4), Object.class);
+		fields.put("newString", "kept");
+		fields.put("newBytes", new byte[] { 1, 2, 3, 4 });
+		byte[] data = NEW_SCHEMA.encode(fields);
+
+		Map<String, Object> decoded = OLD_SCHEMA.decode(data);
+		Assert.assertEquals("Wrong string", "new", decoded.get("string"));
+		Assert.assertNull("Unknown field visible", decoded.get("newString"));
+		Assert.assertArrayEquals("Blob changed by decode and encode", data, OLD_SCHEMA.encode(decoded));
+
+		// the older node changes known fields, the newer ones are kept
+		decoded.put("string", "changed by old node");
+		decoded.put("long", Long.MIN_VALUE);
+		decoded.remove("bytes");
+		decoded.remove("class");
+		Map<String, Object> result = NEW_SCHEMA.decode(OLD_SCHEMA.encode(decoded));
+		fields.put("string", "changed by old node");
+		fields.put("long", Long.MIN_VALUE);
+		fields.remove("bytes");
+		fields.remove("class");
+		assertFields(fields, result);
+
+		// and a blob written again by the older node still decodes there
+		Assert.assertEquals("Wrong string", "changed by old node", OLD_SCHEMA.decode(OLD_SCHEMA.encode(decoded)).get("string"));
+	}
+
+	@Test
+	public void otherSchemaTest() {
+		Map<String, Object> fields = new HashMap<String, Object>();
+		fields.put("newString", "new");
+		Map<String, Object> decoded = OLD_SCHEMA.decode(NEW_SCHEMA.encode(fields));
+		try {
+			OLD_SCHEMA.extend(3).add("other", FieldType.STRING).encode(decoded);
+			Assert.fail("Fields decoded by another schema encoded");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private static Map<String, Object> fields(Boolean b, Integer i, Long l, String s, byte[] bytes, State state, Object serializable,
+			ApplicationId applicationId, Class<?> clazz) {
+		Map<String, Object> fields = new HashMap<String, Object>();
+		fields.put("boolean", b);
+		fields.put("integer", i);
+		fields.put("long", l);
+		fields.put("string", s);
+		fields.put("bytes", bytes);
+		fields.put("enum", state);
+		fields.put("serializable", serializable);
+		fields.put("applicationId", applicationId);
+		fields.put("class", clazz);
+		return fields;
+	}
+
+	private static void checkRoundTrip(Map<String, Object> fields) {
+		assertFields(fields, OLD_SCHEMA.decode(OLD_SCHEMA.encode(fields)));
+		assertFields(fields, NEW_SCHEMA.decode(NEW_SCHEMA.encode(fields)));
+	}
+
+	private static void assertFields(Map<String, Object> expected, Map<String, Object> actual) {
+		for (String name : Arrays.asList("boolean", "integer", "long", "string", "bytes", "enum", "serializable", "applicationId", "class",
+				"newString", "newLong", "newBytes")) {
+			Object value = expected.get(name);
+			if (value instanceof byte[]) {
+				Assert.assertArrayEquals("Wrong value of " + name, (byte[]) value, (byte[]) actual.get(name));
+			}
+			else {
+				Assert.assertEquals("Wrong value of " + name, value, actual.get(name));
+			}
+		}
+	}
+}
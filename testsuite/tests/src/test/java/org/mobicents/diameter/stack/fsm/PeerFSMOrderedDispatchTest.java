@@ -0,0 +1,221 @@
+package org.mobicents.diameter.stack.fsm;
+
+import static org.jdiameter.client.impl.helpers.Parameters.IacTimeOut;
+import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMLaneCount;
+import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMOrderedDispatch;
+import static org.jdiameter.client.impl.helpers.Parameters.QueueSize;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.app.State;
+import org.jdiameter.api.app.StateEvent;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.fsm.EventTypes;
+import org.jdiameter.client.api.fsm.FsmEvent;
+import org.jdiameter.client.api.fsm.IContext;
+import org.jdiameter.client.impl.fsm.PeerFSMImpl;
+import org.jdiameter.client.impl.helpers.AppConfiguration;
+import org.jdiameter.client.impl.helpers.EmptyConfiguration;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.jdiameter.common.api.concurrent.DummyConcurrentFactory;
+import org.jdiameter.common.impl.statistic.StatisticManagerImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PeerFSMOrderedDispatchTest {
+
+	private static final int LANES = 4;
+
+	private final MessageParser parser = new MessageParser();
+	private RecordingPeerFSM fsm;
+
+	/**
+	 * FSM whose states record the hop-by-hop id of each message per Session-Id,
+	 * messages of the blocked session wait until released.
+	 */
+	private static class RecordingPeerFSM extends PeerFSMImpl {
+
+		final Map<String, List<Long>> processed = new HashMap<String, List<Long>>();
+		final CountDownLatch release = new CountDownLatch(1);
+		volatile String blockedSession;
+		volatile CountDownLatch expected = new CountDownLatch(0);
+
+		RecordingPeerFSM(AppConfiguration config) {
+			super(context(), new DummyConcurrentFactory(), config, new StatisticManagerImpl(config));
+		}
+
+		protected State[] getStates() {
+			State recording = new State() {
+				public void entryAction() {
+				}
+
+				public void exitAction() {
+				}
+
+				public boolean processEvent(StateEvent event) {
+					IMessage message = (IMessage) event.getData();
+					if (message == null) {
+						return true;
+					}
+					String sessionId = message.getSessionId();
+					if (sessionId.equals(blockedSession)) {
+						try {
+							release.await(10, TimeUnit.SECONDS);
+						}
+						catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+					synchronized (processed) {
+						List<Long> ids = processed.get(sessionId);
+						if (ids == null) {
+							ids = new ArrayList<Long>();
+							processed.put(sessionId, ids);
+						}
+						ids.add(message.getHopByHopIdentifier());
+					}
+					expected.countDown();
+					return true;
+				}
+			};
+			return new State[] {recording, recording, recording, recording, recording, recording, recording, recording};
+		}
+
+		int laneOf(StateEvent event) {
+			for (int i = 0; i < lanes.length; i++) {
+				if (getLane(event) == lanes[i]) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		List<Long> processed(String sessionId) {
+			synchronized (processed) {
+				List<Long> ids = processed.get(sessionId);
+				return ids == null ? new ArrayList<Long>() : new ArrayList<Long>(ids);
+			}
+		}
+
+		void stop() {
+			mustRun = false;
+			release.countDown();
+		}
+
+		private static IContext context() {
+			return (IContext) Proxy.newProxyInstance(IContext.class.getClassLoader(), new Class[] {IContext.class}, new InvocationHandler() {
+				public Object invoke(Object proxy, Method method, Object[] args) {
+					Class<?> type = method.getReturnType();
+					if (type == String.class) {
+						return "ordered-peer";
+					}
+					if (type == boolean.class) {
+						return Boolean.FALSE;
+					}
+					if (type == int.class) {
+						return 0;
+					}
+					return null;
+				}
+			});
+		}
+	}
+
+	@Before
+	public void setUp() {
+		AppConfiguration config = EmptyConfiguration.getInstance();
+		config.add(PeerFSMOrderedDispatch, true);
+		config.add(PeerFSMLaneCount, LANES);
+		config.add(QueueSize, 10000);
+		config.add(IacTimeOut, 20000L);
+		fsm = new RecordingPeerFSM(config);
+	}
+
+	@After
+	public void tearDown() {
+		if (fsm != null) {
+			fsm.stop();
+		}
+	}
+
+	@Test
+	public void eventsOfASessionAreProcessedInOrder() throws Exception {
+		int sessions = 8;
+		int perSession = 250;
+		fsm.expected = new CountDownLatch(sessions * perSession);
+		for (int i = 0; i < perSession; i++) {
+			for (int s = 0; s < sessions; s++) {
+				fsm.handleEvent(event("session;" + s, i));
+			}
+		}
+		Assert.assertTrue("Not all events were processed", fsm.expected.await(10, TimeUnit.SECONDS));
+		for (int s = 0; s < sessions; s++) {
+			List<Long> ids = fsm.processed("session;" + s);
+			Assert.assertEquals("Wrong number of events for session " + s, perSession, ids.size());
+			for (int i = 0; i < perSession; i++) {
+				Assert.assertEquals("Event of session " + s + " processed out of order", i, ids.get(i).longValue());
+			}
+		}
+	}
+
+	@Test
+	public void otherSessionsRunWhileOneIsBusy() throws Exception {
+		FsmEvent busy = event("session;busy", 0);
+		String other = null;
+		for (int i = 0; other == null; i++) {
+			if (fsm.laneOf(event("session;" + i, 0)) != fsm.laneOf(busy)) {
+				other = "session;" + i;
+			}
+		}
+		fsm.blockedSession = "session;busy";
+		fsm.expected = new CountDownLatch(4);
+		fsm.handleEvent(busy);
+		fsm.handleEvent(event("session;busy", 1));
+		fsm.handleEvent(event(other, 0));
+		fsm.handleEvent(event(other, 1));
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (fsm.processed(other).size() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals("Session on another lane was held up by the busy one", 2, fsm.processed(other).size());
+		Assert.assertEquals("Busy session was not held", 0, fsm.processed("session;busy").size());
+
+		fsm.release.countDown();
+		Assert.assertTrue("Busy session did not resume", fsm.expected.await(5, TimeUnit.SECONDS));
+		deadline = System.currentTimeMillis() + 5000;
+		while (fsm.processed("session;busy").size() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		List<Long> ids = fsm.processed("session;busy");
+		Assert.assertEquals("Busy session lost events", 2, ids.size());
+		Assert.assertEquals("Busy session processed out of order", 0L, ids.get(0).longValue());
+		Assert.assertEquals("Busy session processed out of order", 1L, ids.get(1).longValue());
+	}
+
+	@Test
+	public void laneStatisticsAreRegistered() {
+		for (int i = 0; i < LANES; i++) {
+			Assert.assertNotNull("No queue size record for lane " + i, fsm.getStatistic().getRecordByName("QueueSizeLane" + i));
+		}
+		Assert.assertNull("Record registered for a lane that does not exist", fsm.getStatistic().getRecordByName("QueueSizeLane" + LANES));
+	}
+
+	private FsmEvent event(String sessionId, long sequence) {
+		IMessage message = parser.createEmptyMessage(272, 4);
+		message.getAvps().addAvp(Avp.SESSION_ID, sessionId, false);
+		message.setHopByHopIdentifier(sequence);
+		return new FsmEvent(EventTypes.RECEIVE_MSG_EVENT, message);
+	}
+}
@@ -0,0 +1,36 @@
+package org.mobicents.diameter.stack.helpers;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jdiameter.client.impl.helpers.SessionIdGenerator;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SessionIdGeneratorTest {
+
+	private SessionIdGenerator generator = new SessionIdGenerator("host.example");
+
+	@Test
+	public void formatTest() {
+		long id = (1234L << 32) | 4000000000L;
+		Assert.assertEquals("Wrong session id", "host.example;1234;4000000000", generator.getSessionId(id, null));
+		Assert.assertEquals("Wrong session id", "host.example;0;0", generator.getSessionId(0, null));
+		Assert.assertEquals("Wrong session id", "host.example;4294967295;4294967295", generator.getSessionId(-1, null));
+		Assert.assertEquals("Wrong session id", "host.example;1234;4000000000;mobicents", generator.getSessionId(id, "mobicents"));
+
+		// same layout as the session factory always produced
+		String sessionId = generator.nextSessionId();
+		Assert.assertTrue("Wrong session id " + sessionId, sessionId.matches("host\\.example;[1-9][0-9]*;(0|[1-9][0-9]*)"));
+		sessionId = generator.nextSessionId("custom");
+		Assert.assertTrue("Wrong session id " + sessionId, sessionId.matches("host\\.example;[1-9][0-9]*;(0|[1-9][0-9]*);custom"));
+	}
+
+	@Test
+	public void uniqueTest() {
+		Set<String> ids = new HashSet<String>();
+		for (int i = 0; i < 10000; i++) {
+			Assert.assertTrue("Session id repeated", ids.add(generator.nextSessionId()));
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package org.mobicents.diameter.stack.helpers;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jdiameter.client.impl.helpers.UIDGenerator;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UIDGeneratorTest {
+
+	private static final int THREADS = 16;
+	private static final int IDS_PER_THREAD = 20000;
+
+	private Set<Long> generate(final UIDGenerator generator) throws Exception {
+		final Set<Long> ids = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+		final CountDownLatch done = new CountDownLatch(THREADS);
+		for (int t = 0; t < THREADS; t++) {
+			new Thread() {
+				public void run() {
+					for (int i = 0; i < IDS_PER_THREAD; i++) {
+						ids.add(generator.nextLong());
+					}
+					done.countDown();
+				}
+			}.start();
+		}
+		Assert.assertTrue("Generator threads did not finish", done.await(30, TimeUnit.SECONDS));
+		return ids;
+	}
+
+	@Test
+	public void uniqueTest() throws Exception {
+		Set<Long> ids = generate(new UIDGenerator(1000));
+		Assert.assertEquals("Duplicate ids generated", THREADS * IDS_PER_THREAD, ids.size());
+		for (long id : ids) {
+			Assert.assertTrue("Id out of range: " + id, id >= 1000 && id < 1000 + THREADS * IDS_PER_THREAD);
+		}
+	}
+
+	@Test
+	public void rangedUniqueTest() throws Exception {
+		UIDGenerator generator = new UIDGenerator(1000, 32);
+		Set<Long> ids = generate(generator);
+		Assert.assertEquals("Duplicate ids generated", THREADS * IDS_PER_THREAD, ids.size());
+		// each thread wastes at most the rest of its last range
+		Assert.assertTrue("Ids not taken from reserved ranges", generator.nextLong() < 1000 + THREADS * (IDS_PER_THREAD + 32));
+	}
+
+	@Test
+	public void endToEndTest() throws Exception {
+		long seconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+		MessageParser parser = new MessageParser();
+		int id = parser.getNextEndToEndId();
+		int high = id >>> 20;
+		// allow the clock to tick between seeding and this check
+		Assert.assertTrue("High order bits not seeded from time: " + high, high == (seconds & 0xFFF) || high == ((seconds - 1) & 0xFFF)
+				|| high == ((seconds + 1) & 0xFFF));
+		long messageId = parser.createEmptyMessage(272, 4).getEndToEndIdentifier();
+		Assert.assertTrue("End-to-End id is not an unsigned 32 bit value: " + messageId, messageId >= 0 && messageId <= 0xFFFFFFFFL);
+	}
+}
@@ -60,4 +60,25 @@ public class AvpSetTest {
 	}
 	
 	
+	@Test
+	public void lookupTest() throws IOException, AvpDataException {
+		AvpSet set = elementParser.decodeAvpSet(new byte[0], 1);
+		// enough AVPs to have lookups go through the index
+		for (int i = 0; i < 40; i++) {
+			set.addAvp(_CODE + i, i, _VENDOR, true, false, true);
+		}
+		set.addAvp(_CODE, 100L, true);
+		Assert.assertEquals("Wrong avp", 0L, set.getAvp(_CODE).getUnsigned32());
+		Assert.assertEquals("Wrong avp", 100L, set.getAvp(_CODE, 0).getUnsigned32());
+		Assert.assertEquals("Wrong avp", 39L, set.getAvp(_CODE + 39, _VENDOR).getUnsigned32());
+		Assert.assertEquals("Wrong set size", 2, set.getAvps(_CODE).size());
+		Assert.assertNull("Unexpected avp", set.getAvp(_CODE + 40));
+
+		set.insertAvp(0, _CODE + 40, 200L, true);
+		set.removeAvp(_CODE, _VENDOR);
+		Assert.assertEquals("Wrong avp", 200L, set.getAvp(_CODE + 40).getUnsigned32());
+		Assert.assertEquals("Wrong avp", 100L, set.getAvp(_CODE).getUnsigned32());
+		Assert.assertNull("Unexpected avp", set.getAvp(_CODE, _VENDOR));
+		Assert.assertEquals("Wrong avp", 1L, set.getAvp(_CODE + 1, _VENDOR).getUnsigned32());
+	}
 }
@@ -0,0 +1,202 @@
+package org.mobicents.diameter.stack.parser;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.AvpDataException;
+import org.jdiameter.api.AvpSet;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.jdiameter.client.impl.transport.BufferPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MessageParserTest {
+
+	private MessageParser parser = new MessageParser();
+	private static final int _CODE = 600;
+	private static final long _VENDOR = 10415;
+
+	private byte[] encode(IMessage message) throws Exception {
+		ByteBuffer buffer = parser.encodeMessage(message);
+		return Arrays.copyOf(buffer.array(), buffer.limit());
+	}
+
+	private IMessage createMessage() {
+		IMessage message = parser.createEmptyMessage(272, 4);
+		message.setRequest(true);
+		message.getAvps().addAvp(Avp.SESSION_ID, "host.example;1;2", false);
+		message.getAvps().addAvp(Avp.ORIGIN_HOST, "host.example", true);
+		message.getAvps().addAvp(_CODE, 2001L, _VENDOR, true, false, true);
+		AvpSet grouped = message.getAvps().addGroupedAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL);
+		grouped.addAvp(Avp.RATING_GROUP, 99L, true);
+		grouped.addGroupedAvp(Avp.USED_SERVICE_UNIT).addAvp(Avp.CC_TOTAL_OCTETS, 5555L, false);
+		return message;
+	}
+
+	@Test
+	public void decodeTest() throws Exception {
+		byte[] data = encode(createMessage());
+		IMessage message = parser.createMessage(ByteBuffer.wrap(data));
+		Assert.assertEquals("Wrong command code", 272, message.getCommandCode());
+		Assert.assertEquals("Wrong session id", "host.example;1;2", message.getSessionId());
+		Assert.assertEquals("Wrong origin host", "host.example", message.getAvps().getAvp(Avp.ORIGIN_HOST).getDiameterIdentity());
+		Assert.assertEquals("Wrong value", 2001L, message.getAvps().getAvp(_CODE, _VENDOR).getUnsigned32());
+		AvpSet grouped = message.getAvps().getAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL).getGrouped();
+		Assert.assertEquals("Wrong rating group", 99L, grouped.getAvp(Avp.RATING_GROUP).getUnsigned32());
+		Assert.assertEquals("Wrong total octets", 5555L, grouped.getAvp(Avp.USED_SERVICE_UNIT).getGrouped().getAvp(Avp.CC_TOTAL_OCTETS).getUnsigned64());
+		Assert.assertArrayEquals("Re-encoded message differs", data, encode(message));
+	}
+
+	@Test
+	public void decodeFromSliceTest() throws Exception {
+		byte[] data = encode(createMessage());
+		// frame placed in the middle of a larger buffer
+		ByteBuffer frame = ByteBuffer.allocate(data.length + 16);
+		frame.position(8);
+		frame.put(data);
+		frame.position(8);
+		frame.limit(8 + data.length);
+		IMessage message = parser.createMessage(frame);
+		Assert.assertEquals("Wrong session id", "host.example;1;2", message.getSessionId());
+		Assert.assertArrayEquals("Re-encoded message differs", data, encode(message));
+	}
+
+	@Test
+	public void groupedDecodedOnceTest() throws Exception {
+		IMessage message = parser.createMessage(ByteBuffer.wrap(encode(createMessage())));
+		Avp mscc = message.getAvps().getAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL);
+		AvpSet grouped = mscc.getGrouped();
+		Assert.assertSame("Grouped AVP decoded again", grouped, mscc.getGrouped());
+		// changes to decoded children must be kept when encoding
+		grouped.addAvp(Avp.SERVICE_IDENTIFIER_CCA, 5L, true);
+		IMessage copy = parser.createMessage(ByteBuffer.wrap(encode(message)));
+		Assert.assertNotNull("Added AVP was lost", copy.getAvps().getAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL).getGrouped().getAvp(Avp.SERVICE_IDENTIFIER_CCA));
+	}
+
+	@Test
+	public void typedValuesTest() throws Exception {
+		IMessage message = parser.createEmptyMessage(272, 4);
+		Date date = new Date(1700000000000L);
+		InetAddress address = InetAddress.getByName("2001:db8::1");
+		message.getAvps().addAvp(_CODE, 0xFFFFFFFEL, true);
+		message.getAvps().addAvp(_CODE + 1, -5L, false);
+		message.getAvps().addAvp(_CODE + 2, date);
+		message.getAvps().addAvp(_CODE + 3, address);
+		message.getAvps().addAvp(_CODE + 4, "\u00e9t\u00e9", false);
+		message.getAvps().addAvp(_CODE + 5, 1.5f);
+
+		AvpSet avps = parser.createMessage(ByteBuffer.wrap(encode(message))).getAvps();
+		Assert.assertEquals("Wrong Unsigned32", 0xFFFFFFFEL, avps.getAvp(_CODE).getUnsigned32());
+		Assert.assertEquals("Wrong Integer64", -5L, avps.getAvp(_CODE + 1).getInteger64());
+		Assert.assertEquals("Wrong Time", date, avps.getAvp(_CODE + 2).getTime());
+		Assert.assertEquals("Wrong Address", address, avps.getAvp(_CODE + 3).getAddress());
+		Assert.assertEquals("Wrong UTF8String", "\u00e9t\u00e9", avps.getAvp(_CODE + 4).getUTF8String());
+		Assert.assertEquals("Wrong Float32", 1.5f, avps.getAvp(_CODE + 5).getFloat32(), 0);
+	}
+
+	@Test
+	public void builtValuesTest() throws Exception {
+		IMessage message = parser.createEmptyMessage(272, 4);
+		Date date = new Date(1700000000000L);
+		InetAddress address = InetAddress.getByName("10.0.0.1");
+		String text = "a\u00e9\u20ac\ud83d\ude00";
+		AvpSet avps = message.getAvps();
+		Avp unsigned = avps.addAvp(_CODE, 0xFFFFFFFEL, true);
+		Avp integer64 = avps.addAvp(_CODE + 1, -5L, false);
+		Avp time = avps.addAvp(_CODE + 2, date);
+		Avp inet = avps.addAvp(_CODE + 3, address);
+		Avp utf8 = avps.addAvp(_CODE + 4, "\u00e9t\u20ac", false);
+		Avp surrogates = avps.addAvp(_CODE + 5, text, false);
+		Avp octets = avps.addAvp(_CODE + 6, "host\u00ff", true);
+		Avp wide = avps.addAvp(_CODE + 7, "\u0101", true);
+		Avp float32 = avps.addAvp(_CODE + 8, 1.5f);
+
+		// values are kept as such, typed getters read them back
+		Assert.assertEquals("Wrong Unsigned32", 0xFFFFFFFEL, unsigned.getUnsigned32());
+		Assert.assertEquals("Wrong Integer64", -5L, integer64.getInteger64());
+		Assert.assertEquals("Wrong UTF8String", "\u00e9t\u20ac", utf8.getUTF8String());
+		Assert.assertEquals("Wrong DiameterIdentity", "host\u00ff", octets.getDiameterIdentity());
+		byte[] written = encode(message);
+
+		// and are encoded exactly as the byte[] builders do
+		Assert.assertArrayEquals("Wrong Unsigned32 bytes", parser.intU32ToBytes(0xFFFFFFFEL), unsigned.getRaw());
+		Assert.assertArrayEquals("Wrong Integer64 bytes", parser.int64ToBytes(-5L), integer64.getRaw());
+		Assert.assertArrayEquals("Wrong Time bytes", parser.dateToBytes(date), time.getRaw());
+		Assert.assertArrayEquals("Wrong Address bytes", parser.addressToBytes(address), inet.getRaw());
+		Assert.assertArrayEquals("Wrong UTF8String bytes", parser.utf8StringToBytes("\u00e9t\u20ac"), utf8.getRaw());
+		Assert.assertArrayEquals("Wrong UTF8String bytes", parser.utf8StringToBytes(text), surrogates.getRaw());
+		Assert.assertArrayEquals("Wrong OctetString bytes", parser.octetStringToBytes("host\u00ff"), octets.getRaw());
+		Assert.assertArrayEquals("Wrong OctetString bytes", parser.octetStringToBytes("\u0101"), wide.getRaw());
+		Assert.assertArrayEquals("Wrong Float32 bytes", parser.float32ToBytes(1.5f), float32.getRaw());
+		Assert.assertArrayEquals("Values written differ from their bytes", written, encode(message));
+
+		AvpSet decoded = parser.createMessage(ByteBuffer.wrap(written)).getAvps();
+		Assert.assertEquals("Wrong Time", date, decoded.getAvp(_CODE + 2).getTime());
+		Assert.assertEquals("Wrong Address", address, decoded.getAvp(_CODE + 3).getAddress());
+		Assert.assertEquals("Wrong UTF8String", text, decoded.getAvp(_CODE + 5).getUTF8String());
+		Assert.assertEquals("Wrong Float32", 1.5f, decoded.getAvp(_CODE + 8).getFloat32(), 0);
+	}
+
+	@Test
+	public void pooledEncodeTest() throws Exception {
+		IMessage message = createMessage();
+		byte[] data = encode(message);
+		BufferPool pool = new BufferPool(1024, 1);
+		ByteBuffer buffer = parser.encodeMessage(message, pool);
+		Assert.assertTrue("Expected pooled buffer", buffer.isDirect());
+		byte[] pooled = new byte[buffer.remaining()];
+		buffer.get(pooled);
+		Assert.assertArrayEquals("Pooled encoding differs", data, pooled);
+		pool.release(buffer);
+		Assert.assertSame("Buffer not reused", buffer, pool.acquire(data.length));
+	}
+
+	@Test
+	public void encodedMessageTest() throws Exception {
+		byte[] data = encode(createMessage());
+		IMessage message = parser.createEncodedMessage(data);
+		message.setHopByHopIdentifier(0x01020304L);
+		message.setProxiable(true);
+		// no Proxy-Info to remove, frame stays valid
+		message.getAvps().removeAvp(Avp.PROXY_INFO);
+		byte[] sent = encode(message);
+		Assert.assertEquals("Wrong hop-by-hop id", 0x01020304, ByteBuffer.wrap(sent).getInt(12));
+		Assert.assertArrayEquals("Wrong encoded AVPs", Arrays.copyOfRange(data, 20, data.length), Arrays.copyOfRange(sent, 20, sent.length));
+		IMessage copy = parser.createMessage(ByteBuffer.wrap(sent));
+		Assert.assertTrue("Proxiable flag lost", copy.isProxiable());
+		Assert.assertEquals("Wrong session id", "host.example;1;2", copy.getSessionId());
+
+		message.getAvps().addAvp(Avp.ROUTE_RECORD, "relay.example", true);
+		copy = parser.createMessage(ByteBuffer.wrap(encode(message)));
+		Assert.assertNotNull("Added AVP was not encoded", copy.getAvps().getAvp(Avp.ROUTE_RECORD));
+	}
+
+	@Test
+	public void encodedMessageChangedInPlaceTest() throws Exception {
+		byte[] data = encode(createMessage());
+		IMessage message = parser.createEncodedMessage(data);
+		// typed getters read in place
+		Assert.assertEquals("Wrong value", 2001L, message.getAvps().getAvp(_CODE, _VENDOR).getUnsigned32());
+		Assert.assertArrayEquals("Wrong encoded message", data, encode(message));
+
+		message.getAvps().getAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL).getGrouped().addAvp(Avp.SERVICE_IDENTIFIER_CCA, 7L, true);
+		IMessage copy = parser.createMessage(ByteBuffer.wrap(encode(message)));
+		AvpSet grouped = copy.getAvps().getAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL).getGrouped();
+		Assert.assertNotNull("Grouped AVP changed in place was not encoded", grouped.getAvp(Avp.SERVICE_IDENTIFIER_CCA));
+
+		message = parser.createEncodedMessage(data);
+		message.getAvps().getAvp(Avp.ORIGIN_HOST).getRaw()[0] = 'H';
+		copy = parser.createMessage(ByteBuffer.wrap(encode(message)));
+		Assert.assertEquals("Raw data changed in place was not encoded", "Host.example", copy.getAvps().getAvp(Avp.ORIGIN_HOST).getDiameterIdentity());
+	}
+
+	@Test(expected = AvpDataException.class)
+	public void truncatedTest() throws Exception {
+		byte[] data = encode(createMessage());
+		parser.createMessage(ByteBuffer.wrap(Arrays.copyOf(data, data.length - 4)));
+	}
+}
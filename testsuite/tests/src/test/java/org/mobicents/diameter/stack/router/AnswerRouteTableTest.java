@@ -0,0 +1,83 @@
+package org.mobicents.diameter.stack.router;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.jdiameter.client.impl.router.AnswerRouteTable;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AnswerRouteTableTest {
+
+	private static class ManualTable extends AnswerRouteTable<String> {
+
+		long tick;
+
+		ManualTable(int capacity, long expireTime) {
+			super(capacity, expireTime);
+		}
+
+		protected long currentTick() {
+			return tick;
+		}
+	}
+
+	@Test
+	public void putGetRemoveTest() {
+		AnswerRouteTable<String> table = new AnswerRouteTable<String>(16, 60000);
+		Map<Long, String> expected = new HashMap<Long, String>();
+		Random random = new Random(1);
+		for (int i = 0; i < 20000; i++) {
+			// small key range so that keys are replaced and removed often
+			long key = ((long) random.nextInt(64) << 32) | random.nextInt(512);
+			if (random.nextInt(3) == 0) {
+				Assert.assertEquals("Wrong removed value", expected.remove(key), table.remove(key));
+			}
+			else {
+				String value = String.valueOf(i);
+				table.put(key, value);
+				expected.put(key, value);
+			}
+		}
+		Assert.assertEquals("Wrong size", expected.size(), table.size());
+		for (Map.Entry<Long, String> e : expected.entrySet()) {
+			Assert.assertEquals("Wrong value", e.getValue(), table.get(e.getKey()));
+		}
+		table.clear();
+		Assert.assertEquals("Table not cleared", 0, table.size());
+	}
+
+	@Test
+	public void expireTest() {
+		// 64 ticks of 1 ms
+		ManualTable table = new ManualTable(16, 64);
+		table.put(1, "a");
+		table.tick = 10;
+		table.put(2, "b");
+		table.tick = 63;
+		Assert.assertEquals("Entry expired too early", "a", table.get(1));
+		table.tick = 64;
+		Assert.assertNull("Entry not expired", table.get(1));
+		Assert.assertEquals("Newer entry expired", "b", table.get(2));
+		// stored again, lives from now on
+		table.put(2, "c");
+		table.tick = 80;
+		Assert.assertEquals("Renewed entry expired", "c", table.get(2));
+		table.tick = 64 + 64;
+		Assert.assertNull("Entry not expired", table.get(2));
+		Assert.assertEquals("Wrong size", 0, table.size());
+	}
+
+	@Test
+	public void expireAfterIdleTest() {
+		ManualTable table = new ManualTable(16, 64);
+		for (long key = 0; key < 1000; key++) {
+			table.tick = key / 10;
+			table.put(key, "v");
+		}
+		table.tick = 10000;
+		table.put(5000, "v");
+		Assert.assertEquals("Old entries not expired", 1, table.size());
+	}
+}
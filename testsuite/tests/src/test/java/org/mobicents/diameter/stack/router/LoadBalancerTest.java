@@ -0,0 +1,132 @@
+package org.mobicents.diameter.stack.router;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jdiameter.client.api.controller.IPeer;
+import org.jdiameter.client.api.router.ILoadBalancer;
+import org.jdiameter.client.impl.router.LeastOutstandingLoadBalancer;
+import org.jdiameter.client.impl.router.PowerOfTwoChoicesLoadBalancer;
+import org.jdiameter.client.impl.router.RatingLoadBalancer;
+import org.jdiameter.client.impl.router.WeightedRoundRobinLoadBalancer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LoadBalancerTest {
+
+	private static class PeerState {
+		int rating;
+		int outstanding;
+		double queueInfo;
+	}
+
+	private Map<IPeer, PeerState> states = new HashMap<IPeer, PeerState>();
+
+	private IPeer createPeer(int rating, int outstanding) {
+		final PeerState state = new PeerState();
+		state.rating = rating;
+		state.outstanding = outstanding;
+		IPeer peer = (IPeer) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { IPeer.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().equals("getRating")) {
+					return state.rating;
+				}
+				else if (method.getName().equals("getOutstandingRequests")) {
+					return state.outstanding;
+				}
+				else if (method.getName().equals("getQueueInfo")) {
+					return state.queueInfo;
+				}
+				else if (method.getName().equals("hashCode")) {
+					return System.identityHashCode(proxy);
+				}
+				else if (method.getName().equals("equals")) {
+					return proxy == args[0];
+				}
+				return null;
+			}
+		});
+		states.put(peer, state);
+		return peer;
+	}
+
+	private Map<IPeer, Integer> select(ILoadBalancer balancer, List<IPeer> peers, int count) {
+		Map<IPeer, Integer> selected = new HashMap<IPeer, Integer>();
+		for (int i = 0; i < count; i++) {
+			IPeer peer = balancer.selectPeer(peers);
+			Integer n = selected.get(peer);
+			selected.put(peer, n == null ? 1 : n + 1);
+		}
+		return selected;
+	}
+
+	@Test
+	public void ratingTest() {
+		List<IPeer> peers = new ArrayList<IPeer>();
+		peers.add(createPeer(1, 0));
+		IPeer best = createPeer(5, 100);
+		peers.add(best);
+		peers.add(createPeer(2, 0));
+		Assert.assertSame("Highest rated peer not selected", best, new RatingLoadBalancer().selectPeer(peers));
+	}
+
+	@Test
+	public void weightedRoundRobinTest() {
+		List<IPeer> peers = new ArrayList<IPeer>();
+		IPeer a = createPeer(1, 0);
+		IPeer b = createPeer(3, 0);
+		IPeer c = createPeer(0, 0);
+		peers.add(a);
+		peers.add(b);
+		peers.add(c);
+		Map<IPeer, Integer> selected = select(new WeightedRoundRobinLoadBalancer(), peers, 500);
+		Assert.assertEquals("Wrong share of peer with rating 1", 100, selected.get(a).intValue());
+		Assert.assertEquals("Wrong share of peer with rating 3", 300, selected.get(b).intValue());
+		Assert.assertEquals("Wrong share of peer without rating", 100, selected.get(c).intValue());
+	}
+
+	@Test
+	public void leastOutstandingTest() {
+		List<IPeer> peers = new ArrayList<IPeer>();
+		peers.add(createPeer(0, 10));
+		IPeer idle = createPeer(0, 2);
+		peers.add(idle);
+		peers.add(createPeer(0, 7));
+		ILoadBalancer balancer = new LeastOutstandingLoadBalancer();
+		Assert.assertSame("Least loaded peer not selected", idle, balancer.selectPeer(peers));
+		// FSM queue decides between peers with as many outstanding requests
+		states.get(peers.get(0)).outstanding = 2;
+		states.get(idle).queueInfo = 0.5;
+		Assert.assertSame("Peer with emptier queue not selected", peers.get(0), balancer.selectPeer(peers));
+	}
+
+	@Test
+	public void leastOutstandingTiesTest() {
+		List<IPeer> peers = new ArrayList<IPeer>();
+		for (int i = 0; i < 4; i++) {
+			peers.add(createPeer(0, 3));
+		}
+		Map<IPeer, Integer> selected = select(new LeastOutstandingLoadBalancer(), peers, 400);
+		for (IPeer peer : peers) {
+			Assert.assertEquals("Equally loaded peers not used in turn", 100, selected.get(peer).intValue());
+		}
+	}
+
+	@Test
+	public void powerOfTwoChoicesTest() {
+		List<IPeer> peers = new ArrayList<IPeer>();
+		IPeer busy = createPeer(0, 1000);
+		peers.add(busy);
+		for (int i = 0; i < 3; i++) {
+			peers.add(createPeer(0, i));
+		}
+		Map<IPeer, Integer> selected = select(new PowerOfTwoChoicesLoadBalancer(), peers, 1000);
+		Assert.assertNull("Most loaded peer selected", selected.get(busy));
+		Assert.assertEquals("Single peer not selected", peers.get(1), new PowerOfTwoChoicesLoadBalancer().selectPeer(peers.subList(1, 2)));
+	}
+}
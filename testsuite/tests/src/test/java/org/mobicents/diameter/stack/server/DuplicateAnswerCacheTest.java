@@ -0,0 +1,91 @@
+package org.mobicents.diameter.stack.server;
+
+import org.jdiameter.api.Avp;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.jdiameter.server.impl.DuplicateAnswerCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DuplicateAnswerCacheTest {
+
+	private MessageParser parser = new MessageParser();
+
+	private static class ManualCache extends DuplicateAnswerCache {
+
+		long time;
+
+		ManualCache(MessageParser parser, int maxSize, long expireTime) {
+			super(parser, maxSize, expireTime, null);
+		}
+
+		protected long currentTime() {
+			return time;
+		}
+	}
+
+	private IMessage createAnswer(long endToEnd) {
+		IMessage message = parser.createEmptyMessage(272, 4);
+		message.setEndToEndIdentifier(endToEnd);
+		message.getAvps().addAvp(Avp.SESSION_ID, "host.example;1;" + endToEnd, false);
+		message.getAvps().addAvp(Avp.RESULT_CODE, 2001L, true);
+		return message;
+	}
+
+	@Test
+	public void getReturnsCopyTest() throws Exception {
+		DuplicateAnswerCache cache = new DuplicateAnswerCache(parser, 100, 60000, null);
+		IMessage answer = createAnswer(1);
+		cache.put("host1", answer);
+		IMessage first = cache.get("host1");
+		Assert.assertNotNull("Stored answer not found", first);
+		Assert.assertNotSame("Stored instance returned", answer, first);
+		Assert.assertEquals("Wrong session id", "host.example;1;1", first.getSessionId());
+		Assert.assertNotSame("Same copy returned twice", first, cache.get("host1"));
+		Assert.assertNull("Unknown key found", cache.get("host2"));
+		Assert.assertEquals("Wrong hit count", 2, cache.getHits());
+		Assert.assertEquals("Wrong miss count", 1, cache.getMisses());
+	}
+
+	@Test
+	public void expiryTest() throws Exception {
+		ManualCache cache = new ManualCache(parser, 100, 8000);
+		cache.put("host1", createAnswer(1));
+		cache.time = 4000;
+		cache.put("host2", createAnswer(2));
+		cache.time = 8000;
+		Assert.assertNotNull("Answer expired too early", cache.get("host1"));
+		cache.time = 9000;
+		Assert.assertNull("Answer not expired", cache.get("host1"));
+		Assert.assertNotNull("Newer answer expired", cache.get("host2"));
+		cache.time = 13000;
+		cache.expire();
+		Assert.assertEquals("Expired answers kept", 0, cache.size());
+		Assert.assertEquals("Expiry counted as eviction", 0, cache.getEvictions());
+	}
+
+	@Test
+	public void evictOldestTest() throws Exception {
+		// one answer per segment
+		ManualCache cache = new ManualCache(parser, 1, 60000);
+		for (int i = 0; i < 200; i++) {
+			cache.time = i;
+			cache.put("host" + i, createAnswer(i));
+		}
+		Assert.assertTrue("Cache grew past its size", cache.size() <= 16);
+		Assert.assertEquals("Wrong eviction count", 200 - cache.size(), cache.getEvictions());
+		Assert.assertNotNull("Newest answer evicted", cache.get("host199"));
+		Assert.assertNull("Oldest answer kept", cache.get("host0"));
+	}
+
+	@Test
+	public void replaceTest() throws Exception {
+		ManualCache cache = new ManualCache(parser, 100, 8000);
+		cache.put("host1", createAnswer(1));
+		cache.time = 5000;
+		cache.put("host1", createAnswer(2));
+		Assert.assertEquals("Replaced answer kept", 1, cache.size());
+		cache.time = 9000;
+		Assert.assertEquals("Wrong answer", 2, cache.get("host1").getEndToEndIdentifier());
+	}
+}
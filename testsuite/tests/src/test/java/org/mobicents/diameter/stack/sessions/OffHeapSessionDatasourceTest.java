@@ -0,0 +1,276 @@
+package org.mobicents.diameter.stack.sessions;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.BaseSession;
+import org.jdiameter.api.NetworkReqListener;
+import org.jdiameter.api.app.AppSession;
+import org.jdiameter.api.cca.ClientCCASession;
+import org.jdiameter.api.gx.ServerGxSession;
+import org.jdiameter.api.rx.ClientRxSession;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.client.api.ISessionFactory;
+import org.jdiameter.client.impl.app.cca.IClientCCASessionData;
+import org.jdiameter.common.api.app.IAppSessionFactory;
+import org.jdiameter.common.api.app.IAppSessionData;
+import org.jdiameter.common.api.app.IAppSessionDataFactory;
+import org.jdiameter.common.api.app.cca.ClientCCASessionState;
+import org.jdiameter.common.api.app.cca.ICCASessionData;
+import org.jdiameter.common.api.app.gx.IGxSessionData;
+import org.jdiameter.common.api.app.gx.ServerGxSessionState;
+import org.jdiameter.common.api.app.rx.IRxSessionData;
+import org.jdiameter.common.impl.data.LocalDataSource;
+import org.jdiameter.common.impl.data.offheap.OffHeapSessionDatasource;
+import org.jdiameter.server.impl.app.gx.IServerGxSessionData;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OffHeapSessionDatasourceTest {
+
+	private OffHeapSessionDatasource datasource = new OffHeapSessionDatasource(null, new LocalDataSource(), 100, 4);
+
+	// live objects created again from their records
+	private final AtomicInteger restored = new AtomicInteger();
+
+	@SuppressWarnings("unchecked")
+	private <T extends IAppSessionData> IAppSessionDataFactory<T> factory(Class<T> dataClass) {
+		return (IAppSessionDataFactory<T>) datasource.getDataFactory(dataClass);
+	}
+
+	private static Object proxy(Class<?>[] interfaces, InvocationHandler handler) {
+		return Proxy.newProxyInstance(OffHeapSessionDatasourceTest.class.getClassLoader(), interfaces, handler);
+	}
+
+	private static BaseSession liveSession(final String sessionId) {
+		return (BaseSession) proxy(new Class[] {AppSession.class, NetworkReqListener.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("getSessionId")) {
+					return sessionId;
+				}
+				if (method.getName().equals("isAppSession")) {
+					return true;
+				}
+				if (method.getName().equals("isReplicable")) {
+					return false;
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Container whose session factory creates live objects of client credit control sessions.
+	 */
+	private IContainer container() {
+		final IAppSessionFactory appSessionFactory = (IAppSessionFactory) proxy(new Class[] {IAppSessionFactory.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("getSession")) {
+					restored.incrementAndGet();
+					return liveSession((String) args[0]);
+				}
+				return null;
+			}
+		});
+		final ISessionFactory sessionFactory = (ISessionFactory) proxy(new Class[] {ISessionFactory.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return method.getName().equals("getAppSessionFactory") ? appSessionFactory : null;
+			}
+		});
+		return (IContainer) proxy(new Class[] {IContainer.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return method.getName().equals("getSessionFactory") ? sessionFactory : null;
+			}
+		});
+	}
+
+	/**
+	 * Creates records and live objects of client credit control sessions.
+	 */
+	private IClientCCASessionData[] createSessions(String prefix, int count) {
+		IClientCCASessionData[] data = new IClientCCASessionData[count];
+		for (int i = 0; i < count; i++) {
+			data[i] = (IClientCCASessionData) factory(ICCASessionData.class).getAppSessionData(ClientCCASession.class, prefix + i);
+			data[i].setClientCCASessionState(ClientCCASessionState.OPEN);
+			datasource.addSession(liveSession(prefix + i));
+		}
+		return data;
+	}
+
+	@Test
+	public void clientDataTest() {
+		IClientCCASessionData data = (IClientCCASessionData) factory(ICCASessionData.class).getAppSessionData(ClientCCASession.class, "host.example;1;1");
+		Assert.assertTrue("Session not stored", datasource.exists("host.example;1;1"));
+		Assert.assertNull("Wrong application id", data.getApplicationId());
+		Assert.assertTrue("Wrong default", data.isEventBased());
+		Assert.assertFalse("Wrong default", data.isRequestTypeSet());
+		Assert.assertEquals("Wrong default", ClientCCASessionState.IDLE, data.getClientCCASessionState());
+		Assert.assertEquals("Wrong default", IAppSessionData.NON_INITIALIZED, data.getGatheredCCFH());
+		Assert.assertEquals("Wrong default", IAppSessionData.NON_INITIALIZED, data.getGatheredDDFH());
+		Assert.assertEquals("Wrong default", IAppSessionData.NON_INITIALIZED, data.getGatheredRequestedAction());
+
+		data.setApplicationId(ApplicationId.createByAuthAppId(4));
+		data.setEventBased(false);
+		data.setRequestTypeSet(true);
+		data.setClientCCASessionState(ClientCCASessionState.PENDING_UPDATE);
+		data.setGatheredCCFH(1);
+		data.setGatheredDDFH(0);
+		data.setGatheredRequestedAction(3);
+		data.setTxTimerId("timer");
+
+		// a new data object reads the same record
+		IClientCCASessionData copy = (IClientCCASessionData) factory(ICCASessionData.class).getAppSessionData(ClientCCASession.class, "host.example;1;1");
+		Assert.assertEquals("Wrong application id", ApplicationId.createByAuthAppId(4), copy.getApplicationId());
+		Assert.assertFalse("Wrong value", copy.isEventBased());
+		Assert.assertTrue("Wrong value", copy.isRequestTypeSet());
+		Assert.assertEquals("Wrong value", ClientCCASessionState.PENDING_UPDATE, copy.getClientCCASessionState());
+		Assert.assertEquals("Wrong value", 1, copy.getGatheredCCFH());
+		Assert.assertEquals("Wrong value", 0, copy.getGatheredDDFH());
+		Assert.assertEquals("Wrong value", 3, copy.getGatheredRequestedAction());
+		Assert.assertEquals("Wrong value", "timer", copy.getTxTimerId());
+		Assert.assertNull("Wrong value", copy.getBuffer());
+	}
+
+	@Test
+	public void removeTest() {
+		IServerGxSessionData data = (IServerGxSessionData) factory(IGxSessionData.class).getAppSessionData(ServerGxSession.class, "host.example;1;2");
+		Assert.assertTrue("Wrong default", data.isStateless());
+		Assert.assertEquals("Wrong default", ServerGxSessionState.IDLE, data.getServerGxSessionState());
+		data.setStateless(false);
+		data.setServerGxSessionState(ServerGxSessionState.OPEN);
+		data.setApplicationId(ApplicationId.createByAuthAppId(10415, 16777238));
+		Assert.assertEquals("Wrong application id", ApplicationId.createByAuthAppId(10415, 16777238), data.getApplicationId());
+
+		Assert.assertTrue("Record not removed", data.remove());
+		Assert.assertFalse("Session still stored", datasource.exists("host.example;1;2"));
+
+		// record is reused, with defaults, and no longer accessible through the old data
+		IServerGxSessionData other = (IServerGxSessionData) factory(IGxSessionData.class).getAppSessionData(ServerGxSession.class, "host.example;1;3");
+		Assert.assertTrue("Wrong default", other.isStateless());
+		Assert.assertNull("Wrong application id", other.getApplicationId());
+		try {
+			data.getServerGxSessionState();
+			Assert.fail("Removed data still accessible");
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void segmentsTest() {
+		IAppSessionDataFactory<ICCASessionData> factory = factory(ICCASessionData.class);
+		for (int i = 0; i < 50; i++) {
+			IClientCCASessionData data = (IClientCCASessionData) factory.getAppSessionData(ClientCCASession.class, "host.example;2;" + i);
+			data.setGatheredCCFH(i);
+		}
+		Assert.assertEquals("Wrong session count", 50, datasource.getStoredSessionCount());
+		for (int i = 0; i < 50; i++) {
+			IClientCCASessionData data = (IClientCCASessionData) factory.getAppSessionData(ClientCCASession.class, "host.example;2;" + i);
+			Assert.assertEquals("Wrong value", i, data.getGatheredCCFH());
+		}
+		Assert.assertEquals("No live objects expected", 0, datasource.getResidentSessionCount());
+		// other applications keep using local data
+		Assert.assertNotNull("No local factory", factory(IRxSessionData.class).getAppSessionData(ClientRxSession.class, "host.example;3;1"));
+		Assert.assertFalse("Local data stored off-heap", datasource.exists("host.example;3;1"));
+	}
+
+	@Test
+	public void evictionTest() {
+		LocalDataSource local = new LocalDataSource();
+		datasource = new OffHeapSessionDatasource(container(), local, 2, 4);
+		createSessions("host.example;4;", 6);
+		Assert.assertEquals("Wrong session count", 6, datasource.getStoredSessionCount());
+		Assert.assertTrue("Too many live objects kept", datasource.getResidentSessionCount() <= 2);
+
+		int evicted = 0;
+		for (int i = 0; i < 6; i++) {
+			if (local.getSession("host.example;4;" + i) == null) {
+				evicted++;
+				// created again from its record on the next access
+				BaseSession session = datasource.getSession("host.example;4;" + i);
+				Assert.assertNotNull("Evicted session not restored", session);
+				Assert.assertEquals("Wrong session restored", "host.example;4;" + i, session.getSessionId());
+				Assert.assertNotNull("Restored session not live", local.getSession("host.example;4;" + i));
+				Assert.assertNotNull("Listener of restored session not set", local.getSessionListener("host.example;4;" + i));
+			}
+		}
+		Assert.assertTrue("No session evicted", evicted >= 4);
+		Assert.assertEquals("Wrong number of restored sessions", evicted, restored.get());
+		Assert.assertTrue("Too many live objects kept", datasource.getResidentSessionCount() <= 2);
+	}
+
+	@Test
+	public void requestInFlightNotEvictedTest() {
+		LocalDataSource local = new LocalDataSource();
+		datasource = new OffHeapSessionDatasource(container(), local, 2, 4);
+		IClientCCASessionData pending = (IClientCCASessionData) factory(ICCASessionData.class).getAppSessionData(ClientCCASession.class, "host.example;5;pending");
+		pending.setClientCCASessionState(ClientCCASessionState.PENDING_INITIAL);
+		datasource.addSession(liveSession("host.example;5;pending"));
+		IClientCCASessionData timed = (IClientCCASessionData) factory(ICCASessionData.class).getAppSessionData(ClientCCASession.class, "host.example;5;timed");
+		timed.setClientCCASessionState(ClientCCASessionState.OPEN);
+		timed.setTxTimerId("tx");
+		datasource.addSession(liveSession("host.example;5;timed"));
+
+		createSessions("host.example;5;", 6);
+		Assert.assertNotNull("Session waiting for an answer evicted", local.getSession("host.example;5;pending"));
+		Assert.assertNotNull("Session with a timer evicted", local.getSession("host.example;5;timed"));
+
+		// once answered and without timer it can go
+		pending.setClientCCASessionState(ClientCCASessionState.OPEN);
+		timed.setTxTimerId(null);
+		createSessions("host.example;6;", 6);
+		Assert.assertTrue("Too many live objects kept", datasource.getResidentSessionCount() <= 2);
+		Assert.assertEquals("Wrong restored count", 0, restored.get());
+	}
+
+	@Test
+	public void sameHashTest() {
+		// "Aa" and "BB" have the same hash code
+		Assert.assertEquals("Ids must collide", "host.example;7;Aa".hashCode(), "host.example;7;BB".hashCode());
+		IClientCCASessionData data = (IClientCCASessionData) factory(ICCASessionData.class).getAppSessionData(ClientCCASession.class, "host.example;7;Aa");
+		Assert.assertTrue("Record not removed", data.remove());
+		IClientCCASessionData other = (IClientCCASessionData) factory(ICCASessionData.class).getAppSessionData(ClientCCASession.class, "host.example;7;BB");
+		other.setGatheredCCFH(1);
+		try {
+			data.setGatheredCCFH(2);
+			Assert.fail("Record of another session with the same hash changed");
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+		Assert.assertEquals("Wrong value", 1, other.getGatheredCCFH());
+	}
+
+	@Test
+	public void indexTest() {
+		IAppSessionDataFactory<ICCASessionData> factory = factory(ICCASessionData.class);
+		// ids ending with "Aa" and "BB" collide, so probe sequences get long
+		int count = 2000;
+		for (int i = 0; i < count; i++) {
+			String suffix = i % 2 == 0 ? "Aa" : "BB";
+			IClientCCASessionData data = (IClientCCASessionData) factory.getAppSessionData(ClientCCASession.class, "host.example;8;" + (i / 2) + suffix);
+			data.setGatheredRequestedAction(i);
+		}
+		Assert.assertEquals("Wrong session count", count, datasource.getStoredSessionCount());
+		for (int i = 0; i < count; i += 3) {
+			String suffix = i % 2 == 0 ? "Aa" : "BB";
+			Assert.assertTrue("Record not removed", factory.getAppSessionData(ClientCCASession.class, "host.example;8;" + (i / 2) + suffix).remove());
+		}
+		for (int i = 0; i < count; i++) {
+			String sessionId = "host.example;8;" + (i / 2) + (i % 2 == 0 ? "Aa" : "BB");
+			if (i % 3 == 0) {
+				Assert.assertFalse("Removed session still stored: " + sessionId, datasource.exists(sessionId));
+			}
+			else {
+				Assert.assertTrue("Session lost: " + sessionId, datasource.exists(sessionId));
+				IClientCCASessionData data = (IClientCCASessionData) factory.getAppSessionData(ClientCCASession.class, sessionId);
+				Assert.assertEquals("Wrong record found for " + sessionId, i, data.getGatheredRequestedAction());
+			}
+		}
+		Assert.assertEquals("Wrong session count", count - (count + 2) / 3, datasource.getStoredSessionCount());
+	}
+}
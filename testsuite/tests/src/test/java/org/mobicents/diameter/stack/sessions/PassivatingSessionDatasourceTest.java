@@ -0,0 +1,215 @@
+package org.mobicents.diameter.stack.sessions;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.BaseSession;
+import org.jdiameter.api.NetworkReqListener;
+import org.jdiameter.api.Request;
+import org.jdiameter.api.app.AppSession;
+import org.jdiameter.api.gx.ClientGxSession;
+import org.jdiameter.api.rx.ClientRxSession;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.impl.app.gx.IClientGxSessionData;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.jdiameter.common.api.app.IAppSessionDataFactory;
+import org.jdiameter.common.api.app.gx.ClientGxSessionState;
+import org.jdiameter.common.api.app.gx.IGxSessionData;
+import org.jdiameter.common.api.app.rx.IRxSessionData;
+import org.jdiameter.common.impl.data.LocalDataSource;
+import org.jdiameter.common.impl.data.passivation.PassivatingSessionDatasource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PassivatingSessionDatasourceTest {
+
+	private File logFile;
+	private PassivatingSessionDatasource datasource;
+
+	private PassivatingSessionDatasource create(long idleTime, int maxResident) throws Exception {
+		logFile = File.createTempFile("passivation", ".log");
+		datasource = new PassivatingSessionDatasource(null, new LocalDataSource(), idleTime, maxResident, logFile);
+		return datasource;
+	}
+
+	@After
+	public void tearDown() {
+		if (datasource != null) {
+			datasource.stop();
+		}
+		if (logFile != null) {
+			logFile.delete();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private IAppSessionDataFactory<IGxSessionData> gxFactory(PassivatingSessionDatasource datasource) {
+		return (IAppSessionDataFactory<IGxSessionData>) datasource.getDataFactory(IGxSessionData.class);
+	}
+
+	@Test
+	public void passivateTest() throws Exception {
+		PassivatingSessionDatasource datasource = create(60000, 100);
+		IClientGxSessionData data = (IClientGxSessionData) gxFactory(datasource).getAppSessionData(ClientGxSession.class, "host.example;1;1");
+		IMessage request = new MessageParser().createEmptyMessage(272, 16777238);
+		request.setRequest(true);
+		request.getAvps().addAvp(Avp.SESSION_ID, "host.example;1;1", false);
+		data.setApplicationId(ApplicationId.createByAuthAppId(10415, 16777238));
+		data.setEventBased(false);
+		data.setRequestTypeSet(true);
+		data.setClientGxSessionState(ClientGxSessionState.OPEN);
+		data.setGatheredCCFH(1);
+		data.setTxTimerId("timer");
+		data.setBuffer((Request) request);
+
+		Assert.assertTrue("Session not passivated", datasource.passivate("host.example;1;1"));
+		Assert.assertTrue("Passivated session not found", datasource.exists("host.example;1;1"));
+		Assert.assertEquals("Wrong passivated count", 1, datasource.getPassivatedSessionCount());
+		Assert.assertEquals("Wrong resident count", 0, datasource.getResidentSessionCount());
+
+		IClientGxSessionData restored = (IClientGxSessionData) gxFactory(datasource).getAppSessionData(ClientGxSession.class, "host.example;1;1");
+		Assert.assertEquals("Wrong application id", ApplicationId.createByAuthAppId(10415, 16777238), restored.getApplicationId());
+		Assert.assertFalse("Wrong value", restored.isEventBased());
+		Assert.assertTrue("Wrong value", restored.isRequestTypeSet());
+		Assert.assertEquals("Wrong value", ClientGxSessionState.OPEN, restored.getClientGxSessionState());
+		Assert.assertEquals("Wrong value", 1, restored.getGatheredCCFH());
+		Assert.assertEquals("Wrong value", Integer.MIN_VALUE, restored.getGatheredDDFH());
+		Assert.assertEquals("Timer id lost", "timer", restored.getTxTimerId());
+		Assert.assertNull("Wrong value", restored.getTxTimerRequest());
+		Assert.assertEquals("Wrong buffered request", "host.example;1;1", restored.getBuffer().getSessionId());
+		Assert.assertEquals("Wrong passivated count", 0, datasource.getPassivatedSessionCount());
+		Assert.assertEquals("Wrong resident count", 1, datasource.getResidentSessionCount());
+	}
+
+	@Test
+	public void pendingTest() throws Exception {
+		PassivatingSessionDatasource datasource = create(0, 100);
+		IClientGxSessionData data = (IClientGxSessionData) gxFactory(datasource).getAppSessionData(ClientGxSession.class, "host.example;1;2");
+		data.setClientGxSessionState(ClientGxSessionState.PENDING_UPDATE);
+		// answer is on its way to the live session
+		Assert.assertFalse("Pending session passivated", datasource.passivate("host.example;1;2"));
+		datasource.passivateIdleSessions();
+		Assert.assertEquals("Wrong resident count", 1, datasource.getResidentSessionCount());
+		data.setClientGxSessionState(ClientGxSessionState.OPEN);
+		datasource.passivateIdleSessions();
+		Assert.assertEquals("Wrong passivated count", 1, datasource.getPassivatedSessionCount());
+	}
+
+	@Test
+	public void limitTest() throws Exception {
+		PassivatingSessionDatasource datasource = create(60000, 10);
+		IAppSessionDataFactory<?> factory = datasource.getDataFactory(IRxSessionData.class);
+		for (int i = 0; i < 20; i++) {
+			factory.getAppSessionData(ClientRxSession.class, "host.example;2;" + i);
+			Thread.sleep(2);
+			Assert.assertTrue("Resident limit exceeded", datasource.getResidentSessionCount() <= 10);
+		}
+		Assert.assertEquals("Sessions lost", 20, datasource.getResidentSessionCount() + datasource.getPassivatedSessionCount());
+		// least recently used first
+		Assert.assertTrue("Oldest session not passivated", datasource.exists("host.example;2;0"));
+		datasource.removeSession("host.example;2;0");
+		Assert.assertFalse("Session not removed", datasource.exists("host.example;2;0"));
+	}
+
+	@Test
+	public void restoreFailureTest() throws Exception {
+		PassivatingSessionDatasource datasource = create(60000, 100);
+		gxFactory(datasource).getAppSessionData(ClientGxSession.class, "host.example;3;1");
+		Assert.assertTrue("Session not passivated", datasource.passivate("host.example;3;1"));
+
+		// first byte of the only record is its type
+		RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+		byte type = file.readByte();
+		file.seek(0);
+		file.writeByte(0x7f);
+		Assert.assertNotNull("No data for the session", gxFactory(datasource).getAppSessionData(ClientGxSession.class, "host.example;3;1"));
+		Assert.assertEquals("Record dropped on failed restore", 1, datasource.getPassivatedSessionCount());
+
+		file.seek(0);
+		file.writeByte(type);
+		file.close();
+		// still there to be restored
+		Assert.assertNotNull("No data for the session", gxFactory(datasource).getAppSessionData(ClientGxSession.class, "host.example;3;1"));
+		Assert.assertEquals("Record kept after restore", 0, datasource.getPassivatedSessionCount());
+	}
+
+	@Test
+	public void stopTest() throws Exception {
+		PassivatingSessionDatasource datasource = create(60000, 100);
+		IClientGxSessionData data = (IClientGxSessionData) gxFactory(datasource).getAppSessionData(ClientGxSession.class, "host.example;4;1");
+		data.setClientGxSessionState(ClientGxSessionState.OPEN);
+		gxFactory(datasource).getAppSessionData(ClientGxSession.class, "host.example;4;2");
+		Assert.assertTrue("Session not passivated", datasource.passivate("host.example;4;1"));
+		datasource.stop();
+		Assert.assertEquals("Passivated session dropped on stop", 1, datasource.getPassivatedSessionCount());
+		datasource.start();
+		Assert.assertTrue("Passivated session lost on restart", datasource.exists("host.example;4;1"));
+		IClientGxSessionData restored = (IClientGxSessionData) gxFactory(datasource).getAppSessionData(ClientGxSession.class, "host.example;4;1");
+		Assert.assertEquals("Wrong value after restart", ClientGxSessionState.OPEN, restored.getClientGxSessionState());
+		Assert.assertTrue("Session not passivated after restart", datasource.passivate("host.example;4;2"));
+	}
+
+	@Test
+	public void detachedDataTest() throws Exception {
+		PassivatingSessionDatasource datasource = create(60000, 100);
+		IClientGxSessionData data = (IClientGxSessionData) gxFactory(datasource).getAppSessionData(ClientGxSession.class, "host.example;5;1");
+		data.setGatheredCCFH(1);
+		Assert.assertTrue("Session not passivated", datasource.passivate("host.example;5;1"));
+		try {
+			// as done by a handler which kept the old session object
+			data.setGatheredCCFH(2);
+			Assert.fail("Data of a passivated session changed");
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+		Assert.assertEquals("Wrong value", 1, data.getGatheredCCFH());
+
+		IClientGxSessionData restored = (IClientGxSessionData) gxFactory(datasource).getAppSessionData(ClientGxSession.class, "host.example;5;1");
+		Assert.assertEquals("Wrong restored value", 1, restored.getGatheredCCFH());
+		restored.setGatheredCCFH(2);
+		Assert.assertEquals("Restored data not changed", 2, restored.getGatheredCCFH());
+	}
+
+	@Test
+	public void touchedSessionTest() throws Exception {
+		PassivatingSessionDatasource datasource = create(50, 100);
+		gxFactory(datasource).getAppSessionData(ClientGxSession.class, "host.example;6;1");
+		gxFactory(datasource).getAppSessionData(ClientGxSession.class, "host.example;6;2");
+		datasource.addSession(liveSession("host.example;6;1"));
+		datasource.addSession(liveSession("host.example;6;2"));
+		Thread.sleep(100);
+		// handed out for a message, so no longer idle
+		Assert.assertNotNull("Session not found", datasource.getSession("host.example;6;1"));
+		datasource.passivateIdleSessions();
+		Assert.assertEquals("Wrong passivated count", 1, datasource.getPassivatedSessionCount());
+		Assert.assertNotNull("Session in use passivated", datasource.getSession("host.example;6;1"));
+		Assert.assertTrue("Idle session not passivated", datasource.exists("host.example;6;2"));
+	}
+
+	private static BaseSession liveSession(final String sessionId) {
+		return (BaseSession) Proxy.newProxyInstance(PassivatingSessionDatasourceTest.class.getClassLoader(), new Class[] {AppSession.class, NetworkReqListener.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("getSessionId")) {
+					return sessionId;
+				}
+				if (method.getName().equals("isAppSession")) {
+					return true;
+				}
+				if (method.getReturnType() == long.class) {
+					return 0L;
+				}
+				if (method.getReturnType() == boolean.class) {
+					return false;
+				}
+				return null;
+			}
+		});
+	}
+}
@@ -0,0 +1,76 @@
+package org.mobicents.diameter.stack.statistic;
+
+import static org.jdiameter.client.impl.helpers.Parameters.Statistics;
+import static org.jdiameter.client.impl.helpers.Parameters.StatisticsActiveList;
+import static org.jdiameter.client.impl.helpers.Parameters.StatisticsEnabled;
+
+import org.jdiameter.client.impl.helpers.EmptyConfiguration;
+import org.jdiameter.common.api.statistic.IHistogramRecord;
+import org.jdiameter.common.api.statistic.IStatistic;
+import org.jdiameter.common.api.statistic.IStatisticManager;
+import org.jdiameter.common.api.statistic.IStatisticRecord;
+import org.jdiameter.common.impl.statistic.StatisticManagerImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StatisticTest {
+
+	private IStatisticManager createManager() {
+		return new StatisticManagerImpl(EmptyConfiguration.getInstance().add(Statistics,
+				EmptyConfiguration.getInstance().add(StatisticsEnabled, true).add(StatisticsActiveList, "Peer")));
+	}
+
+	@Test
+	public void counterLookupTest() throws Exception {
+		IStatisticManager manager = createManager();
+		IStatisticRecord request = manager.newCounterRecord(IStatisticRecord.Counters.NetGenRequest);
+		IStatistic statistic = manager.newStatistic("aaa://host.example:3868", IStatistic.Groups.Peer, request);
+		IStatisticRecord response = manager.newCounterRecord(IStatisticRecord.Counters.NetGenResponse);
+		statistic.appendCounter(response);
+		Assert.assertTrue("Statistic not enabled", statistic.isEnabled());
+		Assert.assertSame("Wrong record", request, statistic.getRecordByName(IStatisticRecord.Counters.NetGenRequest));
+		Assert.assertSame("Wrong appended record", response, statistic.getRecordByName(IStatisticRecord.Counters.NetGenResponse));
+		Assert.assertSame("Lookups differ", statistic.getRecordByName(IStatisticRecord.Counters.NetGenRequest.name()),
+				statistic.getRecordByName(IStatisticRecord.Counters.NetGenRequest));
+		Assert.assertNull("Unknown record found", statistic.getRecordByName(IStatisticRecord.Counters.SysGenResponse));
+		request.inc();
+		request.inc();
+		Assert.assertEquals("Wrong count", 2, statistic.getRecordByName(IStatisticRecord.Counters.NetGenRequest).getValueAsLong());
+	}
+
+	@Test
+	public void histogramTest() throws Exception {
+		IStatisticManager manager = createManager();
+		IStatistic statistic = manager.newStatistic("aaa://host.example:3868", IStatistic.Groups.Peer);
+		IHistogramRecord histogram = manager.newHistogramRecord("MessageLatency.4.272", "latency");
+		statistic.appendCounter(histogram);
+		Assert.assertEquals("Empty histogram percentile", 0, histogram.getValueAtPercentile(99));
+		for (int i = 1; i <= 10000; i++) {
+			histogram.record(i);
+		}
+		Assert.assertEquals("Wrong count", 10000, histogram.getCount());
+		Assert.assertEquals("Wrong max", 10000, histogram.getMaxValue());
+		assertNear("p50", 5000, histogram.getValueAtPercentile(50));
+		assertNear("p99", 9900, histogram.getValueAtPercentile(99));
+		assertNear("p99.9", 9990, histogram.getValueAtPercentile(99.9));
+		Assert.assertEquals("Wrong p100", 10000, histogram.getValueAtPercentile(100));
+		Assert.assertTrue("Percentiles missing: " + histogram, histogram.toString().contains("p99.9="));
+		Assert.assertSame("Histogram not appended", histogram, statistic.getRecordByName("MessageLatency.4.272"));
+
+		// small values are exact
+		histogram.reset();
+		for (int i = 0; i < 100; i++) {
+			histogram.record(i % 10);
+		}
+		Assert.assertEquals("Wrong small p50", 4, histogram.getValueAtPercentile(50));
+		Assert.assertEquals("Wrong small max", 9, histogram.getMaxValue());
+
+		statistic.enable(false);
+		histogram.record(5);
+		Assert.assertEquals("Disabled histogram recorded", 100, histogram.getCount());
+	}
+
+	private static void assertNear(String message, long expected, long actual) {
+		Assert.assertTrue("Wrong " + message + ": " + actual, Math.abs(actual - expected) <= expected * 4 / 100);
+	}
+}
@@ -0,0 +1,101 @@
+package org.mobicents.diameter.stack.timer;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.jdiameter.common.impl.timer.HashedWheelTimerFacilityImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HashedWheelTimerFacilityTest {
+
+	private ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(2);
+
+	private static class RecordingFacility extends HashedWheelTimerFacilityImpl {
+
+		final Map<String, Long> fired = new ConcurrentHashMap<String, Long>();
+		final CountDownLatch latch;
+
+		RecordingFacility(ScheduledExecutorService executor, long tickDuration, int expected) {
+			super(executor, null, null, tickDuration);
+			latch = new CountDownLatch(expected);
+		}
+
+		protected void fire(String sessionId, String timerName) {
+			fired.put(sessionId + "/" + timerName, System.currentTimeMillis());
+			latch.countDown();
+		}
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void fireTest() throws Exception {
+		RecordingFacility facility = new RecordingFacility(executor, 5, 3);
+		long start = System.currentTimeMillis();
+		facility.schedule("s1", "TIMER_TCC", 20);
+		facility.schedule("s2", "TIMER_TCC", 100);
+		facility.schedule("s3", "TIMER_TX", 0);
+		Assert.assertTrue("Timers did not fire", facility.latch.await(5, TimeUnit.SECONDS));
+		Assert.assertTrue("Timer fired too early", facility.fired.get("s1/TIMER_TCC") - start >= 20);
+		Assert.assertTrue("Timer fired too early", facility.fired.get("s2/TIMER_TCC") - start >= 100);
+		Assert.assertEquals("Wrong scheduled count", 2, facility.getScheduledCount("TIMER_TCC"));
+		Assert.assertEquals("Wrong fired count", 2, facility.getFiredCount("TIMER_TCC"));
+		Assert.assertEquals("Wrong fired count", 1, facility.getFiredCount("TIMER_TX"));
+	}
+
+	@Test
+	public void cancelTest() throws Exception {
+		RecordingFacility facility = new RecordingFacility(executor, 5, 1);
+		Serializable cancelledNow = facility.schedule("s1", "TIMER_TCC", 50);
+		Serializable cancelledLater = facility.schedule("s2", "TIMER_TCC", 100);
+		facility.schedule("s3", "TIMER_TCC", 150);
+		facility.cancel(cancelledNow);
+		Thread.sleep(30);
+		facility.cancel(cancelledLater);
+		Assert.assertTrue("Timer did not fire", facility.latch.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals("Cancelled timer fired", 1, facility.fired.size());
+		Assert.assertTrue("Wrong timer fired", facility.fired.containsKey("s3/TIMER_TCC"));
+		Assert.assertEquals("Wrong cancelled count", 2, facility.getCancelledCount("TIMER_TCC"));
+		// cancelling again, or after expiry, is a no-op
+		facility.cancel(cancelledNow);
+		Assert.assertEquals("Wrong cancelled count", 2, facility.getCancelledCount("TIMER_TCC"));
+	}
+
+	@Test
+	public void cascadeTest() throws Exception {
+		// 1ms ticks, so these timers go through the outer levels of the wheel
+		RecordingFacility facility = new RecordingFacility(executor, 1, 200);
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 200; i++) {
+			facility.schedule("s" + i, "TIMER_TX", 200 + i * 5);
+		}
+		Assert.assertTrue("Timers did not fire", facility.latch.await(10, TimeUnit.SECONDS));
+		for (int i = 0; i < 200; i++) {
+			long elapsed = facility.fired.get("s" + i + "/TIMER_TX") - start;
+			Assert.assertTrue("Timer " + i + " fired too early: " + elapsed, elapsed >= 200 + i * 5);
+		}
+		Assert.assertEquals("Wrong fired count", 200, facility.getFiredCount("TIMER_TX"));
+	}
+
+	@Test
+	public void destroyTest() throws Exception {
+		RecordingFacility facility = new RecordingFacility(executor, 5, 1);
+		facility.schedule("s1", "TIMER_TCC", 50);
+		facility.destroy();
+		Assert.assertFalse("Timer fired after destroy", facility.latch.await(200, TimeUnit.MILLISECONDS));
+		for (Runnable task : ((ScheduledThreadPoolExecutor) executor).getQueue()) {
+			Assert.assertTrue("Tick still scheduled after destroy", ((Future<?>) task).isCancelled());
+		}
+	}
+}
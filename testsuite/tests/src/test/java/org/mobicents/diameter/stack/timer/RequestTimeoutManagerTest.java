@@ -0,0 +1,83 @@
+package org.mobicents.diameter.stack.timer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdiameter.client.api.IRequestTimeoutManager;
+import org.jdiameter.client.impl.RequestTimeoutManagerImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RequestTimeoutManagerTest {
+
+	private ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(2);
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void expireTest() throws Exception {
+		IRequestTimeoutManager manager = new RequestTimeoutManagerImpl(executor, 5);
+		final CountDownLatch latch = new CountDownLatch(300);
+		IRequestTimeoutManager.Timeout[] timeouts = new IRequestTimeoutManager.Timeout[300];
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < timeouts.length; i++) {
+			// longer ones go around the wheel more than once
+			timeouts[i] = manager.schedule(new Runnable() {
+				public void run() {
+					latch.countDown();
+				}
+			}, i < 200 ? 50 : 3000, TimeUnit.MILLISECONDS);
+		}
+		Assert.assertTrue("Timeouts did not expire", latch.await(10, TimeUnit.SECONDS));
+		Assert.assertTrue("Timeouts expired too early", System.currentTimeMillis() - start >= 3000);
+		for (IRequestTimeoutManager.Timeout timeout : timeouts) {
+			Assert.assertTrue("Timeout not marked as expired", timeout.isExpired());
+			Assert.assertFalse("Expired timeout cancelled", timeout.cancel());
+		}
+		manager.stop();
+	}
+
+	@Test
+	public void cancelTest() throws Exception {
+		IRequestTimeoutManager manager = new RequestTimeoutManagerImpl(executor, 5);
+		final AtomicInteger expired = new AtomicInteger();
+		Runnable task = new Runnable() {
+			public void run() {
+				expired.incrementAndGet();
+			}
+		};
+		IRequestTimeoutManager.Timeout answered = manager.schedule(task, 50, TimeUnit.MILLISECONDS);
+		IRequestTimeoutManager.Timeout pending = manager.schedule(task, 50, TimeUnit.MILLISECONDS);
+		Assert.assertTrue("Pending timeout not cancelled", answered.cancel());
+		Assert.assertFalse("Timeout cancelled twice", answered.cancel());
+		Thread.sleep(200);
+		Assert.assertEquals("Cancelled timeout expired", 1, expired.get());
+		Assert.assertFalse("Cancelled timeout marked as expired", answered.isExpired());
+		Assert.assertTrue("Timeout not marked as expired", pending.isExpired());
+		manager.stop();
+	}
+
+	@Test
+	public void expireNowTest() throws Exception {
+		IRequestTimeoutManager manager = new RequestTimeoutManagerImpl(executor, 5);
+		final AtomicInteger expired = new AtomicInteger();
+		IRequestTimeoutManager.Timeout timeout = manager.schedule(new Runnable() {
+			public void run() {
+				expired.incrementAndGet();
+			}
+		}, 100, TimeUnit.MILLISECONDS);
+		Assert.assertTrue("Timeout not expired", timeout.expire());
+		Assert.assertEquals("Task not run in calling thread", 1, expired.get());
+		Assert.assertFalse("Timeout expired twice", timeout.expire());
+		Thread.sleep(250);
+		Assert.assertEquals("Task run again by the wheel", 1, expired.get());
+		manager.stop();
+	}
+}
@@ -0,0 +1,95 @@
+package org.mobicents.diameter.stack.transport;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.AvpDataException;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.jdiameter.client.impl.transport.FrameDecoder;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FrameDecoderTest {
+
+	private MessageParser parser = new MessageParser();
+
+	private List<ByteBuffer> frames = new ArrayList<ByteBuffer>();
+
+	private FrameDecoder.FrameHandler handler = new FrameDecoder.FrameHandler() {
+		public void onFrame(ByteBuffer frame) {
+			frames.add(frame);
+		}
+	};
+
+	private byte[] encode(int dataSize) throws Exception {
+		IMessage message = parser.createEmptyMessage(316, 16777251);
+		message.getAvps().addAvp(Avp.SESSION_ID, "host.example;1;2", false);
+		message.getAvps().addAvp(Avp.USER_DATA_SH, new byte[dataSize]);
+		ByteBuffer buffer = parser.encodeMessage(message);
+		return Arrays.copyOf(buffer.array(), buffer.limit());
+	}
+
+	private void assertFrame(byte[] expected, ByteBuffer frame) {
+		Assert.assertEquals("Frame is not right-sized", expected.length, frame.capacity());
+		Assert.assertArrayEquals("Wrong frame content", expected, frame.array());
+	}
+
+	@Test
+	public void splitTest() throws Exception {
+		byte[] first = encode(10);
+		byte[] second = encode(3000);
+		byte[] data = new byte[first.length + second.length];
+		System.arraycopy(first, 0, data, 0, first.length);
+		System.arraycopy(second, 0, data, first.length, second.length);
+		// data delivered in every possible pair of chunks
+		for (int split = 0; split <= data.length; split++) {
+			FrameDecoder decoder = new FrameDecoder();
+			frames.clear();
+			decoder.decode(ByteBuffer.wrap(data, 0, split), handler);
+			decoder.decode(ByteBuffer.wrap(data, split, data.length - split), handler);
+			Assert.assertEquals("Wrong number of frames for split at " + split, 2, frames.size());
+			assertFrame(first, frames.get(0));
+			assertFrame(second, frames.get(1));
+		}
+	}
+
+	@Test
+	public void channelTest() throws Exception {
+		byte[] small = encode(10);
+		byte[] large = encode(20000);
+		Pipe pipe = Pipe.open();
+		pipe.sink().write(new ByteBuffer[] {ByteBuffer.wrap(small), ByteBuffer.wrap(large), ByteBuffer.wrap(small)});
+		pipe.sink().close();
+		FrameDecoder decoder = new FrameDecoder(1024);
+		while (decoder.read(pipe.source(), handler) != -1) {
+		}
+		Assert.assertEquals("Wrong number of frames", 3, frames.size());
+		assertFrame(small, frames.get(0));
+		assertFrame(large, frames.get(1));
+		assertFrame(small, frames.get(2));
+		Assert.assertEquals("Wrong decoded length", 20000, parser.createMessage(frames.get(1)).getAvps().getAvp(Avp.USER_DATA_SH).getRaw().length);
+	}
+
+	@Test
+	public void invalidHeaderTest() throws Exception {
+		FrameDecoder decoder = new FrameDecoder();
+		byte[] garbage = new byte[] {2, 0, 0, 20, 0, 0, 0, 0};
+		try {
+			decoder.decode(ByteBuffer.wrap(garbage), handler);
+			Assert.fail("Invalid version accepted");
+		}
+		catch (AvpDataException e) {
+			// expected
+		}
+		// decoder starts over with the next message
+		byte[] message = encode(10);
+		decoder.decode(ByteBuffer.wrap(message), handler);
+		Assert.assertEquals("Wrong number of frames", 1, frames.size());
+		assertFrame(message, frames.get(0));
+	}
+}
@@ -0,0 +1,185 @@
+package org.mobicents.diameter.stack.transport;
+
+import static org.jdiameter.client.impl.helpers.Parameters.IacTimeOut;
+import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMThreadCount;
+import static org.jdiameter.client.impl.helpers.Parameters.QueueSize;
+import static org.jdiameter.client.impl.helpers.Parameters.ReactorThreadCount;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdiameter.api.OverloadException;
+import org.jdiameter.api.app.State;
+import org.jdiameter.api.app.StateEvent;
+import org.jdiameter.client.api.fsm.EventTypes;
+import org.jdiameter.client.api.fsm.FsmEvent;
+import org.jdiameter.client.api.fsm.IContext;
+import org.jdiameter.client.impl.fsm.PeerFSMImpl;
+import org.jdiameter.client.impl.helpers.AppConfiguration;
+import org.jdiameter.client.impl.helpers.EmptyConfiguration;
+import org.jdiameter.client.impl.transport.NetworkReactor;
+import org.jdiameter.common.api.concurrent.DummyConcurrentFactory;
+import org.jdiameter.common.impl.statistic.StatisticManagerImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NetworkReactorTest {
+
+	private NetworkReactor reactor;
+	private SlowPeerFSM fsm;
+	private Pipe slowPipe;
+	private Pipe fastPipe;
+
+	/**
+	 * FSM whose states block until released, so its queue fills up.
+	 */
+	private static class SlowPeerFSM extends PeerFSMImpl {
+
+		final CountDownLatch release = new CountDownLatch(1);
+
+		SlowPeerFSM(AppConfiguration config) {
+			super(context(), new DummyConcurrentFactory(), config, new StatisticManagerImpl(config));
+		}
+
+		protected State[] getStates() {
+			State blocking = new State() {
+				public void entryAction() {
+				}
+
+				public void exitAction() {
+				}
+
+				public boolean processEvent(StateEvent event) {
+					try {
+						release.await(10, TimeUnit.SECONDS);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return true;
+				}
+			};
+			return new State[] {blocking, blocking, blocking, blocking, blocking, blocking, blocking, blocking};
+		}
+
+		void stop() {
+			mustRun = false;
+			release.countDown();
+		}
+
+		private static IContext context() {
+			return (IContext) Proxy.newProxyInstance(IContext.class.getClassLoader(), new Class[] {IContext.class}, new InvocationHandler() {
+				public Object invoke(Object proxy, Method method, Object[] args) {
+					Class<?> type = method.getReturnType();
+					if (type == String.class) {
+						return "slow-peer";
+					}
+					if (type == boolean.class) {
+						return Boolean.FALSE;
+					}
+					if (type == int.class) {
+						return 0;
+					}
+					return null;
+				}
+			});
+		}
+	}
+
+	private static class CountingHandler implements NetworkReactor.Handler {
+
+		final Pipe.SourceChannel channel;
+		final ByteBuffer buffer = ByteBuffer.allocate(16);
+
+		CountingHandler(Pipe.SourceChannel channel) {
+			this.channel = channel;
+		}
+
+		public boolean onReadable() throws IOException {
+			buffer.clear();
+			int read = channel.read(buffer);
+			for (int i = 0; i < read; i++) {
+				onByte();
+			}
+			return read >= 0;
+		}
+
+		protected void onByte() {
+		}
+
+		public boolean onWritable() {
+			return true;
+		}
+
+		public void onClosed() {
+		}
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		if (fsm != null) {
+			fsm.stop();
+		}
+		if (reactor != null) {
+			reactor.release();
+		}
+		for (Pipe pipe : new Pipe[] {slowPipe, fastPipe}) {
+			if (pipe != null) {
+				pipe.sink().close();
+				pipe.source().close();
+			}
+		}
+	}
+
+	@Test
+	public void slowPeerDoesNotDelayOtherConnections() throws Exception {
+		AppConfiguration config = EmptyConfiguration.getInstance();
+		config.add(ReactorThreadCount, 1);
+		config.add(QueueSize, 1);
+		config.add(PeerFSMThreadCount, 1);
+		config.add(IacTimeOut, 20000L);
+		fsm = new SlowPeerFSM(config);
+		// both channels end up on the single selector thread
+		reactor = NetworkReactor.acquire(config, null);
+
+		final AtomicInteger overloaded = new AtomicInteger();
+		slowPipe = Pipe.open();
+		slowPipe.source().configureBlocking(false);
+		reactor.register(slowPipe.source(), new CountingHandler(slowPipe.source()) {
+			protected void onByte() {
+				try {
+					// as a peer does for a connection served by the reactor
+					fsm.offerEvent(new FsmEvent(EventTypes.RECEIVE_MSG_EVENT));
+				}
+				catch (OverloadException e) {
+					overloaded.incrementAndGet();
+				}
+			}
+		});
+
+		final CountDownLatch fastRead = new CountDownLatch(1);
+		fastPipe = Pipe.open();
+		fastPipe.source().configureBlocking(false);
+		reactor.register(fastPipe.source(), new CountingHandler(fastPipe.source()) {
+			protected void onByte() {
+				fastRead.countDown();
+			}
+		});
+
+		// one event is being processed, one waits in the queue, the rest overflow
+		slowPipe.sink().write(ByteBuffer.wrap(new byte[] {1, 2, 3, 4}));
+		Thread.sleep(200);
+		fastPipe.sink().write(ByteBuffer.wrap(new byte[] {1}));
+
+		Assert.assertTrue("Read on the other connection was delayed by the slow peer", fastRead.await(2, TimeUnit.SECONDS));
+		Assert.assertTrue("Overload was not reported for the slow peer", overloaded.get() > 0);
+	}
+}
@@ -0,0 +1,145 @@
+package org.mobicents.diameter.stack.transport;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+import javax.net.ssl.SSLSession;
+
+import org.jdiameter.client.impl.transport.BufferPool;
+import org.jdiameter.client.impl.transport.tls.RecordBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RecordBufferTest {
+
+	private int packetBufferSize;
+
+	private final SSLSession session = (SSLSession) Proxy.newProxyInstance(SSLSession.class.getClassLoader(), new Class[] {SSLSession.class},
+			new InvocationHandler() {
+				public Object invoke(Object proxy, Method method, Object[] args) {
+					if (method.getName().equals("getPacketBufferSize")) {
+						return packetBufferSize;
+					}
+					throw new UnsupportedOperationException(method.getName());
+				}
+			});
+
+	/**
+	 * Channel handing out one chunk per read, as much as fits.
+	 */
+	private static class ChunkChannel implements ReadableByteChannel {
+
+		final LinkedList<ByteBuffer> chunks = new LinkedList<ByteBuffer>();
+
+		public int read(ByteBuffer dst) {
+			ByteBuffer chunk = chunks.peek();
+			if (chunk == null) {
+				return 0;
+			}
+			int count = Math.min(chunk.remaining(), dst.remaining());
+			for (int i = 0; i < count; i++) {
+				dst.put(chunk.get());
+			}
+			if (!chunk.hasRemaining()) {
+				chunks.poll();
+			}
+			return count;
+		}
+
+		public boolean isOpen() {
+			return true;
+		}
+
+		public void close() {
+		}
+	}
+
+	private static byte[] record(int length) {
+		byte[] record = new byte[length + 2];
+		record[0] = (byte) (length >> 8);
+		record[1] = (byte) length;
+		for (int i = 0; i < length; i++) {
+			record[i + 2] = (byte) i;
+		}
+		return record;
+	}
+
+	/**
+	 * Takes one length-prefixed record, or nothing when it is incomplete, like
+	 * an engine reporting BUFFER_UNDERFLOW.
+	 */
+	private static byte[] unwrap(ByteBuffer data) {
+		if (data.remaining() < 2) {
+			return null;
+		}
+		int length = ((data.get(data.position()) & 0xFF) << 8) | (data.get(data.position() + 1) & 0xFF);
+		if (data.remaining() < length + 2) {
+			return null;
+		}
+		byte[] payload = new byte[length];
+		data.position(data.position() + 2);
+		data.get(payload);
+		return payload;
+	}
+
+	private static byte[] payload(int length) {
+		return Arrays.copyOfRange(record(length), 2, length + 2);
+	}
+
+	@Test
+	public void recordSpanningTwoReads() throws IOException {
+		packetBufferSize = 64;
+		RecordBuffer buffer = new RecordBuffer(new BufferPool(256, 4));
+		ChunkChannel channel = new ChunkChannel();
+		byte[] first = record(50);
+		byte[] second = record(10);
+		channel.chunks.add(ByteBuffer.wrap(first, 0, 30));
+		ByteBuffer rest = ByteBuffer.allocate(first.length - 30 + second.length);
+		rest.put(first, 30, first.length - 30).put(second).flip();
+		channel.chunks.add(rest);
+
+		Assert.assertEquals("Wrong size of first read", 30, buffer.read(channel, session));
+		ByteBuffer data = buffer.flip();
+		Assert.assertNull("Partial record was unwrapped", unwrap(data));
+		buffer.underflow(session);
+		Assert.assertEquals("Buffer grew although the record fits", 64, buffer.getSize());
+		buffer.compact();
+
+		Assert.assertEquals("Wrong size of second read", rest.capacity(), buffer.read(channel, session));
+		data = buffer.flip();
+		Assert.assertArrayEquals("Record split over two reads is corrupted", payload(50), unwrap(data));
+		Assert.assertArrayEquals("Record following the split one is corrupted", payload(10), unwrap(data));
+		Assert.assertFalse("Data left after all records", data.hasRemaining());
+		buffer.compact();
+		Assert.assertEquals("Buffer kept after all data was unwrapped", 0, buffer.getSize());
+	}
+
+	@Test
+	public void growsToPacketBufferSize() throws IOException {
+		packetBufferSize = 64;
+		RecordBuffer buffer = new RecordBuffer(new BufferPool(256, 4));
+		ChunkChannel channel = new ChunkChannel();
+		byte[] record = record(100);
+		channel.chunks.add(ByteBuffer.wrap(record));
+
+		Assert.assertEquals("Read is not bounded by the packet buffer size", 64, buffer.read(channel, session));
+		ByteBuffer data = buffer.flip();
+		Assert.assertNull("Partial record was unwrapped", unwrap(data));
+		// the session now allows larger records
+		packetBufferSize = 128;
+		buffer.underflow(session);
+		Assert.assertEquals("Buffer did not follow the packet buffer size", 128, buffer.getSize());
+		buffer.compact();
+
+		Assert.assertEquals("Wrong size of second read", record.length - 64, buffer.read(channel, session));
+		Assert.assertArrayEquals("Record split over two reads is corrupted", payload(100), unwrap(buffer.flip()));
+		buffer.compact();
+		buffer.release();
+	}
+}